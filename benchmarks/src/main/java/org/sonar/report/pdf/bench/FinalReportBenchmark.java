@@ -0,0 +1,105 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.report.pdf.OutputProfile;
+import org.sonar.report.pdf.PDFResources;
+import org.sonar.report.pdf.ReportMerger;
+import org.sonar.report.pdf.Style;
+import org.sonar.report.pdf.entity.Project;
+import org.sonar.report.pdf.entity.exception.ReportException;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.PageSize;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.PdfWriter;
+
+/**
+ * Merging of front page, TOC and main document into the final report. The
+ * main document is a rendered workbook, the TOC has a line per chapter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FinalReportBenchmark {
+
+    @Param({ "default", "compact" })
+    private String outputProfile;
+
+    @Param({ "1", "10", "50" })
+    private int modules;
+
+    @Param({ "100", "1000", "10000" })
+    private int issues;
+
+    private OutputProfile profile;
+
+    private byte[] frontPage;
+
+    private byte[] toc;
+
+    private byte[] main;
+
+    @Setup
+    public void setUp() throws ReportException, DocumentException {
+        profile = OutputProfile.get(outputProfile);
+        Project project = Fixtures.createProject(modules, issues);
+        main = Fixtures.createReporter(PDFResources.WORKBOOK_REPORT_TYPE, project, Fixtures.getReportProperties())
+                .getReport().toByteArray();
+        frontPage = createDocument(1);
+        toc = createDocument(modules + 1);
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream createFinalReport() throws ReportException {
+        return ReportMerger.merge(frontPage, toc, main, profile);
+    }
+
+    private static byte[] createDocument(final int lines) throws DocumentException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Document document = new Document(PageSize.A4, 50, 50, 110, 50);
+        PdfWriter.getInstance(document, baos);
+        document.open();
+        for (int i = 1; i <= lines; i++) {
+            document.add(new Paragraph("Chapter " + i, Style.TOC_CHAPTER_FONT));
+        }
+        document.close();
+        return baos.toByteArray();
+    }
+
+}
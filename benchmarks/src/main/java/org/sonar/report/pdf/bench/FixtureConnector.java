@@ -0,0 +1,343 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.bench;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sonar.report.pdf.PDFResources;
+import org.sonar.report.pdf.entity.Severity;
+import org.sonar.report.pdf.util.MetricKeys;
+import org.sonarqube.ws.client.services.Query;
+import org.sonarqube.ws.connectors.ConnectionException;
+import org.sonarqube.ws.connectors.Connector;
+import org.sonarqube.ws.model.Component;
+import org.sonarqube.ws.model.ComponentMeasure;
+import org.sonarqube.ws.model.ComponentMeasures;
+import org.sonarqube.ws.model.ComponentTree;
+import org.sonarqube.ws.model.Issue;
+import org.sonarqube.ws.model.Issues;
+import org.sonarqube.ws.model.Measure;
+import org.sonarqube.ws.model.MeasureHisto;
+import org.sonarqube.ws.model.Metric;
+import org.sonarqube.ws.model.Metrics;
+import org.sonarqube.ws.model.Paging;
+import org.sonarqube.ws.model.Resource;
+import org.sonarqube.ws.model.Rule;
+import org.sonarqube.ws.model.Rules;
+import org.sonarqube.ws.model.TimeMachines;
+import org.sonarqube.ws.query.ComponentQuery;
+import org.sonarqube.ws.query.ComponentTreeQuery;
+import org.sonarqube.ws.query.IssueQuery;
+import org.sonarqube.ws.query.MetricQuery;
+import org.sonarqube.ws.query.ResourceQuery;
+import org.sonarqube.ws.query.RuleQuery;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Connector answering web service queries with fixture JSON for a synthetic
+ * project: a root project with a number of modules, each component having the
+ * same number of issues. Responses are generated once and kept, so only the
+ * client side of a call is measured.
+ */
+public class FixtureConnector implements Connector {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 1740317587226401836L;
+
+    public static final String ROOT_KEY = "bench:root";
+
+    private static final String TIMEMACHINE_URL = "/api/timemachine";
+
+    private static final int RULES = 50;
+
+    private static final int FILES = 200;
+
+    private static final int EXTRA_METRICS = 30;
+
+    private static final Date ANALYSIS_DATE = new Date(1451606400000L);
+
+    private static final Gson GSON = new GsonBuilder().setDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").create();
+
+    private final int modules;
+
+    private final int issues;
+
+    private final Map<String, String> responses = new HashMap<>();
+
+    /**
+     * Default constructor
+     * 
+     * @param modules
+     *            number of modules of the root project
+     * @param issues
+     *            number of issues of each component
+     */
+    public FixtureConnector(final int modules, final int issues) {
+        this.modules = modules;
+        this.issues = issues;
+    }
+
+    public int getModules() {
+        return modules;
+    }
+
+    public int getIssues() {
+        return issues;
+    }
+
+    /**
+     * @see org.sonarqube.ws.connectors.Connector#execute(org.sonarqube.ws.client.services.Query)
+     */
+    @Override
+    public String execute(final Query<?> query) throws ConnectionException {
+        String response = responses.get(query.getUrl());
+        if (response == null) {
+            response = createResponse(query.getBaseUrl(), query.getParams());
+            responses.put(query.getUrl(), response);
+        }
+        return response;
+    }
+
+    /**
+     * Create the JSON response of a query
+     * 
+     * @param baseUrl
+     *            web service
+     * @param params
+     *            query parameters
+     * @return JSON response
+     * @throws ConnectionException
+     *             if the web service is not part of the fixtures
+     */
+    private String createResponse(final String baseUrl, final Map<String, Serializable> params)
+            throws ConnectionException {
+        Object model;
+        if (ResourceQuery.BASE_URL.equals(baseUrl)) {
+            model = createResources(params);
+        } else if (ComponentQuery.BASE_URL.equals(baseUrl)) {
+            model = createComponentMeasures((String) params.get("componentKey"), (String) params.get("metricKeys"));
+        } else if (ComponentTreeQuery.BASE_URL.equals(baseUrl)) {
+            model = createComponentTree(params);
+        } else if (MetricQuery.BASE_URL.equals(baseUrl)) {
+            model = createMetrics();
+        } else if (RuleQuery.BASE_URL.equals(baseUrl)) {
+            model = createRules((String) params.get("rule_key"));
+        } else if (TIMEMACHINE_URL.equals(baseUrl)) {
+            model = createTimeMachines();
+        } else if (IssueQuery.create().getBaseUrl().equals(baseUrl)) {
+            model = createIssues((String) params.get("componentKeys"), (String) params.get("severities"));
+        } else {
+            throw new ConnectionException("No fixture for " + baseUrl);
+        }
+        return GSON.toJson(model);
+    }
+
+    private List<Resource> createResources(final Map<String, Serializable> params) {
+        String key = (String) params.get("resource");
+        Integer depth = (Integer) params.get("depth");
+        String metrics = (String) params.get("metrics");
+        List<Resource> resources = new ArrayList<>();
+        if (depth != null && depth == 1) {
+            if (ROOT_KEY.equals(key)) {
+                for (int i = 0; i < modules; i++) {
+                    resources.add(createResource(ROOT_KEY + ":module-" + i, PDFResources.PROJECT_SCOPE, null));
+                }
+            }
+        } else if (depth != null && depth == ResourceQuery.DEPTH_UNLIMITED) {
+            Integer limit = (Integer) params.get("limit");
+            int files = limit == null ? FILES : Math.min(limit, FILES);
+            for (int i = 0; i < files; i++) {
+                Resource file = createResource(key + ":src/File" + i + ".java", PDFResources.FILE_SCOPE, null);
+                file.setMsr(Arrays.asList(createMeasure(metrics, FILES - i)));
+                resources.add(file);
+            }
+        } else {
+            resources.add(createResource(key, PDFResources.PROJECT_SCOPE, metrics));
+        }
+        return resources;
+    }
+
+    private ComponentMeasures createComponentMeasures(final String key, final String metrics) {
+        ComponentMeasures result = new ComponentMeasures();
+        result.setComponent(createComponent(key, "BRC", metrics, 0));
+        return result;
+    }
+
+    /**
+     * Modules of the root project for the children strategy, files of a
+     * project otherwise. The files of each module are already sorted by
+     * decreasing values.
+     */
+    private ComponentTree createComponentTree(final Map<String, Serializable> params) {
+        String key = (String) params.get("baseComponentKey");
+        String metrics = (String) params.get("metricKeys");
+        Integer page = (Integer) params.get("p");
+        Integer pageSize = (Integer) params.get("ps");
+        int index = page == null ? 1 : page;
+        int size = pageSize == null ? 100 : pageSize;
+        ComponentTree tree = new ComponentTree();
+        tree.setBaseComponent(createComponent(key, "BRC", null, 0));
+        int total;
+        if (ComponentTreeQuery.STRATEGY_CHILDREN.equals(params.get("strategy"))) {
+            total = ROOT_KEY.equals(key) ? modules : 0;
+            for (int i = (index - 1) * size; i < Math.min(index * size, total); i++) {
+                tree.getComponents().add(createComponent(ROOT_KEY + ":module-" + i, "BRC", metrics, 0));
+            }
+        } else {
+            // the files of the root project are the ones of its modules
+            boolean moduleFiles = ROOT_KEY.equals(key) && modules > 0;
+            total = moduleFiles ? modules * FILES : FILES;
+            for (int i = (index - 1) * size; i < Math.min(index * size, total); i++) {
+                String module = moduleFiles ? ROOT_KEY + ":module-" + i / FILES : key;
+                tree.getComponents().add(createComponent(module + ":src/File" + i % FILES + ".java", "FIL",
+                        metrics, FILES - i % FILES));
+            }
+        }
+        tree.setPaging(new Paging(index, size, total));
+        return tree;
+    }
+
+    private Component createComponent(final String key, final String qualifier, final String metrics,
+            final double fileValue) {
+        Component component = new Component();
+        component.setKey(key);
+        component.setName(key.substring(key.lastIndexOf(':') + 1));
+        component.setQualifier(qualifier);
+        if (metrics != null) {
+            List<ComponentMeasure> measures = new ArrayList<>();
+            int value = 1;
+            for (String metric : metrics.split(",")) {
+                Measure measure = createMeasure(metric, fileValue > 0 ? fileValue : value * 10);
+                measures.add(new ComponentMeasure(metric, measure.getData() != null ? measure.getData()
+                        : String.valueOf(measure.getValue())));
+                value++;
+            }
+            component.setMeasures(measures);
+        }
+        return component;
+    }
+
+    private Resource createResource(final String key, final String scope, final String metrics) {
+        Resource resource = new Resource();
+        resource.setKey(key);
+        resource.setName(key.substring(key.lastIndexOf(':') + 1));
+        resource.setDescription("Synthetic resource " + key);
+        resource.setScope(scope);
+        resource.setQualifier(PDFResources.PROJECT_SCOPE.equals(scope) ? "BRC" : "FIL");
+        resource.setDate(ANALYSIS_DATE);
+        resource.setVersion("1.0");
+        if (metrics != null) {
+            List<Measure> measures = new ArrayList<>();
+            int value = 1;
+            for (String metric : metrics.split(",")) {
+                measures.add(createMeasure(metric, value * 10));
+                value++;
+            }
+            resource.setMsr(measures);
+        }
+        return resource;
+    }
+
+    private Measure createMeasure(final String metric, final double value) {
+        Measure measure = new Measure();
+        measure.setKey(metric);
+        if (MetricKeys.FILE_COMPLEXITY_DISTRIBUTION.getKey().equals(metric)) {
+            measure.setData("0=" + (issues / 2) + ";5=" + (issues / 4) + ";10=" + (issues / 8) + ";20=" + (issues / 16)
+                    + ";30=" + (issues / 32) + ";60=0;90=1");
+        } else if (MetricKeys.PROFILE.getKey().equals(metric)) {
+            measure.setData("[{\"name\":\"Sonar way\",\"language\":\"java\"}]");
+        } else {
+            measure.setValue(value);
+            measure.setFormattedValue(String.valueOf((long) value));
+        }
+        return measure;
+    }
+
+    private Metrics createMetrics() {
+        List<Metric> metrics = new ArrayList<>();
+        for (MetricKeys key : MetricKeys.values()) {
+            String type = "INT";
+            if (key == MetricKeys.FILE_COMPLEXITY_DISTRIBUTION) {
+                type = "DISTRIB";
+            } else if (key == MetricKeys.PROFILE) {
+                type = "DATA";
+            }
+            metrics.add(new Metric().setKey(key.getKey()).setName(key.name()).setType(type));
+        }
+        for (int i = 0; i < EXTRA_METRICS; i++) {
+            metrics.add(new Metric().setKey("bench_metric_" + i).setName("Metric " + i));
+        }
+        Metrics result = new Metrics();
+        result.setMetrics(metrics);
+        return result;
+    }
+
+    private Rules createRules(final String ruleKey) {
+        Rule rule = new Rule();
+        rule.setKey(ruleKey);
+        rule.setName("Synthetic rule " + ruleKey.substring(ruleKey.indexOf(':') + 1));
+        rule.setStatus("READY");
+        rule.setLang("java");
+        Rules rules = new Rules();
+        rules.getRules().add(rule);
+        return rules;
+    }
+
+    private List<TimeMachines> createTimeMachines() {
+        MeasureHisto cell = new MeasureHisto();
+        cell.setDate(ANALYSIS_DATE);
+        cell.setValues(Arrays.asList("15"));
+        TimeMachines timeMachines = new TimeMachines();
+        timeMachines.getCells().add(cell);
+        return Arrays.asList(timeMachines);
+    }
+
+    private Issues createIssues(final String componentKey, final String severity) {
+        String[] severities = Severity.getSeverityArray();
+        int index = Arrays.asList(severities).indexOf(severity);
+        Issues result = new Issues();
+        for (int i = index; i < issues; i += severities.length) {
+            Issue issue = new Issue();
+            issue.setKey(componentKey + "-" + i);
+            issue.setComponent(componentKey + ":src/File" + ((i / severities.length) % FILES) + ".java");
+            issue.setProject(ROOT_KEY);
+            issue.setRule("bench:rule-" + (i % RULES));
+            issue.setStatus("OPEN");
+            issue.setSeverity(severity);
+            issue.setMessage("Synthetic issue " + i);
+            issue.setLine(1 + i % 500);
+            issue.setCreationDate(ANALYSIS_DATE);
+            issue.setUpdateDate(ANALYSIS_DATE);
+            result.getIssues().add(issue);
+        }
+        return result;
+    }
+
+}
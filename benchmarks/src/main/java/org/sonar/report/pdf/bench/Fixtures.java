@@ -0,0 +1,131 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.ResourceBundle;
+
+import org.sonar.report.pdf.ExecutivePDFReporter;
+import org.sonar.report.pdf.PDFReporter;
+import org.sonar.report.pdf.PDFResources;
+import org.sonar.report.pdf.TeamWorkbookPDFReporter;
+import org.sonar.report.pdf.builder.ProjectBuilder;
+import org.sonar.report.pdf.entity.Project;
+import org.sonar.report.pdf.entity.exception.ReportException;
+import org.sonar.report.pdf.util.Credentials;
+import org.sonarqube.ws.client.WSClient;
+
+/**
+ * Synthetic projects and reporters shared by the benchmarks
+ */
+public final class Fixtures {
+
+    private static final Credentials CREDENTIALS = new Credentials("http://localhost:9000", null, null);
+
+    private Fixtures() {
+        super();
+    }
+
+    /**
+     * Create a client answering with fixture JSON
+     * 
+     * @param modules
+     *            number of modules
+     * @param issues
+     *            number of issues of each component
+     * @return WSClient
+     */
+    public static WSClient createClient(final int modules, final int issues) {
+        return new WSClient(new FixtureConnector(modules, issues));
+    }
+
+    /**
+     * Create a synthetic project tree, built from fixture JSON
+     * 
+     * @param modules
+     *            number of modules
+     * @param issues
+     *            number of issues of each component
+     * @return Project
+     * @throws ReportException
+     *             ReportException
+     */
+    public static Project createProject(final int modules, final int issues) throws ReportException {
+        return ProjectBuilder.getInstance(createClient(modules, issues)).initializeProject(FixtureConnector.ROOT_KEY);
+    }
+
+    /**
+     * Create a reporter for a project, without access to Sonar
+     * 
+     * @param reportType
+     *            executive or workbook
+     * @param project
+     *            project
+     * @param config
+     *            report properties
+     * @return PDFReporter
+     */
+    public static PDFReporter createReporter(final String reportType, final Project project,
+            final Properties config) {
+        URL logo = Fixtures.class.getResource(PDFResources.SONAR_PNG_FILE);
+        PDFReporter reporter;
+        if (PDFResources.EXECUTIVE_REPORT_TYPE.equals(reportType)) {
+            reporter = new ExecutivePDFReporter(CREDENTIALS, logo, project.getKey(), config, getLangProperties());
+        } else {
+            reporter = new TeamWorkbookPDFReporter(CREDENTIALS, logo, project.getKey(), config,
+                    getLangProperties());
+        }
+        reporter.setProject(project);
+        return reporter;
+    }
+
+    /**
+     * Get the report properties shipped with the plugin
+     * 
+     * @return Properties
+     */
+    public static Properties getReportProperties() {
+        Properties config = new Properties();
+        try (InputStream configStream = Fixtures.class.getResourceAsStream("/" + PDFResources.REPORT_PROPERTIES)) {
+            config.load(configStream);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not load " + PDFResources.REPORT_PROPERTIES, e);
+        }
+        return config;
+    }
+
+    private static Properties getLangProperties() {
+        Properties configLang = new Properties();
+        ResourceBundle rb = ResourceBundle.getBundle(PDFResources.RESOURCE_NAME, Locale.ENGLISH,
+                Fixtures.class.getClassLoader());
+        Enumeration<String> keys = rb.getKeys();
+        while (keys.hasMoreElements()) {
+            String key = keys.nextElement();
+            configLang.setProperty(key, rb.getString(key));
+        }
+        return configLang;
+    }
+
+}
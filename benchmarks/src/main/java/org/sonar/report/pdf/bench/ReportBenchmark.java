@@ -0,0 +1,76 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.report.pdf.entity.Project;
+import org.sonar.report.pdf.entity.exception.ReportException;
+
+/**
+ * Rendering of a whole report (front page, TOC, body and merging) for a
+ * project built once from fixture responses
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportBenchmark {
+
+    @Param({ "executive", "workbook" })
+    private String reportType;
+
+    @Param({ "1", "10", "50" })
+    private int modules;
+
+    @Param({ "100", "1000", "10000" })
+    private int issues;
+
+    private Project project;
+
+    private Properties config;
+
+    @Setup
+    public void setUp() throws ReportException {
+        project = Fixtures.createProject(modules, issues);
+        config = Fixtures.getReportProperties();
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream getReport() throws ReportException {
+        return Fixtures.createReporter(reportType, project, config).getReport();
+    }
+
+}
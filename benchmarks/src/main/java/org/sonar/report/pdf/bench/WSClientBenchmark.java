@@ -0,0 +1,106 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.report.pdf.entity.Severity;
+import org.sonar.report.pdf.entity.exception.ReportException;
+import org.sonar.report.pdf.util.MetricKeys;
+import org.sonarqube.ws.client.WSClient;
+import org.sonarqube.ws.model.ComponentMeasures;
+import org.sonarqube.ws.model.Issues;
+import org.sonarqube.ws.model.Resource;
+import org.sonarqube.ws.query.ComponentQuery;
+import org.sonarqube.ws.query.IssueQuery;
+import org.sonarqube.ws.query.ResourceQuery;
+
+/**
+ * Unmarshalling of web service responses. Responses are cached by the
+ * connector, so only the JSON binding is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WSClientBenchmark {
+
+    @Param({ "1", "10", "50" })
+    private int modules;
+
+    @Param({ "100", "1000", "10000" })
+    private int issues;
+
+    private WSClient client;
+
+    private IssueQuery issueQuery;
+
+    private ResourceQuery modulesQuery;
+
+    private ComponentQuery measuresQuery;
+
+    @Setup
+    public void setUp() throws ReportException {
+        client = Fixtures.createClient(modules, issues);
+        issueQuery = IssueQuery.create().componentKeys(FixtureConnector.ROOT_KEY)
+                .severities(Severity.MAJOR.name());
+        modulesQuery = ResourceQuery.create(FixtureConnector.ROOT_KEY);
+        modulesQuery.setDepth(1);
+        String[] metrics = new String[MetricKeys.values().length];
+        for (int i = 0; i < metrics.length; i++) {
+            metrics[i] = MetricKeys.values()[i].getKey();
+        }
+        measuresQuery = ComponentQuery.create(FixtureConnector.ROOT_KEY).metricKeys(metrics);
+        // warm the connector so that responses are not generated while measuring
+        unmarshalIssues();
+        unmarshalModules();
+        unmarshalMeasures();
+    }
+
+    @Benchmark
+    public Issues unmarshalIssues() throws ReportException {
+        return client.find(issueQuery);
+    }
+
+    @Benchmark
+    public List<Resource> unmarshalModules() throws ReportException {
+        return client.findAll(modulesQuery);
+    }
+
+    @Benchmark
+    public ComponentMeasures unmarshalMeasures() throws ReportException {
+        return client.find(measuresQuery);
+    }
+
+}
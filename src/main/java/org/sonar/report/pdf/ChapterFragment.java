@@ -0,0 +1,171 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sonar.report.pdf.entity.exception.ReportException;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.PdfPageEvent;
+import com.lowagie.text.pdf.PdfPageEventHelper;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfWriter;
+
+/**
+ * A chapter rendered on its own, without header nor page numbers, with the
+ * chapter and section events raised while it was laid out. Its pages are
+ * imported in the main document, where the header, page numbers and TOC
+ * entries are added for their final position.
+ */
+public class ChapterFragment implements Serializable {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = -4412745019640374437L;
+
+    private final byte[] pdf;
+
+    private final List<Entry> entries;
+
+    private ChapterFragment(final byte[] pdf, final List<Entry> entries) {
+        this.pdf = pdf;
+        this.entries = entries;
+    }
+
+    public int getSize() {
+        return pdf.length;
+    }
+
+    /**
+     * Print the pages of the fragment in a document. The chapter and section
+     * events are raised again on the page they were raised in the fragment.
+     * 
+     * @param document
+     *            target document
+     * @param writer
+     *            writer of the target document
+     * @throws ReportException
+     *             ReportException
+     */
+    public void print(final Document document, final PdfWriter writer) throws ReportException {
+        try {
+            PdfReader reader = new PdfReader(pdf);
+            PdfPageEvent events = writer.getPageEvent();
+            int next = 0;
+            for (int page = 1; page <= reader.getNumberOfPages(); page++) {
+                for (; next < entries.size() && entries.get(next).page <= page; next++) {
+                    entries.get(next).raise(events, writer, document);
+                }
+                writer.getDirectContent().addTemplate(writer.getImportedPage(reader, page), 0, 0);
+                document.newPage();
+            }
+            for (; next < entries.size(); next++) {
+                entries.get(next).raise(events, writer, document);
+            }
+            writer.freeReader(reader);
+        } catch (IOException e) {
+            throw new ReportException("Error printing chapter fragment", e);
+        }
+    }
+
+    /**
+     * Page events of the document a fragment is rendered in, recording the
+     * chapter and section events.
+     */
+    public static class Recorder extends PdfPageEventHelper {
+
+        private final List<Entry> entries = new ArrayList<>();
+
+        @Override
+        public void onChapter(final PdfWriter writer, final Document document, final float position,
+                final Paragraph title) {
+            entries.add(new Entry(Entry.CHAPTER, 1, title.getContent(), writer.getPageNumber()));
+        }
+
+        @Override
+        public void onChapterEnd(final PdfWriter writer, final Document document, final float position) {
+            entries.add(new Entry(Entry.CHAPTER_END, 1, null, writer.getPageNumber()));
+        }
+
+        @Override
+        public void onSection(final PdfWriter writer, final Document document, final float position,
+                final int depth, final Paragraph title) {
+            entries.add(new Entry(Entry.SECTION, depth, title.getContent(), writer.getPageNumber()));
+        }
+
+        /**
+         * Create the fragment once its document is closed
+         * 
+         * @param pdf
+         *            content of the closed document
+         * @return ChapterFragment
+         */
+        public ChapterFragment createFragment(final byte[] pdf) {
+            return new ChapterFragment(pdf, new ArrayList<>(entries));
+        }
+    }
+
+    /**
+     * Chapter or section event
+     */
+    private static class Entry implements Serializable {
+
+        private static final long serialVersionUID = 6097325166316524108L;
+
+        private static final int CHAPTER = 0;
+        private static final int CHAPTER_END = 1;
+        private static final int SECTION = 2;
+
+        private final int type;
+        private final int depth;
+        private final String title;
+        private final int page;
+
+        Entry(final int type, final int depth, final String title, final int page) {
+            this.type = type;
+            this.depth = depth;
+            this.title = title;
+            this.page = page;
+        }
+
+        void raise(final PdfPageEvent events, final PdfWriter writer, final Document document) {
+            if (events == null) {
+                return;
+            }
+            float position = writer.getVerticalPosition(false);
+            switch (type) {
+            case CHAPTER:
+                events.onChapter(writer, document, position, new Paragraph(title));
+                break;
+            case CHAPTER_END:
+                events.onChapterEnd(writer, document, position);
+                break;
+            default:
+                events.onSection(writer, document, position, depth, new Paragraph(title));
+            }
+        }
+    }
+}
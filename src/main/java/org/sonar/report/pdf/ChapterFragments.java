@@ -0,0 +1,294 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.report.pdf.entity.FileInfo;
+import org.sonar.report.pdf.entity.Measure;
+import org.sonar.report.pdf.entity.Measures;
+import org.sonar.report.pdf.entity.Project;
+import org.sonar.report.pdf.entity.Rule;
+import org.sonar.report.pdf.entity.Violation;
+
+/**
+ * Chapter fragments of the reports of a project, one file per chapter named
+ * after a hash of everything the chapter is rendered from: the report
+ * settings and texts, the chapter number and the data of its project
+ * (without subprojects). A fragment is only reused while none of them
+ * changed. Fragments not used by the last report are removed.
+ */
+public class ChapterFragments {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChapterFragments.class);
+
+    private static final String EXTENSION = ".chapter";
+
+    /**
+     * Changed when the layout of the chapters changes, so that older fragments
+     * are not reused
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    private final File directory;
+
+    private final byte[] context;
+
+    private final Set<String> used = new HashSet<>();
+
+    private int reused;
+
+    /**
+     * Default constructor
+     * 
+     * @param baseDirectory
+     *            base directory of the fragments, created if needed
+     * @param projectKey
+     *            key of the reported project
+     * @param reportType
+     *            report type
+     * @param configProperties
+     *            report settings
+     * @param langProperties
+     *            report texts
+     */
+    public ChapterFragments(final File baseDirectory, final String projectKey, final String reportType,
+            final Properties configProperties, final Properties langProperties) {
+        this.directory = new File(baseDirectory, projectKey.replaceAll("[^A-Za-z0-9._-]", "-") + EXTENSION + "s");
+        MessageDigest digest = newDigest();
+        update(digest, String.valueOf(FORMAT_VERSION));
+        update(digest, reportType);
+        update(digest, configProperties);
+        update(digest, langProperties);
+        this.context = digest.digest();
+    }
+
+    /**
+     * Get the key of a chapter
+     * 
+     * @param project
+     *            project of the chapter
+     * @param number
+     *            chapter number
+     * @return String
+     */
+    public String getKey(final Project project, final int number) {
+        MessageDigest digest = newDigest();
+        digest.update(context);
+        update(digest, String.valueOf(number));
+        update(digest, project);
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Load a fragment
+     * 
+     * @param key
+     *            chapter key
+     * @return ChapterFragment or null if there is no usable fragment
+     */
+    public ChapterFragment load(final String key) {
+        used.add(key);
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            ChapterFragment fragment = (ChapterFragment) in.readObject();
+            reused++;
+            return fragment;
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            LOG.warn("Ignoring unreadable chapter fragment " + file.getAbsolutePath() + ": " + e);
+        }
+        return null;
+    }
+
+    /**
+     * Store a fragment
+     * 
+     * @param key
+     *            chapter key
+     * @param fragment
+     *            fragment
+     */
+    public void store(final String key, final ChapterFragment fragment) {
+        used.add(key);
+        File file = getFile(key);
+        File tmp = new File(directory, file.getName() + ".tmp");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            LOG.warn("Can not create chapter fragments directory " + directory.getAbsolutePath());
+            return;
+        }
+        try {
+            try (ObjectOutputStream out = new ObjectOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeObject(fragment);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Can not store chapter fragment " + file.getAbsolutePath() + ": " + e);
+            if (tmp.exists() && !tmp.delete()) {
+                LOG.debug("Can not delete " + tmp.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Remove the fragments which were neither loaded nor stored
+     */
+    public void removeUnused() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(EXTENSION) && !used.contains(name.substring(0, name.length() - EXTENSION.length()))
+                    && !file.delete()) {
+                LOG.debug("Can not delete " + file.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * @return number of fragments loaded
+     */
+    public int getReusedCount() {
+        return reused;
+    }
+
+    private File getFile(final String key) {
+        return new File(directory, key + EXTENSION);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(final MessageDigest digest, final Properties properties) {
+        if (properties == null) {
+            return;
+        }
+        for (String name : new TreeSet<>(properties.stringPropertyNames())) {
+            update(digest, name);
+            update(digest, properties.getProperty(name));
+        }
+    }
+
+    private static void update(final MessageDigest digest, final Project project) {
+        update(digest, project.getKey());
+        update(digest, project.getName());
+        update(digest, project.getDescription());
+        Measures measures = project.getMeasures();
+        if (measures != null) {
+            update(digest, measures.getVersion());
+            for (String key : new TreeSet<>(measures.getMeasuresKeys())) {
+                Measure measure = measures.getMeasure(key);
+                update(digest, key);
+                update(digest, measure.getValue());
+                update(digest, measure.getFormatValue());
+                update(digest, measure.getTextValue());
+                update(digest, measure.getDataValue());
+                update(digest, String.valueOf(measure.getQualitativeTendency()));
+                update(digest, measure.getAlert());
+            }
+        }
+        if (project.getMostViolatedRules() != null) {
+            update(digest, String.valueOf(project.getMostViolatedRules().size()));
+            for (Rule rule : project.getMostViolatedRules()) {
+                update(digest, rule.getKey());
+                update(digest, rule.getName());
+                update(digest, rule.getDescription());
+                update(digest, String.valueOf(rule.getSeverity()));
+                update(digest, rule.getViolationsNumber());
+                update(digest, rule.getMessage());
+                if (rule.getTopViolations() != null) {
+                    update(digest, String.valueOf(rule.getTopViolations().size()));
+                    for (Violation violation : rule.getTopViolations()) {
+                        update(digest, violation.getResource());
+                        update(digest, violation.getLine());
+                    }
+                }
+            }
+        }
+        update(digest, project.getMostViolatedFiles());
+        update(digest, project.getMostComplexFiles());
+        update(digest, project.getMostDuplicatedFiles());
+    }
+
+    private static void update(final MessageDigest digest, final List<FileInfo> files) {
+        if (files == null) {
+            update(digest, (String) null);
+            return;
+        }
+        update(digest, String.valueOf(files.size()));
+        for (FileInfo file : files) {
+            update(digest, file.getKey());
+            update(digest, file.getName());
+            update(digest, file.getViolations());
+            update(digest, file.getComplexity());
+            update(digest, file.getDuplicatedLines());
+        }
+    }
+
+    /**
+     * Each value is preceded by its length, so that consecutive values can not
+     * be confused
+     */
+    private static void update(final MessageDigest digest, final String value) {
+        if (value == null) {
+            digest.update(new byte[] { -1, -1, -1, -1 });
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = bytes.length;
+        digest.update(new byte[] { (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8),
+                (byte) length });
+        digest.update(bytes);
+    }
+}
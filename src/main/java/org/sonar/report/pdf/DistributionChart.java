@@ -0,0 +1,176 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Image;
+import com.lowagie.text.pdf.BaseFont;
+import com.lowagie.text.pdf.PdfContentByte;
+import com.lowagie.text.pdf.PdfTemplate;
+
+/**
+ * Vertical bar chart for distribution measures, drawn with vector operators
+ * directly in the PDF content.
+ */
+public class DistributionChart {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DistributionChart.class);
+
+    public static final float DEFAULT_WIDTH = 300;
+
+    public static final float DEFAULT_HEIGHT = 200;
+
+    private static final float MARGIN = 20;
+
+    private static final float FONT_SIZE = 8;
+
+    /**
+     * Part of the slot width filled by a bar
+     */
+    private static final float BAR_RATIO = 0.6f;
+
+    private static final Color BAR_COLOR = new Color(0x77, 0x77, 0x77);
+
+    private static final Color AXIS_COLOR = Color.GRAY;
+
+    private final String[] labels;
+    private final double[] values;
+    private float width = DEFAULT_WIDTH;
+    private float height = DEFAULT_HEIGHT;
+
+    /**
+     * Constructor
+     * 
+     * @param labels
+     *            labels of the x axis
+     * @param values
+     *            value for each label
+     */
+    public DistributionChart(final String[] labels, final double[] values) {
+        this.labels = Arrays.copyOf(labels, labels.length);
+        this.values = Arrays.copyOf(values, values.length);
+    }
+
+    public DistributionChart setSize(final float width, final float height) {
+        this.width = width;
+        this.height = height;
+        return this;
+    }
+
+    /**
+     * Creates an image holding the chart. The image is a template of the
+     * given content, so it stays vectorial.
+     * 
+     * @param cb
+     *            content of the document the image will be added to
+     * @return Image or null if the chart can not be drawn
+     */
+    public Image createImage(final PdfContentByte cb) {
+        Image image = null;
+        try {
+            PdfTemplate template = cb.createTemplate(width, height);
+            draw(template, width, height);
+            image = Image.getInstance(template);
+        } catch (DocumentException | IOException e) {
+            LOG.error("Can not draw distribution chart", e);
+        }
+        return image;
+    }
+
+    /**
+     * Draws the chart at the origin of the given content
+     * 
+     * @param cb
+     *            content
+     * @param chartWidth
+     *            width
+     * @param chartHeight
+     *            height
+     * @throws DocumentException
+     *             DocumentException
+     * @throws IOException
+     *             IOException
+     */
+    public void draw(final PdfContentByte cb, final float chartWidth, final float chartHeight)
+            throws DocumentException, IOException {
+        BaseFont font = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.WINANSI, BaseFont.NOT_EMBEDDED);
+        float plotWidth = chartWidth - 2 * MARGIN;
+        float plotHeight = chartHeight - 2 * MARGIN;
+        double max = 0;
+        for (double value : values) {
+            max = Math.max(max, value);
+        }
+
+        // axis
+        cb.saveState();
+        cb.setColorStroke(AXIS_COLOR);
+        cb.setLineWidth(0.5f);
+        cb.moveTo(MARGIN, MARGIN);
+        cb.lineTo(MARGIN + plotWidth, MARGIN);
+        cb.stroke();
+        cb.restoreState();
+
+        if (values.length == 0) {
+            return;
+        }
+        float slot = plotWidth / values.length;
+        float barWidth = slot * BAR_RATIO;
+
+        // bars
+        cb.saveState();
+        cb.setColorFill(BAR_COLOR);
+        for (int i = 0; i < values.length; i++) {
+            float barHeight = max > 0 ? (float) (values[i] / max * plotHeight) : 0;
+            if (barHeight > 0) {
+                cb.rectangle(MARGIN + i * slot + (slot - barWidth) / 2, MARGIN, barWidth, barHeight);
+            }
+        }
+        cb.fill();
+        cb.restoreState();
+
+        // labels and values
+        cb.beginText();
+        cb.setFontAndSize(font, FONT_SIZE);
+        for (int i = 0; i < values.length; i++) {
+            float center = MARGIN + i * slot + slot / 2;
+            float barHeight = max > 0 ? (float) (values[i] / max * plotHeight) : 0;
+            cb.showTextAligned(PdfContentByte.ALIGN_CENTER, formatValue(values[i]), center,
+                    MARGIN + barHeight + FONT_SIZE / 2, 0);
+            if (i < labels.length && labels[i] != null) {
+                cb.showTextAligned(PdfContentByte.ALIGN_CENTER, labels[i], center, MARGIN - FONT_SIZE - 2, 0);
+            }
+        }
+        cb.endText();
+    }
+
+    private static String formatValue(final double value) {
+        if (value == Math.rint(value)) {
+            return String.valueOf((long) value);
+        }
+        return String.valueOf(value);
+    }
+}
@@ -20,14 +20,17 @@
 package org.sonar.report.pdf;
 
 import java.awt.Color;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.text.SimpleDateFormat;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import org.json.simple.JSONArray;
 import org.json.simple.parser.JSONParser;
@@ -48,7 +51,9 @@ import com.lowagie.text.Chunk;
 import com.lowagie.text.Document;
 import com.lowagie.text.DocumentException;
 import com.lowagie.text.Element;
+import com.lowagie.text.ElementListener;
 import com.lowagie.text.Image;
+import com.lowagie.text.PageSize;
 import com.lowagie.text.Paragraph;
 import com.lowagie.text.Phrase;
 import com.lowagie.text.Rectangle;
@@ -131,22 +136,24 @@ public class ExecutivePDFReporter extends PDFReporter {
             title.getDefaultCell().setHorizontalAlignment(PdfPCell.ALIGN_CENTER);
             title.getDefaultCell().setBorder(Rectangle.NO_BORDER);
 
-            String projectRow = super.getProject().getName();
-            String versionRow = super.getProject().getMeasures().getVersion();
+            Project project = getChapters().getRoot();
+            String projectRow = project.getName();
+            String versionRow = project.getMeasures().getVersion();
             SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
-            String dateRow = df.format(super.getProject().getMeasures().getDate());
-            String descriptionRow = super.getProject().getDescription();
+            String dateRow = df.format(project.getMeasures().getDate());
+            String descriptionRow = project.getDescription();
 
-            title.addCell(new Phrase(projectRow, Style.FRONTPAGE_FONT_1));
-            title.addCell(new Phrase(versionRow, Style.FRONTPAGE_FONT_1));
-            title.addCell(new Phrase(descriptionRow, Style.FRONTPAGE_FONT_2));
-            String qualityProfile = super.getProject().getMeasure(MetricKeys.PROFILE).getDataValue();
+            title.addCell(new Phrase(projectRow, getFont(Style.FRONTPAGE_FONT_1)));
+            title.addCell(new Phrase(versionRow, getFont(Style.FRONTPAGE_FONT_1)));
+            title.addCell(new Phrase(descriptionRow, getFont(Style.FRONTPAGE_FONT_2)));
+            String qualityProfile = project.getMeasure(MetricKeys.PROFILE).getDataValue();
             JSONParser parser = new JSONParser();
             JSONArray json = (JSONArray) parser.parse(qualityProfile);
             if (!json.isEmpty()) {
                 Map<String, String> properties = JdkUtils.getInstance().getFieldsWithValues(json.get(0));
                 if (properties.containsKey(QUALITY_PROFILE_NAME)) {
-                    title.addCell(new Phrase(properties.get(QUALITY_PROFILE_NAME), Style.FRONTPAGE_FONT_3));
+                    title.addCell(
+                            new Phrase(properties.get(QUALITY_PROFILE_NAME), getFont(Style.FRONTPAGE_FONT_3)));
                 }
 
             }
@@ -161,51 +168,169 @@ public class ExecutivePDFReporter extends PDFReporter {
     }
 
     /**
-     * @see org.sonar.report.pdf.PDFReporter#printPdfBody(com.lowagie.text.Document)
+     * @see org.sonar.report.pdf.PDFReporter#printPdfBody(com.lowagie.text.Document,
+     *      com.lowagie.text.pdf.PdfWriter)
      */
     @Override
-    protected void printPdfBody(final Document document) throws ReportException {
-        Project project = super.getProject();
+    protected void printPdfBody(final Document document, final PdfWriter writer) throws ReportException {
+        ProjectPipeline chapters = getChapters();
+        ChapterFragments fragments = getChapterFragments();
+        if (fragments != null) {
+            printPdfBody(chapters, fragments, document, writer);
+            return;
+        }
         // Chapter 1: Report Overview (Parent project)
-        ChapterAutoNumber chapter1 = new ChapterAutoNumber(new Paragraph(project.getName(), Style.CHAPTER_FONT));
+        Project project = chapters.next();
+        ChapterAutoNumber chapter1 = new ChapterAutoNumber(
+                new Paragraph(project.getName(), getFont(Style.CHAPTER_FONT)));
         chapter1.add(new Paragraph(getTextProperty(PDFResources.MAIN_TEXT_MISC_OVERVIEW), Style.NORMAL_FONT));
-        printDetailsForProject(project, chapter1);
-        try {
-            document.add(chapter1);
-            for (Project subProject : project.getSubprojects()) {
-                ChapterAutoNumber chapterN = new ChapterAutoNumber(
-                        new Paragraph(subProject.getName(), Style.CHAPTER_FONT));
-                printDetailsForProject(subProject, chapterN);
-                document.add(chapterN);
+        printDetailsForProject(project, chapter1, document, writer);
+        for (Project subProject = chapters.next(); subProject != null; subProject = chapters.next()) {
+            ChapterAutoNumber chapterN = new ChapterAutoNumber(
+                    new Paragraph(subProject.getName(), getFont(Style.CHAPTER_FONT)));
+            printDetailsForProject(subProject, chapterN, document, writer);
+        }
+    }
+
+    /**
+     * Print PDF body from chapter fragments: only the chapters whose data
+     * changed since the last report are rendered again
+     * 
+     * @param chapters
+     *            projects of the chapters
+     * @param fragments
+     *            chapter fragments of the project
+     * @param document
+     *            document
+     * @param writer
+     *            writer of the document
+     * @throws ReportException
+     *             ReportException
+     */
+    private void printPdfBody(final ProjectPipeline chapters, final ChapterFragments fragments,
+            final Document document, final PdfWriter writer) throws ReportException {
+        int number = 0;
+        for (Project project = chapters.next(); project != null; project = chapters.next()) {
+            number++;
+            printChapter(project, number, fragments, document, writer);
+        }
+        fragments.removeUnused();
+        LOG.info(fragments.getReusedCount() + " of " + number + " chapters reused from previous reports");
+    }
+
+    /**
+     * Print a chapter from its fragment, rendering and storing the fragment
+     * first if needed
+     * 
+     * @param project
+     *            project of the chapter
+     * @param number
+     *            chapter number
+     * @param fragments
+     *            chapter fragments of the project
+     * @param document
+     *            document
+     * @param writer
+     *            writer of the document
+     * @throws ReportException
+     *             ReportException
+     */
+    private void printChapter(final Project project, final int number, final ChapterFragments fragments,
+            final Document document, final PdfWriter writer) throws ReportException {
+        String key = fragments.getKey(project, number);
+        ChapterFragment fragment = fragments.load(key);
+        if (fragment == null) {
+            Chapter chapter = new Chapter(new Paragraph(project.getName(), getFont(Style.CHAPTER_FONT)), number);
+            if (number == 1) {
+                chapter.add(new Paragraph(getTextProperty(PDFResources.MAIN_TEXT_MISC_OVERVIEW), Style.NORMAL_FONT));
             }
-        } catch (DocumentException e) {
-            throw new ReportException("Error printing PDF Body", e);
+            fragment = renderChapter(project, chapter);
+            fragments.store(key, fragment);
         }
+        fragment.print(document, writer);
+    }
 
+    /**
+     * Render a chapter in its own document
+     * 
+     * @param project
+     *            project of the chapter
+     * @param chapter
+     *            chapter
+     * @return ChapterFragment
+     * @throws ReportException
+     *             ReportException
+     */
+    private ChapterFragment renderChapter(final Project project, final Chapter chapter) throws ReportException {
+        Document document = new Document(PageSize.A4, 50, 50, 110, 50);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ChapterFragment.Recorder recorder = new ChapterFragment.Recorder();
+        try {
+            PdfWriter writer = PdfWriter.getInstance(document, baos);
+            writer.setPageEvent(recorder);
+            document.open();
+            printDetailsForProject(project, chapter, document, writer);
+            document.close();
+        } catch (DocumentException e) {
+            throw new ReportException("Error rendering chapter " + project.getName(), e);
+        }
+        return recorder.createFragment(baos.toByteArray());
     }
 
     /**
-     * Print details for Project
+     * Print details for Project. The chapter is not complete while it is
+     * printed: each section is written to the listener (and removed from the
+     * chapter) as soon as it is done. Only the sections of the report are
+     * printed.
      * 
      * @param project
      *            project
      * @param chapter
      *            chapter
+     * @param listener
+     *            target document
+     * @param writer
+     *            writer of the target document
      * @throws ReportException
      *             ReportException
      */
-    private void printDetailsForProject(Project project, Chapter chapter) throws ReportException {
-        Section sectionN1 = chapter
-                .addSection(new Paragraph(getTextProperty(PDFResources.GENERAL_REPORT_OVERVIEW), Style.TITLE_FONT));
-        printDashboard(project, sectionN1);
-        Section sectionN2 = chapter
-                .addSection(new Paragraph(getTextProperty(PDFResources.GENERAL_VIOLATIONS_ANALYSIS), Style.TITLE_FONT));
-        printMostViolatedRules(project, sectionN2);
-        printMostViolatedFiles(project, sectionN2);
-        printMostComplexFiles(project, sectionN2);
-        printMostDuplicatedFiles(project, sectionN2);
-        printSpecificData(project, chapter);
-        printCCNDistribution(project, chapter);
+    private void printDetailsForProject(Project project, Chapter chapter, ElementListener listener,
+            PdfWriter writer) throws ReportException {
+        try {
+            chapter.setComplete(false);
+            if (isPrinted(ReportSection.DASHBOARD)) {
+                Section sectionN1 = chapter.addSection(
+                        new Paragraph(getTextProperty(PDFResources.GENERAL_REPORT_OVERVIEW), Style.TITLE_FONT));
+                printDashboard(project, sectionN1);
+                listener.add(chapter);
+            }
+            if (isPrinted(ReportSection.MOST_VIOLATED_RULES) || isPrinted(ReportSection.MOST_VIOLATED_FILES)
+                    || isPrinted(ReportSection.MOST_COMPLEX_FILES) || isPrinted(ReportSection.MOST_DUPLICATED_FILES)) {
+                Section sectionN2 = chapter.addSection(
+                        new Paragraph(getTextProperty(PDFResources.GENERAL_VIOLATIONS_ANALYSIS), Style.TITLE_FONT));
+                if (isPrinted(ReportSection.MOST_VIOLATED_RULES)) {
+                    printMostViolatedRules(project, sectionN2);
+                }
+                if (isPrinted(ReportSection.MOST_VIOLATED_FILES)) {
+                    printMostViolatedFiles(project, sectionN2);
+                }
+                if (isPrinted(ReportSection.MOST_COMPLEX_FILES)) {
+                    printMostComplexFiles(project, sectionN2);
+                }
+                if (isPrinted(ReportSection.MOST_DUPLICATED_FILES)) {
+                    printMostDuplicatedFiles(project, sectionN2);
+                }
+                listener.add(chapter);
+            }
+            printSpecificData(project, chapter, listener);
+            if (isPrinted(ReportSection.COMPLEXITY_DISTRIBUTION)) {
+                printCCNDistribution(project, chapter, writer);
+            }
+            chapter.setComplete(true);
+            listener.add(chapter);
+        } catch (DocumentException e) {
+            throw new ReportException("Error printing PDF Body", e);
+        }
     }
 
     /**
@@ -216,10 +341,14 @@ public class ExecutivePDFReporter extends PDFReporter {
      *            project
      * @param chapter
      *            chapter
+     * @param listener
+     *            target document, the chapter can be added to it to flush
+     *            finished sections
      * @throws ReportException
      *             ReportException
      */
-    protected void printSpecificData(Project project, Chapter chapter) throws ReportException {
+    protected void printSpecificData(Project project, Chapter chapter, ElementListener listener)
+            throws ReportException {
         // nothing to do here; used for inherited class to insert specific data
 
     }
@@ -571,9 +700,11 @@ public class ExecutivePDFReporter extends PDFReporter {
      *            project
      * @param chapter
      *            target chapter
+     * @param writer
+     *            writer of the target document
      */
-    private void printCCNDistribution(Project project, Chapter chapter) {
-        Image ccnDistGraph = getCCNDistribution(project);
+    private void printCCNDistribution(Project project, Chapter chapter, PdfWriter writer) {
+        Image ccnDistGraph = getCCNDistribution(project, writer);
         if (ccnDistGraph != null) {
             Section section = chapter.addSection(
                     new Paragraph(getTextProperty(PDFResources.GENERAL_VIOLATIONS_DASHBOARD), Style.TITLE_FONT));
@@ -593,4 +724,14 @@ public class ExecutivePDFReporter extends PDFReporter {
     public String getReportType() {
         return PDFResources.EXECUTIVE_REPORT_TYPE;
     }
+
+    /**
+     * All the sections but the violations details
+     * 
+     * @see org.sonar.report.pdf.PDFReporter#getDefaultSections()
+     */
+    @Override
+    protected Set<ReportSection> getDefaultSections() {
+        return EnumSet.complementOf(EnumSet.of(ReportSection.VIOLATIONS_DETAILS));
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.report.pdf.entity.exception.ReportException;
+
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Font;
+import com.lowagie.text.pdf.BaseFont;
+
+/**
+ * Registry of the embedded fonts. A TrueType font is read and parsed once per
+ * JVM, and the resulting BaseFont is shared by all reports. Fonts are embedded
+ * as subsets: each document only contains the glyphs it uses.
+ */
+public final class FontRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FontRegistry.class);
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final ConcurrentMap<String, BaseFont> BASE_FONTS = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<String, Font> FONTS = new ConcurrentHashMap<>();
+
+    private FontRegistry() {
+        super();
+    }
+
+    /**
+     * Get the font to use instead of a style font. The result has the size,
+     * style and color of the given font, over the embedded font found at
+     * location.
+     * 
+     * @param location
+     *            classpath resource or file path of a TrueType font, the
+     *            given font is returned if empty
+     * @param font
+     *            style font
+     * @return Font
+     */
+    public static Font getFont(final String location, final Font font) {
+        if (location == null || location.trim().isEmpty()) {
+            return font;
+        }
+        String key = location + '|' + font.getSize() + '|' + font.getStyle() + '|' + font.getColor();
+        Font registered = FONTS.get(key);
+        if (registered == null) {
+            try {
+                registered = new Font(getBaseFont(location), font.getSize(), font.getStyle(), font.getColor());
+            } catch (ReportException e) {
+                LOG.error("Can not use font " + location + ", falling back to " + font.getFamilyname(), e);
+                registered = font;
+            }
+            FONTS.putIfAbsent(key, registered);
+        }
+        return registered;
+    }
+
+    /**
+     * Get the shared BaseFont for a TrueType font, loading it on first call
+     * 
+     * @param location
+     *            classpath resource or file path of a TrueType font
+     * @return BaseFont
+     * @throws ReportException
+     *             if the font can not be read
+     */
+    public static BaseFont getBaseFont(final String location) throws ReportException {
+        BaseFont baseFont = BASE_FONTS.get(location);
+        if (baseFont == null) {
+            // parsing is expensive: don't let concurrent reports do it twice
+            synchronized (BASE_FONTS) {
+                baseFont = BASE_FONTS.get(location);
+                if (baseFont == null) {
+                    baseFont = loadBaseFont(location);
+                    BASE_FONTS.put(location, baseFont);
+                }
+            }
+        }
+        return baseFont;
+    }
+
+    private static BaseFont loadBaseFont(final String location) throws ReportException {
+        LOG.debug("Loading font " + location);
+        try {
+            BaseFont baseFont = BaseFont.createFont(location, BaseFont.IDENTITY_H, BaseFont.EMBEDDED, false,
+                    readFont(location), null);
+            baseFont.setSubset(true);
+            return baseFont;
+        } catch (DocumentException | IOException e) {
+            throw new ReportException("Can not load font " + location, e);
+        }
+    }
+
+    private static byte[] readFont(final String location) throws IOException {
+        InputStream resource = FontRegistry.class.getClassLoader().getResourceAsStream(location);
+        try (InputStream in = resource != null ? resource : new FileInputStream(new File(location));
+                ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
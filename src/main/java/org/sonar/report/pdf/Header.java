@@ -19,7 +19,6 @@
  */
 package org.sonar.report.pdf;
 
-import java.awt.Color;
 import java.io.IOException;
 import java.net.URL;
 
@@ -30,7 +29,6 @@ import org.sonar.report.pdf.entity.Project;
 import com.lowagie.text.BadElementException;
 import com.lowagie.text.Document;
 import com.lowagie.text.Font;
-import com.lowagie.text.FontFactory;
 import com.lowagie.text.Image;
 import com.lowagie.text.Phrase;
 import com.lowagie.text.Rectangle;
@@ -49,10 +47,27 @@ public class Header extends PdfPageEventHelper {
 
     private URL logo;
     private Project project;
+    private Font font;
+    private Image logoImage;
 
     public Header(final URL logo, final Project project) {
+        this(logo, project, null);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param logo
+     *            logo
+     * @param project
+     *            project
+     * @param fontLocation
+     *            embedded font location, standard font is used if null
+     */
+    public Header(final URL logo, final Project project, final String fontLocation) {
         this.logo = logo;
         this.project = project;
+        this.font = FontRegistry.getFont(fontLocation, Style.HEADER_FONT);
     }
 
     /**
@@ -63,16 +78,18 @@ public class Header extends PdfPageEventHelper {
     @Override
     public void onEndPage(final PdfWriter writer, final Document document) {
         try {
-            Image logoImage = Image.getInstance(logo);
+            // the logo is read once and stored once, each page getting a copy
+            // of it as the cell scales its image
+            if (logoImage == null) {
+                logoImage = Image.getInstance(logo);
+            }
             Rectangle page = document.getPageSize();
             PdfPTable head = new PdfPTable(4);
             head.getDefaultCell().setVerticalAlignment(PdfCell.ALIGN_MIDDLE);
             head.getDefaultCell().setHorizontalAlignment(PdfCell.ALIGN_CENTER);
-            head.addCell(logoImage);
-            Phrase projectName = new Phrase(project.getName(),
-                    FontFactory.getFont(FontFactory.COURIER, 12, Font.NORMAL, Color.GRAY));
-            Phrase phrase = new Phrase(PDFResources.SONAR_PDF_REPORT,
-                    FontFactory.getFont(FontFactory.COURIER, 12, Font.NORMAL, Color.GRAY));
+            head.addCell(Image.getInstance(logoImage));
+            Phrase projectName = new Phrase(project.getName(), font);
+            Phrase phrase = new Phrase(PDFResources.SONAR_PDF_REPORT, font);
             head.getDefaultCell().setColspan(2);
             head.addCell(phrase);
             head.getDefaultCell().setColspan(1);
@@ -0,0 +1,117 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf;
+
+import java.io.OutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.pdf.PdfCopy;
+import com.lowagie.text.pdf.PdfSmartCopy;
+import com.lowagie.text.pdf.PdfStream;
+import com.lowagie.text.pdf.PdfWriter;
+
+/**
+ * Output profiles, trading report size for generation time.
+ * <ul>
+ * <li>default: standard compression of iText</li>
+ * <li>compact: best compression, PDF 1.5 object and cross-reference streams,
+ * identical images and streams stored once</li>
+ * <li>fast: no compression, for local previews</li>
+ * </ul>
+ */
+public enum OutputProfile {
+
+    DEFAULT("default", PdfStream.DEFAULT_COMPRESSION, false), COMPACT("compact", PdfStream.BEST_COMPRESSION,
+            true), FAST("fast", PdfStream.NO_COMPRESSION, false);
+
+    private static final Logger LOG = LoggerFactory.getLogger(OutputProfile.class);
+
+    private final String key;
+    private final int compressionLevel;
+    private final boolean compact;
+
+    private OutputProfile(final String key, final int compressionLevel, final boolean compact) {
+        this.key = key;
+        this.compressionLevel = compressionLevel;
+        this.compact = compact;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Configure the writer of an intermediate document. Must be called before
+     * opening the document.
+     * 
+     * @param writer
+     *            writer
+     */
+    public void configure(final PdfWriter writer) {
+        writer.setCompressionLevel(compressionLevel);
+    }
+
+    /**
+     * Create the writer of the final document
+     * 
+     * @param document
+     *            final document
+     * @param os
+     *            output
+     * @return PdfCopy
+     * @throws DocumentException
+     *             DocumentException
+     */
+    public PdfCopy createCopy(final Document document, final OutputStream os) throws DocumentException {
+        PdfCopy copy;
+        if (compact) {
+            copy = new PdfSmartCopy(document, os);
+            copy.setFullCompression();
+        } else {
+            copy = new PdfCopy(document, os);
+        }
+        copy.setCompressionLevel(compressionLevel);
+        return copy;
+    }
+
+    /**
+     * Get a profile by key
+     * 
+     * @param key
+     *            key, case insensitive
+     * @return OutputProfile, DEFAULT if key is empty or unknown
+     */
+    public static OutputProfile get(final String key) {
+        if (key != null && !key.trim().isEmpty()) {
+            for (OutputProfile profile : values()) {
+                if (profile.getKey().equalsIgnoreCase(key.trim())) {
+                    return profile;
+                }
+            }
+            LOG.warn("Unknown output profile " + key + ", using " + DEFAULT.getKey());
+        }
+        return DEFAULT;
+    }
+
+}
@@ -20,27 +20,38 @@
 package org.sonar.report.pdf;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.report.pdf.builder.ComplexityDistributionBuilder;
 import org.sonar.report.pdf.builder.ProjectBuilder;
+import org.sonar.report.pdf.builder.ProjectDataSource;
+import org.sonar.report.pdf.builder.ProjectListener;
+import org.sonar.report.pdf.builder.ProjectSnapshotCache;
+import org.sonar.report.pdf.entity.ComplexityDistribution;
+import org.sonar.report.pdf.entity.DataPlan;
 import org.sonar.report.pdf.entity.Project;
 import org.sonar.report.pdf.entity.exception.ReportException;
 import org.sonar.report.pdf.util.Credentials;
 import org.sonar.report.pdf.util.MetricKeys;
+import org.sonar.report.pdf.util.ReportMetrics;
+import org.sonarqube.ws.client.SonarHost;
 import org.sonarqube.ws.client.WSClient;
 
 import com.lowagie.text.BadElementException;
 import com.lowagie.text.Document;
 import com.lowagie.text.DocumentException;
+import com.lowagie.text.Font;
 import com.lowagie.text.Image;
 import com.lowagie.text.PageSize;
-import com.lowagie.text.pdf.PdfCopy;
-import com.lowagie.text.pdf.PdfReader;
 import com.lowagie.text.pdf.PdfWriter;
 
 /**
@@ -60,10 +71,24 @@ public abstract class PDFReporter implements Serializable {
 
     private static final Logger LOG = LoggerFactory.getLogger(PDFReporter.class);
 
+    private static final int DEFAULT_PIPELINE_CHAPTERS = 2;
+
     private Credentials credentials;
 
     private Project project = null;
 
+    private transient WSClient sonar;
+
+    private transient ProjectDataSource dataSource;
+
+    private transient Map<String, Image> tendencyImages;
+
+    private transient Set<ReportSection> sections;
+
+    private transient ProjectPipeline chapters;
+
+    private ReportMetrics metrics = new ReportMetrics();
+
     public PDFReporter(final Credentials credentials) {
         this.credentials = credentials;
     }
@@ -76,9 +101,22 @@ public abstract class PDFReporter implements Serializable {
      *             ReportException
      */
     public ByteArrayOutputStream getReport() throws ReportException {
+        try {
+            return createReport();
+        } finally {
+            if (chapters != null) {
+                chapters.close();
+                chapters = null;
+            }
+        }
+    }
+
+    private ByteArrayOutputStream createReport() throws ReportException {
+        long start = System.currentTimeMillis();
+        OutputProfile profile = OutputProfile.get(getConfigProperty(PDFResources.OUTPUT_PROFILE));
         // Creation of documents
         Document mainDocument = new Document(PageSize.A4, 50, 50, 110, 50);
-        Toc tocDocument = new Toc();
+        Toc tocDocument = new Toc(getConfigProperty(PDFResources.REPORT_FONT));
         Document frontPageDocument = new Document(PageSize.A4, 50, 50, 110, 50);
         ByteArrayOutputStream mainDocumentBaos = new ByteArrayOutputStream();
         ByteArrayOutputStream frontPageDocumentBaos = new ByteArrayOutputStream();
@@ -90,82 +128,275 @@ public abstract class PDFReporter implements Serializable {
         } catch (DocumentException e) {
             throw new ReportException("Error instantiating PDFWriters", e);
         }
+        profile.configure(mainDocumentWriter);
+        profile.configure(frontPageDocumentWriter);
 
         // Events for TOC, header and pages numbers
-        Events events = new Events(tocDocument, new Header(this.getLogo(), this.getProject()));
+        Events events = new Events(tocDocument,
+                new Header(this.getLogo(), getChapters().getRoot(), getConfigProperty(PDFResources.REPORT_FONT)));
         mainDocumentWriter.setPageEvent(events);
+        profile.configure(tocDocument.getWriter());
 
         mainDocument.open();
         tocDocument.getTocDocument().open();
         frontPageDocument.open();
 
         LOG.info("Generating PDF report...");
-        printFrontPage(frontPageDocument, frontPageDocumentWriter);
-        printTocTitle(tocDocument);
-        printPdfBody(mainDocument);
-        mainDocument.close();
-        tocDocument.getTocDocument().close();
-        frontPageDocument.close();
+        ReportMetrics.Timer timer = metrics.start(ReportMetrics.RENDER_FRONT_PAGE);
+        try {
+            printFrontPage(frontPageDocument, frontPageDocumentWriter);
+            frontPageDocument.close();
+        } finally {
+            timer.stop();
+        }
+        timer = metrics.start(ReportMetrics.RENDER_BODY);
+        try {
+            printTocTitle(tocDocument);
+            printPdfBody(mainDocument, mainDocumentWriter);
+            mainDocument.close();
+            tocDocument.getTocDocument().close();
+        } finally {
+            timer.stop();
+        }
+        project = getChapters().getProject();
 
         // Return the final document (with TOC)
-        return createFinalReport(tocDocument, mainDocumentBaos, frontPageDocumentBaos);
+        ByteArrayOutputStream finalBaos;
+        timer = metrics.start(ReportMetrics.RENDER_MERGE);
+        try {
+            finalBaos = ReportMerger.merge(frontPageDocumentBaos.toByteArray(),
+                    tocDocument.getTocOutputStream().toByteArray(), mainDocumentBaos.toByteArray(), profile);
+        } finally {
+            timer.stop();
+        }
+        LOG.info("PDF report generated with " + profile.getKey() + " output profile: " + finalBaos.size()
+                + " bytes in " + (System.currentTimeMillis() - start) + " ms");
+        return finalBaos;
     }
 
     /**
-     * Create final report
+     * Gets current project, waiting until it is retrieved when a report is
+     * being generated
      * 
-     * @param tocDocument
-     *            TOC
-     * @param mainDocumentBaos
-     *            main document
-     * @param frontPageDocumentBaos
-     *            front page
-     * @return ByteArrayOutputStream
+     * @return Project
      * @throws ReportException
      *             ReportException
      */
-    private ByteArrayOutputStream createFinalReport(Toc tocDocument, ByteArrayOutputStream mainDocumentBaos,
-            ByteArrayOutputStream frontPageDocumentBaos) throws ReportException {
-        ByteArrayOutputStream finalBaos = new ByteArrayOutputStream();
-        try {
-            // Get Readers
-            PdfReader mainDocumentReader = new PdfReader(mainDocumentBaos.toByteArray());
-            PdfReader tocDocumentReader = new PdfReader(tocDocument.getTocOutputStream().toByteArray());
-            PdfReader frontPageDocumentReader = new PdfReader(frontPageDocumentBaos.toByteArray());
-
-            // New document
-            Document documentWithToc = new Document(tocDocumentReader.getPageSizeWithRotation(1));
-            PdfCopy copy = new PdfCopy(documentWithToc, finalBaos);
-            documentWithToc.open();
-            copy.addPage(copy.getImportedPage(frontPageDocumentReader, 1));
-            for (int i = 1; i <= tocDocumentReader.getNumberOfPages(); i++) {
-                copy.addPage(copy.getImportedPage(tocDocumentReader, i));
-            }
-            for (int i = 1; i <= mainDocumentReader.getNumberOfPages(); i++) {
-                copy.addPage(copy.getImportedPage(mainDocumentReader, i));
+    public Project getProject() throws ReportException {
+        if (project == null) {
+            project = chapters != null ? chapters.getProject() : retrieveProject(null);
+        }
+        return project;
+    }
+
+    /**
+     * Gets the projects of the chapters, in order. While a report is
+     * generated, the project is retrieved in its own thread and each chapter
+     * project is given as soon as its data is complete, at most
+     * report.pipeline.chapters chapters being retrieved ahead of the
+     * rendering.
+     * 
+     * @return ProjectPipeline
+     * @throws ReportException
+     *             ReportException
+     */
+    protected ProjectPipeline getChapters() throws ReportException {
+        if (chapters == null) {
+            int capacity = getPipelineCapacity();
+            if (project != null || capacity <= 0) {
+                chapters = ProjectPipeline.of(getProject());
+            } else {
+                chapters = ProjectPipeline.start(new ProjectPipeline.Source() {
+                    @Override
+                    public Project getProject(final ProjectListener listener) throws ReportException {
+                        return retrieveProject(listener);
+                    }
+                }, capacity, "PDF report data " + getProjectKey());
             }
-            documentWithToc.close();
-        } catch (IOException | DocumentException e) {
-            throw new ReportException("Error creating final report", e);
         }
-        return finalBaos;
+        return chapters;
+    }
+
+    private int getPipelineCapacity() {
+        String capacity = getConfigProperty(PDFResources.PIPELINE_CHAPTERS);
+        if (capacity == null || capacity.trim().isEmpty()) {
+            return DEFAULT_PIPELINE_CHAPTERS;
+        }
+        try {
+            return Integer.parseInt(capacity.trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid " + PDFResources.PIPELINE_CHAPTERS + ": " + capacity + ", using "
+                    + DEFAULT_PIPELINE_CHAPTERS);
+            return DEFAULT_PIPELINE_CHAPTERS;
+        }
     }
 
     /**
-     * Gets current project
+     * Retrieves the project, from the data source if one is set, from the web
+     * services otherwise. When a snapshot directory is configured, modules
+     * not analysed since the last report are taken from the snapshot.
      * 
+     * @param listener
+     *            listener of the chapter projects, or null
      * @return Project
      * @throws ReportException
      *             ReportException
      */
-    public Project getProject() throws ReportException {
-        if (project == null) {
-            WSClient sonar = WSClient.create(credentials.getUrl(), credentials.getUsername(),
-                    credentials.getPassword());
-            ProjectBuilder projectBuilder = ProjectBuilder.getInstance(sonar);
-            project = projectBuilder.initializeProject(getProjectKey());
+    private Project retrieveProject(final ProjectListener listener) throws ReportException {
+        ReportMetrics.Timer timer = metrics.start(ReportMetrics.FETCH);
+        try {
+            ProjectDataSource source = dataSource;
+            if (source == null) {
+                if (sonar == null) {
+                    sonar = WSClient.create(createHost(getReportProperties(), credentials), metrics);
+                } else if (sonar.getMetrics() != metrics) {
+                    sonar = sonar.forReport(metrics);
+                }
+                source = ProjectBuilder.getInstance(sonar);
+            }
+            DataPlan plan = getDataPlan();
+            LOG.debug("Data of the " + getReportType() + " report: " + plan);
+            String snapshotDir = getConfigProperty(PDFResources.SNAPSHOT_DIR);
+            ProjectSnapshotCache snapshots = null;
+            Project snapshot = null;
+            if (snapshotDir != null && !snapshotDir.trim().isEmpty()) {
+                snapshots = new ProjectSnapshotCache(new File(snapshotDir.trim()));
+                snapshot = snapshots.load(getProjectKey());
+            }
+            Project retrieved = listener == null ? source.getProject(getProjectKey(), snapshot, plan)
+                    : source.getProject(getProjectKey(), snapshot, plan, listener);
+            if (snapshots != null) {
+                snapshots.store(retrieved);
+            }
+            return retrieved;
+        } finally {
+            timer.stop();
         }
-        return project;
+    }
+
+    /**
+     * Gets the sections printed for each project, from the
+     * report.sections.&lt;type&gt; property or the default sections of the
+     * report type
+     * 
+     * @return sections
+     */
+    public Set<ReportSection> getSections() {
+        if (sections == null) {
+            sections = ReportSection.parse(getConfigProperty(PDFResources.REPORT_SECTIONS + "." + getReportType()),
+                    getDefaultSections());
+        }
+        return sections;
+    }
+
+    /**
+     * Tells if a section is printed
+     * 
+     * @param section
+     *            section
+     * @return true if the section is part of the report
+     */
+    protected boolean isPrinted(final ReportSection section) {
+        return getSections().contains(section);
+    }
+
+    /**
+     * Gets the data printed by the report, planned from its sections
+     * 
+     * @return DataPlan
+     */
+    public DataPlan getDataPlan() {
+        return ReportSection.plan(getSections());
+    }
+
+    /**
+     * Gets the chapter fragments of the report, kept in the snapshot directory
+     * 
+     * @return ChapterFragments or null if no snapshot directory is configured
+     */
+    protected ChapterFragments getChapterFragments() {
+        String snapshotDir = getConfigProperty(PDFResources.SNAPSHOT_DIR);
+        if (snapshotDir == null || snapshotDir.trim().isEmpty()) {
+            return null;
+        }
+        return new ChapterFragments(new File(snapshotDir.trim()), getProjectKey(), getReportType(),
+                getReportProperties(), getLangProperties());
+    }
+
+    /**
+     * Creates the host of the web services, with its nodes
+     * 
+     * @param config
+     *            report properties
+     * @param credentials
+     *            credentials
+     * @return SonarHost
+     */
+    public static SonarHost createHost(final Properties config, final Credentials credentials) {
+        SonarHost host = new SonarHost(credentials.getUrl(), credentials.getUsername(), credentials.getPassword())
+                .setNodes(config.getProperty(PDFResources.SONAR_NODES));
+        String percentile = config.getProperty(PDFResources.SONAR_HEDGE_PERCENTILE);
+        if (percentile != null && !percentile.trim().isEmpty()) {
+            try {
+                host.setHedgePercentile(Integer.parseInt(percentile.trim()));
+            } catch (NumberFormatException e) {
+                LOG.warn("Invalid " + PDFResources.SONAR_HEDGE_PERCENTILE + ": " + percentile + ", using "
+                        + SonarHost.DEFAULT_HEDGE_PERCENTILE);
+            }
+        }
+        return host;
+    }
+
+    /**
+     * Sets the client used to retrieve the project, so that it can be shared
+     * by several reporters. The requests of the report are recorded in its
+     * own metrics.
+     * 
+     * @param sonar
+     *            client
+     */
+    public void setClient(final WSClient sonar) {
+        this.sonar = sonar;
+    }
+
+    /**
+     * Gets the metrics of the report generation
+     * 
+     * @return ReportMetrics
+     */
+    public ReportMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics of the report generation, so that they can be part of
+     * the metrics of a batch or include the upload of the report
+     * 
+     * @param metrics
+     *            metrics
+     */
+    public void setMetrics(final ReportMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets the source of the project data, used instead of the web services
+     * 
+     * @param dataSource
+     *            data source
+     */
+    public void setDataSource(final ProjectDataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Sets the project to report on, so that it is not retrieved from Sonar
+     * 
+     * @param project
+     *            project
+     */
+    public void setProject(final Project project) {
+        this.project = project;
     }
 
     /**
@@ -173,23 +404,20 @@ public abstract class PDFReporter implements Serializable {
      * 
      * @param project
      *            project
+     * @param writer
+     *            writer of the document the image will be added to
      * @return Image
      */
-    protected Image getCCNDistribution(final Project project) {
+    protected Image getCCNDistribution(final Project project, final PdfWriter writer) {
         String data;
         if (project.getMeasure(MetricKeys.FILE_COMPLEXITY_DISTRIBUTION).getDataValue() != null) {
             data = project.getMeasure(MetricKeys.FILE_COMPLEXITY_DISTRIBUTION).getDataValue();
         } else {
             return null;
         }
-        // not usable from 6.0 version
-        /*
-        ComplexityDistributionBuilder complexityDistributionBuilder = ComplexityDistributionBuilder
-                .getInstance(credentials.getUrl());
+        ComplexityDistributionBuilder complexityDistributionBuilder = ComplexityDistributionBuilder.getInstance();
         ComplexityDistribution ccnDist = new ComplexityDistribution(data);
-        return complexityDistributionBuilder.getGraphic(ccnDist);
-        */
-        return null;
+        return complexityDistributionBuilder.getGraphic(ccnDist, writer.getDirectContent());
     }
 
     public String getTextProperty(final String key) {
@@ -200,6 +428,18 @@ public abstract class PDFReporter implements Serializable {
         return getReportProperties().getProperty(key);
     }
 
+    /**
+     * Gets the font to use for a style font: the embedded report font if one
+     * is configured, the style font otherwise.
+     * 
+     * @param font
+     *            style font
+     * @return Font
+     */
+    protected Font getFont(final Font font) {
+        return FontRegistry.getFont(getConfigProperty(PDFResources.REPORT_FONT), font);
+    }
+
     /**
      * Gets image from tendency
      * 
@@ -218,13 +458,23 @@ public abstract class PDFReporter implements Serializable {
         } else {
             iconName = defineIconForDecreasingAwaitedTendency(trend);
         }
-        Image tendencyImage = null;
-        try {
-            tendencyImage = Image.getInstance(this.getClass().getResource(PDFResources.TENDENCY_DIR + iconName));
-        } catch (BadElementException | IOException e) {
-            LOG.error("Can not generate tendency image", e);
+        // each icon is read once; the cells get copies, as they scale the
+        // image they hold, which the writer still stores once as the copies
+        // keep the serial id of the cached image
+        if (tendencyImages == null) {
+            tendencyImages = new HashMap<>();
+        }
+        Image tendencyImage = tendencyImages.get(iconName);
+        if (tendencyImage == null) {
+            try {
+                tendencyImage = Image.getInstance(this.getClass().getResource(PDFResources.TENDENCY_DIR + iconName));
+                tendencyImages.put(iconName, tendencyImage);
+            } catch (BadElementException | IOException e) {
+                LOG.error("Can not generate tendency image", e);
+                return null;
+            }
         }
-        return tendencyImage;
+        return Image.getInstance(tendencyImage);
     }
 
     private String defineIconForIncreasingAwaitedTendency(final int trend) {
@@ -262,10 +512,12 @@ public abstract class PDFReporter implements Serializable {
      * 
      * @param document
      *            document
+     * @param writer
+     *            writer of the document
      * @throws ReportException
      *             ReportException
      */
-    protected abstract void printPdfBody(Document document) throws ReportException;
+    protected abstract void printPdfBody(Document document, PdfWriter writer) throws ReportException;
 
     /**
      * Pring TOC
@@ -322,4 +574,11 @@ public abstract class PDFReporter implements Serializable {
 
     public abstract String getReportType();
 
+    /**
+     * Get the sections printed when the report type has no template
+     * 
+     * @return sections
+     */
+    protected abstract Set<ReportSection> getDefaultSections();
+
 }
@@ -35,6 +35,11 @@ public final class PDFResources implements Serializable {
     public static final String RESOURCE_NAME = "report-texts";
     public static final String TENDENCY_DIR = "/tendency/";
     public static final String FRONT_PAGE_LOGO = "front.page.logo";
+    public static final String REPORT_FONT = "report.font";
+    public static final String OUTPUT_PROFILE = "report.output.profile";
+    public static final String SNAPSHOT_DIR = "report.snapshot.dir";
+    public static final String PIPELINE_CHAPTERS = "report.pipeline.chapters";
+    public static final String REPORT_SECTIONS = "report.sections";
     public static final String SONAR_PNG_FILE = "/sonar.png";
     public static final String SONAR_BASE_URL = "sonar.base.url";
 
@@ -138,6 +143,12 @@ public final class PDFResources implements Serializable {
 
     public static final String SONAR_TABLE_LIMIT = "sonar.table.limit";
 
+    public static final String SONAR_ISSUES_THREADS = "sonar.issues.threads";
+
+    public static final String SONAR_NODES = "sonar.nodes";
+
+    public static final String SONAR_HEDGE_PERCENTILE = "sonar.hedge.percentile";
+
     public static final String PDF_REPORT_STORE_PATH = "/pdf_report/store";
 
     private PDFResources() {
@@ -0,0 +1,267 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.report.pdf.builder.ProjectListener;
+import org.sonar.report.pdf.entity.Project;
+import org.sonar.report.pdf.entity.exception.ReportException;
+
+/**
+ * Pipeline between the retrieval of a project and the rendering of its
+ * chapters. The project is retrieved in its own thread, which hands each
+ * chapter project over as soon as its data is complete, so that the chapters
+ * are laid out while the next ones are retrieved. The retrieval waits when a
+ * given number of chapters are ready but not rendered yet. The chapters are
+ * taken by a single rendering thread.
+ *
+ */
+public class ProjectPipeline implements ProjectListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProjectPipeline.class);
+
+    /**
+     * Marks the end of the chapters
+     */
+    private static final Project END = new Project("");
+
+    private final BlockingQueue<Project> chapters;
+
+    /**
+     * Chapters taken from the queue before they are rendered, when the whole
+     * project is asked for
+     */
+    private final Queue<Project> pending = new LinkedList<>();
+
+    private Thread producer;
+
+    private volatile boolean closed;
+
+    private Project root;
+
+    private boolean rootTaken;
+
+    private boolean ended;
+
+    private volatile Project project;
+
+    private volatile ReportException failure;
+
+    /**
+     * Retrieval of the project
+     */
+    public interface Source {
+
+        /**
+         * Retrieve the project, notifying the listener of its chapter
+         * projects
+         * 
+         * @param listener
+         *            listener of the chapter projects
+         * @return Project
+         * @throws ReportException
+         *             ReportException
+         */
+        Project getProject(ProjectListener listener) throws ReportException;
+    }
+
+    private ProjectPipeline(final BlockingQueue<Project> chapters) {
+        this.chapters = chapters;
+    }
+
+    /**
+     * Create a pipeline over a project already retrieved
+     * 
+     * @param project
+     *            project
+     * @return ProjectPipeline
+     */
+    public static ProjectPipeline of(final Project project) {
+        ProjectPipeline pipeline = new ProjectPipeline(new LinkedBlockingQueue<Project>());
+        pipeline.chapters.add(project);
+        pipeline.chapters.addAll(project.getSubprojects());
+        pipeline.chapters.add(END);
+        pipeline.project = project;
+        return pipeline;
+    }
+
+    /**
+     * Start the retrieval of a project in its own thread
+     * 
+     * @param source
+     *            retrieval of the project
+     * @param capacity
+     *            number of chapters retrieved ahead of the rendering
+     * @param name
+     *            name of the thread
+     * @return ProjectPipeline
+     */
+    public static ProjectPipeline start(final Source source, final int capacity, final String name) {
+        final ProjectPipeline pipeline = new ProjectPipeline(new ArrayBlockingQueue<Project>(Math.max(capacity, 1)));
+        pipeline.producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                pipeline.produce(source);
+            }
+        }, name);
+        pipeline.producer.setDaemon(true);
+        pipeline.producer.start();
+        return pipeline;
+    }
+
+    private void produce(final Source source) {
+        Project result = null;
+        ReportException error = null;
+        try {
+            result = source.getProject(this);
+        } catch (ReportException e) {
+            error = e;
+        } catch (RuntimeException e) {
+            error = new ReportException("Error retrieving project", e);
+        }
+        project = result;
+        failure = error;
+        if (error != null && !closed) {
+            LOG.debug("Project retrieval failed, stopping the rendering", error);
+        }
+        try {
+            if (!closed) {
+                chapters.put(END);
+            }
+        } catch (InterruptedException e) {
+            LOG.debug("Project retrieval interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @see org.sonar.report.pdf.builder.ProjectListener#projectReady(org.sonar.report.pdf.entity.Project)
+     */
+    @Override
+    public void projectReady(final Project chapter) throws ReportException {
+        try {
+            chapters.put(chapter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReportException("Project retrieval interrupted", e);
+        }
+    }
+
+    /**
+     * Get the root project, as soon as its chapter is ready. Its subprojects
+     * may not be complete yet.
+     * 
+     * @return Project
+     * @throws ReportException
+     *             ReportException
+     */
+    public Project getRoot() throws ReportException {
+        if (root == null) {
+            root = take();
+            if (root == null) {
+                throw new ReportException("No project retrieved");
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Get the next chapter project, waiting until its data is complete: the
+     * root project first, then each of its subprojects
+     * 
+     * @return Project or null after the last chapter
+     * @throws ReportException
+     *             ReportException if the project can not be retrieved
+     */
+    public Project next() throws ReportException {
+        if (!rootTaken) {
+            rootTaken = true;
+            return getRoot();
+        }
+        return take();
+    }
+
+    private Project take() throws ReportException {
+        if (ended) {
+            return null;
+        }
+        Project chapter = pending.isEmpty() ? takeQueued() : pending.remove();
+        if (chapter == END) {
+            ended = true;
+            checkFailure();
+            return null;
+        }
+        return chapter;
+    }
+
+    private Project takeQueued() throws ReportException {
+        try {
+            return chapters.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReportException("Interrupted waiting for project data", e);
+        }
+    }
+
+    /**
+     * Get the whole project, waiting until it is retrieved. The chapters not
+     * rendered yet are kept aside, so that the retrieval does not wait for
+     * them.
+     * 
+     * @return Project
+     * @throws ReportException
+     *             ReportException if the project can not be retrieved
+     */
+    public Project getProject() throws ReportException {
+        if (!ended && !pending.contains(END)) {
+            Project chapter;
+            do {
+                chapter = takeQueued();
+                pending.add(chapter);
+            } while (chapter != END);
+        }
+        checkFailure();
+        return project;
+    }
+
+    private void checkFailure() throws ReportException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Stop the retrieval if it is still running, for instance when the
+     * rendering failed
+     */
+    public void close() {
+        closed = true;
+        if (producer != null && producer.isAlive()) {
+            producer.interrupt();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.sonar.report.pdf.entity.exception.ReportException;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.pdf.PdfCopy;
+import com.lowagie.text.pdf.PdfReader;
+
+/**
+ * Assembles the final report from the documents rendered separately by a
+ * reporter: the front page, the TOC (known only once the body is rendered)
+ * and the body itself.
+ */
+public final class ReportMerger {
+
+    private ReportMerger() {
+        super();
+    }
+
+    /**
+     * Create final report: first page of the front page document, then TOC and
+     * main document
+     * 
+     * @param frontPageDocument
+     *            front page
+     * @param tocDocument
+     *            TOC
+     * @param mainDocument
+     *            main document
+     * @param profile
+     *            output profile
+     * @return ByteArrayOutputStream
+     * @throws ReportException
+     *             ReportException
+     */
+    public static ByteArrayOutputStream merge(final byte[] frontPageDocument, final byte[] tocDocument,
+            final byte[] mainDocument, final OutputProfile profile) throws ReportException {
+        ByteArrayOutputStream finalBaos = new ByteArrayOutputStream();
+        try {
+            // Get Readers
+            PdfReader mainDocumentReader = new PdfReader(mainDocument);
+            PdfReader tocDocumentReader = new PdfReader(tocDocument);
+            PdfReader frontPageDocumentReader = new PdfReader(frontPageDocument);
+
+            // New document
+            Document documentWithToc = new Document(tocDocumentReader.getPageSizeWithRotation(1));
+            PdfCopy copy = profile.createCopy(documentWithToc, finalBaos);
+            documentWithToc.open();
+            copy.addPage(copy.getImportedPage(frontPageDocumentReader, 1));
+            for (int i = 1; i <= tocDocumentReader.getNumberOfPages(); i++) {
+                copy.addPage(copy.getImportedPage(tocDocumentReader, i));
+            }
+            for (int i = 1; i <= mainDocumentReader.getNumberOfPages(); i++) {
+                copy.addPage(copy.getImportedPage(mainDocumentReader, i));
+            }
+            documentWithToc.close();
+        } catch (IOException | DocumentException e) {
+            throw new ReportException("Error creating final report", e);
+        }
+        return finalBaos;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.report.pdf.entity.DataPlan;
+import org.sonar.report.pdf.entity.FileInfoTypes;
+import org.sonar.report.pdf.util.MetricKeys;
+
+/**
+ * Sections of the chapter of a project, with the data each one prints. The
+ * sections of a report type are listed in the report.sections.&lt;type&gt;
+ * property and are printed in the order of the report.
+ *
+ */
+public enum ReportSection {
+
+    DASHBOARD("dashboard") {
+        @Override
+        void require(final DataPlan plan) {
+            plan.addMeasure(MetricKeys.BLOCKER_VIOLATIONS, true).addMeasure(MetricKeys.CRITICAL_VIOLATIONS, true)
+                    .addMeasure(MetricKeys.MAJOR_VIOLATIONS, true).addMeasure(MetricKeys.TECHNICAL_DEBT, true)
+                    .addMeasure(MetricKeys.VIOLATIONS, true).addMeasure(MetricKeys.COVERAGE, true)
+                    .addMeasure(MetricKeys.TESTS, false).addMeasure(MetricKeys.TEST_SUCCESS_DENSITY, true)
+                    .addMeasure(MetricKeys.TEST_FAILURES, false).addMeasure(MetricKeys.TEST_ERRORS, false)
+                    .addMeasure(MetricKeys.NCLOC, false).addMeasure(MetricKeys.DUPLICATED_LINES, true)
+                    .addMeasure(MetricKeys.DIRECTORIES, false).addMeasure(MetricKeys.CLASSES, false)
+                    .addMeasure(MetricKeys.FUNCTIONS, false).addMeasure(MetricKeys.DUPLICATED_LINES_DENSITY, false)
+                    .addMeasure(MetricKeys.COMMENT_LINES_DENSITY, true).addMeasure(MetricKeys.COMMENT_LINES, false)
+                    .addMeasure(MetricKeys.FUNCTION_COMPLEXITY, true).addMeasure(MetricKeys.CLASS_COMPLEXITY, false)
+                    .addMeasure(MetricKeys.COMPLEXITY, false);
+        }
+    },
+    MOST_VIOLATED_RULES("most-violated-rules") {
+        @Override
+        void require(final DataPlan plan) {
+            plan.addRules();
+        }
+    },
+    MOST_VIOLATED_FILES("most-violated-files") {
+        @Override
+        void require(final DataPlan plan) {
+            plan.addRanking(FileInfoTypes.VIOLATIONS_CONTENT);
+        }
+    },
+    MOST_COMPLEX_FILES("most-complex-files") {
+        @Override
+        void require(final DataPlan plan) {
+            plan.addRanking(FileInfoTypes.CCN_CONTENT);
+        }
+    },
+    MOST_DUPLICATED_FILES("most-duplicated-files") {
+        @Override
+        void require(final DataPlan plan) {
+            plan.addRanking(FileInfoTypes.DUPLICATIONS_CONTENT);
+        }
+    },
+    VIOLATIONS_DETAILS("violations-details") {
+        @Override
+        void require(final DataPlan plan) {
+            plan.addRuleViolations();
+        }
+    },
+    COMPLEXITY_DISTRIBUTION("complexity-distribution") {
+        @Override
+        void require(final DataPlan plan) {
+            plan.addMeasure(MetricKeys.FILE_COMPLEXITY_DISTRIBUTION, false);
+        }
+    };
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReportSection.class);
+
+    private final String key;
+
+    private ReportSection(final String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Add the data printed by the section to a plan
+     * 
+     * @param plan
+     *            plan
+     */
+    abstract void require(DataPlan plan);
+
+    /**
+     * Get the sections of a template
+     * 
+     * @param template
+     *            keys of the sections, separated by commas
+     * @param defaultSections
+     *            sections used if the template is empty
+     * @return sections, unknown keys being ignored
+     */
+    public static Set<ReportSection> parse(final String template, final Set<ReportSection> defaultSections) {
+        if (template == null || template.trim().isEmpty()) {
+            return EnumSet.copyOf(defaultSections);
+        }
+        Set<ReportSection> sections = EnumSet.noneOf(ReportSection.class);
+        for (String sectionKey : template.split(",")) {
+            ReportSection section = get(sectionKey.trim());
+            if (section != null) {
+                sections.add(section);
+            } else if (!sectionKey.trim().isEmpty()) {
+                LOG.warn("Unknown report section " + sectionKey.trim() + ", ignored");
+            }
+        }
+        return sections;
+    }
+
+    private static ReportSection get(final String key) {
+        for (ReportSection section : values()) {
+            if (section.getKey().equalsIgnoreCase(key)) {
+                return section;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Plan the data of a report: the data of its sections, and the quality
+     * profile of the front page which is always printed
+     * 
+     * @param sections
+     *            sections of the report
+     * @return DataPlan
+     */
+    public static DataPlan plan(final Collection<ReportSection> sections) {
+        DataPlan plan = new DataPlan().addMeasure(MetricKeys.PROFILE, false);
+        for (ReportSection section : sections) {
+            section.require(plan);
+        }
+        return plan;
+    }
+}
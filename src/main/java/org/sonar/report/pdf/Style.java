@@ -105,6 +105,26 @@ public class Style {
     public static final Font DASHBOARD_DATA_FONT_2 = new Font(Font.TIMES_ROMAN, 10, Font.BOLD,
             new Color(100, 150, 190));
 
+    /**
+     * Font used in page header
+     */
+    public static final Font HEADER_FONT = new Font(Font.COURIER, 12, Font.NORMAL, Color.GRAY);
+
+    /**
+     * Font used in table of contents for chapters
+     */
+    public static final Font TOC_CHAPTER_FONT = new Font(Font.HELVETICA, 11);
+
+    /**
+     * Font used in table of contents for sections
+     */
+    public static final Font TOC_SECTION_FONT = new Font(Font.HELVETICA, 10);
+
+    /**
+     * Font used in table of contents for sub-sections
+     */
+    public static final Font TOC_SUBSECTION_FONT = new Font(Font.HELVETICA, 9);
+
     /**
      * Tendency icons height + 2 (used in tables style)
      */
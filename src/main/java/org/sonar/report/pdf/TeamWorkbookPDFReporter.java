@@ -21,9 +21,9 @@ package org.sonar.report.pdf;
 
 import java.awt.Color;
 import java.net.URL;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.EnumSet;
 import java.util.Properties;
+import java.util.Set;
 
 import org.sonar.report.pdf.entity.Project;
 import org.sonar.report.pdf.entity.Rule;
@@ -32,6 +32,8 @@ import org.sonar.report.pdf.entity.exception.ReportException;
 import org.sonar.report.pdf.util.Credentials;
 
 import com.lowagie.text.Chapter;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.ElementListener;
 import com.lowagie.text.Paragraph;
 import com.lowagie.text.Phrase;
 import com.lowagie.text.Section;
@@ -48,6 +50,16 @@ public class TeamWorkbookPDFReporter extends ExecutivePDFReporter {
      */
     private static final long serialVersionUID = 4994742577755351762L;
 
+    /**
+     * Rule, separator and file/line titles
+     */
+    private static final int HEADER_ROWS = 3;
+
+    /**
+     * Number of violated files written at once in details tables
+     */
+    private static final int ROWS_PER_FLUSH = 50;
+
     public TeamWorkbookPDFReporter(final Credentials credentials, final URL logo, final String projectKey,
             final Properties configProperties, final Properties langProperties) {
         super(credentials, logo, projectKey, configProperties, langProperties);
@@ -55,67 +67,157 @@ public class TeamWorkbookPDFReporter extends ExecutivePDFReporter {
 
     /**
      * @see org.sonar.report.pdf.ExecutivePDFReporter#printSpecificData(org.sonar.report.pdf.entity.Project,
-     *      com.lowagie.text.Chapter)
+     *      com.lowagie.text.Chapter, com.lowagie.text.ElementListener)
      */
     @Override
-    protected void printSpecificData(Project project, Chapter chapter) throws ReportException {
-        printMostViolatedRulesDetails(project, chapter);
+    protected void printSpecificData(Project project, Chapter chapter, ElementListener listener)
+            throws ReportException {
+        try {
+            if (isPrinted(ReportSection.VIOLATIONS_DETAILS)) {
+                printMostViolatedRulesDetails(project, chapter, listener);
+            }
+        } catch (DocumentException e) {
+            throw new ReportException("Error printing violations details", e);
+        }
     }
 
     /**
-     * Print details for most violated rules
+     * Print details for most violated rules. The chapter is written to the
+     * listener every {@link #ROWS_PER_FLUSH} rows, so only the pending rows of
+     * the current table are kept in memory.
      * 
      * @param project
      *            current project
      * @param chapter
      *            current chapter
+     * @param listener
+     *            target document
+     * @throws DocumentException
+     *             DocumentException
      */
-    private void printMostViolatedRulesDetails(final Project project, final Chapter chapter) {
+    private void printMostViolatedRulesDetails(final Project project, final Chapter chapter,
+            final ElementListener listener) throws DocumentException {
         if (project.getMostViolatedRules() != null && !project.getMostViolatedRules().isEmpty()) {
             Section section = chapter.addSection(
                     new Paragraph(getTextProperty(PDFResources.GENERAL_VIOLATIONS_DETAILS), Style.TITLE_FONT));
+            section.setComplete(false);
+            StringBuilder lineNumbers = new StringBuilder();
             for (Rule rule : project.getMostViolatedRules()) {
-                List<String> files = new LinkedList<>();
-                List<String> lines = new LinkedList<>();
-                addViolation(rule, files, lines);
-                section.add(createViolationsDetailedTable(rule.getName(), files, lines));
+                printViolationsDetailedTable(rule, lineNumbers, chapter, section, listener);
             }
+            section.setComplete(true);
         }
     }
 
     /**
-     * Add violation
+     * Print the table for violation details of a rule. Violations of the same
+     * file are merged in a single row.
      * 
      * @param rule
      *            rule
-     * @param files
-     *            files
-     * @param files
-     *            files
+     * @param lineNumbers
+     *            reusable builder for the lines of a file
+     * @param chapter
+     *            current chapter
+     * @param section
+     *            current section (not complete)
+     * @param listener
+     *            target document
+     * @throws DocumentException
+     *             DocumentException
      */
-    private void addViolation(Rule rule, List<String> files, List<String> lines) {
+    private void printViolationsDetailedTable(final Rule rule, final StringBuilder lineNumbers,
+            final Chapter chapter, final Section section, final ElementListener listener) throws DocumentException {
+        PdfPTable table = createViolationsDetailedTable(rule.getName());
+        lineNumbers.setLength(0);
+        String currentFile = null;
+        int rows = 0;
         if (rule.getTopViolations() != null) {
             for (Violation violation : rule.getTopViolations()) {
-                String[] components = violation.getResource().split("/");
-                files.add(components[components.length - 1]);
-                lines.add(violation.getLine());
+                String file = getFileName(violation);
+                if (currentFile != null && !currentFile.equals(file)) {
+                    addViolationRow(table, currentFile, lineNumbers);
+                    rows++;
+                    if (rows % ROWS_PER_FLUSH == 0) {
+                        flushRows(table, chapter, section, listener);
+                    }
+                }
+                if (lineNumbers.length() > 0) {
+                    lineNumbers.append(", ");
+                }
+                lineNumbers.append(violation.getLine());
+                currentFile = file;
             }
         }
+        if (currentFile != null) {
+            addViolationRow(table, currentFile, lineNumbers);
+        }
+        table.setSpacingAfter(20);
+        section.add(table);
+        listener.add(chapter);
     }
 
     /**
-     * Create table for violation details
+     * Writes the pending rows of the table and removes them from memory. The
+     * header rows are kept and only repeated on the following pages.
+     * 
+     * @param table
+     *            table being filled
+     * @param chapter
+     *            current chapter
+     * @param section
+     *            section containing the table
+     * @param listener
+     *            target document
+     * @throws DocumentException
+     *             DocumentException
+     */
+    private void flushRows(final PdfPTable table, final Chapter chapter, final Section section,
+            final ElementListener listener) throws DocumentException {
+        section.add(table);
+        listener.add(chapter);
+        table.flushContent();
+        table.setSpacingBefore(0);
+    }
+
+    /**
+     * Add a row to the violation details table and reset the lines builder
+     * 
+     * @param table
+     *            table
+     * @param file
+     *            violated file
+     * @param lineNumbers
+     *            violated lines
+     */
+    private void addViolationRow(final PdfPTable table, final String file, final StringBuilder lineNumbers) {
+        table.getDefaultCell().setColspan(7);
+        table.addCell(file);
+        table.getDefaultCell().setColspan(3);
+        table.addCell(lineNumbers.toString());
+        lineNumbers.setLength(0);
+    }
+
+    /**
+     * Get the file name of a violation
+     * 
+     * @param violation
+     *            violation
+     * @return file name
+     */
+    private String getFileName(final Violation violation) {
+        String resource = violation.getResource();
+        return resource.substring(resource.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Create table for violation details, with its header rows
      * 
      * @param ruleName
      *            name of the rules
-     * @param files
-     *            violated files
-     * @param lines
-     *            violated lines
-     * @return The table (iText table) ready to add to the document
+     * @return The table (iText table) ready to receive the violated files
      */
-    private PdfPTable createViolationsDetailedTable(final String ruleName, final List<String> files,
-            final List<String> lines) {
+    private PdfPTable createViolationsDetailedTable(final String ruleName) {
 
         PdfPTable table = new PdfPTable(10);
         table.getDefaultCell().setColspan(1);
@@ -123,7 +225,7 @@ public class TeamWorkbookPDFReporter extends ExecutivePDFReporter {
         table.addCell(new Phrase(getTextProperty(PDFResources.GENERAL_RULE), Style.NORMAL_FONT));
         table.getDefaultCell().setColspan(9);
         table.getDefaultCell().setBackgroundColor(Color.WHITE);
-        table.addCell(new Phrase(ruleName, Style.NORMAL_FONT));
+        table.addCell(new Phrase(ruleName, getFont(Style.NORMAL_FONT)));
         table.getDefaultCell().setColspan(10);
         table.getDefaultCell().setBackgroundColor(Color.GRAY);
         table.addCell("");
@@ -133,42 +235,9 @@ public class TeamWorkbookPDFReporter extends ExecutivePDFReporter {
         table.getDefaultCell().setColspan(3);
         table.addCell(new Phrase(getTextProperty(PDFResources.GENERAL_LINE), Style.NORMAL_FONT));
         table.getDefaultCell().setBackgroundColor(Color.WHITE);
-
-        int i = 0;
-        String lineNumbers = "";
-        if (!files.isEmpty()) {
-            while (i < files.size() - 1) {
-                if (("").equals(lineNumbers)) {
-                    lineNumbers += lines.get(i);
-                } else {
-                    lineNumbers += ", " + lines.get(i);
-                }
-
-                if (!files.get(i).equals(files.get(i + 1))) {
-                    table.getDefaultCell().setColspan(7);
-                    table.addCell(files.get(i));
-                    table.getDefaultCell().setColspan(3);
-                    table.addCell(lineNumbers);
-                    lineNumbers = "";
-                }
-                i++;
-            }
-        }
-
-        if (!files.isEmpty()) {
-            table.getDefaultCell().setColspan(7);
-            table.addCell(files.get(files.size() - 1));
-            table.getDefaultCell().setColspan(3);
-            if (("").equals(lineNumbers)) {
-                lineNumbers += lines.get(i);
-            } else {
-                lineNumbers += ", " + lines.get(lines.size() - 1);
-            }
-            table.addCell(lineNumbers);
-        }
+        table.setHeaderRows(HEADER_ROWS);
 
         table.setSpacingBefore(20);
-        table.setSpacingAfter(20);
         table.setLockedWidth(false);
         table.setWidthPercentage(90);
         return table;
@@ -181,4 +250,14 @@ public class TeamWorkbookPDFReporter extends ExecutivePDFReporter {
     public String getReportType() {
         return PDFResources.WORKBOOK_REPORT_TYPE;
     }
+
+    /**
+     * All the sections
+     * 
+     * @see org.sonar.report.pdf.PDFReporter#getDefaultSections()
+     */
+    @Override
+    protected Set<ReportSection> getDefaultSections() {
+        return EnumSet.allOf(ReportSection.class);
+    }
 }
\ No newline at end of file
@@ -53,8 +53,24 @@ public class Toc extends PdfPageEventHelper {
     private ByteArrayOutputStream tocOutputStream;
     private PdfPTable content;
     private PdfWriter writer;
+    private Font chapterFont;
+    private Font sectionFont;
+    private Font subsectionFont;
 
     public Toc() {
+        this(null);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param fontLocation
+     *            embedded font location, standard font is used if null
+     */
+    public Toc(final String fontLocation) {
+        chapterFont = FontRegistry.getFont(fontLocation, Style.TOC_CHAPTER_FONT);
+        sectionFont = FontRegistry.getFont(fontLocation, Style.TOC_SECTION_FONT);
+        subsectionFont = FontRegistry.getFont(fontLocation, Style.TOC_SUBSECTION_FONT);
         tocDocument = new Document(PageSize.A4, 50, 50, 110, 50);
         content = new PdfPTable(2);
         Rectangle page = tocDocument.getPageSize();
@@ -77,9 +93,9 @@ public class Toc extends PdfPageEventHelper {
         content.getDefaultCell().setBorderColorBottom(Color.LIGHT_GRAY);
         content.getDefaultCell().setHorizontalAlignment(PdfCell.ALIGN_LEFT);
         content.getDefaultCell().setUseBorderPadding(true);
-        content.addCell(new Phrase(title.getContent(), new Font(Font.HELVETICA, 11)));
+        content.addCell(new Phrase(title.getContent(), chapterFont));
         content.getDefaultCell().setHorizontalAlignment(PdfCell.ALIGN_RIGHT);
-        content.addCell(new Phrase("Page " + document.getPageNumber(), new Font(Font.HELVETICA, 11)));
+        content.addCell(new Phrase("Page " + writer.getPageNumber(), chapterFont));
         content.getDefaultCell().setBorderColorBottom(Color.WHITE);
         content.getDefaultCell().setUseBorderPadding(false);
     }
@@ -104,10 +120,10 @@ public class Toc extends PdfPageEventHelper {
         content.getDefaultCell().setHorizontalAlignment(PdfCell.ALIGN_LEFT);
         if (depth == 2) {
             content.getDefaultCell().setIndent(10);
-            content.addCell(new Phrase(title.getContent(), new Font(Font.HELVETICA, 10)));
+            content.addCell(new Phrase(title.getContent(), sectionFont));
         } else {
             content.getDefaultCell().setIndent(20);
-            content.addCell(new Phrase(title.getContent(), new Font(Font.HELVETICA, 9)));
+            content.addCell(new Phrase(title.getContent(), subsectionFont));
         }
         content.getDefaultCell().setIndent(0);
         content.addCell("");
@@ -130,6 +146,10 @@ public class Toc extends PdfPageEventHelper {
         return tocDocument;
     }
 
+    public PdfWriter getWriter() {
+        return writer;
+    }
+
     public ByteArrayOutputStream getTocOutputStream() {
         return tocOutputStream;
     }
@@ -0,0 +1,362 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.report.pdf.PDFReporter;
+import org.sonar.report.pdf.PDFResources;
+import org.sonar.report.pdf.entity.exception.ReportException;
+import org.sonar.report.pdf.util.Credentials;
+import org.sonar.report.pdf.util.ReportMetrics;
+import org.sonarqube.ws.client.SonarHost;
+import org.sonarqube.ws.client.WSClient;
+import org.sonarqube.ws.connectors.ConnectorFactory;
+import org.sonarqube.ws.model.Resource;
+import org.sonarqube.ws.query.ResourceQuery;
+
+/**
+ * Standalone generator of the reports of many projects, outside of any
+ * analysis. The reports are generated concurrently with a single client, so
+ * the connections to Sonar and the builders caches are shared.
+ * 
+ * Usage: BatchReportGenerator [project key | key pattern | &#64;file]...
+ * where a pattern may use * and ?, and a file lists one key or pattern per
+ * line. The settings are read from the system properties: sonar.host.url,
+ * sonar.pdf.username, sonar.pdf.password, report.type, sonar.pdf.font,
+ * sonar.pdf.output.profile, sonar.pdf.snapshot.dir, sonar.pdf.batch.threads
+ * and sonar.pdf.batch.output (output directory).
+ */
+public class BatchReportGenerator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchReportGenerator.class);
+
+    public static final String THREADS = "sonar.pdf.batch.threads";
+    public static final int THREADS_DEFAULT_VALUE = 4;
+
+    public static final String OUTPUT_DIR = "sonar.pdf.batch.output";
+    public static final String OUTPUT_DIR_DEFAULT_VALUE = ".";
+
+    private static final String PROJECT_QUALIFIER = "TRK";
+
+    private final String sonarHostUrl;
+    private final String username;
+    private final String password;
+    private final String reportType;
+    private final File outputDir;
+
+    private int threads = THREADS_DEFAULT_VALUE;
+
+    private Properties configOverrides = new Properties();
+
+    /**
+     * Metrics of the whole batch, parent of the metrics of each report
+     */
+    private final ReportMetrics metrics = new ReportMetrics();
+
+    public BatchReportGenerator(final String sonarHostUrl, final String username, final String password,
+            final String reportType, final File outputDir) {
+        this.sonarHostUrl = sonarHostUrl.endsWith("/") ? sonarHostUrl.substring(0, sonarHostUrl.length() - 1)
+                : sonarHostUrl;
+        this.username = username;
+        this.password = password;
+        this.reportType = reportType;
+        this.outputDir = outputDir;
+    }
+
+    /**
+     * Set the number of reports generated at once
+     * 
+     * @param threads
+     *            number of threads, at least 1
+     * @return BatchReportGenerator
+     */
+    public BatchReportGenerator setThreads(final int threads) {
+        this.threads = Math.max(1, threads);
+        return this;
+    }
+
+    /**
+     * Override a property of report.properties
+     * 
+     * @param key
+     *            key
+     * @param value
+     *            value, ignored if null
+     * @return BatchReportGenerator
+     */
+    public BatchReportGenerator setConfigProperty(final String key, final String value) {
+        if (value != null) {
+            configOverrides.setProperty(key, value);
+        }
+        return this;
+    }
+
+    /**
+     * @return metrics of all the reports of the batch
+     */
+    public ReportMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Find the keys of the projects matching a pattern
+     * 
+     * @param pattern
+     *            key pattern, where * matches any characters and ? any
+     *            character
+     * @return keys of the matching projects
+     * @throws ReportException
+     *             ReportException
+     */
+    public List<String> findProjectKeys(final String pattern) throws ReportException {
+        Pattern regex = toRegex(pattern);
+        ResourceQuery query = new ResourceQuery();
+        query.setQualifiers(PROJECT_QUALIFIER);
+        List<String> keys = new ArrayList<>();
+        for (Resource resource : createClient(loadConfig()).findAll(query)) {
+            if (regex.matcher(resource.getKey()).matches()) {
+                keys.add(resource.getKey());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Generate the reports of projects. Each report is written at once in the
+     * output directory; a failing project does not stop the others.
+     * 
+     * @param projectKeys
+     *            project keys
+     * @return result of each project, in the order of the keys
+     * @throws ReportException
+     *             ReportException if the settings can not be loaded or the
+     *             generation is interrupted
+     */
+    public List<Result> execute(final List<String> projectKeys) throws ReportException {
+        final Properties config = loadConfig();
+        final Properties configLang = PDFGenerator.loadLang();
+        final Credentials credentials = new Credentials(config.getProperty(PDFResources.SONAR_BASE_URL), username,
+                password);
+        final WSClient sonar = createClient(config);
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new ReportException("Can not create output directory " + outputDir.getAbsolutePath());
+        }
+
+        LOG.info("Generating " + projectKeys.size() + " PDF reports with " + threads + " threads");
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Result> results = new ArrayList<>();
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (final String projectKey : projectKeys) {
+                futures.add(executor.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() {
+                        return generate(projectKey, credentials, config, configLang, sonar);
+                    }
+                }));
+            }
+            for (Future<Result> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReportException("Report generation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new ReportException("Report generation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private Result generate(final String projectKey, final Credentials credentials, final Properties config,
+            final Properties configLang, final WSClient sonar) {
+        long start = System.currentTimeMillis();
+        File file = new File(outputDir, PDFGenerator.getFileName(projectKey));
+        try {
+            PDFReporter reporter = PDFGenerator.createReporter(reportType, credentials, projectKey, config,
+                    configLang);
+            reporter.setMetrics(new ReportMetrics(metrics));
+            reporter.setClient(sonar);
+            PDFGenerator.writeReport(reporter.getReport(), file);
+            Result result = new Result(projectKey, file, null, System.currentTimeMillis() - start);
+            LOG.info(result.toString());
+            LOG.debug(reporter.getMetrics().formatSummary());
+            return result;
+        } catch (ReportException | IOException | RuntimeException e) {
+            Result result = new Result(projectKey, file, e.toString(), System.currentTimeMillis() - start);
+            LOG.error(result.toString(), e);
+            return result;
+        }
+    }
+
+    private Properties loadConfig() throws ReportException {
+        try {
+            return PDFGenerator.loadConfig(sonarHostUrl, configOverrides);
+        } catch (IOException e) {
+            throw new ReportException("Can not load report properties", e);
+        }
+    }
+
+    private WSClient createClient(final Properties config) {
+        SonarHost host = PDFReporter.createHost(config, new Credentials(sonarHostUrl, username, password));
+        return new WSClient(ConnectorFactory.create(host, threads, metrics), metrics);
+    }
+
+    private static Pattern toRegex(final String pattern) {
+        StringBuilder regex = new StringBuilder();
+        for (String part : pattern.split("(?=[*?])|(?<=[*?])")) {
+            if ("*".equals(part)) {
+                regex.append(".*");
+            } else if ("?".equals(part)) {
+                regex.append('.');
+            } else if (!part.isEmpty()) {
+                regex.append(Pattern.quote(part));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Generate the reports of the projects given as arguments
+     * 
+     * @param args
+     *            project keys, key patterns or &#64;files listing them
+     * @throws IOException
+     *             IOException if a file of keys can not be read
+     * @throws ReportException
+     *             ReportException
+     */
+    public static void main(final String[] args) throws IOException, ReportException {
+        String username = System.getProperty(PDFPostJob.USERNAME, PDFPostJob.USERNAME_DEFAULT_VALUE);
+        String password = System.getProperty(PDFPostJob.SONAR_P_KEY, PDFPostJob.SONAR_P_DEFAULT_VALUE);
+        BatchReportGenerator generator = new BatchReportGenerator(
+                System.getProperty(PDFPostJob.SONAR_HOST_URL, PDFPostJob.SONAR_HOST_URL_DEFAULT_VALUE),
+                username.isEmpty() ? null : username, password.isEmpty() ? null : password,
+                System.getProperty(PDFPostJob.REPORT_TYPE, PDFPostJob.REPORT_TYPE_DEFAULT_VALUE),
+                new File(System.getProperty(OUTPUT_DIR, OUTPUT_DIR_DEFAULT_VALUE)));
+        generator.setThreads(Integer.getInteger(THREADS, THREADS_DEFAULT_VALUE))
+                .setConfigProperty(PDFResources.REPORT_FONT, System.getProperty(PDFPostJob.FONT))
+                .setConfigProperty(PDFResources.OUTPUT_PROFILE, System.getProperty(PDFPostJob.OUTPUT_PROFILE))
+                .setConfigProperty(PDFResources.SNAPSHOT_DIR, System.getProperty(PDFPostJob.SNAPSHOT_DIR));
+
+        Set<String> projectKeys = new LinkedHashSet<>();
+        for (String arg : args) {
+            List<String> keys = new ArrayList<>();
+            if (arg.startsWith("@")) {
+                keys.addAll(Files.readAllLines(new File(arg.substring(1)).toPath(), StandardCharsets.UTF_8));
+            } else {
+                keys.add(arg);
+            }
+            for (String key : keys) {
+                String trimmed = key.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                if (trimmed.contains("*") || trimmed.contains("?")) {
+                    projectKeys.addAll(generator.findProjectKeys(trimmed));
+                } else {
+                    projectKeys.add(trimmed);
+                }
+            }
+        }
+
+        int failures = 0;
+        for (Result result : generator.execute(new ArrayList<>(projectKeys))) {
+            if (!result.isSuccess()) {
+                failures++;
+            }
+        }
+        LOG.info(generator.getMetrics().formatSummary());
+        LOG.info((projectKeys.size() - failures) + " of " + projectKeys.size() + " PDF reports generated");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Result of the report of a project
+     */
+    public static class Result {
+
+        private final String projectKey;
+        private final File file;
+        private final String error;
+        private final long durationMs;
+
+        Result(final String projectKey, final File file, final String error, final long durationMs) {
+            this.projectKey = projectKey;
+            this.file = file;
+            this.error = error;
+            this.durationMs = durationMs;
+        }
+
+        public String getProjectKey() {
+            return projectKey;
+        }
+
+        /**
+         * @return report file, not written if the report failed
+         */
+        public File getFile() {
+            return file;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        /**
+         * @return error message, null if the report succeeded
+         */
+        public String getError() {
+            return error;
+        }
+
+        public long getDurationMs() {
+            return durationMs;
+        }
+
+        @Override
+        public String toString() {
+            if (isSuccess()) {
+                return "OK " + projectKey + " in " + durationMs + " ms: " + file.getName();
+            }
+            return "FAILED " + projectKey + " in " + durationMs + " ms: " + error;
+        }
+    }
+}
@@ -24,6 +24,9 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Enumeration;
 import java.util.Locale;
 import java.util.Properties;
@@ -31,14 +34,20 @@ import java.util.ResourceBundle;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.rule.Rules;
+import org.sonar.api.issue.ProjectIssues;
 import org.sonar.api.resources.Project;
 import org.sonar.report.pdf.ExecutivePDFReporter;
 import org.sonar.report.pdf.PDFReporter;
 import org.sonar.report.pdf.PDFResources;
 import org.sonar.report.pdf.TeamWorkbookPDFReporter;
+import org.sonar.report.pdf.builder.SensorContextProjectBuilder;
 import org.sonar.report.pdf.entity.exception.ReportException;
 import org.sonar.report.pdf.util.Credentials;
+import org.sonar.report.pdf.util.ReportMetrics;
+import org.sonarqube.ws.client.WSClient;
 
 /**
  * PDF Generator
@@ -58,6 +67,14 @@ public class PDFGenerator {
     private Project project;
     private FileSystem fs;
 
+    private Properties configOverrides = new Properties();
+
+    private SensorContext context;
+    private ProjectIssues projectIssues;
+    private Rules rules;
+
+    private final ReportMetrics metrics = new ReportMetrics();
+
     public PDFGenerator(final Project project, final FileSystem fs, final String sonarHostUrl, final String username,
             final String password, final String reportType) {
         this.project = project;
@@ -69,58 +86,182 @@ public class PDFGenerator {
     }
 
     /**
-     * Main method : execution of the reporting
+     * Override a property of report.properties
+     * 
+     * @param key
+     *            key
+     * @param value
+     *            value, ignored if null
+     * @return PDFGenerator
      */
-    public void execute() {
-        Properties config = new Properties();
-        Properties configLang = new Properties();
+    public PDFGenerator setConfigProperty(final String key, final String value) {
+        if (value != null) {
+            configOverrides.setProperty(key, value);
+        }
+        return this;
+    }
 
-        try (InputStream configStream = this.getClass().getResourceAsStream(REPORT_PROPERTIES)) {
-            if (sonarHostUrl != null) {
-                if (sonarHostUrl.endsWith("/")) {
-                    sonarHostUrl = sonarHostUrl.substring(0, sonarHostUrl.length() - 1);
-                }
-                config.put(PDFResources.SONAR_BASE_URL, sonarHostUrl);
-                config.put(PDFResources.FRONT_PAGE_LOGO, "sonar.png");
-            } else {
-                config.load(configStream);
-            }
+    /**
+     * Read the project data in the running analysis instead of asking the
+     * server for it; only the trends are still asked to the server
+     * 
+     * @param context
+     *            context of the analysis
+     * @param projectIssues
+     *            issues of the analysis
+     * @param rules
+     *            rules of the analysis, may be null
+     * @return PDFGenerator
+     */
+    public PDFGenerator setSensorContext(final SensorContext context, final ProjectIssues projectIssues,
+            final Rules rules) {
+        this.context = context;
+        this.projectIssues = projectIssues;
+        this.rules = rules;
+        return this;
+    }
 
-            ResourceBundle rb = ResourceBundle.getBundle(PDFResources.RESOURCE_NAME, Locale.getDefault(),
-                    this.getClass().getClassLoader());
+    /**
+     * @return metrics of the report generation
+     */
+    public ReportMetrics getMetrics() {
+        return metrics;
+    }
 
-            Enumeration<String> keys = rb.getKeys();
-            while (keys.hasMoreElements()) {
-                String key = keys.nextElement();
-                configLang.setProperty(key, (String) rb.getObject(key));
-            }
+    /**
+     * Main method : execution of the reporting
+     */
+    public void execute() {
+        try {
+            Properties config = loadConfig(sonarHostUrl, configOverrides);
+            Properties configLang = loadLang();
 
             Credentials credentials = new Credentials(config.getProperty(PDFResources.SONAR_BASE_URL), username,
                     password);
 
             String sonarProjectId = project.getEffectiveKey();
-            String path = fs.workDir().getAbsolutePath() + "/" + sonarProjectId.replace(':', '-') + ".pdf";
-
-            PDFReporter reporter = null;
-            if (reportType != null && (PDFResources.EXECUTIVE_REPORT_TYPE).equals(reportType)) {
-                LOG.info("Executive report type selected");
-                reporter = new ExecutivePDFReporter(credentials,
-                        this.getClass().getResource(PDFResources.SONAR_PNG_FILE), sonarProjectId, config, configLang);
-            } else {
-                LOG.info("Team workbook report type selected");
-                reporter = new TeamWorkbookPDFReporter(credentials,
-                        this.getClass().getResource(PDFResources.SONAR_PNG_FILE), sonarProjectId, config, configLang);
+            File file = new File(fs.workDir(), getFileName(sonarProjectId));
+
+            PDFReporter reporter = createReporter(reportType, credentials, sonarProjectId, config, configLang);
+            reporter.setMetrics(metrics);
+            if (context != null) {
+                WSClient sonar = WSClient.create(PDFReporter.createHost(config, credentials), metrics);
+                reporter.setClient(sonar);
+                reporter.setDataSource(new SensorContextProjectBuilder(project, context, projectIssues, rules, sonar));
             }
-            ByteArrayOutputStream baos = reporter.getReport();
-            FileOutputStream fos = new FileOutputStream(new File(path));
-            baos.writeTo(fos);
-            fos.flush();
-            fos.close();
-            LOG.info("PDF report generated (see " + sonarProjectId.replace(':', '-')
-                    + ".pdf on build output directory)");
+            writeReport(reporter.getReport(), file);
+            LOG.info("PDF report generated (see " + file.getName() + " on build output directory)");
         } catch (ReportException | IOException e) {
             LOG.error("Problem generating PDF file.", e);
         }
     }
 
+    /**
+     * Load report.properties with the overridden properties
+     * 
+     * @param sonarHostUrl
+     *            Sonar URL, or null to keep the one of report.properties
+     * @param overrides
+     *            overridden properties
+     * @return Properties
+     * @throws IOException
+     *             IOException
+     */
+    static Properties loadConfig(final String sonarHostUrl, final Properties overrides) throws IOException {
+        Properties config = new Properties();
+        try (InputStream configStream = PDFGenerator.class.getResourceAsStream(REPORT_PROPERTIES)) {
+            config.load(configStream);
+        }
+        if (sonarHostUrl != null) {
+            String url = sonarHostUrl;
+            if (url.endsWith("/")) {
+                url = url.substring(0, url.length() - 1);
+            }
+            config.put(PDFResources.SONAR_BASE_URL, url);
+            config.put(PDFResources.FRONT_PAGE_LOGO, "sonar.png");
+        }
+        config.putAll(overrides);
+        return config;
+    }
+
+    /**
+     * Load the texts of the reports for the default locale
+     * 
+     * @return Properties
+     */
+    static Properties loadLang() {
+        Properties configLang = new Properties();
+        ResourceBundle rb = ResourceBundle.getBundle(PDFResources.RESOURCE_NAME, Locale.getDefault(),
+                PDFGenerator.class.getClassLoader());
+        Enumeration<String> keys = rb.getKeys();
+        while (keys.hasMoreElements()) {
+            String key = keys.nextElement();
+            configLang.setProperty(key, (String) rb.getObject(key));
+        }
+        return configLang;
+    }
+
+    /**
+     * Create the reporter of a report type
+     * 
+     * @param reportType
+     *            report type, team workbook if not executive
+     * @param credentials
+     *            credentials
+     * @param projectKey
+     *            project key
+     * @param config
+     *            report properties
+     * @param configLang
+     *            report texts
+     * @return PDFReporter
+     */
+    static PDFReporter createReporter(final String reportType, final Credentials credentials,
+            final String projectKey, final Properties config, final Properties configLang) {
+        URL logo = PDFGenerator.class.getResource(PDFResources.SONAR_PNG_FILE);
+        if (reportType != null && (PDFResources.EXECUTIVE_REPORT_TYPE).equals(reportType)) {
+            LOG.info("Executive report type selected");
+            return new ExecutivePDFReporter(credentials, logo, projectKey, config, configLang);
+        }
+        LOG.info("Team workbook report type selected");
+        return new TeamWorkbookPDFReporter(credentials, logo, projectKey, config, configLang);
+    }
+
+    /**
+     * Get the report file name of a project
+     * 
+     * @param projectKey
+     *            project key
+     * @return String
+     */
+    static String getFileName(final String projectKey) {
+        return projectKey.replace(':', '-') + ".pdf";
+    }
+
+    /**
+     * Write a report. It is written in a temporary file first, so that the
+     * report file is replaced at once and never left incomplete.
+     * 
+     * @param report
+     *            report
+     * @param file
+     *            report file
+     * @throws IOException
+     *             IOException
+     */
+    static void writeReport(final ByteArrayOutputStream report, final File file) throws IOException {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            try (FileOutputStream fos = new FileOutputStream(tmp)) {
+                report.writeTo(fos);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            if (tmp.exists() && !tmp.delete()) {
+                LOG.debug("Can not delete " + tmp.getAbsolutePath());
+            }
+        }
+    }
+
 }
@@ -21,6 +21,8 @@
 package org.sonar.report.pdf.batch;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,10 +31,13 @@ import org.sonar.api.batch.CheckProject;
 import org.sonar.api.batch.PostJob;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.rule.Rules;
 import org.sonar.api.config.Settings;
+import org.sonar.api.issue.ProjectIssues;
 import org.sonar.api.resources.Project;
 import org.sonar.report.pdf.PDFResources;
 import org.sonar.report.pdf.util.FileUploader;
+import org.sonar.report.pdf.util.ReportMetrics;
 
 /**
  * Extension point for PDF Job
@@ -57,15 +62,56 @@ public class PDFPostJob implements PostJob, CheckProject {
     public static final String SONAR_P_KEY = "sonar.pdf.password";
     public static final String SONAR_P_DEFAULT_VALUE = "";
 
+    public static final String FONT = "sonar.pdf.font";
+    public static final String FONT_DEFAULT_VALUE = "";
+
+    public static final String OUTPUT_PROFILE = "sonar.pdf.output.profile";
+    public static final String OUTPUT_PROFILE_DEFAULT_VALUE = "default";
+
+    public static final String SNAPSHOT_DIR = "sonar.pdf.snapshot.dir";
+    public static final String SNAPSHOT_DIR_DEFAULT_VALUE = "";
+
+    public static final String METRICS_FILE = "sonar.pdf.metrics.file";
+    public static final boolean METRICS_FILE_DEFAULT_VALUE = false;
+
+    private static final String METRICS_FILE_NAME = "pdf-report-metrics.json";
+
+    public static final String SCANNER_DATA = "sonar.pdf.scanner.data";
+    public static final boolean SCANNER_DATA_DEFAULT_VALUE = false;
+
+    public static final String UPLOAD_GZIP = "sonar.pdf.upload.gzip";
+    public static final boolean UPLOAD_GZIP_DEFAULT_VALUE = false;
+
+    public static final String ASYNC = "sonar.pdf.async";
+    public static final boolean ASYNC_DEFAULT_VALUE = false;
+
+    public static final String ASYNC_TIMEOUT = "sonar.pdf.async.timeout";
+    public static final int ASYNC_TIMEOUT_DEFAULT_VALUE = 0;
+
+    public static final String ASYNC_DIR = "sonar.pdf.async.dir";
+    public static final String ASYNC_DIR_DEFAULT_VALUE = "";
+
+    private static final String JOB_FILE_SUFFIX = "-pdf-job.properties";
+
+    private static final String JOB_LOG_SUFFIX = "-pdf-job.log";
+
     public static final String SONAR_HOST_URL = "sonar.host.url";
     public static final String SONAR_HOST_URL_DEFAULT_VALUE = "http://localhost:9000";
 
     private final Settings settings;
     private final FileSystem fs;
+    private final ProjectIssues projectIssues;
+    private final Rules rules;
 
     public PDFPostJob(Settings settings, FileSystem fs) {
+        this(settings, fs, null, null);
+    }
+
+    public PDFPostJob(Settings settings, FileSystem fs, ProjectIssues projectIssues, Rules rules) {
         this.settings = settings;
         this.fs = fs;
+        this.projectIssues = projectIssues;
+        this.rules = rules;
     }
 
     /**
@@ -88,7 +134,26 @@ public class PDFPostJob implements PostJob, CheckProject {
         String username = settings.hasKey(USERNAME) ? settings.getString(USERNAME) : USERNAME_DEFAULT_VALUE;
         String password = settings.hasKey(SONAR_P_KEY) ? settings.getString(SONAR_P_KEY) : SONAR_P_DEFAULT_VALUE;
         String reportType = settings.hasKey(REPORT_TYPE) ? settings.getString(REPORT_TYPE) : REPORT_TYPE_DEFAULT_VALUE;
+        boolean gzip = settings.hasKey(UPLOAD_GZIP) ? settings.getBoolean(UPLOAD_GZIP) : UPLOAD_GZIP_DEFAULT_VALUE;
+        boolean scannerData = settings.hasKey(SCANNER_DATA) ? settings.getBoolean(SCANNER_DATA)
+                : SCANNER_DATA_DEFAULT_VALUE;
+        Properties configOverrides = getConfigOverrides();
+        if (settings.hasKey(ASYNC) ? settings.getBoolean(ASYNC) : ASYNC_DEFAULT_VALUE) {
+            if (scannerData) {
+                LOG.warn("The data of the analysis is not available in background, it is read on the server");
+            }
+            executeAsync(project, sonarHostUrl, username, password, reportType, gzip, configOverrides);
+            return;
+        }
         PDFGenerator generator = new PDFGenerator(project, fs, sonarHostUrl, username, password, reportType);
+        for (String key : configOverrides.stringPropertyNames()) {
+            generator.setConfigProperty(key, configOverrides.getProperty(key));
+        }
+        if (scannerData && projectIssues != null) {
+            generator.setSensorContext(context, projectIssues, rules);
+        } else if (scannerData) {
+            LOG.warn("The issues of the analysis are not available, the data of the report is read on the server");
+        }
 
         generator.execute();
 
@@ -96,10 +161,129 @@ public class PDFPostJob implements PostJob, CheckProject {
 
         File pdf = new File(path);
         if (pdf.exists()) {
-            FileUploader.upload(pdf, sonarHostUrl + PDFResources.PDF_REPORT_STORE_PATH, username, password);
+            FileUploader.upload(pdf, sonarHostUrl + PDFResources.PDF_REPORT_STORE_PATH, username, password, gzip,
+                    generator.getMetrics());
         } else {
             LOG.error("PDF file not found in local filesystem. Report could not be sent to server.");
         }
+        writeMetrics(generator.getMetrics());
+    }
+
+    /**
+     * Get the properties of report.properties overridden by the settings
+     * 
+     * @return Properties
+     */
+    private Properties getConfigOverrides() {
+        Properties overrides = new Properties();
+        if (settings.hasKey(FONT)) {
+            overrides.setProperty(PDFResources.REPORT_FONT, settings.getString(FONT));
+        }
+        if (settings.hasKey(OUTPUT_PROFILE)) {
+            overrides.setProperty(PDFResources.OUTPUT_PROFILE, settings.getString(OUTPUT_PROFILE));
+        }
+        if (settings.hasKey(SNAPSHOT_DIR)) {
+            overrides.setProperty(PDFResources.SNAPSHOT_DIR, settings.getString(SNAPSHOT_DIR));
+        }
+        return overrides;
+    }
+
+    /**
+     * Hand the report generation and upload to a background worker. The state
+     * of the job is kept in {@link #ASYNC_DIR}, out of the work dir which the
+     * next analysis wipes while the worker may still run; the analysis waits
+     * for it at most {@link #ASYNC_TIMEOUT} seconds. No worker is started while
+     * the one of the previous analysis is alive, as both would write the same
+     * job state and report.
+     */
+    private void executeAsync(final Project project, final String sonarHostUrl, final String username,
+            final String password, final String reportType, final boolean gzip, final Properties configOverrides) {
+        String name = project.getEffectiveKey().replace(':', '-');
+        File jobDir = getJobDir();
+        File jobFile = new File(jobDir, name + JOB_FILE_SUFFIX);
+        ReportJob job = ReportJob.create(jobFile, project.getEffectiveKey()).setReportType(reportType)
+                .setSonarHostUrl(sonarHostUrl).setUsername(username)
+                .setReport(new File(jobDir, name + PDF_EXTENSION)).setUpload(true).setUploadGzip(gzip);
+        for (String key : configOverrides.stringPropertyNames()) {
+            job.setConfigProperty(key, configOverrides.getProperty(key));
+        }
+        if (settings.hasKey(METRICS_FILE) ? settings.getBoolean(METRICS_FILE) : METRICS_FILE_DEFAULT_VALUE) {
+            job.setMetrics(new File(jobDir, name + "-" + METRICS_FILE_NAME));
+        }
+        try {
+            if (isPreviousJobRunning(jobFile)) {
+                return;
+            }
+            job.store();
+            ReportJobWorker.start(job, password, new File(jobDir, name + JOB_LOG_SUFFIX));
+            LOG.info("PDF report generation continues in background (see " + jobFile.getAbsolutePath() + ")");
+            int timeout = settings.hasKey(ASYNC_TIMEOUT) ? settings.getInt(ASYNC_TIMEOUT) : ASYNC_TIMEOUT_DEFAULT_VALUE;
+            if (timeout > 0) {
+                job = ReportJob.waitFor(jobFile, timeout * 1000L);
+                if (job.isFinished()) {
+                    LOG.info(job.toString());
+                } else {
+                    LOG.warn("PDF report not generated after " + timeout + " s, it is still generated in background");
+                }
+            }
+        } catch (IOException e) {
+            LOG.error("Can not start PDF report generation in background", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted while waiting for the PDF report, it is still generated in background");
+        }
+    }
+
+    /**
+     * @return directory of the background jobs, created if needed
+     */
+    private File getJobDir() {
+        String path = settings.getString(ASYNC_DIR);
+        File dir = path == null || path.isEmpty() ? new File(System.getProperty("user.home"), ".sonar/pdf-jobs")
+                : new File(path);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            LOG.warn("Can not create " + dir.getAbsolutePath() + ", background jobs are kept in the work dir");
+            return fs.workDir();
+        }
+        return dir;
+    }
+
+    /**
+     * Report the outcome of the previous job of the project, which the new job
+     * replaces. A job whose worker died is marked as failed.
+     * 
+     * @return true if the worker of the previous job is still alive
+     */
+    private static boolean isPreviousJobRunning(final File jobFile) throws IOException {
+        if (!jobFile.isFile()) {
+            return false;
+        }
+        ReportJob previous = ReportJob.load(jobFile);
+        if (previous.failIfStale()) {
+            LOG.warn("Previous " + previous.store());
+        } else if (!previous.isFinished()) {
+            LOG.warn("Previous PDF report job of worker " + previous.getPid()
+                    + " is still running, no report is generated for this analysis");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Log the metrics of the report generation and write them in the work
+     * dir if asked
+     */
+    private void writeMetrics(final ReportMetrics metrics) {
+        LOG.info(metrics.formatSummary());
+        if (settings.hasKey(METRICS_FILE) ? settings.getBoolean(METRICS_FILE) : METRICS_FILE_DEFAULT_VALUE) {
+            File metricsFile = new File(fs.workDir(), METRICS_FILE_NAME);
+            try {
+                metrics.writeJson(metricsFile);
+                LOG.info("PDF report metrics written to " + metricsFile.getAbsolutePath());
+            } catch (IOException e) {
+                LOG.error("Can not write PDF report metrics", e);
+            }
+        }
     }
 
 }
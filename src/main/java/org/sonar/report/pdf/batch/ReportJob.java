@@ -0,0 +1,405 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.batch;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * State of a report generated in background, persisted in a properties file
+ * so that it can be followed by later build steps. The password is never
+ * persisted. While the job runs, its worker writes a heartbeat every
+ * {@link #HEARTBEAT_INTERVAL_MS}; a job without heartbeat for
+ * {@link #STALE_AFTER_MS} lost its worker and is marked as failed by
+ * {@link #waitFor(File, long)}.
+ */
+public class ReportJob {
+
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String SUCCESS = "SUCCESS";
+    public static final String FAILED = "FAILED";
+
+    private static final String STATUS = "status";
+    private static final String PROJECT_KEY = "projectKey";
+    private static final String REPORT_TYPE = "reportType";
+    private static final String SONAR_HOST_URL = "sonarHostUrl";
+    private static final String USERNAME = "username";
+    private static final String REPORT = "report";
+    private static final String METRICS = "metrics";
+    private static final String UPLOAD = "upload";
+    private static final String UPLOAD_GZIP = "uploadGzip";
+    private static final String UPLOADED = "uploaded";
+    private static final String ERROR = "error";
+    private static final String SUBMITTED = "submitted";
+    private static final String STARTED = "started";
+    private static final String FINISHED = "finished";
+    private static final String PID = "pid";
+    private static final String HEARTBEAT = "heartbeat";
+    private static final String CONFIG_PREFIX = "config.";
+
+    private static final long POLL_INTERVAL_MS = 500;
+
+    public static final long HEARTBEAT_INTERVAL_MS = 10000;
+
+    public static final long STALE_AFTER_MS = 6 * HEARTBEAT_INTERVAL_MS;
+
+    private final File file;
+    private final Properties properties;
+
+    private ReportJob(final File file, final Properties properties) {
+        this.file = file;
+        this.properties = properties;
+    }
+
+    /**
+     * Create a pending job
+     * 
+     * @param file
+     *            file of the job state
+     * @param projectKey
+     *            key of the reported project
+     * @return ReportJob
+     */
+    public static ReportJob create(final File file, final String projectKey) {
+        ReportJob job = new ReportJob(file, new Properties());
+        job.set(PROJECT_KEY, projectKey);
+        job.set(STATUS, PENDING);
+        job.set(SUBMITTED, String.valueOf(System.currentTimeMillis()));
+        return job;
+    }
+
+    /**
+     * Load the state of a job
+     * 
+     * @param file
+     *            file of the job state
+     * @return ReportJob
+     * @throws IOException
+     *             IOException
+     */
+    public static ReportJob load(final File file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        return new ReportJob(file, properties);
+    }
+
+    /**
+     * Wait for a job to finish. A job whose worker stopped without finishing
+     * it is marked as failed.
+     * 
+     * @param file
+     *            file of the job state
+     * @param timeoutMs
+     *            maximum waiting time
+     * @return last state of the job, finished or not
+     * @throws IOException
+     *             IOException
+     * @throws InterruptedException
+     *             InterruptedException
+     */
+    public static ReportJob waitFor(final File file, final long timeoutMs) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        ReportJob job = load(file);
+        while (!job.isFinished() && System.currentTimeMillis() < deadline) {
+            if (job.failIfStale()) {
+                return job.store();
+            }
+            Thread.sleep(Math.min(POLL_INTERVAL_MS, Math.max(1, deadline - System.currentTimeMillis())));
+            job = load(file);
+        }
+        return job;
+    }
+
+    /**
+     * Persist the state of the job. The file is replaced at once, so readers
+     * never see a partial state. Each call writes its own temporary file, as
+     * the analysis and the worker may store the same job at the same time.
+     * 
+     * @return ReportJob
+     * @throws IOException
+     *             IOException
+     */
+    public synchronized ReportJob store() throws IOException {
+        File tmp = File.createTempFile(file.getName() + ".", ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                properties.store(out, "PDF report job");
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+        return this;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public boolean isFinished() {
+        return SUCCESS.equals(getStatus()) || FAILED.equals(getStatus());
+    }
+
+    public String getStatus() {
+        return properties.getProperty(STATUS);
+    }
+
+    /**
+     * @return true if the job is not finished and its worker did not give
+     *         any sign of life for {@link #STALE_AFTER_MS}: it crashed, was
+     *         killed or never started
+     */
+    public boolean isStale() {
+        if (isFinished()) {
+            return false;
+        }
+        String last = properties.getProperty(HEARTBEAT, properties.getProperty(SUBMITTED));
+        return last == null || System.currentTimeMillis() - Long.parseLong(last) > STALE_AFTER_MS;
+    }
+
+    /**
+     * Mark the job as failed if it is stale
+     * 
+     * @return true if the job was stale
+     */
+    public boolean failIfStale() {
+        if (!isStale()) {
+            return false;
+        }
+        finish("Worker " + getPid() + " stopped without finishing the job");
+        return true;
+    }
+
+    /**
+     * @return process id of the worker, or null if the job is not started
+     */
+    public String getPid() {
+        return properties.getProperty(PID);
+    }
+
+    public ReportJob setPid(final String pid) {
+        set(PID, pid);
+        return this;
+    }
+
+    /**
+     * Record that the worker is alive
+     * 
+     * @return ReportJob
+     */
+    public ReportJob heartbeat() {
+        set(HEARTBEAT, String.valueOf(System.currentTimeMillis()));
+        return this;
+    }
+
+    /**
+     * Mark the job as running
+     * 
+     * @return ReportJob
+     */
+    public ReportJob start() {
+        set(STATUS, RUNNING);
+        set(STARTED, String.valueOf(System.currentTimeMillis()));
+        return heartbeat();
+    }
+
+    /**
+     * Mark the job as finished
+     * 
+     * @param error
+     *            error message, null if the report was generated
+     * @return ReportJob
+     */
+    public ReportJob finish(final String error) {
+        set(STATUS, error == null ? SUCCESS : FAILED);
+        set(ERROR, error);
+        set(FINISHED, String.valueOf(System.currentTimeMillis()));
+        return this;
+    }
+
+    public String getProjectKey() {
+        return properties.getProperty(PROJECT_KEY);
+    }
+
+    public String getReportType() {
+        return properties.getProperty(REPORT_TYPE);
+    }
+
+    public ReportJob setReportType(final String reportType) {
+        set(REPORT_TYPE, reportType);
+        return this;
+    }
+
+    public String getSonarHostUrl() {
+        return properties.getProperty(SONAR_HOST_URL);
+    }
+
+    public ReportJob setSonarHostUrl(final String sonarHostUrl) {
+        set(SONAR_HOST_URL, sonarHostUrl);
+        return this;
+    }
+
+    public String getUsername() {
+        return properties.getProperty(USERNAME);
+    }
+
+    public ReportJob setUsername(final String username) {
+        set(USERNAME, username);
+        return this;
+    }
+
+    /**
+     * @return report file, written once the job succeeded
+     */
+    public File getReport() {
+        return getFile(REPORT);
+    }
+
+    public ReportJob setReport(final File report) {
+        set(REPORT, report.getAbsolutePath());
+        return this;
+    }
+
+    /**
+     * @return metrics file, or null if no metrics are written
+     */
+    public File getMetrics() {
+        return getFile(METRICS);
+    }
+
+    public ReportJob setMetrics(final File metrics) {
+        set(METRICS, metrics.getAbsolutePath());
+        return this;
+    }
+
+    /**
+     * @return true if the report is to be uploaded to the server
+     */
+    public boolean isUpload() {
+        return Boolean.parseBoolean(properties.getProperty(UPLOAD));
+    }
+
+    public ReportJob setUpload(final boolean upload) {
+        set(UPLOAD, String.valueOf(upload));
+        return this;
+    }
+
+    /**
+     * @return true if the report is to be gzipped for its upload
+     */
+    public boolean isUploadGzip() {
+        return Boolean.parseBoolean(properties.getProperty(UPLOAD_GZIP));
+    }
+
+    public ReportJob setUploadGzip(final boolean uploadGzip) {
+        set(UPLOAD_GZIP, String.valueOf(uploadGzip));
+        return this;
+    }
+
+    public boolean isUploaded() {
+        return Boolean.parseBoolean(properties.getProperty(UPLOADED));
+    }
+
+    public ReportJob setUploaded(final boolean uploaded) {
+        set(UPLOADED, String.valueOf(uploaded));
+        return this;
+    }
+
+    public String getError() {
+        return properties.getProperty(ERROR);
+    }
+
+    /**
+     * @return duration of the generation in ms, or -1 if the job is not
+     *         finished
+     */
+    public long getDurationMs() {
+        String started = properties.getProperty(STARTED);
+        String finished = properties.getProperty(FINISHED);
+        if (started == null || finished == null) {
+            return -1;
+        }
+        return Long.parseLong(finished) - Long.parseLong(started);
+    }
+
+    /**
+     * Override a property of report.properties
+     * 
+     * @param key
+     *            key
+     * @param value
+     *            value, ignored if null
+     * @return ReportJob
+     */
+    public ReportJob setConfigProperty(final String key, final String value) {
+        set(CONFIG_PREFIX + key, value);
+        return this;
+    }
+
+    /**
+     * @return overridden properties of report.properties
+     */
+    public Properties getConfigProperties() {
+        Properties config = new Properties();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(CONFIG_PREFIX)) {
+                config.setProperty(name.substring(CONFIG_PREFIX.length()), properties.getProperty(name));
+            }
+        }
+        return config;
+    }
+
+    private File getFile(final String key) {
+        String path = properties.getProperty(key);
+        return path == null ? null : new File(path);
+    }
+
+    private void set(final String key, final String value) {
+        if (value == null) {
+            properties.remove(key);
+        } else {
+            properties.setProperty(key, value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("PDF report job ").append(getProjectKey()).append(": ")
+                .append(getStatus());
+        if (getDurationMs() >= 0) {
+            sb.append(" in ").append(getDurationMs()).append(" ms");
+        }
+        if (getError() != null) {
+            sb.append(", ").append(getError());
+        }
+        return sb.toString();
+    }
+}
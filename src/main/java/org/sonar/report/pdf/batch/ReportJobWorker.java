@@ -0,0 +1,270 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.report.pdf.PDFReporter;
+import org.sonar.report.pdf.PDFResources;
+import org.sonar.report.pdf.entity.exception.ReportException;
+import org.sonar.report.pdf.util.Credentials;
+import org.sonar.report.pdf.util.FileUploader;
+import org.sonar.report.pdf.util.ReportMetrics;
+
+/**
+ * Background worker generating the report of a {@link ReportJob}. It runs in
+ * its own JVM, so that the analysis can end while the report is generated.
+ * The password is given by the {@link #PASSWORD_ENV} environment variable.
+ * The worker gets the heap and JVM options of the analysis and records its
+ * pid and a heartbeat in the job state. It outlives the analysis, so CI
+ * servers killing the processes left by a build (Jenkins ProcessTreeKiller)
+ * kill it too: the job is then reported as failed once stale.
+ */
+public final class ReportJobWorker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReportJobWorker.class);
+
+    public static final String PASSWORD_ENV = "SONAR_PDF_PASSWORD";
+
+    private ReportJobWorker() {
+    }
+
+    /**
+     * Start a worker for a job
+     * 
+     * @param job
+     *            stored job
+     * @param password
+     *            password, may be null
+     * @param logFile
+     *            file receiving the output of the worker
+     * @return worker process
+     * @throws IOException
+     *             IOException
+     */
+    public static Process start(final ReportJob job, final String password, final File logFile)
+            throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+        command.addAll(getJvmOptions());
+        command.add("-cp");
+        command.add(getClasspath());
+        command.add(ReportJobWorker.class.getName());
+        command.add(job.getFile().getAbsolutePath());
+        ProcessBuilder builder = new ProcessBuilder(command);
+        if (password != null) {
+            builder.environment().put(PASSWORD_ENV, password);
+        }
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(ProcessBuilder.Redirect.appendTo(logFile));
+        return builder.start();
+    }
+
+    /**
+     * Generate the report of a job, upload it if asked and persist the final
+     * state of the job
+     * 
+     * @param job
+     *            job
+     * @param password
+     *            password, may be null
+     * @return true if the report was generated
+     * @throws IOException
+     *             IOException if the job state can not be stored
+     */
+    public static boolean run(final ReportJob job, final String password) throws IOException {
+        job.setPid(getPid()).start().store();
+        ScheduledExecutorService heartbeat = startHeartbeat(job);
+        ReportMetrics metrics = new ReportMetrics();
+        String error = null;
+        try {
+            Properties config = PDFGenerator.loadConfig(job.getSonarHostUrl(), job.getConfigProperties());
+            Credentials credentials = new Credentials(config.getProperty(PDFResources.SONAR_BASE_URL),
+                    job.getUsername(), password);
+            PDFReporter reporter = PDFGenerator.createReporter(job.getReportType(), credentials,
+                    job.getProjectKey(), config, PDFGenerator.loadLang());
+            reporter.setMetrics(metrics);
+            PDFGenerator.writeReport(reporter.getReport(), job.getReport());
+            if (job.isUpload()) {
+                job.setUploaded(FileUploader.upload(job.getReport(),
+                        credentials.getUrl() + PDFResources.PDF_REPORT_STORE_PATH, job.getUsername(), password,
+                        job.isUploadGzip(), metrics));
+            }
+        } catch (ReportException | IOException | RuntimeException e) {
+            LOG.error("Problem generating PDF file.", e);
+            error = e.toString();
+        }
+        if (job.getMetrics() != null) {
+            try {
+                metrics.writeJson(job.getMetrics());
+            } catch (IOException e) {
+                LOG.error("Can not write PDF report metrics", e);
+            }
+        }
+        heartbeat.shutdownNow();
+        try {
+            heartbeat.awaitTermination(ReportJob.HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (job) {
+            job.finish(error).store();
+        }
+        LOG.info(job.toString());
+        return error == null;
+    }
+
+    /**
+     * Store the job state periodically, so that a worker which crashed or was
+     * killed can be told from a slow one. A heartbeat still running when the
+     * job is finished does not store it again.
+     */
+    private static ScheduledExecutorService startHeartbeat(final ReportJob job) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, "pdf-report-heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    synchronized (job) {
+                        if (!job.isFinished()) {
+                            job.heartbeat().store();
+                        }
+                    }
+                } catch (IOException e) {
+                    LOG.warn("Can not store PDF report job heartbeat", e);
+                }
+            }
+        }, ReportJob.HEARTBEAT_INTERVAL_MS, ReportJob.HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        return executor;
+    }
+
+    /**
+     * @return process id of this JVM, or its name if the JVM does not give it
+     */
+    private static String getPid() {
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        int at = name.indexOf('@');
+        return at > 0 ? name.substring(0, at) : name;
+    }
+
+    /**
+     * Heap, GC and system property options of this JVM. Agents and debugger
+     * options are not forwarded, as they would clash with the ones of the
+     * analysis, nor properties holding credentials, as the command line of a
+     * process is visible to other users.
+     */
+    private static List<String> getJvmOptions() {
+        List<String> options = new ArrayList<>();
+        for (String option : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            String lower = option.toLowerCase();
+            if (lower.startsWith("-xdebug") || lower.startsWith("-xrun") || lower.startsWith("-xbootclasspath")
+                    || lower.contains("password") || lower.contains("token") || lower.contains("login")) {
+                continue;
+            }
+            if (option.startsWith("-X") || option.startsWith("-D")) {
+                options.add(option);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Classpath of the worker: the plugin jar, the libraries it bundles and
+     * the APIs the analysis provides to it. The class loaders of the analysis
+     * are left out, so that its own libraries can not shadow the ones of the
+     * plugin.
+     */
+    private static String getClasspath() {
+        Set<String> entries = new LinkedHashSet<>();
+        addEntry(entries, ReportJobWorker.class.getProtectionDomain().getCodeSource().getLocation());
+        ClassLoader loader = ReportJobWorker.class.getClassLoader();
+        if (loader == ClassLoader.getSystemClassLoader()) {
+            // not loaded as a plugin, but from a classpath (tests, tools)
+            for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+                entries.add(new File(entry).getAbsolutePath());
+            }
+        } else if (loader instanceof URLClassLoader) {
+            for (URL url : ((URLClassLoader) loader).getURLs()) {
+                addEntry(entries, url);
+            }
+        }
+        addEntry(entries, LoggerFactory.class.getProtectionDomain().getCodeSource().getLocation());
+        addEntry(entries, FileSystem.class.getProtectionDomain().getCodeSource().getLocation());
+        StringBuilder classpath = new StringBuilder();
+        for (String entry : entries) {
+            if (classpath.length() > 0) {
+                classpath.append(File.pathSeparatorChar);
+            }
+            classpath.append(entry);
+        }
+        return classpath.toString();
+    }
+
+    private static void addEntry(final Set<String> entries, final URL url) {
+        if (url != null && "file".equals(url.getProtocol())) {
+            try {
+                entries.add(new File(url.toURI()).getAbsolutePath());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                LOG.debug("Ignoring classpath entry " + url, e);
+            }
+        }
+    }
+
+    /**
+     * Run the job of the given state file
+     * 
+     * @param args
+     *            path of the job state file
+     * @throws IOException
+     *             IOException
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 1) {
+            LOG.error("Usage: ReportJobWorker <job file>");
+            System.exit(2);
+        }
+        boolean success = run(ReportJob.load(new File(args[0])), System.getenv(PASSWORD_ENV));
+        System.exit(success ? 0 : 1);
+    }
+}
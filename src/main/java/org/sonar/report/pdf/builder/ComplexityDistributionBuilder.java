@@ -19,14 +19,11 @@
  */
 package org.sonar.report.pdf.builder;
 
-import java.io.IOException;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.sonar.report.pdf.DistributionChart;
 import org.sonar.report.pdf.entity.ComplexityDistribution;
 
-import com.lowagie.text.BadElementException;
 import com.lowagie.text.Image;
+import com.lowagie.text.pdf.PdfContentByte;
 
 /**
  * Builder for complexity distribution
@@ -39,49 +36,57 @@ public class ComplexityDistributionBuilder extends AbstractBuilder {
      */
     private static final long serialVersionUID = -9157374883309511241L;
 
-    private static final String CHART_END_PATH = "&chorgv=y&chcaaml=0.05&chseamu=0.2&chins=5&chcaamu=0.05&chcav=y&chc=777777,777777,777777,777777,777777,777777,777777";
-
-    private static final String CHART_Y_PATH = "&chov=y&chrav=y&chv=";
-
-    private static final String CHART_START_PATH = "/chart?cht=cvb&chdi=300x200&chca=";
-
-    private static final Logger LOG = LoggerFactory.getLogger(ComplexityDistributionBuilder.class);
+    private static final String LABEL_SUFFIX = "+";
 
     private static ComplexityDistributionBuilder builder;
 
-    private String sonarBaseUrl;
-
-    private ComplexityDistributionBuilder(final String sonarBaseUrl) {
-        this.sonarBaseUrl = sonarBaseUrl;
+    private ComplexityDistributionBuilder() {
+        super();
     }
 
-    public static ComplexityDistributionBuilder getInstance(final String sonarBaseUrl) {
+    public static ComplexityDistributionBuilder getInstance() {
         if (builder == null) {
-            builder = new ComplexityDistributionBuilder(sonarBaseUrl);
+            builder = new ComplexityDistributionBuilder();
         }
 
         return builder;
     }
 
     /**
-     * Creates a image for ComplexityDistribution
+     * Creates a image for ComplexityDistribution. The chart is drawn locally,
+     * as a template of the given content.
      * 
      * @param complexityDistribution
      *            complexity representation
+     * @param cb
+     *            content of the target document
      * @return Image
      */
-    public Image getGraphic(final ComplexityDistribution complexityDistribution) {
+    public Image getGraphic(final ComplexityDistribution complexityDistribution, final PdfContentByte cb) {
         Image image = null;
-        try {
-            if (complexityDistribution.getyValues().length != 0) {
-                image = Image.getInstance(sonarBaseUrl + CHART_START_PATH + complexityDistribution.formatXValues()
-                        + CHART_Y_PATH + complexityDistribution.formatYValues() + CHART_END_PATH);
+        String[] xValues = complexityDistribution.getxValues();
+        String[] yValues = complexityDistribution.getyValues();
+        if (yValues.length != 0 && yValues[0] != null) {
+            String[] labels = new String[xValues.length];
+            double[] values = new double[yValues.length];
+            for (int i = 0; i < yValues.length; i++) {
+                labels[i] = xValues[i] + LABEL_SUFFIX;
+                values[i] = parseValue(yValues[i]);
+            }
+            image = new DistributionChart(labels, values).createImage(cb);
+            if (image != null) {
                 image.setAlignment(Image.ALIGN_MIDDLE);
             }
-        } catch (BadElementException | IOException e) {
-            LOG.error("Can not generate complexity distribution image", e);
         }
         return image;
     }
 
+    private static double parseValue(final String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
 }
@@ -25,6 +25,8 @@ import java.util.List;
 import org.sonar.report.pdf.entity.FileInfo;
 import org.sonar.report.pdf.entity.FileInfoTypes;
 import org.sonar.report.pdf.util.MetricKeys;
+import org.sonarqube.ws.model.Component;
+import org.sonarqube.ws.model.ComponentMeasure;
 import org.sonarqube.ws.model.Resource;
 
 /**
@@ -89,4 +91,32 @@ public class FileInfoBuilder extends AbstractBuilder {
         }
     }
 
+    /**
+     * Same as {@link #initFromNode(FileInfo, Resource, FileInfoTypes)}, for a
+     * file given by the measures web services
+     * 
+     * @param fileNode
+     *            component of the file, with its measures
+     * @param type
+     *            Type of content
+     */
+    public static void initFromNode(final FileInfo fileInfo, final Component fileNode, final FileInfoTypes type) {
+        fileInfo.setKey(fileNode.getKey());
+        fileInfo.setName(fileNode.getName());
+
+        if (type == FileInfoTypes.VIOLATIONS_CONTENT) {
+            fileInfo.setViolations(formatValue(fileNode, MetricKeys.VIOLATIONS));
+        } else if (type == FileInfoTypes.CCN_CONTENT) {
+            fileInfo.setComplexity(formatValue(fileNode, MetricKeys.COMPLEXITY));
+        } else if (type == FileInfoTypes.DUPLICATIONS_CONTENT) {
+            fileInfo.setDuplicatedLines(formatValue(fileNode, MetricKeys.DUPLICATED_LINES));
+        }
+    }
+
+    private static String formatValue(final Component fileNode, final MetricKeys metric) {
+        ComponentMeasure measure = fileNode.getMeasure(metric.getKey());
+        Double value = measure == null ? null : measure.getNumericValue();
+        return value == null ? null : MeasureBuilder.formatValue(MeasureBuilder.INT_TYPE, value);
+    }
+
 }
@@ -0,0 +1,377 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.builder;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.report.pdf.entity.FileInfo;
+import org.sonar.report.pdf.entity.FileInfoTypes;
+import org.sonar.report.pdf.entity.Project;
+import org.sonar.report.pdf.entity.exception.ReportException;
+import org.sonar.report.pdf.util.MetricKeys;
+import org.sonarqube.ws.client.WSClient;
+import org.sonarqube.ws.client.services.Query;
+import org.sonarqube.ws.model.Component;
+import org.sonarqube.ws.model.ComponentMeasure;
+import org.sonarqube.ws.model.ComponentTree;
+import org.sonarqube.ws.query.ComponentTreeQuery;
+
+/**
+ * Builder for the most violated, most complex and most duplicated files of a
+ * project tree. The files of the whole tree are read once, page by page, and
+ * each file is ranked in its module and in all the ancestors of its module,
+ * keeping only the top files of each ranking. When reading the tree takes
+ * more requests than asking the server for the top files of each ranking, the
+ * server sorts the files instead.
+ *
+ */
+public class FileRankingBuilder extends AbstractBuilder {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 6251096637014588425L;
+
+    private static final Logger LOG = LoggerFactory.getLogger("org.sonar.PDF");
+
+    /**
+     * Qualifiers of the files and of the unit test files
+     */
+    private static final String[] FILE_QUALIFIERS = { "FIL", "UTS" };
+
+    private final WSClient sonar;
+
+    private final int tableLimit;
+
+    /**
+     * Ranked types, and the metric of each type
+     */
+    private final FileInfoTypes[] types;
+    private final String[] metrics;
+
+    /**
+     * Constructor of a builder of all the rankings
+     * 
+     * @param sonar
+     *            sonar
+     * @param tableLimit
+     *            number of files of each ranking
+     */
+    public FileRankingBuilder(final WSClient sonar, final int tableLimit) {
+        this(sonar, tableLimit, EnumSet.allOf(FileInfoTypes.class));
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param sonar
+     *            sonar
+     * @param tableLimit
+     *            number of files of each ranking
+     * @param types
+     *            rankings to initialize, the other ones are left empty
+     */
+    public FileRankingBuilder(final WSClient sonar, final int tableLimit, final Collection<FileInfoTypes> types) {
+        this.sonar = sonar;
+        this.tableLimit = tableLimit;
+        this.types = types.toArray(new FileInfoTypes[types.size()]);
+        this.metrics = new String[this.types.length];
+        for (int i = 0; i < metrics.length; i++) {
+            metrics[i] = getMetric(this.types[i]).getKey();
+        }
+    }
+
+    private static MetricKeys getMetric(final FileInfoTypes type) {
+        switch (type) {
+        case VIOLATIONS_CONTENT:
+            return MetricKeys.VIOLATIONS;
+        case CCN_CONTENT:
+            return MetricKeys.COMPLEXITY;
+        default:
+            return MetricKeys.DUPLICATED_LINES;
+        }
+    }
+
+    /**
+     * Initialize the most violated, most complex and most duplicated files of
+     * some projects of a tree
+     * 
+     * @param root
+     *            root project of the tree, with its subprojects
+     * @param projects
+     *            projects of the tree to initialize
+     * @throws ReportException
+     *             ReportException
+     */
+    public void initRankings(final Project root, final Collection<Project> projects) throws ReportException {
+        Set<Project> ranked = Collections.newSetFromMap(new IdentityHashMap<Project, Boolean>());
+        ranked.addAll(projects);
+        Map<String, List<Ranking>> rankingsByModule = new HashMap<>();
+        List<Ranking> rankings = new ArrayList<>();
+        initRankings(root, Collections.<Ranking> emptyList(), ranked, rankingsByModule, rankings);
+        if (rankings.isEmpty() || types.length == 0) {
+            return;
+        }
+
+        LOG.info("Retrieving " + Arrays.toString(types) + " files of " + root.getKey());
+        ComponentTreeQuery query = ComponentTreeQuery.create(root.getKey()).metricKeys(metrics)
+                .strategy(ComponentTreeQuery.STRATEGY_LEAVES).qualifiers(FILE_QUALIFIERS)
+                .pageSize(Query.MAX_PAGE_SIZE);
+        int page = 1;
+        ComponentTree tree = sonar.find(query.pageIndex(page));
+        Integer pages = tree == null || tree.getPaging() == null ? null : tree.getPaging().pages();
+        if (pages != null && pages - page > metrics.length * rankings.size()) {
+            LOG.debug(pages + " pages of files, the top files of " + rankings.size() + " projects are sorted by the"
+                    + " server");
+            initTopFiles(rankings);
+        } else {
+            int position = 0;
+            while (tree != null) {
+                for (Component file : tree.getComponents()) {
+                    List<Ranking> fileRankings = rankingsByModule.get(getModuleKey(file.getKey(), rankingsByModule,
+                            root.getKey()));
+                    for (int i = 0; i < metrics.length; i++) {
+                        Double value = getValue(file, metrics[i]);
+                        if (value != null) {
+                            RankedFile rankedFile = new RankedFile(file, value, position);
+                            for (Ranking ranking : fileRankings) {
+                                ranking.offer(i, rankedFile);
+                            }
+                        }
+                    }
+                    position++;
+                }
+                if (tree.isLastPage()) {
+                    break;
+                }
+                page++;
+                tree = sonar.find(query.pageIndex(page));
+            }
+            LOG.debug(position + " files ranked in " + rankings.size() + " projects");
+        }
+
+        for (Ranking ranking : rankings) {
+            ranking.apply();
+        }
+    }
+
+    /**
+     * Fill the rankings with the top files given by the server, sorted on
+     * each metric
+     * 
+     * @param rankings
+     *            rankings
+     * @throws ReportException
+     *             ReportException
+     */
+    private void initTopFiles(final List<Ranking> rankings) throws ReportException {
+        for (Ranking ranking : rankings) {
+            for (int i = 0; i < metrics.length; i++) {
+                ComponentTreeQuery query = ComponentTreeQuery.createForTop(ranking.project.getKey(), metrics[i],
+                        tableLimit).strategy(ComponentTreeQuery.STRATEGY_LEAVES).qualifiers(FILE_QUALIFIERS);
+                ComponentTree tree = sonar.find(query);
+                if (tree == null) {
+                    continue;
+                }
+                int position = 0;
+                for (Component file : tree.getComponents()) {
+                    Double value = getValue(file, metrics[i]);
+                    if (value != null) {
+                        ranking.offer(i, new RankedFile(file, value, position));
+                    }
+                    position++;
+                }
+            }
+        }
+    }
+
+    private static Double getValue(final Component file, final String metricKey) {
+        ComponentMeasure measure = file.getMeasure(metricKey);
+        return measure == null ? null : measure.getNumericValue();
+    }
+
+    /**
+     * Create the rankings of a module and of its children
+     * 
+     * @param module
+     *            module
+     * @param ancestorRankings
+     *            rankings of the ancestors of the module
+     * @param ranked
+     *            projects to initialize
+     * @param rankingsByModule
+     *            rankings a file of each module is offered to
+     * @param rankings
+     *            all the rankings
+     */
+    private void initRankings(final Project module, final List<Ranking> ancestorRankings, final Set<Project> ranked,
+            final Map<String, List<Ranking>> rankingsByModule, final List<Ranking> rankings) {
+        List<Ranking> moduleRankings = new ArrayList<>(ancestorRankings);
+        if (ranked.contains(module)) {
+            Ranking ranking = new Ranking(module, tableLimit, types);
+            moduleRankings.add(ranking);
+            rankings.add(ranking);
+        }
+        rankingsByModule.put(module.getKey(), moduleRankings);
+        if (module.getSubprojects() != null) {
+            for (Project child : module.getSubprojects()) {
+                initRankings(child, moduleRankings, ranked, rankingsByModule, rankings);
+            }
+        }
+    }
+
+    /**
+     * Get the module of a file. The key of a file is the key of its module
+     * followed by the path of the file, the longest known module key prefixing
+     * the key of the file is used.
+     * 
+     * @param fileKey
+     *            key of the file
+     * @param modules
+     *            known modules
+     * @param rootKey
+     *            key of the root project, used when no module matches
+     * @return key of the module
+     */
+    static String getModuleKey(final String fileKey, final Map<String, ?> modules, final String rootKey) {
+        int index = fileKey.lastIndexOf(':');
+        while (index > 0) {
+            String moduleKey = fileKey.substring(0, index);
+            if (modules.containsKey(moduleKey)) {
+                return moduleKey;
+            }
+            index = fileKey.lastIndexOf(':', index - 1);
+        }
+        return rootKey;
+    }
+
+    /**
+     * File with the value of one of the ranked metrics
+     *
+     */
+    private static class RankedFile {
+        private final Component file;
+        private final double value;
+        private final int position;
+
+        RankedFile(final Component file, final double value, final int position) {
+            this.file = file;
+            this.value = value;
+            this.position = position;
+        }
+    }
+
+    /**
+     * Orders files by increasing value. Files with the same value are in the
+     * reverse order of the server, so that the first files of the server are
+     * kept.
+     *
+     */
+    private static class RankedFileComparator implements Comparator<RankedFile>, Serializable {
+        /**
+         * 
+         */
+        private static final long serialVersionUID = -4330127357394457520L;
+
+        @Override
+        public int compare(final RankedFile file1, final RankedFile file2) {
+            int result = Double.compare(file1.value, file2.value);
+            if (result == 0) {
+                result = Integer.compare(file2.position, file1.position);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Top files of a project for each ranked metric, in bounded heaps
+     *
+     */
+    private static class Ranking {
+        private static final Comparator<RankedFile> COMPARATOR = new RankedFileComparator();
+
+        private final Project project;
+        private final int limit;
+        private final FileInfoTypes[] types;
+        private final List<PriorityQueue<RankedFile>> heaps;
+
+        Ranking(final Project project, final int limit, final FileInfoTypes[] types) {
+            this.project = project;
+            this.limit = limit;
+            this.types = types;
+            heaps = new ArrayList<>(types.length);
+            for (int i = 0; i < types.length; i++) {
+                heaps.add(new PriorityQueue<RankedFile>(limit + 1, COMPARATOR));
+            }
+        }
+
+        void offer(final int metric, final RankedFile rankedFile) {
+            PriorityQueue<RankedFile> heap = heaps.get(metric);
+            heap.add(rankedFile);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+
+        void apply() {
+            for (int i = 0; i < types.length; i++) {
+                switch (types[i]) {
+                case VIOLATIONS_CONTENT:
+                    project.setMostViolatedFiles(getFiles(i));
+                    break;
+                case CCN_CONTENT:
+                    project.setMostComplexFiles(getFiles(i));
+                    break;
+                default:
+                    project.setMostDuplicatedFiles(getFiles(i));
+                }
+            }
+        }
+
+        private List<FileInfo> getFiles(final int metric) {
+            List<RankedFile> rankedFiles = new ArrayList<>(heaps.get(metric));
+            Collections.sort(rankedFiles, Collections.reverseOrder(COMPARATOR));
+            List<FileInfo> fileInfoList = new LinkedList<>();
+            for (RankedFile rankedFile : rankedFiles) {
+                FileInfo fileInfo = new FileInfo();
+                FileInfoBuilder.initFromNode(fileInfo, rankedFile.file, types[metric]);
+                if (fileInfo.isContentSet(types[metric])) {
+                    fileInfoList.add(fileInfo);
+                }
+            }
+            return fileInfoList;
+        }
+    }
+}
@@ -19,6 +19,7 @@
  */
 package org.sonar.report.pdf.builder;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -27,6 +28,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.utils.DateUtils;
 import org.sonar.report.pdf.entity.exception.ReportException;
+import org.sonar.report.pdf.util.ReportMetrics;
 import org.sonarqube.ws.client.WSClient;
 import org.sonarqube.ws.client.services.AbstractQuery;
 import org.sonarqube.ws.model.MeasureHisto;
@@ -55,8 +57,8 @@ public class HistoryBuilder extends AbstractBuilder {
         this.sonar = sonar;
     }
 
-    public static HistoryBuilder getInstance(final WSClient sonar, final String projectKey) {
-        if (builder == null) {
+    public static synchronized HistoryBuilder getInstance(final WSClient sonar, final String projectKey) {
+        if (builder == null || builder.sonar != sonar || !builder.projectKey.equals(projectKey)) {
             builder = new HistoryBuilder(sonar, projectKey);
         }
         return builder;
@@ -72,16 +74,37 @@ public class HistoryBuilder extends AbstractBuilder {
      *             ReportException
      */
     public Integer computeTrend(org.sonarqube.ws.model.Measure measureNode) throws ReportException {
+        return computeTrend(measureNode.getKey(), measureNode.getValue());
+    }
+
+    /**
+     * Compute the trend of a measure, comparing its value with the one of 30
+     * days ago
+     * 
+     * @param metricKey
+     *            metric of the measure
+     * @param currentValue
+     *            current value of the measure
+     * @return Integer
+     * @throws ReportException
+     *             ReportException
+     */
+    public Integer computeTrend(final String metricKey, final Double currentValue) throws ReportException {
         Integer trend = 0;
-        Double currentValue = measureNode.getValue();
         TimeMachineQuery query = TimeMachineQuery.create();
-        query.metrics(measureNode.getKey());
+        query.metrics(metricKey);
         query.format(AbstractQuery.JSON_FORMAT);
         query.resource(projectKey);
         query.fromDateTime(DateUtils.addDays(new Date(), -30));
-        List<TimeMachines> histos = sonar.findAll(query);
+        List<TimeMachines> histos;
+        ReportMetrics.Timer timer = sonar.getMetrics().start(ReportMetrics.FETCH_TRENDS);
+        try {
+            histos = sonar.findAll(query);
+        } finally {
+            timer.stop();
+        }
         if (histos != null && !histos.isEmpty()) {
-            List<MeasureHisto> measures = histos.get(0).getCells();
+            List<MeasureHisto> measures = new ArrayList<>(histos.get(0).getCells());
             Collections.sort(measures);
             Double oldValue = 0.0;
             if (!measures.isEmpty()) {
@@ -91,7 +114,7 @@ public class HistoryBuilder extends AbstractBuilder {
 
                         oldValue = Double.valueOf(strVal);
                     } catch (NumberFormatException e) {
-                        LOG.debug("Error formatting value " + strVal + " for key" + measureNode.getKey(), e);
+                        LOG.debug("Error formatting value " + strVal + " for key" + metricKey, e);
                     }
                 }
             }
@@ -0,0 +1,352 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.builder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.report.pdf.entity.exception.ReportException;
+import org.sonarqube.ws.client.WSClient;
+import org.sonarqube.ws.client.services.Query;
+import org.sonarqube.ws.model.Facet;
+import org.sonarqube.ws.model.Issue;
+import org.sonarqube.ws.model.Issues;
+import org.sonarqube.ws.query.IssueQuery;
+
+/**
+ * Crawler of all the issues of a component with a given severity. The issues
+ * search does not go further than {@link #WINDOW} results, so a search over
+ * it is split in partitions: creation date windows first, then modules, then
+ * directories, until each partition fits in the window. Partitions and their
+ * pages are fetched in parallel.
+ *
+ */
+public class IssueCrawler {
+
+    private static final Logger LOG = LoggerFactory.getLogger("org.sonar.PDF");
+
+    /**
+     * Maximum number of results of an issues search
+     */
+    public static final int WINDOW = 10000;
+
+    private static final String CREATION_DATE_SORT = "CREATION_DATE";
+    private static final String MODULES_FACET = "moduleUuids";
+    private static final String DIRECTORIES_FACET = "directories";
+
+    /**
+     * Shortest date window which is split, the dates of the search being in
+     * seconds
+     */
+    private static final long MIN_SPLIT_MILLIS = 2000;
+
+    private static final long SECOND_MILLIS = 1000;
+
+    private final WSClient sonar;
+    private final int threads;
+
+    /**
+     * Receiver of the crawled issues. Pages are given one at a time, in no
+     * particular order.
+     */
+    public interface IssueHandler {
+        void handle(List<Issue> issues) throws ReportException;
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param sonar
+     *            sonar
+     * @param threads
+     *            number of searches at once
+     */
+    public IssueCrawler(final WSClient sonar, final int threads) {
+        this.sonar = sonar;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Crawl the issues of a component with a severity
+     * 
+     * @param componentKey
+     *            key of the component
+     * @param severity
+     *            severity
+     * @param handler
+     *            receiver of the issues
+     * @return number of crawled issues
+     * @throws ReportException
+     *             ReportException
+     */
+    public int crawl(final String componentKey, final String severity, final IssueHandler handler)
+            throws ReportException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            return crawl(new Partition(componentKey, severity), handler, executor);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReportException("Issues crawl interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Search the first page of each pending partition, which gives its
+     * number of issues. Partitions over the window are split and searched
+     * again, the pages of the others are searched while splitting goes on.
+     */
+    private int crawl(final Partition root, final IssueHandler handler, final ExecutorService executor)
+            throws ReportException, InterruptedException {
+        int count = 0;
+        int partitions = 0;
+        List<Future<Integer>> pages = new ArrayList<>();
+        List<Partition> pending = Collections.singletonList(root);
+        while (!pending.isEmpty()) {
+            List<Future<Issues>> firstPages = new ArrayList<>();
+            for (final Partition partition : pending) {
+                firstPages.add(executor.submit(new Callable<Issues>() {
+                    @Override
+                    public Issues call() throws ReportException {
+                        return sonar.find(partition.createQuery(1));
+                    }
+                }));
+            }
+            List<Partition> next = new ArrayList<>();
+            for (int i = 0; i < pending.size(); i++) {
+                Partition partition = pending.get(i);
+                Issues firstPage = get(firstPages.get(i));
+                int total = getTotal(firstPage);
+                List<Partition> parts = total > WINDOW ? partition.split(firstPage) : Collections
+                        .<Partition> emptyList();
+                if (!parts.isEmpty()) {
+                    next.addAll(parts);
+                    continue;
+                }
+                if (total > WINDOW) {
+                    LOG.warn(total + " issues in " + partition + ", only the first " + WINDOW + " are read");
+                }
+                partitions++;
+                count += handle(handler, firstPage);
+                int last = Math.min(total, WINDOW);
+                for (int page = 2; (page - 1) * Query.MAX_PAGE_SIZE < last; page++) {
+                    pages.add(submitPage(executor, partition, page, handler));
+                }
+            }
+            pending = next;
+        }
+        for (Future<Integer> page : pages) {
+            count += get(page);
+        }
+        LOG.debug(count + " " + root.severity + " issues of " + root.componentKey + " read in " + partitions
+                + " partitions");
+        return count;
+    }
+
+    private Future<Integer> submitPage(final ExecutorService executor, final Partition partition, final int page,
+            final IssueHandler handler) {
+        return executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() throws ReportException {
+                return handle(handler, sonar.find(partition.createQuery(page)));
+            }
+        });
+    }
+
+    private static int handle(final IssueHandler handler, final Issues issues) throws ReportException {
+        if (issues == null || issues.getIssues().isEmpty()) {
+            return 0;
+        }
+        synchronized (handler) {
+            handler.handle(issues.getIssues());
+        }
+        return issues.getIssues().size();
+    }
+
+    private static int getTotal(final Issues issues) {
+        if (issues == null) {
+            return 0;
+        }
+        Integer total = issues.getTotal();
+        return total == null ? issues.getIssues().size() : total;
+    }
+
+    private static <T> T get(final Future<T> future) throws ReportException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ReportException) {
+                throw (ReportException) e.getCause();
+            }
+            throw new ReportException("Issues search failed", e.getCause());
+        }
+    }
+
+    /**
+     * Part of the search space: issues of a component with a severity,
+     * optionally created in a date window, in a module and in a directory
+     *
+     */
+    private static class Partition {
+        private final String componentKey;
+        private final String severity;
+        private Date createdAfter;
+        private Date createdBefore;
+        private String moduleUuid;
+        private String directory;
+
+        Partition(final String componentKey, final String severity) {
+            this.componentKey = componentKey;
+            this.severity = severity;
+        }
+
+        private Partition copy() {
+            Partition partition = new Partition(componentKey, severity);
+            partition.createdAfter = createdAfter;
+            partition.createdBefore = createdBefore;
+            partition.moduleUuid = moduleUuid;
+            partition.directory = directory;
+            return partition;
+        }
+
+        /**
+         * Query of a page, sorted by creation date so that the first issue of
+         * the first page gives the start of the date window. The first page
+         * asks for the facet used to split the partition when the date window
+         * can not be split any more.
+         */
+        IssueQuery createQuery(final int page) {
+            IssueQuery query = IssueQuery.create().componentKeys(componentKey).severities(severity)
+                    .sort(CREATION_DATE_SORT).asc(true).pageSize(Query.MAX_PAGE_SIZE).pageIndex(page);
+            if (createdAfter != null) {
+                query.createdAfter(createdAfter);
+            }
+            if (createdBefore != null) {
+                query.createdBefore(createdBefore);
+            }
+            if (moduleUuid != null) {
+                query.moduleUuids(moduleUuid);
+            }
+            if (directory != null) {
+                query.directories(directory);
+            }
+            if (page == 1 && createdAfter != null && !isDateSplittable(createdAfter.getTime())) {
+                String facet = getFacet();
+                if (facet != null) {
+                    query.facets(facet);
+                }
+            }
+            return query;
+        }
+
+        private String getFacet() {
+            if (moduleUuid == null) {
+                return MODULES_FACET;
+            }
+            if (directory == null) {
+                return DIRECTORIES_FACET;
+            }
+            return null;
+        }
+
+        private long getEnd() {
+            if (createdBefore != null) {
+                return createdBefore.getTime();
+            }
+            long now = System.currentTimeMillis();
+            return now - now % SECOND_MILLIS + SECOND_MILLIS;
+        }
+
+        private boolean isDateSplittable(final long start) {
+            return getEnd() - start >= MIN_SPLIT_MILLIS;
+        }
+
+        /**
+         * Split the partition
+         * 
+         * @param firstPage
+         *            first page of the partition
+         * @return parts of the partition, empty if it can not be split
+         */
+        List<Partition> split(final Issues firstPage) {
+            List<Partition> parts = new ArrayList<>();
+            long start;
+            if (createdAfter != null) {
+                start = createdAfter.getTime();
+            } else if (!firstPage.getIssues().isEmpty() && firstPage.getIssues().get(0).getCreationDate() != null) {
+                start = firstPage.getIssues().get(0).getCreationDate().getTime();
+                start -= start % SECOND_MILLIS;
+            } else {
+                return parts;
+            }
+            if (isDateSplittable(start)) {
+                long middle = start + (getEnd() - start) / 2;
+                middle -= middle % SECOND_MILLIS;
+                Partition before = copy();
+                before.createdAfter = new Date(start);
+                before.createdBefore = new Date(middle);
+                Partition after = copy();
+                after.createdAfter = new Date(middle);
+                parts.add(before);
+                parts.add(after);
+            } else if (createdAfter == null) {
+                // searched again with the facet of the next split
+                Partition window = copy();
+                window.createdAfter = new Date(start);
+                parts.add(window);
+            } else {
+                String facetProperty = getFacet();
+                Facet facet = facetProperty == null ? null : firstPage.getFacet(facetProperty);
+                if (facet != null) {
+                    for (Facet.Value value : facet.getValues()) {
+                        if (value.getCount() != null && value.getCount() > 0) {
+                            Partition part = copy();
+                            if (MODULES_FACET.equals(facetProperty)) {
+                                part.moduleUuid = value.getVal();
+                            } else {
+                                part.directory = value.getVal();
+                            }
+                            parts.add(part);
+                        }
+                    }
+                }
+            }
+            return parts;
+        }
+
+        @Override
+        public String toString() {
+            return componentKey + " " + severity + (createdAfter == null ? "" : " from " + createdAfter)
+                    + (createdBefore == null ? "" : " to " + createdBefore)
+                    + (moduleUuid == null ? "" : " module " + moduleUuid)
+                    + (directory == null ? "" : " directory " + directory);
+        }
+    }
+}
@@ -19,7 +19,11 @@
  */
 package org.sonar.report.pdf.builder;
 
+import java.text.NumberFormat;
+import java.util.Locale;
+
 import org.sonar.report.pdf.entity.Measure;
+import org.sonarqube.ws.model.ComponentMeasure;
 
 /**
  * Builder for a measure
@@ -32,6 +36,11 @@ public class MeasureBuilder extends AbstractBuilder {
      */
     private static final long serialVersionUID = -4923945826578916614L;
 
+    public static final String INT_TYPE = "INT";
+
+    private static final int MINUTES_PER_HOUR = 60;
+    private static final int HOURS_PER_DAY = 8;
+
     private MeasureBuilder() {
         super();
     }
@@ -65,4 +74,82 @@ public class MeasureBuilder extends AbstractBuilder {
         return measure;
     }
 
+    /**
+     * Init measure from a node of the measures web services. Measures of data
+     * types, or without a numeric value, only have a data value.
+     * 
+     * @param measureNode
+     *            measure
+     * @param type
+     *            type of the metric, or null if it is unknown
+     * @return Measure
+     */
+    public static Measure initFromNode(final ComponentMeasure measureNode, final String type) {
+        Measure measure = new Measure();
+        measure.setKey(measureNode.getMetric());
+
+        Double valueNode = isDataType(type) ? null : measureNode.getNumericValue();
+        if (valueNode != null) {
+            measure.setFormatValue(formatValue(type, valueNode));
+            measure.setValue(String.valueOf(valueNode));
+            measure.setTextValue(String.valueOf(valueNode));
+        } else {
+            measure.setTextValue("");
+            measure.setDataValue(measureNode.getValue());
+        }
+        return measure;
+    }
+
+    private static boolean isDataType(final String type) {
+        return "DATA".equals(type) || "DISTRIB".equals(type) || "STRING".equals(type) || "LEVEL".equals(type);
+    }
+
+    /**
+     * Format a value as the server does for its metric type
+     * 
+     * @param type
+     *            type of the metric, or null if it is unknown
+     * @param value
+     *            value
+     * @return formatted value
+     */
+    public static String formatValue(final String type, final double value) {
+        String valueType = type;
+        if (valueType == null) {
+            valueType = value == Math.rint(value) ? INT_TYPE : "FLOAT";
+        }
+        switch (valueType) {
+        case "PERCENT":
+            return String.format(Locale.ENGLISH, "%.1f%%", value);
+        case "FLOAT":
+            return String.format(Locale.ENGLISH, "%.1f", value);
+        case "MILLISEC":
+            return NumberFormat.getIntegerInstance(Locale.ENGLISH).format(value) + " ms";
+        case "WORK_DUR":
+            return formatDuration((long) value);
+        case "RATING":
+            return value >= 1 && value <= 5 ? String.valueOf((char) ('A' + (int) value - 1))
+                    : NumberFormat.getIntegerInstance(Locale.ENGLISH).format(value);
+        default:
+            return NumberFormat.getIntegerInstance(Locale.ENGLISH).format(value);
+        }
+    }
+
+    /**
+     * Format a duration in minutes with its two largest units, days being
+     * working days
+     */
+    private static String formatDuration(final long minutes) {
+        long days = minutes / (HOURS_PER_DAY * MINUTES_PER_HOUR);
+        long hours = minutes % (HOURS_PER_DAY * MINUTES_PER_HOUR) / MINUTES_PER_HOUR;
+        long remainingMinutes = minutes % MINUTES_PER_HOUR;
+        if (days > 0) {
+            return days + "d" + (hours > 0 ? " " + hours + "h" : "");
+        }
+        if (hours > 0) {
+            return hours + "h" + (remainingMinutes > 0 ? " " + remainingMinutes + "min" : "");
+        }
+        return remainingMinutes + "min";
+    }
+
 }
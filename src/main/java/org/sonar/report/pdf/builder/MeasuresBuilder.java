@@ -19,25 +19,34 @@
  */
 package org.sonar.report.pdf.builder;
 
-import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Date;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.report.pdf.entity.DataPlan;
 import org.sonar.report.pdf.entity.Measure;
 import org.sonar.report.pdf.entity.Measures;
 import org.sonar.report.pdf.entity.exception.ReportException;
-import org.sonar.report.pdf.util.MetricKeys;
+import org.sonar.report.pdf.util.ReportMetrics;
 import org.sonarqube.ws.client.WSClient;
+import org.sonarqube.ws.client.services.Query;
+import org.sonarqube.ws.model.Component;
+import org.sonarqube.ws.model.ComponentMeasure;
+import org.sonarqube.ws.model.ComponentMeasures;
+import org.sonarqube.ws.model.ComponentTree;
 import org.sonarqube.ws.model.Metric;
 import org.sonarqube.ws.model.Metrics;
-import org.sonarqube.ws.model.Resource;
+import org.sonarqube.ws.query.ComponentQuery;
+import org.sonarqube.ws.query.ComponentTreeQuery;
 import org.sonarqube.ws.query.MetricQuery;
-import org.sonarqube.ws.query.ResourceQuery;
 
 /**
  * Builder for a set of measures
@@ -58,14 +67,16 @@ public class MeasuresBuilder extends AbstractBuilder {
 
     private List<String> measuresKeys = null;
 
+    private Map<String, String> metricTypes = null;
+
     private static final Integer DEFAULT_SPLIT_LIMIT = 20;
 
     public MeasuresBuilder(final WSClient sonar) {
         this.sonar = sonar;
     }
 
-    public static MeasuresBuilder getInstance(final WSClient sonar) {
-        if (builder == null) {
+    public static synchronized MeasuresBuilder getInstance(final WSClient sonar) {
+        if (builder == null || builder.sonar != sonar) {
             builder = new MeasuresBuilder(sonar);
         }
         return builder;
@@ -90,6 +101,26 @@ public class MeasuresBuilder extends AbstractBuilder {
         return allMetricKeys;
     }
 
+    /**
+     * Get the keys and the types of the metrics, once
+     * 
+     * @throws ReportException
+     *             ReportException
+     */
+    private void initMetrics() throws ReportException {
+        if (measuresKeys == null) {
+            Metrics metrics = sonar.find(MetricQuery.all());
+            List<String> keys = new ArrayList<>();
+            Map<String, String> types = new HashMap<>();
+            for (Metric metric : metrics.getMetrics()) {
+                keys.add(metric.getKey());
+                types.put(metric.getKey(), metric.getType());
+            }
+            metricTypes = types;
+            measuresKeys = keys;
+        }
+    }
+
     /**
      * Initialization of measures of a project
      * 
@@ -100,20 +131,99 @@ public class MeasuresBuilder extends AbstractBuilder {
      *             ReportException
      */
     public Measures initMeasuresByProjectKey(final String projectKey) throws ReportException {
+        return initMeasuresByProjectKey(projectKey, DataPlan.all());
+    }
 
-        Measures measures = new Measures();
-        if (measuresKeys == null) {
-            measuresKeys = getAllMetricKeys();
-        }
-        // Avoid "Post too large"
-        if (measuresKeys.size() > DEFAULT_SPLIT_LIMIT) {
-            initMeasuresSplittingRequests(measures, projectKey);
-        } else {
-            this.addMeasures(measures, measuresKeys, projectKey);
-        }
+    /**
+     * Initialization of the measures of a plan for a project
+     * 
+     * @param projectKey
+     *            key of the project
+     * @param plan
+     *            measures to retrieve, and measures with a trend
+     * @return Measures
+     * @throws ReportException
+     *             ReportException
+     */
+    public Measures initMeasuresByProjectKey(final String projectKey, final DataPlan plan) throws ReportException {
+        ReportMetrics.Timer timer = sonar.getMetrics().start(ReportMetrics.FETCH_MEASURES);
+        try {
+            Measures measures = new Measures();
+            initMetrics();
+            List<String> keys = plan.filterMetrics(new ArrayList<>(measuresKeys));
+            // Avoid "Post too large"
+            if (keys.size() > DEFAULT_SPLIT_LIMIT) {
+                initMeasuresSplittingRequests(measures, keys, projectKey, plan);
+            } else if (!keys.isEmpty()) {
+                this.addMeasures(measures, keys, projectKey, plan);
+            }
 
-        return measures;
+            return measures;
+        } finally {
+            timer.stop();
+        }
+    }
 
+    /**
+     * Initialization of the measures of the children of a project. Each
+     * request gets a set of measures for all the children, so that the number
+     * of requests does not depend on the number of children.
+     * 
+     * @param projectKey
+     *            key of the parent project
+     * @param childKeys
+     *            keys of the children
+     * @param plan
+     *            measures to retrieve, and measures with a trend
+     * @param qualifiers
+     *            qualifiers of the children
+     * @return Measures by child key; children missing in the responses are
+     *         left out
+     * @throws ReportException
+     *             ReportException
+     */
+    public Map<String, Measures> initChildMeasuresByProjectKey(final String projectKey,
+            final Collection<String> childKeys, final DataPlan plan, final String... qualifiers)
+            throws ReportException {
+        ReportMetrics.Timer timer = sonar.getMetrics().start(ReportMetrics.FETCH_MEASURES);
+        try {
+            Map<String, Measures> measuresByKey = new HashMap<>();
+            for (String childKey : childKeys) {
+                measuresByKey.put(childKey, new Measures());
+            }
+            initMetrics();
+            Set<String> found = new HashSet<>();
+            List<String> keys = plan.filterMetrics(new ArrayList<>(measuresKeys));
+            // Avoid "Post too large"
+            for (int i = 0; i < keys.size(); i += DEFAULT_SPLIT_LIMIT) {
+                List<String> split = keys.subList(i, Math.min(i + DEFAULT_SPLIT_LIMIT, keys.size()));
+                LOG.debug("Split request of child measures for: " + split);
+                ComponentTreeQuery query = ComponentTreeQuery.create(projectKey)
+                        .metricKeys(split.toArray(new String[split.size()]))
+                        .strategy(ComponentTreeQuery.STRATEGY_CHILDREN).qualifiers(qualifiers)
+                        .pageSize(Query.MAX_PAGE_SIZE);
+                int page = 1;
+                ComponentTree tree = sonar.find(query.pageIndex(page));
+                while (tree != null) {
+                    for (Component component : tree.getComponents()) {
+                        Measures measures = measuresByKey.get(component.getKey());
+                        if (measures != null) {
+                            addAllMeasuresFromComponent(component.getKey(), measures, component, plan);
+                            found.add(component.getKey());
+                        }
+                    }
+                    if (tree.isLastPage()) {
+                        break;
+                    }
+                    page++;
+                    tree = sonar.find(query.pageIndex(page));
+                }
+            }
+            measuresByKey.keySet().retainAll(found);
+            return measuresByKey;
+        } finally {
+            timer.stop();
+        }
     }
 
     /**
@@ -122,15 +232,19 @@ public class MeasuresBuilder extends AbstractBuilder {
      * 
      * @param measures
      *            measures
+     * @param keys
+     *            keys of the metrics
      * @param projectKey
      *            projectKey
+     * @param plan
+     *            plan of the measures
      * @throws ReportException
      *             ReportException
      */
-    private void initMeasuresSplittingRequests(final Measures measures, final String projectKey)
-            throws ReportException {
-        Iterator<String> it = measuresKeys.iterator();
-        LOG.debug("Getting " + measuresKeys.size() + " metric measures from Sonar by splitting requests");
+    private void initMeasuresSplittingRequests(final Measures measures, final List<String> keys,
+            final String projectKey, final DataPlan plan) throws ReportException {
+        Iterator<String> it = keys.iterator();
+        LOG.debug("Getting " + keys.size() + " metric measures from Sonar by splitting requests");
         List<String> twentyMeasures = new ArrayList<>(20);
         int i = 0;
         while (it.hasNext()) {
@@ -138,14 +252,14 @@ public class MeasuresBuilder extends AbstractBuilder {
             i++;
             if (i % DEFAULT_SPLIT_LIMIT == 0) {
                 LOG.debug("Split request for: " + twentyMeasures);
-                addMeasures(measures, twentyMeasures, projectKey);
+                addMeasures(measures, twentyMeasures, projectKey, plan);
                 i = 0;
                 twentyMeasures.clear();
             }
         }
         if (i != 0) {
             LOG.debug("Split request for remain metric measures: " + twentyMeasures);
-            addMeasures(measures, twentyMeasures, projectKey);
+            addMeasures(measures, twentyMeasures, projectKey, plan);
         }
     }
 
@@ -158,58 +272,44 @@ public class MeasuresBuilder extends AbstractBuilder {
      *            measuresAsString
      * @param projectKey
      *            projectKey
+     * @param plan
+     *            plan of the measures
      * @throws ReportException
      *             ReportException
      */
-    private void addMeasures(final Measures measures, final List<String> measuresAsString, final String projectKey)
-            throws ReportException {
+    private void addMeasures(final Measures measures, final List<String> measuresAsString, final String projectKey,
+            final DataPlan plan) throws ReportException {
 
         String[] measuresAsArray = measuresAsString.toArray(new String[measuresAsString.size()]);
         LOG.debug(Arrays.toString(measuresAsArray));
-        ResourceQuery query = ResourceQuery.createForMetrics(projectKey, measuresAsArray);
-        query.setDepth(0);
-        query.setIncludeTrends(true);
-        List<Resource> resources = sonar.findAll(query);
-        if (resources != null && resources.size() == 1) {
-            this.addAllMeasuresFromDocument(projectKey, measures, resources.get(0));
+        ComponentQuery query = ComponentQuery.create(projectKey).metricKeys(measuresAsArray);
+        ComponentMeasures result = sonar.find(query);
+        if (result != null && result.getComponent() != null) {
+            this.addAllMeasuresFromComponent(projectKey, measures, result.getComponent(), plan);
         } else {
             LOG.debug("Wrong response when looking for measures: " + measuresAsString.toString());
         }
     }
 
     /**
-     * Add all measures from a document
+     * Add all measures of a component. The date and the version of the
+     * analysis are not given by the measures web services.
      * 
      * @param projectKey
      *            projectKey
      * @param measures
      *            measures
-     * @param resource
-     *            resource
+     * @param component
+     *            component
+     * @param plan
+     *            plan of the measures
      * @throws ReportException
      *             ReportException
      */
-    private void addAllMeasuresFromDocument(final String projectKey, final Measures measures, final Resource resource)
-            throws ReportException {
-
-        List<org.sonarqube.ws.model.Measure> allNodes = resource.getMsr();
-        Iterator<org.sonarqube.ws.model.Measure> it = allNodes.iterator();
-        while (it.hasNext()) {
-            addMeasureFromNode(projectKey, measures, it.next());
-        }
-        try {
-
-            Date dateNode = resource.getDate();
-            if (dateNode != null) {
-                measures.setDate(dateNode);
-            }
-
-            String versionNode = resource.getVersion();
-            if (versionNode != null) {
-                measures.setVersion(versionNode);
-            }
-        } catch (ParseException e) {
-            LOG.error("Can not parse date", e);
+    private void addAllMeasuresFromComponent(final String projectKey, final Measures measures,
+            final Component component, final DataPlan plan) throws ReportException {
+        for (ComponentMeasure measureNode : component.getMeasures()) {
+            addMeasureFromNode(projectKey, measures, measureNode, plan);
         }
     }
 
@@ -222,14 +322,17 @@ public class MeasuresBuilder extends AbstractBuilder {
      *            measures
      * @param measureNode
      *            measureNode
+     * @param plan
+     *            plan of the measures, giving the measures with a trend
      * @throws ReportException
      *             ReportException
      */
     private void addMeasureFromNode(final String projectKey, final Measures measures,
-            final org.sonarqube.ws.model.Measure measureNode) throws ReportException {
-        Measure measure = MeasureBuilder.initFromNode(measureNode);
-        if (MetricKeys.isMetricNeeded(measure.getKey())) {
-            Integer trendNode = HistoryBuilder.getInstance(sonar, projectKey).computeTrend(measureNode);
+            final ComponentMeasure measureNode, final DataPlan plan) throws ReportException {
+        Measure measure = MeasureBuilder.initFromNode(measureNode, metricTypes.get(measureNode.getMetric()));
+        if (plan.hasTrend(measure.getKey())) {
+            Integer trendNode = HistoryBuilder.getInstance(sonar, projectKey).computeTrend(measure.getKey(),
+                    measureNode.getNumericValue());
             if (trendNode != null) {
                 measure.setQualitativeTendency(trendNode);
             } else {
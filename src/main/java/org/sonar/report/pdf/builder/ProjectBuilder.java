@@ -22,31 +22,36 @@ package org.sonar.report.pdf.builder;
 import java.io.IOException;
 import java.io.Serializable;
 import java.net.URL;
+import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Set;
 import java.util.TreeMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.report.pdf.PDFResources;
+import org.sonar.report.pdf.entity.DataPlan;
 import org.sonar.report.pdf.entity.EntityUtils;
 import org.sonar.report.pdf.entity.FileInfo;
-import org.sonar.report.pdf.entity.FileInfoTypes;
 import org.sonar.report.pdf.entity.Measures;
 import org.sonar.report.pdf.entity.Project;
 import org.sonar.report.pdf.entity.Rule;
 import org.sonar.report.pdf.entity.Severity;
 import org.sonar.report.pdf.entity.Violation;
 import org.sonar.report.pdf.entity.exception.ReportException;
-import org.sonar.report.pdf.util.MetricKeys;
+import org.sonar.report.pdf.util.ReportMetrics;
 import org.sonarqube.ws.client.WSClient;
+import org.sonarqube.ws.model.Facet;
 import org.sonarqube.ws.model.Issue;
 import org.sonarqube.ws.model.Issues;
 import org.sonarqube.ws.model.Resource;
@@ -55,10 +60,10 @@ import org.sonarqube.ws.query.ResourceQuery;
 import org.sonarqube.ws.query.RuleQuery;
 
 /**
- * Builder for the whole project
+ * Builder for the whole project, from the web services of the server
  *
  */
-public class ProjectBuilder extends AbstractBuilder {
+public class ProjectBuilder extends AbstractBuilder implements ProjectDataSource {
 
     /**
      * 
@@ -67,12 +72,21 @@ public class ProjectBuilder extends AbstractBuilder {
 
     private static final Logger LOG = LoggerFactory.getLogger("org.sonar.PDF");
 
+    private static final String RULES_FACET = "rules";
+
     private static ProjectBuilder builder;
 
     private WSClient sonar;
 
+    /**
+     * Measures builder of the client, kept so that it is not created again
+     * when reports of other clients run at the same time
+     */
+    private final MeasuresBuilder measuresBuilder;
+
     private Integer tableLimit;
     private Integer detailsLimit;
+    private Integer issuesThreads;
 
     /**
      * Default constructor
@@ -82,6 +96,7 @@ public class ProjectBuilder extends AbstractBuilder {
      */
     private ProjectBuilder(final WSClient sonar) {
         this.sonar = sonar;
+        this.measuresBuilder = new MeasuresBuilder(sonar);
         URL resourceText = this.getClass().getClassLoader().getResource(PDFResources.REPORT_PROPERTIES);
         Properties config = new Properties();
         try {
@@ -91,16 +106,46 @@ public class ProjectBuilder extends AbstractBuilder {
         }
         tableLimit = Integer.valueOf(config.getProperty(PDFResources.SONAR_TABLE_LIMIT));
         detailsLimit = Integer.valueOf(config.getProperty(PDFResources.SONAR_DETAILS_LIMIT));
+        issuesThreads = Integer.valueOf(config.getProperty(PDFResources.SONAR_ISSUES_THREADS, "1"));
     }
 
-    public static ProjectBuilder getInstance(final WSClient sonar) {
-        if (builder == null) {
+    /**
+     * Get the builder for a client. The builder is created again when another
+     * client is given.
+     * 
+     * @param sonar
+     *            sonar
+     * @return ProjectBuilder
+     */
+    public static synchronized ProjectBuilder getInstance(final WSClient sonar) {
+        if (builder == null || builder.sonar != sonar) {
             builder = new ProjectBuilder(sonar);
         }
 
         return builder;
     }
 
+    /**
+     * @see org.sonar.report.pdf.builder.ProjectDataSource#getProject(java.lang.String,
+     *      org.sonar.report.pdf.entity.Project, org.sonar.report.pdf.entity.DataPlan)
+     */
+    @Override
+    public Project getProject(final String projectKey, final Project snapshot, final DataPlan plan)
+            throws ReportException {
+        return initializeProject(projectKey, snapshot, plan, null);
+    }
+
+    /**
+     * @see org.sonar.report.pdf.builder.ProjectDataSource#getProject(java.lang.String,
+     *      org.sonar.report.pdf.entity.Project, org.sonar.report.pdf.entity.DataPlan,
+     *      org.sonar.report.pdf.builder.ProjectListener)
+     */
+    @Override
+    public Project getProject(final String projectKey, final Project snapshot, final DataPlan plan,
+            final ProjectListener listener) throws ReportException {
+        return initializeProject(projectKey, snapshot, plan, listener);
+    }
+
     /**
      * Initialize: <br>
      * - Project basic data <br>
@@ -117,7 +162,58 @@ public class ProjectBuilder extends AbstractBuilder {
      *             ReportException
      */
     public Project initializeProject(final String projectKey) throws ReportException {
+        return initializeProject(projectKey, null, DataPlan.all());
+    }
+
+    /**
+     * Initialize the data of a plan for a project, reusing the data of a
+     * previous snapshot for the modules which have not been analysed since the
+     * snapshot. The snapshot is not used if it does not have all the data of
+     * the plan.
+     * 
+     * @param projectKey
+     *            projectKey
+     * @param snapshot
+     *            previous snapshot of the project, or null
+     * @param plan
+     *            data to retrieve
+     * @return Project
+     * @throws ReportException
+     *             ReportException
+     */
+    public Project initializeProject(final String projectKey, final Project snapshot, final DataPlan plan)
+            throws ReportException {
+        return initializeProject(projectKey, snapshot, plan, null);
+    }
+
+    /**
+     * Initialize the data of a plan for a project, notifying a listener of the
+     * chapter projects as soon as their data is complete. The modules, their
+     * measures and the file rankings are retrieved first, for the whole tree;
+     * the most violated rules are then retrieved chapter by chapter: for the
+     * project, then for each subproject with its own modules.
+     * 
+     * @param projectKey
+     *            projectKey
+     * @param snapshot
+     *            previous snapshot of the project, or null
+     * @param plan
+     *            data to retrieve
+     * @param listener
+     *            listener of the chapter projects, or null
+     * @return Project
+     * @throws ReportException
+     *             ReportException
+     */
+    public Project initializeProject(final String projectKey, final Project snapshot, final DataPlan plan,
+            final ProjectListener listener) throws ReportException {
         Project project = new Project(projectKey);
+        project.setDataPlan(plan);
+        Project usableSnapshot = snapshot;
+        if (snapshot != null && !snapshot.getDataPlan().covers(plan)) {
+            LOG.info("Snapshot of " + projectKey + " does not have the data of the report, not used");
+            usableSnapshot = null;
+        }
 
         LOG.info("Retrieving project info for " + project.getKey());
 
@@ -125,40 +221,215 @@ public class ProjectBuilder extends AbstractBuilder {
         rq.setDepth(0);
         List<Resource> resources = sonar.findAll(rq);
 
-        if (resources != null && !resources.isEmpty()) {
-            initFromNode(project, resources.get(0));
-            initMeasures(project);
-            initMostViolatedRules(project);
-            initMostViolatedFiles(project);
-            initMostComplexElements(project);
-            initMostDuplicatedFiles(project);
-            LOG.debug("Accessing Sonar: getting child projects");
-
-            ResourceQuery resourceQueryChild = ResourceQuery.create(project.getKey());
-            resourceQueryChild.setDepth(1);
-            resourceQueryChild.setQualifiers("BRC","PRJ");
-            List<Resource> childNodes = sonar.findAll(resourceQueryChild);
-
-            Iterator<Resource> it = childNodes.iterator();
-            project.setSubprojects(new ArrayList<Project>(0));
-            if (!it.hasNext()) {
-                LOG.debug(project.getKey() + " project has no childs");
+        if (resources == null || resources.isEmpty()) {
+            LOG.info("Can't retrieve project info. Have you set username/password in Sonar settings?");
+            throw new ReportException("Can't retrieve project info. Parent project node is empty. Authentication?");
+        }
+        List<Project> outdatedProjects = new ArrayList<>();
+        initializeProject(project, resources.get(0), usableSnapshot, null, plan, outdatedProjects);
+        initFileRankings(project, plan, outdatedProjects);
+        Set<Project> outdated = new HashSet<>(outdatedProjects);
+        initChapterRules(project, plan, outdated, false);
+        if (listener != null) {
+            listener.projectReady(project);
+        }
+        for (Project subproject : project.getSubprojects()) {
+            initChapterRules(subproject, plan, outdated, true);
+            if (listener != null) {
+                listener.projectReady(subproject);
             }
-            while (it.hasNext()) {
-                Resource childNode = it.next();
+        }
+        return project;
+    }
 
-                String scope = childNode.getScope();
-                if (PDFResources.PROJECT_SCOPE.equals(scope) && !projectKey.equals(childNode.getKey())) {
-                    Project childProject = initializeProject(childNode.getKey());
-                    project.getSubprojects().add(childProject);
+    /**
+     * Initialize a project from its resource
+     * 
+     * @param project
+     *            project
+     * @param resourceNode
+     *            resource of the project
+     * @param snapshot
+     *            previous snapshot of the project, or null
+     * @param measures
+     *            measures of the project if they are already retrieved, or
+     *            null
+     * @param plan
+     *            data to retrieve
+     * @param outdatedProjects
+     *            projects not taken from the snapshot, whose files are ranked
+     *            and whose rules are retrieved once the tree is initialized
+     * @throws ReportException
+     *             ReportException
+     */
+    private void initializeProject(final Project project, final Resource resourceNode, final Project snapshot,
+            final Measures measures, final DataPlan plan, final List<Project> outdatedProjects)
+            throws ReportException {
+        if (isUpToDate(snapshot, resourceNode)) {
+            LOG.info("    Reusing snapshot of analysis " + snapshot.getMeasures().getDate());
+            initFromSnapshot(project, snapshot);
+            initSubprojects(project, snapshot, plan, outdatedProjects);
+        } else {
+            initFromNode(project, resourceNode);
+            if (measures != null) {
+                project.setMeasures(measures);
+            } else {
+                initMeasures(project, plan);
+            }
+            initAnalysis(project.getMeasures(), resourceNode);
+            outdatedProjects.add(project);
+            initSubprojects(project, snapshot, plan, outdatedProjects);
+        }
+    }
+
+    /**
+     * Initialize the most violated, most complex and most duplicated files of
+     * the projects of a tree, reading the files of the tree only once
+     * 
+     * @param project
+     *            root project of the tree
+     * @param plan
+     *            data to retrieve
+     * @param outdatedProjects
+     *            projects of the tree not taken from the snapshot
+     * @throws ReportException
+     *             ReportException
+     */
+    private void initFileRankings(final Project project, final DataPlan plan, final List<Project> outdatedProjects)
+            throws ReportException {
+        ReportMetrics.Timer timer = sonar.getMetrics().start(ReportMetrics.FETCH_FILES);
+        try {
+            new FileRankingBuilder(sonar, tableLimit, plan.getRankings()).initRankings(project, outdatedProjects);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Initialize the most violated rules of the projects of a chapter which
+     * are not taken from the snapshot
+     * 
+     * @param project
+     *            project of the chapter
+     * @param plan
+     *            data to retrieve
+     * @param outdatedProjects
+     *            projects not taken from the snapshot
+     * @param withModules
+     *            true to initialize the rules of the modules of the project
+     *            too
+     * @throws ReportException
+     *             ReportException
+     */
+    private void initChapterRules(final Project project, final DataPlan plan, final Set<Project> outdatedProjects,
+            final boolean withModules) throws ReportException {
+        if (plan.hasRules() && outdatedProjects.contains(project)) {
+            ReportMetrics.Timer timer = sonar.getMetrics().start(ReportMetrics.FETCH_RULES);
+            try {
+                initMostViolatedRules(project, plan);
+            } finally {
+                timer.stop();
+            }
+        }
+        if (withModules) {
+            for (Project subproject : project.getSubprojects()) {
+                initChapterRules(subproject, plan, outdatedProjects, true);
+            }
+        }
+    }
+
+    /**
+     * Initialize child projects. The measures of the children which are not
+     * taken from the snapshot are retrieved for all of them at once.
+     * 
+     * @param project
+     *            project
+     * @param snapshot
+     *            previous snapshot of the project, or null
+     * @param plan
+     *            data to retrieve
+     * @param outdatedProjects
+     *            projects not taken from the snapshot
+     * @throws ReportException
+     *             ReportException
+     */
+    private void initSubprojects(final Project project, final Project snapshot, final DataPlan plan,
+            final List<Project> outdatedProjects) throws ReportException {
+        LOG.debug("Accessing Sonar: getting child projects");
+
+        ResourceQuery resourceQueryChild = ResourceQuery.create(project.getKey());
+        resourceQueryChild.setDepth(1);
+        resourceQueryChild.setQualifiers("BRC","PRJ");
+        List<Resource> childNodes = sonar.findAll(resourceQueryChild);
+
+        project.setSubprojects(new ArrayList<Project>(0));
+        if (childNodes.isEmpty()) {
+            LOG.debug(project.getKey() + " project has no childs");
+        }
+        List<Resource> children = new ArrayList<>();
+        Map<String, Project> childSnapshots = new HashMap<>();
+        List<String> outdatedKeys = new ArrayList<>();
+        for (Resource childNode : childNodes) {
+            String scope = childNode.getScope();
+            if (PDFResources.PROJECT_SCOPE.equals(scope) && !project.getKey().equals(childNode.getKey())) {
+                Project childSnapshot = snapshot == null || snapshot.getSubprojects() == null ? null
+                        : snapshot.getChildByKey(childNode.getKey());
+                children.add(childNode);
+                childSnapshots.put(childNode.getKey(), childSnapshot);
+                if (!isUpToDate(childSnapshot, childNode)) {
+                    outdatedKeys.add(childNode.getKey());
                 }
             }
-        } else {
-            LOG.info("Can't retrieve project info. Have you set username/password in Sonar settings?");
-            throw new ReportException("Can't retrieve project info. Parent project node is empty. Authentication?");
         }
+        Map<String, Measures> childMeasures = Collections.emptyMap();
+        if (!outdatedKeys.isEmpty()) {
+            LOG.info("    Retrieving measures of " + outdatedKeys.size() + " child projects");
+            childMeasures = measuresBuilder.initChildMeasuresByProjectKey(project.getKey(), outdatedKeys, plan,
+                    "BRC", "PRJ");
+        }
+        for (Resource childNode : children) {
+            Project childProject = new Project(childNode.getKey());
+            LOG.info("Retrieving project info for " + childProject.getKey());
+            initializeProject(childProject, childNode, childSnapshots.get(childNode.getKey()),
+                    childMeasures.get(childNode.getKey()), plan, outdatedProjects);
+            project.getSubprojects().add(childProject);
+        }
+    }
 
-        return project;
+    /**
+     * A snapshot can be reused if the project has not been analysed since
+     * 
+     * @param snapshot
+     *            previous snapshot of the project, or null
+     * @param resourceNode
+     *            current resource of the project
+     * @return true if the snapshot is up to date
+     */
+    private boolean isUpToDate(final Project snapshot, final Resource resourceNode) {
+        if (snapshot == null || snapshot.getMeasures() == null || resourceNode.getDate() == null) {
+            return false;
+        }
+        Date snapshotDate = snapshot.getMeasures().getDate();
+        return snapshotDate != null && !resourceNode.getDate().after(snapshotDate);
+    }
+
+    /**
+     * Initialize project data (except child projects) from a previous
+     * snapshot
+     * 
+     * @param project
+     *            project
+     * @param snapshot
+     *            previous snapshot of the project
+     */
+    private void initFromSnapshot(Project project, final Project snapshot) {
+        project.setName(snapshot.getName());
+        project.setDescription(snapshot.getDescription());
+        project.setMeasures(snapshot.getMeasures());
+        project.setMostViolatedRules(snapshot.getMostViolatedRules());
+        project.setMostViolatedFiles(snapshot.getMostViolatedFiles());
+        project.setMostComplexFiles(snapshot.getMostComplexFiles());
+        project.setMostDuplicatedFiles(snapshot.getMostDuplicatedFiles());
     }
 
     /**
@@ -179,22 +450,57 @@ public class ProjectBuilder extends AbstractBuilder {
         project.setMostViolatedFiles(new LinkedList<FileInfo>());
     }
 
+    /**
+     * Initialize the date and the version of the analysis of a project, which
+     * the measures web services do not give
+     * 
+     * @param measures
+     *            measures of the project
+     * @param resourceNode
+     *            resource of the project
+     */
+    private void initAnalysis(final Measures measures, final Resource resourceNode) {
+        try {
+            if (resourceNode.getDate() != null) {
+                measures.setDate(resourceNode.getDate());
+            }
+        } catch (ParseException e) {
+            LOG.error("Can not parse date", e);
+        }
+        if (resourceNode.getVersion() != null) {
+            measures.setVersion(resourceNode.getVersion());
+        }
+    }
+
     /**
      * Initialize measures
      * 
      * @param project
      *            project
+     * @param plan
+     *            data to retrieve
      * @throws ReportException
      *             ReportException
      */
-    private void initMeasures(final Project project) throws ReportException {
+    private void initMeasures(final Project project, final DataPlan plan) throws ReportException {
         LOG.info("    Retrieving measures");
-        MeasuresBuilder measuresBuilder = MeasuresBuilder.getInstance(sonar);
-        Measures measures = measuresBuilder.initMeasuresByProjectKey(project.getKey());
+        Measures measures = measuresBuilder.initMeasuresByProjectKey(project.getKey(), plan);
         project.setMeasures(measures);
     }
 
-    private void initMostViolatedRules(final Project project) throws ReportException {
+    /**
+     * Initialize the most violated rules of a project. The violations of the
+     * rules are read only if the plan needs them, the number of violations of
+     * each rule is given by the rules facet of the issues search otherwise.
+     * 
+     * @param project
+     *            project
+     * @param plan
+     *            data to retrieve
+     * @throws ReportException
+     *             ReportException
+     */
+    private void initMostViolatedRules(final Project project, final DataPlan plan) throws ReportException {
         LOG.info("    Retrieving most violated rules");
         LOG.debug("Accessing Sonar: getting most violated rules");
         String[] severities = Severity.getSeverityArray();
@@ -204,18 +510,25 @@ public class ProjectBuilder extends AbstractBuilder {
         TreeMap<String, IssueBean> sortedMap = new TreeMap<>(bvc);
         // Reverse iteration to get violations with upper level first
         int limit = detailsLimit;
+        IssueCrawler crawler = new IssueCrawler(sonar, issuesThreads);
         for (int i = severities.length - 1; i >= 0 && limit > 0; i--) {
-            IssueQuery query = IssueQuery.create();
-            query.componentKeys(project.getKey());
-            query.severities(severities[i]);
-            Issues result = sonar.find(query);
-            List<Issue> issuesByLevel = result.getIssues();
-            if (issuesByLevel != null && !issuesByLevel.isEmpty()) {
-                int count = initMostViolatedRulesFromNode(issuesByLevel, issues);
-                LOG.debug("\t " + count + " " + severities[i] + " violations");
-                limit = limit - count;
+            final Map<String, IssueBean> issuesByRule = issues;
+            final int[] added = new int[1];
+            int count;
+            if (plan.hasRuleViolations()) {
+                count = crawler.crawl(project.getKey(), severities[i], new IssueCrawler.IssueHandler() {
+                    @Override
+                    public void handle(final List<Issue> issuesByLevel) throws ReportException {
+                        added[0] += initMostViolatedRulesFromNode(issuesByLevel, issuesByRule);
+                    }
+                });
+            } else {
+                count = initMostViolatedRulesFromFacet(project.getKey(), severities[i], issues, added);
+            }
+            if (count > 0) {
+                LOG.debug("\t " + count + " " + severities[i] + " violations of " + added[0] + " rules");
+                limit = limit - added[0];
             } else {
-                LOG.debug("There is no result on select //resources/resource");
                 LOG.info("There are no violations with level " + severities[i]);
             }
         }
@@ -230,31 +543,75 @@ public class ProjectBuilder extends AbstractBuilder {
             if (rules == null || rules.getRules() == null || rules.getRules().size() != 1) {
                 LOG.error("There is no result on select rule from service");
             } else {
-                project.getMostViolatedRules().add(defineRule(entry, rules));
+                org.sonarqube.ws.model.Rule ruleNode = rules.getRules().get(0);
+                project.getMostViolatedRules().add(defineRule(entry, ruleNode.getKey(), ruleNode.getName()));
             }
         }
 
     }
 
     /**
-     * Define Rule from sonar Rules
+     * Count the violations of each rule with a severity, without reading the
+     * violations
+     * 
+     * @param projectKey
+     *            key of the project
+     * @param severity
+     *            severity
+     * @param issues
+     *            issues map
+     * @param added
+     *            number of rules added to the map, incremented
+     * @return number of violations
+     * @throws ReportException
+     *             ReportException
+     */
+    private int initMostViolatedRulesFromFacet(final String projectKey, final String severity,
+            final Map<String, IssueBean> issues, final int[] added) throws ReportException {
+        IssueQuery query = IssueQuery.create().componentKeys(projectKey).severities(severity).facets(RULES_FACET)
+                .pageSize(1);
+        Issues result = sonar.find(query);
+        Facet facet = result == null ? null : result.getFacet(RULES_FACET);
+        if (facet == null) {
+            return 0;
+        }
+        int count = 0;
+        for (Facet.Value value : facet.getValues()) {
+            if (value.getCount() != null && value.getCount() > 0) {
+                IssueBean bean = issues.get(value.getVal());
+                if (bean == null) {
+                    bean = new IssueBean();
+                    bean.setSeverity(Severity.get(severity));
+                    issues.put(value.getVal(), bean);
+                    added[0]++;
+                }
+                bean.addCount(value.getCount());
+                count += value.getCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Define Rule from its issues
      * 
      * @param entry
-     *            entry
-     * @param rules
-     *            rules
+     *            issues of the rule
+     * @param ruleKey
+     *            key of the rule
+     * @param ruleName
+     *            name of the rule
      * @return Rule
      */
-    private Rule defineRule(Entry<String, IssueBean> entry, org.sonarqube.ws.model.Rules rules) {
-        org.sonarqube.ws.model.Rule ruleNode = rules.getRules().get(0);
+    static Rule defineRule(Entry<String, IssueBean> entry, final String ruleKey, final String ruleName) {
         Rule rule = new Rule();
-        rule.setKey(ruleNode.getKey());
-        rule.setName(ruleNode.getName());
+        rule.setKey(ruleKey);
+        rule.setName(ruleName);
         rule.setSeverity(entry.getValue().getSeverity());
-        rule.setViolationsNumber(Integer.toString(entry.getValue().getIssues().size()));
+        rule.setViolationsNumber(Integer.toString(entry.getValue().getCount()));
         // setTopViolations
         List<Violation> violations = new ArrayList<>();
-        for (Issue issue : entry.getValue().getIssues()) {
+        for (Issue issue : entry.getValue().getTopIssues()) {
             String line;
             if (issue.getLine() == null) {
                 line = EntityUtils.NA_METRICS.getKey();
@@ -268,68 +625,6 @@ public class ProjectBuilder extends AbstractBuilder {
         return rule;
     }
 
-    /**
-     * Initialize most violated files
-     * 
-     * @param project
-     *            project
-     * @throws ReportException
-     *             ReportException
-     */
-    private void initMostViolatedFiles(final Project project) throws ReportException {
-        LOG.info("    Retrieving most violated files");
-        LOG.debug("Accessing Sonar: getting most violated files");
-
-        ResourceQuery resourceQuery = ResourceQuery.createForMetrics(project.getKey(), MetricKeys.VIOLATIONS);
-        resourceQuery.setScopes(PDFResources.FILE_SCOPE);
-        resourceQuery.setDepth(-1);
-        resourceQuery.setLimit(tableLimit);
-        List<Resource> resources = sonar.findAll(resourceQuery);
-        List<FileInfo> fileInfoList = FileInfoBuilder.initFromDocument(resources, FileInfoTypes.VIOLATIONS_CONTENT);
-        project.setMostViolatedFiles(fileInfoList);
-
-    }
-
-    /**
-     * Initialize most complex files
-     * 
-     * @param project
-     *            project
-     * @throws ReportException
-     *             ReportException
-     */
-    private void initMostComplexElements(final Project project) throws ReportException {
-        LOG.info("    Retrieving most complex elements");
-        LOG.debug("Accessing Sonar: getting most complex elements");
-
-        ResourceQuery resourceQuery = ResourceQuery.createForMetrics(project.getKey(), MetricKeys.COMPLEXITY);
-        resourceQuery.setScopes(PDFResources.FILE_SCOPE);
-        resourceQuery.setDepth(-1);
-        resourceQuery.setLimit(tableLimit);
-        List<Resource> resources = sonar.findAll(resourceQuery);
-        project.setMostComplexFiles(FileInfoBuilder.initFromDocument(resources, FileInfoTypes.CCN_CONTENT));
-    }
-
-    /**
-     * Initialize most duplicated files
-     * 
-     * @param project
-     *            project
-     * @throws ReportException
-     *             ReportException
-     */
-    private void initMostDuplicatedFiles(final Project project) throws ReportException {
-        LOG.info("    Retrieving most duplicated files");
-        LOG.debug("Accessing Sonar: getting most duplicated files");
-
-        ResourceQuery resourceQuery = ResourceQuery.createForMetrics(project.getKey(), MetricKeys.DUPLICATED_LINES);
-        resourceQuery.setScopes(PDFResources.FILE_SCOPE);
-        resourceQuery.setDepth(-1);
-        resourceQuery.setLimit(tableLimit);
-        List<Resource> resources = sonar.findAll(resourceQuery);
-        project.setMostDuplicatedFiles(FileInfoBuilder.initFromDocument(resources, FileInfoTypes.DUPLICATIONS_CONTENT));
-    }
-
     /**
      * Initialize most violated rules
      * 
@@ -337,25 +632,22 @@ public class ProjectBuilder extends AbstractBuilder {
      *            issuesByLevel
      * @param issues
      *            issues map
-     * @return number of fules added
+     * @return number of rules added
      * @throws ReportException
      */
-    private int initMostViolatedRulesFromNode(final List<Issue> issuesByLevel, Map<String, IssueBean> issues)
+    static int initMostViolatedRulesFromNode(final List<Issue> issuesByLevel, Map<String, IssueBean> issues)
             throws ReportException {
         int added = 0;
         for (Issue issue : issuesByLevel) {
             String ruleKey = issue.getRule();
             if (issues.containsKey(ruleKey)) {
-                // adds Issue to the List of current issues for the key
-                IssueBean bean = issues.get(ruleKey);
-                bean.getIssues().add(issue);
+                // adds Issue to the current issues for the key
+                issues.get(ruleKey).addIssue(issue);
             } else {
-                // adds Issue to a List for a new key
-                List<Issue> issuesForKey = new ArrayList<>();
+                // adds Issue to a new bean for the key
                 IssueBean bean = new IssueBean();
                 bean.setSeverity(Severity.get(issue.getSeverity()));
-                issuesForKey.add(issue);
-                bean.setIssues(issuesForKey);
+                bean.addIssue(issue);
                 issues.put(ruleKey, bean);
                 added++;
             }
@@ -365,7 +657,7 @@ public class ProjectBuilder extends AbstractBuilder {
     }
 
     /**
-     * Container of issues
+     * Container of issues: number of issues of a rule and its newest issues
      *
      */
     static class IssueBean implements Serializable {
@@ -373,8 +665,15 @@ public class ProjectBuilder extends AbstractBuilder {
          * 
          */
         private static final long serialVersionUID = -1162084100076730465L;
+
+        /**
+         * Number of issues kept for the top violations
+         */
+        static final int MAX_TOP_VIOLATIONS = 100;
+
         private Severity severity;
-        private List<Issue> issues;
+        private int count;
+        private List<Issue> issues = new ArrayList<>();
 
         public Severity getSeverity() {
             return severity;
@@ -384,21 +683,93 @@ public class ProjectBuilder extends AbstractBuilder {
             this.severity = severity;
         }
 
+        public int getCount() {
+            return count;
+        }
+
         public List<Issue> getIssues() {
             return issues;
         }
 
         public void setIssues(List<Issue> issues) {
-            this.issues = issues;
+            // the list is sorted and trimmed, and may come from the client
+            this.issues = new ArrayList<>(issues);
+            this.count = issues.size();
+        }
+
+        /**
+         * Count an issue, only the newest ones being kept
+         * 
+         * @param issue
+         *            issue
+         */
+        public void addIssue(Issue issue) {
+            count++;
+            issues.add(issue);
+            if (issues.size() > 2 * MAX_TOP_VIOLATIONS) {
+                trim();
+            }
+        }
+
+        /**
+         * Count issues which are not kept
+         * 
+         * @param number
+         *            number of issues
+         */
+        public void addCount(int number) {
+            count += number;
+        }
+
+        /**
+         * Newest issues of the rule, whatever the order they were added in
+         * 
+         * @return top issues
+         */
+        public List<Issue> getTopIssues() {
+            trim();
+            return issues;
+        }
+
+        private void trim() {
+            Collections.sort(issues, new IssueDateComparator());
+            if (issues.size() > MAX_TOP_VIOLATIONS) {
+                issues = new ArrayList<>(issues.subList(0, MAX_TOP_VIOLATIONS));
+            }
         }
 
         @Override
         public String toString() {
-            return getSeverity() + " : size = " + issues.size();
+            return getSeverity() + " : size = " + count;
         }
 
     }
 
+    /**
+     * Comparator of issues, newest first
+     *
+     */
+    static class IssueDateComparator implements Comparator<Issue>, Serializable {
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 4517263006381052212L;
+
+        @Override
+        public int compare(Issue issue1, Issue issue2) {
+            Date date1 = issue1.getCreationDate();
+            Date date2 = issue2.getCreationDate();
+            if (date1 != null && date2 != null && !date1.equals(date2)) {
+                return date2.compareTo(date1);
+            } else if (date1 == null ^ date2 == null) {
+                return date1 == null ? 1 : -1;
+            }
+            String key1 = issue1.getKey() == null ? "" : issue1.getKey();
+            String key2 = issue2.getKey() == null ? "" : issue2.getKey();
+            return key1.compareTo(key2);
+        }
+    }
+
     /**
      * Comparator to sort issues
      *
@@ -422,11 +793,11 @@ public class ProjectBuilder extends AbstractBuilder {
             IssueBean beanA = base.get(ruleKey1);
             IssueBean beanB = base.get(ruleKey2);
             if (beanA.getSeverity().equals(beanB.getSeverity())) {
-                // return by size of the list of components
-                if (beanA.getIssues().size() > beanB.getIssues().size()) {
-                    return -1;
+                // return by number of issues, then by key
+                if (beanA.getCount() != beanB.getCount()) {
+                    return beanA.getCount() > beanB.getCount() ? -1 : 1;
                 } else {
-                    return 1;
+                    return ruleKey1.compareTo(ruleKey2);
                 }
             } else {
                 // sort by severity
@@ -0,0 +1,67 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.builder;
+
+import org.sonar.report.pdf.entity.DataPlan;
+import org.sonar.report.pdf.entity.Project;
+import org.sonar.report.pdf.entity.exception.ReportException;
+
+/**
+ * Source of the data reported on a project: measures, issues and file
+ * rankings of the project and of its modules
+ *
+ */
+public interface ProjectDataSource {
+
+    /**
+     * Get a project with its modules
+     * 
+     * @param projectKey
+     *            projectKey
+     * @param snapshot
+     *            previous snapshot of the project, or null
+     * @param plan
+     *            data to retrieve
+     * @return Project
+     * @throws ReportException
+     *             ReportException
+     */
+    Project getProject(String projectKey, Project snapshot, DataPlan plan) throws ReportException;
+
+    /**
+     * Get a project with its modules, notifying a listener of each chapter
+     * project as soon as its data is complete
+     * 
+     * @param projectKey
+     *            projectKey
+     * @param snapshot
+     *            previous snapshot of the project, or null
+     * @param plan
+     *            data to retrieve
+     * @param listener
+     *            listener of the chapter projects
+     * @return Project
+     * @throws ReportException
+     *             ReportException
+     */
+    Project getProject(String projectKey, Project snapshot, DataPlan plan, ProjectListener listener)
+            throws ReportException;
+
+}
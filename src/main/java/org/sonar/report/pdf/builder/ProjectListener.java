@@ -0,0 +1,44 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.builder;
+
+import org.sonar.report.pdf.entity.Project;
+import org.sonar.report.pdf.entity.exception.ReportException;
+
+/**
+ * Listener of the projects printed as chapters, notified while the rest of
+ * the project is still retrieved
+ *
+ */
+public interface ProjectListener {
+
+    /**
+     * Called when the data of a chapter project is complete: the root project
+     * first, then each of its subprojects, in order. The root project is
+     * given with all its subprojects, whose data may still be incomplete.
+     * 
+     * @param project
+     *            project
+     * @throws ReportException
+     *             ReportException
+     */
+    void projectReady(Project project) throws ReportException;
+
+}
@@ -0,0 +1,119 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.builder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.report.pdf.entity.Project;
+
+/**
+ * Snapshots of project trees kept between analyses, one compressed
+ * serialized file per project key. The analysis date of each module is part
+ * of its measures, so the snapshot of a module is only reused while the
+ * module has not been analysed again.
+ */
+public class ProjectSnapshotCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProjectSnapshotCache.class);
+
+    private static final String EXTENSION = ".snapshot";
+
+    private final File directory;
+
+    /**
+     * Default constructor
+     * 
+     * @param directory
+     *            directory of the snapshot files, created if needed
+     */
+    public ProjectSnapshotCache(final File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Load the last snapshot of a project
+     * 
+     * @param projectKey
+     *            project key
+     * @return Project or null if there is no usable snapshot
+     */
+    public Project load(final String projectKey) {
+        File file = getFile(projectKey);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(
+                new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))))) {
+            Project project = (Project) in.readObject();
+            if (projectKey.equals(project.getKey())) {
+                return project;
+            }
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            LOG.warn("Ignoring unreadable snapshot " + file.getAbsolutePath() + ": " + e);
+        }
+        return null;
+    }
+
+    /**
+     * Store the snapshot of a project, replacing the previous one at once
+     * 
+     * @param project
+     *            project
+     */
+    public void store(final Project project) {
+        File file = getFile(project.getKey());
+        File tmp = new File(directory, file.getName() + ".tmp");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            LOG.warn("Can not create snapshot directory " + directory.getAbsolutePath());
+            return;
+        }
+        try {
+            try (ObjectOutputStream out = new ObjectOutputStream(
+                    new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))) {
+                out.writeObject(project);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Can not store snapshot " + file.getAbsolutePath() + ": " + e);
+            if (tmp.exists() && !tmp.delete()) {
+                LOG.debug("Can not delete " + tmp.getAbsolutePath());
+            }
+        }
+    }
+
+    private File getFile(final String projectKey) {
+        return new File(directory, projectKey.replaceAll("[^A-Za-z0-9._-]", "-") + EXTENSION);
+    }
+
+}
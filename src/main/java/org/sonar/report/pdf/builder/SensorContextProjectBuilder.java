@@ -0,0 +1,655 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.builder;
+
+import java.io.IOException;
+import java.net.URL;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.rule.Rules;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.issue.ProjectIssues;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.MeasuresFilters;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.resources.Scopes;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.report.pdf.PDFResources;
+import org.sonar.report.pdf.builder.ProjectBuilder.IssueBean;
+import org.sonar.report.pdf.builder.ProjectBuilder.ValueComparator;
+import org.sonar.report.pdf.entity.DataPlan;
+import org.sonar.report.pdf.entity.FileInfo;
+import org.sonar.report.pdf.entity.FileInfoTypes;
+import org.sonar.report.pdf.entity.Measure;
+import org.sonar.report.pdf.entity.Measures;
+import org.sonar.report.pdf.entity.Project;
+import org.sonar.report.pdf.entity.Severity;
+import org.sonar.report.pdf.entity.exception.ReportException;
+import org.sonar.report.pdf.util.ReportMetrics;
+import org.sonarqube.ws.client.WSClient;
+
+/**
+ * Builder for the whole project, from the running analysis: measures are
+ * read in the sensor context and issues in the project issues, without any
+ * call to the server. The module measures the scanner leaves to the server
+ * (sums, densities, issue counts...) are computed from the files of the
+ * module. The server is only asked for the trends, which need the previous
+ * analyses.
+ *
+ */
+public class SensorContextProjectBuilder extends AbstractBuilder implements ProjectDataSource {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 4203987135264127650L;
+
+    private static final Logger LOG = LoggerFactory.getLogger("org.sonar.PDF");
+
+    /**
+     * Metrics of a module which are the sum of the ones of its files
+     */
+    private static final String[] SUM_METRICS = { CoreMetrics.NCLOC_KEY, CoreMetrics.LINES_KEY,
+            CoreMetrics.CLASSES_KEY, CoreMetrics.FUNCTIONS_KEY, CoreMetrics.COMPLEXITY_KEY,
+            CoreMetrics.COMMENT_LINES_KEY, CoreMetrics.DUPLICATED_LINES_KEY, CoreMetrics.DUPLICATED_BLOCKS_KEY,
+            CoreMetrics.TESTS_KEY, CoreMetrics.TEST_ERRORS_KEY, CoreMetrics.TEST_FAILURES_KEY,
+            CoreMetrics.SKIPPED_TESTS_KEY, CoreMetrics.TEST_EXECUTION_TIME_KEY, CoreMetrics.LINES_TO_COVER_KEY,
+            CoreMetrics.UNCOVERED_LINES_KEY, CoreMetrics.CONDITIONS_TO_COVER_KEY,
+            CoreMetrics.UNCOVERED_CONDITIONS_KEY };
+
+    /**
+     * Bottom limits of the ranges of the file complexity distribution
+     */
+    private static final int[] COMPLEXITY_RANGES = { 0, 5, 10, 20, 30, 60, 90 };
+
+    private static final Map<String, Metric.ValueType> METRIC_TYPES = new HashMap<>();
+
+    static {
+        for (Metric<?> metric : CoreMetrics.getMetrics()) {
+            METRIC_TYPES.put(metric.getKey(), metric.getType());
+        }
+    }
+
+    private final transient org.sonar.api.resources.Project rootModule;
+    private final transient SensorContext context;
+    private final transient ProjectIssues projectIssues;
+    private final transient Rules rules;
+    private transient WSClient sonar;
+
+    private Integer tableLimit;
+    private Integer detailsLimit;
+    private DataPlan plan = DataPlan.all();
+
+    private transient Map<String, List<Issue>> issuesByComponent;
+    private final transient Map<String, Map<String, Double>> fileMeasures = new HashMap<>();
+
+    /**
+     * Constructor
+     * 
+     * @param rootModule
+     *            analysed project
+     * @param context
+     *            context of the analysis
+     * @param projectIssues
+     *            issues of the analysis
+     * @param rules
+     *            rules of the analysis, may be null: rule keys are then used
+     *            as names
+     * @param sonar
+     *            client used for the trends, may be null: no trend is then
+     *            computed
+     */
+    public SensorContextProjectBuilder(final org.sonar.api.resources.Project rootModule,
+            final SensorContext context, final ProjectIssues projectIssues, final Rules rules, final WSClient sonar) {
+        this.rootModule = rootModule;
+        this.context = context;
+        this.projectIssues = projectIssues;
+        this.rules = rules;
+        this.sonar = sonar;
+        URL resourceText = this.getClass().getClassLoader().getResource(PDFResources.REPORT_PROPERTIES);
+        Properties config = new Properties();
+        try {
+            config.load(resourceText.openStream());
+        } catch (IOException e) {
+            LOG.error("\nProblem loading report.properties.", e);
+        }
+        tableLimit = Integer.valueOf(config.getProperty(PDFResources.SONAR_TABLE_LIMIT));
+        detailsLimit = Integer.valueOf(config.getProperty(PDFResources.SONAR_DETAILS_LIMIT));
+    }
+
+    /**
+     * The snapshot is not used: the data of the analysis is read locally. The
+     * plan only limits the trends asked to the server.
+     * 
+     * @see org.sonar.report.pdf.builder.ProjectDataSource#getProject(java.lang.String,
+     *      org.sonar.report.pdf.entity.Project, org.sonar.report.pdf.entity.DataPlan)
+     */
+    @Override
+    public Project getProject(final String projectKey, final Project snapshot, final DataPlan plan)
+            throws ReportException {
+        this.plan = plan;
+        org.sonar.api.resources.Project module = findModule(rootModule, projectKey);
+        if (module == null) {
+            throw new ReportException("Project " + projectKey + " is not part of the analysis of "
+                    + rootModule.getEffectiveKey());
+        }
+        if (issuesByComponent == null) {
+            issuesByComponent = new HashMap<>();
+            for (Issue issue : projectIssues.issues()) {
+                List<Issue> issues = issuesByComponent.get(issue.componentKey());
+                if (issues == null) {
+                    issues = new ArrayList<>();
+                    issuesByComponent.put(issue.componentKey(), issues);
+                }
+                issues.add(issue);
+            }
+        }
+        return initializeProject(module);
+    }
+
+    /**
+     * The data of the analysis being read locally, the chapter projects are
+     * all notified once the project is initialized.
+     * 
+     * @see org.sonar.report.pdf.builder.ProjectDataSource#getProject(java.lang.String,
+     *      org.sonar.report.pdf.entity.Project, org.sonar.report.pdf.entity.DataPlan,
+     *      org.sonar.report.pdf.builder.ProjectListener)
+     */
+    @Override
+    public Project getProject(final String projectKey, final Project snapshot, final DataPlan plan,
+            final ProjectListener listener) throws ReportException {
+        Project project = getProject(projectKey, snapshot, plan);
+        listener.projectReady(project);
+        for (Project subproject : project.getSubprojects()) {
+            listener.projectReady(subproject);
+        }
+        return project;
+    }
+
+    private static org.sonar.api.resources.Project findModule(final org.sonar.api.resources.Project module,
+            final String projectKey) {
+        if (projectKey.equals(module.getEffectiveKey())) {
+            return module;
+        }
+        for (org.sonar.api.resources.Project child : module.getModules()) {
+            org.sonar.api.resources.Project found = findModule(child, projectKey);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Initialize a module and its child modules
+     * 
+     * @param module
+     *            module of the analysis
+     * @return Project
+     * @throws ReportException
+     *             ReportException
+     */
+    private Project initializeProject(final org.sonar.api.resources.Project module) throws ReportException {
+        Project project = new Project(module.getEffectiveKey());
+        LOG.info("Reading project info for " + project.getKey() + " in the analysis");
+        project.setName(module.getName());
+        project.setDescription(module.getDescription());
+
+        // components of the module and of its child modules
+        Set<String> components = new HashSet<>();
+        List<Resource> files = new ArrayList<>();
+        int directories = collectComponents(module, components, files);
+        List<Issue> issues = new ArrayList<>();
+        for (String component : components) {
+            List<Issue> componentIssues = issuesByComponent.get(component);
+            if (componentIssues != null) {
+                issues.addAll(componentIssues);
+            }
+        }
+
+        initMeasures(project, module, files, directories, issues);
+        ReportMetrics.Timer timer = sonar.getMetrics().start(ReportMetrics.FETCH_RULES);
+        try {
+            initMostViolatedRules(project, issues);
+        } finally {
+            timer.stop();
+        }
+        timer = sonar.getMetrics().start(ReportMetrics.FETCH_FILES);
+        try {
+            project.setMostViolatedFiles(getTopFiles(files, CoreMetrics.VIOLATIONS_KEY,
+                    FileInfoTypes.VIOLATIONS_CONTENT));
+            project.setMostComplexFiles(getTopFiles(files, CoreMetrics.COMPLEXITY_KEY, FileInfoTypes.CCN_CONTENT));
+            project.setMostDuplicatedFiles(getTopFiles(files, CoreMetrics.DUPLICATED_LINES_KEY,
+                    FileInfoTypes.DUPLICATIONS_CONTENT));
+        } finally {
+            timer.stop();
+        }
+
+        project.setSubprojects(new ArrayList<Project>(0));
+        for (org.sonar.api.resources.Project child : module.getModules()) {
+            project.getSubprojects().add(initializeProject(child));
+        }
+        return project;
+    }
+
+    /**
+     * Collect the components of a module, including the ones of its child
+     * modules
+     * 
+     * @param module
+     *            module
+     * @param components
+     *            keys of the components
+     * @param files
+     *            files
+     * @return number of directories
+     */
+    private int collectComponents(final org.sonar.api.resources.Project module, final Set<String> components,
+            final List<Resource> files) {
+        components.add(module.getEffectiveKey());
+        int directories = 0;
+        LinkedList<Resource> resources = new LinkedList<>();
+        resources.add(module);
+        while (!resources.isEmpty()) {
+            Collection<Resource> children = context.getChildren(resources.removeFirst());
+            if (children == null) {
+                continue;
+            }
+            for (Resource child : children) {
+                // child modules are collected below
+                if (Scopes.isProject(child) || !components.add(child.getEffectiveKey())) {
+                    continue;
+                }
+                if (Scopes.isFile(child)) {
+                    files.add(child);
+                } else {
+                    if (Scopes.isDirectory(child)) {
+                        directories++;
+                    }
+                    resources.add(child);
+                }
+            }
+        }
+        for (org.sonar.api.resources.Project child : module.getModules()) {
+            directories += collectComponents(child, components, files);
+        }
+        return directories;
+    }
+
+    /**
+     * Initialize measures: the ones saved on the module by the analysis,
+     * completed by the ones computed from its files and issues
+     */
+    private void initMeasures(final Project project, final org.sonar.api.resources.Project module,
+            final List<Resource> files, final int directories, final List<Issue> issues) throws ReportException {
+        LOG.info("    Reading measures");
+        ReportMetrics.Timer timer = sonar.getMetrics().start(ReportMetrics.FETCH_MEASURES);
+        try {
+            Measures measures = new Measures();
+            try {
+                measures.setDate(rootModule.getAnalysisDate());
+            } catch (ParseException e) {
+                LOG.error("Can not parse date", e);
+            }
+            measures.setVersion(module.getAnalysisVersion() != null ? module.getAnalysisVersion()
+                    : rootModule.getAnalysisVersion());
+
+            for (org.sonar.api.measures.Measure<?> moduleMeasure : readMeasures(module)) {
+                String metricKey = moduleMeasure.getMetricKey();
+                if (metricKey != null && !measures.containsMeasure(metricKey)) {
+                    measures.addMeasure(metricKey, createMeasure(project.getKey(), metricKey,
+                            moduleMeasure.getValue(), moduleMeasure.getData()));
+                }
+            }
+            for (Entry<String, Double> value : computeMeasures(files, directories, issues).entrySet()) {
+                if (!measures.containsMeasure(value.getKey())) {
+                    measures.addMeasure(value.getKey(),
+                            createMeasure(project.getKey(), value.getKey(), value.getValue(), null));
+                }
+            }
+            String distribution = computeComplexityDistribution(files);
+            if (distribution != null && !measures.containsMeasure(CoreMetrics.FILE_COMPLEXITY_DISTRIBUTION_KEY)) {
+                measures.addMeasure(CoreMetrics.FILE_COMPLEXITY_DISTRIBUTION_KEY, createMeasure(project.getKey(),
+                        CoreMetrics.FILE_COMPLEXITY_DISTRIBUTION_KEY, null, distribution));
+            }
+            project.setMeasures(measures);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Compute the module measures from its files and issues
+     * 
+     * @return values by metric key
+     */
+    private Map<String, Double> computeMeasures(final List<Resource> files, final int directories,
+            final List<Issue> issues) {
+        Map<String, Double> values = new HashMap<>();
+        int duplicatedFiles = 0;
+        for (Resource file : files) {
+            Map<String, Double> measures = getFileMeasures(file);
+            for (String metric : SUM_METRICS) {
+                add(values, metric, measures.get(metric));
+            }
+            Double duplicatedLines = measures.get(CoreMetrics.DUPLICATED_LINES_KEY);
+            if (duplicatedLines != null && duplicatedLines > 0) {
+                duplicatedFiles++;
+            }
+        }
+        if (values.containsKey(CoreMetrics.DUPLICATED_LINES_KEY)) {
+            values.put(CoreMetrics.DUPLICATED_FILES_KEY, (double) duplicatedFiles);
+        }
+        values.put(CoreMetrics.DIRECTORIES_KEY, (double) directories);
+
+        values.put(CoreMetrics.VIOLATIONS_KEY, (double) issues.size());
+        for (String severity : Severity.getSeverityArray()) {
+            values.put(severity.toLowerCase(Locale.ENGLISH) + "_violations", 0d);
+        }
+        double debt = 0;
+        for (Issue issue : issues) {
+            add(values, issue.severity().toLowerCase(Locale.ENGLISH) + "_violations", 1d);
+            if (issue.debt() != null) {
+                debt += issue.debt().toMinutes();
+            }
+        }
+        values.put(CoreMetrics.TECHNICAL_DEBT_KEY, debt);
+
+        Double commentLines = values.get(CoreMetrics.COMMENT_LINES_KEY);
+        Double ncloc = values.get(CoreMetrics.NCLOC_KEY);
+        putRatio(values, CoreMetrics.COMMENT_LINES_DENSITY_KEY, commentLines,
+                commentLines == null || ncloc == null ? null : commentLines + ncloc, 100);
+        putRatio(values, CoreMetrics.DUPLICATED_LINES_DENSITY_KEY, values.get(CoreMetrics.DUPLICATED_LINES_KEY),
+                values.get(CoreMetrics.LINES_KEY), 100);
+        putRatio(values, CoreMetrics.FUNCTION_COMPLEXITY_KEY, values.get(CoreMetrics.COMPLEXITY_KEY),
+                values.get(CoreMetrics.FUNCTIONS_KEY), 1);
+        putRatio(values, CoreMetrics.CLASS_COMPLEXITY_KEY, values.get(CoreMetrics.COMPLEXITY_KEY),
+                values.get(CoreMetrics.CLASSES_KEY), 1);
+        Double tests = values.get(CoreMetrics.TESTS_KEY);
+        if (tests != null) {
+            putRatio(values, CoreMetrics.TEST_SUCCESS_DENSITY_KEY, tests - get(values, CoreMetrics.TEST_ERRORS_KEY)
+                    - get(values, CoreMetrics.TEST_FAILURES_KEY), tests, 100);
+        }
+        Double linesToCover = values.get(CoreMetrics.LINES_TO_COVER_KEY);
+        if (linesToCover != null) {
+            double conditionsToCover = get(values, CoreMetrics.CONDITIONS_TO_COVER_KEY);
+            double covered = linesToCover - get(values, CoreMetrics.UNCOVERED_LINES_KEY) + conditionsToCover
+                    - get(values, CoreMetrics.UNCOVERED_CONDITIONS_KEY);
+            putRatio(values, CoreMetrics.COVERAGE_KEY, covered, linesToCover + conditionsToCover, 100);
+        }
+        return values;
+    }
+
+    /**
+     * Compute the file complexity distribution of a module
+     * 
+     * @return data of the distribution, or null if no file has a complexity
+     */
+    private String computeComplexityDistribution(final List<Resource> files) {
+        int[] counts = new int[COMPLEXITY_RANGES.length];
+        boolean found = false;
+        for (Resource file : files) {
+            Double complexity = getFileMeasures(file).get(CoreMetrics.COMPLEXITY_KEY);
+            if (complexity != null) {
+                found = true;
+                int range = COMPLEXITY_RANGES.length - 1;
+                while (range > 0 && complexity < COMPLEXITY_RANGES[range]) {
+                    range--;
+                }
+                counts[range]++;
+            }
+        }
+        if (!found) {
+            return null;
+        }
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < COMPLEXITY_RANGES.length; i++) {
+            if (i > 0) {
+                data.append(';');
+            }
+            data.append(COMPLEXITY_RANGES[i]).append('=').append(counts[i]);
+        }
+        return data.toString();
+    }
+
+    /**
+     * Initialize most violated rules, as the web service builder does
+     * 
+     * @see ProjectBuilder
+     */
+    private void initMostViolatedRules(final Project project, final List<Issue> issues) throws ReportException {
+        LOG.info("    Reading most violated rules");
+        String[] severities = Severity.getSeverityArray();
+
+        Map<String, IssueBean> beans = new HashMap<>();
+        // Reverse iteration to get violations with upper level first
+        int limit = detailsLimit;
+        for (int i = severities.length - 1; i >= 0 && limit > 0; i--) {
+            List<org.sonarqube.ws.model.Issue> issuesByLevel = new ArrayList<>();
+            for (Issue issue : issues) {
+                if (severities[i].equals(issue.severity())) {
+                    issuesByLevel.add(toIssue(issue));
+                }
+            }
+            limit -= ProjectBuilder.initMostViolatedRulesFromNode(issuesByLevel, beans);
+        }
+        TreeMap<String, IssueBean> sortedMap = new TreeMap<>(new ValueComparator(beans));
+        sortedMap.putAll(beans);
+        project.setMostViolatedRules(new LinkedList<org.sonar.report.pdf.entity.Rule>());
+        for (Entry<String, IssueBean> entry : sortedMap.entrySet()) {
+            String ruleName = entry.getKey();
+            if (rules != null) {
+                org.sonar.api.batch.rule.Rule rule = rules.find(RuleKey.parse(entry.getKey()));
+                if (rule != null && rule.name() != null) {
+                    ruleName = rule.name();
+                }
+            }
+            project.getMostViolatedRules().add(ProjectBuilder.defineRule(entry, entry.getKey(), ruleName));
+        }
+    }
+
+    /**
+     * Get the files with the highest values of a metric
+     * 
+     * @param files
+     *            files
+     * @param metricKey
+     *            metric
+     * @param type
+     *            content of the file infos
+     * @return List of FileInfo
+     */
+    private List<FileInfo> getTopFiles(final List<Resource> files, final String metricKey,
+            final FileInfoTypes type) {
+        // resources of files with the same path in two modules are equal, so
+        // values are kept by key
+        final Map<String, Double> values = new HashMap<>();
+        List<Resource> sorted = new ArrayList<>();
+        for (Resource file : files) {
+            Double value;
+            if (CoreMetrics.VIOLATIONS_KEY.equals(metricKey)) {
+                List<Issue> issues = issuesByComponent.get(file.getEffectiveKey());
+                value = issues == null ? null : (double) issues.size();
+            } else {
+                value = getFileMeasures(file).get(metricKey);
+            }
+            if (value != null) {
+                values.put(file.getEffectiveKey(), value);
+                sorted.add(file);
+            }
+        }
+        Collections.sort(sorted, new Comparator<Resource>() {
+            @Override
+            public int compare(Resource file1, Resource file2) {
+                int compare = values.get(file2.getEffectiveKey()).compareTo(values.get(file1.getEffectiveKey()));
+                return compare != 0 ? compare : file1.getEffectiveKey().compareTo(file2.getEffectiveKey());
+            }
+        });
+        List<FileInfo> fileInfoList = new LinkedList<>();
+        for (Resource file : sorted.subList(0, Math.min(tableLimit, sorted.size()))) {
+            FileInfo fileInfo = new FileInfo();
+            fileInfo.setKey(file.getEffectiveKey());
+            fileInfo.setName(file.getName());
+            String value = formatValue(metricKey, values.get(file.getEffectiveKey()));
+            if (type == FileInfoTypes.VIOLATIONS_CONTENT) {
+                fileInfo.setViolations(value);
+            } else if (type == FileInfoTypes.CCN_CONTENT) {
+                fileInfo.setComplexity(value);
+            } else if (type == FileInfoTypes.DUPLICATIONS_CONTENT) {
+                fileInfo.setDuplicatedLines(value);
+            }
+            fileInfoList.add(fileInfo);
+        }
+        return fileInfoList;
+    }
+
+    /**
+     * Read all the measures of a resource in the context
+     */
+    // SensorContext of the plugin API version the plugin builds against has no
+    // replacement for reading every measure of a resource
+    @SuppressWarnings("deprecation")
+    private List<org.sonar.api.measures.Measure<?>> readMeasures(final Resource resource) {
+        List<org.sonar.api.measures.Measure<?>> measures = new ArrayList<>();
+        Collection<?> all = context.getMeasures(resource, MeasuresFilters.all());
+        if (all != null) {
+            for (Object measure : all) {
+                measures.add((org.sonar.api.measures.Measure<?>) measure);
+            }
+        }
+        return measures;
+    }
+
+    /**
+     * Get the numeric measures of a file, read once in the context
+     */
+    private Map<String, Double> getFileMeasures(final Resource file) {
+        Map<String, Double> measures = fileMeasures.get(file.getEffectiveKey());
+        if (measures == null) {
+            measures = new HashMap<>();
+            for (org.sonar.api.measures.Measure<?> measure : readMeasures(file)) {
+                if (measure.getMetricKey() != null && measure.getValue() != null) {
+                    measures.put(measure.getMetricKey(), measure.getValue());
+                }
+            }
+            fileMeasures.put(file.getEffectiveKey(), measures);
+        }
+        return measures;
+    }
+
+    /**
+     * Create a measure as the web service builder does, with its trend
+     * 
+     * @see MeasureBuilder#initFromNode(org.sonarqube.ws.model.Measure)
+     */
+    private Measure createMeasure(final String projectKey, final String metricKey, final Double value,
+            final String data) {
+        Measure measure = new Measure();
+        measure.setKey(metricKey);
+        if (value != null) {
+            measure.setFormatValue(formatValue(metricKey, value));
+            measure.setValue(String.valueOf(value));
+            measure.setTextValue(String.valueOf(value));
+        } else {
+            measure.setTextValue("");
+        }
+        measure.setDataValue(data);
+        if (plan.hasTrend(metricKey)) {
+            measure.setQualitativeTendency(computeTrend(projectKey, metricKey, value));
+        }
+        return measure;
+    }
+
+    /**
+     * Compute the trend of a measure from the previous analyses. The trends
+     * are left out when the server can not give them.
+     */
+    private int computeTrend(final String projectKey, final String metricKey, final Double value) {
+        if (sonar == null || value == null) {
+            return 0;
+        }
+        try {
+            Integer trend = HistoryBuilder.getInstance(sonar, projectKey).computeTrend(metricKey, value);
+            return trend != null ? trend : 0;
+        } catch (ReportException | RuntimeException e) {
+            LOG.warn("Can not get the history of " + projectKey + ", trends are not computed: " + e);
+            sonar = null;
+            return 0;
+        }
+    }
+
+    /**
+     * Format a value as the server does for its metric type
+     */
+    static String formatValue(final String metricKey, final double value) {
+        Metric.ValueType type = METRIC_TYPES.get(metricKey);
+        return MeasureBuilder.formatValue(type == null ? null : type.name(), value);
+    }
+
+    /**
+     * Convert an issue of the analysis to the model of the web services
+     */
+    private static org.sonarqube.ws.model.Issue toIssue(final Issue localIssue) {
+        org.sonarqube.ws.model.Issue issue = new org.sonarqube.ws.model.Issue();
+        issue.setKey(localIssue.key());
+        issue.setComponent(localIssue.componentKey());
+        issue.setRule(localIssue.ruleKey().toString());
+        issue.setSeverity(localIssue.severity());
+        issue.setLine(localIssue.line());
+        issue.setMessage(localIssue.message());
+        return issue;
+    }
+
+    private static void add(final Map<String, Double> values, final String metricKey, final Double value) {
+        if (value != null) {
+            values.put(metricKey, get(values, metricKey) + value);
+        }
+    }
+
+    private static double get(final Map<String, Double> values, final String metricKey) {
+        Double value = values.get(metricKey);
+        return value == null ? 0 : value;
+    }
+
+    private static void putRatio(final Map<String, Double> values, final String metricKey, final Double numerator,
+            final Double denominator, final double factor) {
+        if (numerator != null && denominator != null && denominator > 0) {
+            values.put(metricKey, numerator * factor / denominator);
+        }
+    }
+}
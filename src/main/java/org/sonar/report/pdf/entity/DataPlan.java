@@ -0,0 +1,209 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.entity;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.sonar.report.pdf.util.MetricKeys;
+
+/**
+ * Data of a project needed by a report: measures, measures with their trend,
+ * file rankings, most violated rules and their violations. A plan is built
+ * from the sections of a report, so that only the data they print is
+ * retrieved.
+ *
+ */
+public class DataPlan implements Serializable {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = -3072468651339101627L;
+
+    /**
+     * Keys of the metrics, null for all the metrics of the server
+     */
+    private Set<String> metrics = new HashSet<>();
+
+    /**
+     * Keys of the metrics with a trend, null for all the usable metrics
+     */
+    private Set<String> trends = new HashSet<>();
+
+    private final Set<FileInfoTypes> rankings = EnumSet.noneOf(FileInfoTypes.class);
+
+    private boolean rules;
+
+    private boolean ruleViolations;
+
+    /**
+     * Plan of all the data, for the callers which do not know what they will
+     * print
+     * 
+     * @return DataPlan
+     */
+    public static DataPlan all() {
+        DataPlan plan = new DataPlan();
+        plan.metrics = null;
+        plan.trends = null;
+        plan.rankings.addAll(EnumSet.allOf(FileInfoTypes.class));
+        plan.rules = true;
+        plan.ruleViolations = true;
+        return plan;
+    }
+
+    /**
+     * Add a measure
+     * 
+     * @param metric
+     *            metric of the measure
+     * @param trend
+     *            true if the trend of the measure is printed
+     * @return DataPlan
+     */
+    public DataPlan addMeasure(final MetricKeys metric, final boolean trend) {
+        if (metrics != null) {
+            metrics.add(metric.getKey());
+        }
+        if (trend && trends != null) {
+            trends.add(metric.getKey());
+        }
+        return this;
+    }
+
+    /**
+     * Add a file ranking
+     * 
+     * @param type
+     *            type of ranking
+     * @return DataPlan
+     */
+    public DataPlan addRanking(final FileInfoTypes type) {
+        rankings.add(type);
+        return this;
+    }
+
+    /**
+     * Add the most violated rules, with the number of violations of each rule
+     * 
+     * @return DataPlan
+     */
+    public DataPlan addRules() {
+        rules = true;
+        return this;
+    }
+
+    /**
+     * Add the violations of the most violated rules
+     * 
+     * @return DataPlan
+     */
+    public DataPlan addRuleViolations() {
+        rules = true;
+        ruleViolations = true;
+        return this;
+    }
+
+    /**
+     * Add all the data of another plan
+     * 
+     * @param plan
+     *            other plan
+     * @return DataPlan
+     */
+    public DataPlan addAll(final DataPlan plan) {
+        metrics = union(metrics, plan.metrics);
+        trends = union(trends, plan.trends);
+        rankings.addAll(plan.rankings);
+        rules |= plan.rules;
+        ruleViolations |= plan.ruleViolations;
+        return this;
+    }
+
+    private static Set<String> union(final Set<String> keys, final Set<String> otherKeys) {
+        if (keys == null || otherKeys == null) {
+            return null;
+        }
+        keys.addAll(otherKeys);
+        return keys;
+    }
+
+    /**
+     * Keep the metrics of the plan
+     * 
+     * @param metricKeys
+     *            keys of metrics
+     * @return keys of the metrics of the plan, in the given order
+     */
+    public <T extends Collection<String>> T filterMetrics(final T metricKeys) {
+        if (metrics != null) {
+            metricKeys.retainAll(metrics);
+        }
+        return metricKeys;
+    }
+
+    public boolean hasTrend(final String metricKey) {
+        return trends == null ? MetricKeys.isMetricNeeded(metricKey) : trends.contains(metricKey);
+    }
+
+    public boolean hasRanking(final FileInfoTypes type) {
+        return rankings.contains(type);
+    }
+
+    public Set<FileInfoTypes> getRankings() {
+        return EnumSet.copyOf(rankings);
+    }
+
+    public boolean hasRules() {
+        return rules;
+    }
+
+    public boolean hasRuleViolations() {
+        return ruleViolations;
+    }
+
+    /**
+     * A plan covers another one if it has at least all its data
+     * 
+     * @param plan
+     *            other plan
+     * @return true if the data of this plan can be used for the other plan
+     */
+    public boolean covers(final DataPlan plan) {
+        return contains(metrics, plan.metrics) && contains(trends, plan.trends)
+                && rankings.containsAll(plan.rankings) && (rules || !plan.rules)
+                && (ruleViolations || !plan.ruleViolations);
+    }
+
+    private static boolean contains(final Set<String> keys, final Set<String> otherKeys) {
+        return keys == null || otherKeys != null && keys.containsAll(otherKeys);
+    }
+
+    @Override
+    public String toString() {
+        return "metrics " + (metrics == null ? "all" : metrics.size()) + ", trends "
+                + (trends == null ? "all" : trends.size()) + ", rankings " + rankings + ", rules " + rules
+                + ", rule violations " + ruleViolations;
+    }
+}
@@ -43,7 +43,7 @@ public class Measures implements Entity {
     }
 
     public Date getDate() {
-        return (Date) date.clone();
+        return date == null ? null : (Date) date.clone();
     }
 
     public void setDate(final Date date) throws ParseException {
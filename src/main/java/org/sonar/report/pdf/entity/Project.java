@@ -57,6 +57,9 @@ public class Project implements Entity {
     // Most duplicated files
     private List<FileInfo> mostDuplicatedFiles;
 
+    // Data retrieved for the project, all the data if null
+    private DataPlan dataPlan;
+
     public Project(final String key) {
         this.key = key;
     }
@@ -163,4 +166,18 @@ public class Project implements Entity {
     public void setMostDuplicatedFiles(final List<FileInfo> mostDuplicatedFiles) {
         this.mostDuplicatedFiles = mostDuplicatedFiles;
     }
+
+    /**
+     * Get the plan of the data retrieved for the project. Snapshots stored
+     * before plans existed have all the data.
+     * 
+     * @return DataPlan
+     */
+    public DataPlan getDataPlan() {
+        return dataPlan == null ? DataPlan.all() : dataPlan;
+    }
+
+    public void setDataPlan(final DataPlan dataPlan) {
+        this.dataPlan = dataPlan;
+    }
 }
@@ -39,7 +39,23 @@ import org.sonar.report.pdf.batch.PDFPostJob;
         @Property(key = PDFPostJob.REPORT_TYPE, name = "Type", description = "Report type.", defaultValue = PDFPostJob.REPORT_TYPE_DEFAULT_VALUE, global = true, project = true, module = false, type = PropertyType.SINGLE_SELECT_LIST, options = {
                 PDFResources.EXECUTIVE_REPORT_TYPE, PDFResources.WORKBOOK_REPORT_TYPE }),
         @Property(key = PDFPostJob.USERNAME, name = "Username", description = "Username for WS API access.", defaultValue = PDFPostJob.USERNAME_DEFAULT_VALUE, global = true, project = true, module = false),
-        @Property(key = PDFPostJob.SONAR_P_KEY, name = "Password", description = "Password for WS API access.", defaultValue = PDFPostJob.SONAR_P_DEFAULT_VALUE, global = true, project = true, module = false, type = PropertyType.PASSWORD) })
+        @Property(key = PDFPostJob.SONAR_P_KEY, name = "Password", description = "Password for WS API access.", defaultValue = PDFPostJob.SONAR_P_DEFAULT_VALUE, global = true, project = true, module = false, type = PropertyType.PASSWORD),
+        @Property(key = PDFPostJob.FONT, name = "Font", description = "Path of a TrueType font embedded in the report, for non-Latin project names.", defaultValue = PDFPostJob.FONT_DEFAULT_VALUE, global = true, project = true, module = false),
+        @Property(key = PDFPostJob.OUTPUT_PROFILE, name = "Output profile", description = "compact: smallest file, best for archiving. fast: no compression, for local previews.", defaultValue = PDFPostJob.OUTPUT_PROFILE_DEFAULT_VALUE, global = true, project = true, module = false, type = PropertyType.SINGLE_SELECT_LIST, options = {
+                "default", "compact", "fast" }),
+        @Property(key = PDFPostJob.SNAPSHOT_DIR, name = "Snapshot directory", description = "Directory keeping project data between analyses, so that modules not analysed again are not fetched and unchanged chapters are not laid out again. Must survive the work dir. Disabled if blank.", defaultValue = PDFPostJob.SNAPSHOT_DIR_DEFAULT_VALUE, global = true, project = true, module = false),
+        @Property(key = PDFPostJob.METRICS_FILE, name = "Metrics file", description = "Write timings and web service statistics of the report generation in pdf-report-metrics.json, in the work dir.", defaultValue = ""
+                + PDFPostJob.METRICS_FILE_DEFAULT_VALUE, global = true, project = true, module = false, type = PropertyType.BOOLEAN),
+        @Property(key = PDFPostJob.SCANNER_DATA, name = "Data of the analysis", description = "Read the measures and issues of the report in the running analysis instead of asking the server for them. Only the trends are asked to the server. Not available with asynchronous generation.", defaultValue = ""
+                + PDFPostJob.SCANNER_DATA_DEFAULT_VALUE, global = true, project = true, module = false, type = PropertyType.BOOLEAN),
+        @Property(key = PDFPostJob.UPLOAD_GZIP, name = "Compressed upload", description = "Gzip the report sent to the server when it makes it smaller. Reports identical to the stored one are never sent again.", defaultValue = ""
+                + PDFPostJob.UPLOAD_GZIP_DEFAULT_VALUE, global = true, project = true, module = false, type = PropertyType.BOOLEAN),
+        @Property(key = PDFPostJob.ASYNC, name = "Asynchronous", description = "Generate and upload the report in a background process, so that the analysis does not wait for it. The job state is written in <project>-pdf-job.properties, in the asynchronous jobs directory.", defaultValue = ""
+                + PDFPostJob.ASYNC_DEFAULT_VALUE, global = true, project = true, module = false, type = PropertyType.BOOLEAN),
+        @Property(key = PDFPostJob.ASYNC_TIMEOUT, name = "Asynchronous wait", description = "Seconds the analysis waits for a report generated in background. 0: no wait.", defaultValue = ""
+                + PDFPostJob.ASYNC_TIMEOUT_DEFAULT_VALUE, global = true, project = true, module = false, type = PropertyType.INTEGER),
+        @Property(key = PDFPostJob.ASYNC_DIR, name = "Asynchronous jobs directory", description = "Directory of the state, log and report of the jobs generated in background. It must outlive the work dir, which the next analysis wipes. Default: ~/.sonar/pdf-jobs.", defaultValue = ""
+                + PDFPostJob.ASYNC_DIR_DEFAULT_VALUE, global = true, project = true, module = false) })
 public class PDFReportPlugin extends SonarPlugin {
 
     /**
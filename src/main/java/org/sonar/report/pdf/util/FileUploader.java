@@ -19,61 +19,511 @@
  */
 package org.sonar.report.pdf.util;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.httpclient.Credentials;
 import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethodBase;
 import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.NameValuePair;
 import org.apache.commons.httpclient.UsernamePasswordCredentials;
 import org.apache.commons.httpclient.auth.AuthScope;
+import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
+import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
 import org.apache.commons.httpclient.methods.multipart.FilePart;
+import org.apache.commons.httpclient.methods.multipart.FilePartSource;
 import org.apache.commons.httpclient.methods.multipart.MultipartRequestEntity;
 import org.apache.commons.httpclient.methods.multipart.Part;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.sonar.report.pdf.batch.PDFPostJob;
 
 /**
- * File uploader for the report
+ * File uploader for the report. Reports larger than a chunk are sent chunk
+ * by chunk, each with its SHA-1, to the store_chunk action; the server keeps
+ * the received part under an upload id (the SHA-1 of the report), so an
+ * interrupted upload is resumed from the last stored chunk, even by another
+ * analysis of the same report. Failed requests are retried.
+ * 
+ * Before any upload, the server is asked whether it already stores a report
+ * with the same SHA-1, in which case nothing is sent. A report gzipped for
+ * its upload is compressed before it is cut in chunks: the upload id is then
+ * the SHA-1 of the compressed report, which the server inflates once it has
+ * received it all.
  *
  */
 public class FileUploader {
 
-    private static final Logger LOG = LoggerFactory.getLogger(PDFPostJob.class);
+    private static final Logger LOG = LoggerFactory.getLogger(FileUploader.class);
+
+    public static final int CHUNK_SIZE = 1024 * 1024;
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final int CONNECTION_TIMEOUT_MS = 10000;
+    private static final int SO_TIMEOUT_MS = 60000;
+    private static final int MAX_CONNECTIONS = 4;
+
+    /**
+     * Largest response body read: the actions answer an offset or a short
+     * message
+     */
+    private static final int MAX_RESPONSE_BYTES = 8 * 1024;
+
+    private static final String CHECK_ACTION = "check";
+    private static final String STATUS_ACTION = "upload_status";
+    private static final String CHUNK_ACTION = "store_chunk";
+    private static final String COMPLETE_ACTION = "complete";
+
+    private static final MultiThreadedHttpConnectionManager CONNECTIONS = createConnectionManager();
 
     private FileUploader() {
         super();
     }
 
-    public static void upload(final File file, final String url, String username, String password) {
-        PostMethod filePost = new PostMethod(url);
+    /**
+     * Upload the report to the server
+     * 
+     * @param file
+     *            report file
+     * @param url
+     *            URL of the store action
+     * @param username
+     *            username, may be null
+     * @param password
+     *            password, may be null
+     * @return true if the report was stored
+     */
+    public static boolean upload(final File file, final String url, String username, String password) {
+        return upload(file, url, username, password, CHUNK_SIZE, false, new ReportMetrics());
+    }
 
+    /**
+     * Upload the report to the server
+     * 
+     * @param file
+     *            report file
+     * @param url
+     *            URL of the store action
+     * @param username
+     *            username, may be null
+     * @param password
+     *            password, may be null
+     * @param gzip
+     *            compress the report for its upload
+     * @param metrics
+     *            metrics of the report, receiving the upload requests
+     * @return true if the report was stored
+     */
+    public static boolean upload(final File file, final String url, String username, String password,
+            final boolean gzip, final ReportMetrics metrics) {
+        return upload(file, url, username, password, CHUNK_SIZE, gzip, metrics);
+    }
+
+    /**
+     * Upload the report to the server
+     * 
+     * @param file
+     *            report file
+     * @param url
+     *            URL of the store action; the chunk actions are next to it
+     * @param username
+     *            username, may be null
+     * @param password
+     *            password, may be null
+     * @param chunkSize
+     *            size of the chunks; smaller reports are sent at once
+     * @param gzip
+     *            compress the report for its upload
+     * @param metrics
+     *            metrics of the report, receiving the upload requests
+     * @return true if the report was stored
+     */
+    public static boolean upload(final File file, final String url, String username, String password,
+            final int chunkSize, final boolean gzip, final ReportMetrics metrics) {
+        ReportMetrics.Timer timer = metrics.start(ReportMetrics.UPLOAD);
         try {
             LOG.info("Uploading PDF to server...");
+            HttpClient client = createClient(username, password);
+            String sha1 = sha1(file);
+            if (isStored(client, file, url, sha1, metrics)) {
+                LOG.info("PDF unchanged since the last upload, not sent again.");
+                return true;
+            }
+            File compressed = gzip ? compress(file) : null;
+            try {
+                File sent = compressed != null ? compressed : file;
+                boolean stored;
+                Boolean chunked = sent.length() > chunkSize ? uploadChunks(client, file, compressed, url,
+                        compressed != null ? sha1(compressed) : sha1, chunkSize, metrics) : null;
+                if (chunked != null) {
+                    stored = chunked;
+                } else {
+                    stored = uploadFile(client, file, compressed, url, sha1, metrics);
+                }
+                if (stored) {
+                    LOG.info("PDF uploaded.");
+                }
+                return stored;
+            } finally {
+                if (compressed != null && !compressed.delete()) {
+                    LOG.warn("Can not delete " + compressed.getAbsolutePath());
+                }
+            }
+        } catch (IOException e) {
+            LOG.error("Something went wrong storing the PDF at server side", e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.error("PDF upload interrupted");
+            return false;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Ask the server whether it already stores this report. Any failure is
+     * taken as a no: the report is then uploaded.
+     */
+    private static boolean isStored(final HttpClient client, final File file, final String url, final String sha1,
+            final ReportMetrics metrics) {
+        String checkUrl = getActionUrl(url, CHECK_ACTION);
+        GetMethod get = new GetMethod(checkUrl);
+        get.setQueryString(new NameValuePair[] { new NameValuePair("pdfname", file.getName()),
+                new NameValuePair("sha1", sha1) });
+        try {
+            return execute(client, get, checkUrl, 0, metrics).status == HttpStatus.SC_OK;
+        } catch (IOException e) {
+            LOG.warn("Can not check the PDF stored at server side: " + e);
+            return false;
+        }
+    }
 
-            Part[] parts = { new FilePart("upload", file) };
+    /**
+     * Send the whole report in a multipart request
+     * 
+     * @param compressed
+     *            gzipped report to send instead of the report, or null
+     */
+    private static boolean uploadFile(final HttpClient client, final File file, final File compressed,
+            final String url, final String sha1, final ReportMetrics metrics)
+            throws IOException, InterruptedException {
+        NameValuePair[] query = { new NameValuePair("pdfname", file.getName()), new NameValuePair("sha1", sha1),
+                getEncoding(compressed) };
+        for (int attempt = 1;; attempt++) {
+            PostMethod post = new PostMethod(url);
+            post.setQueryString(query);
+            try {
+                Part part;
+                if (compressed != null) {
+                    part = new FilePart("upload", new FilePartSource(file.getName() + ".gz", compressed),
+                            "application/gzip", null);
+                } else {
+                    part = new FilePart("upload", file);
+                }
+                post.setRequestEntity(new MultipartRequestEntity(new Part[] { part }, post.getParams()));
+                Response response = execute(client, post, url,
+                        compressed != null ? compressed.length() : file.length(), metrics);
+                if (response.status == HttpStatus.SC_OK) {
+                    return true;
+                }
+                LOG.error("Something went wrong storing the PDF at server side. Status: " + response.status);
+                if (response.status < HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+                    return false;
+                }
+            } catch (IOException e) {
+                LOG.error("Something went wrong storing the PDF at server side", e);
+            }
+            if (!retry(url, attempt, metrics)) {
+                return false;
+            }
+        }
+    }
 
-            filePost.setRequestEntity(new MultipartRequestEntity(parts, filePost.getParams()));
+    private static NameValuePair getEncoding(final File compressed) {
+        return new NameValuePair("encoding", compressed != null ? "gzip" : "identity");
+    }
 
-            HttpClient client = new HttpClient();
-            if (username != null && !username.isEmpty() && password != null && !password.isEmpty()) {
-                client.getParams().setAuthenticationPreemptive(true);
-                Credentials credentials = new UsernamePasswordCredentials(username, password);
-                client.getState().setCredentials(new AuthScope(AuthScope.ANY_HOST, AuthScope.ANY_PORT), credentials);
+    /**
+     * Gzip the report in a temporary file
+     * 
+     * @return the compressed file, or null if it is not smaller than the
+     *         report
+     */
+    private static File compress(final File file) throws IOException {
+        File compressed = File.createTempFile(file.getName(), ".gz");
+        try (InputStream in = new FileInputStream(file);
+                OutputStream out = new GZIPOutputStream(new FileOutputStream(compressed))) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
             }
-            client.getHttpConnectionManager().getParams().setConnectionTimeout(10000);
-            int status = client.executeMethod(filePost);
-            if (status == HttpStatus.SC_OK) {
-                LOG.info("PDF uploaded.");
-            } else {
-                LOG.error("Something went wrong storing the PDF at server side. Status: " + status);
+        }
+        if (compressed.length() < file.length()) {
+            LOG.debug("PDF compressed from " + file.length() + " to " + compressed.length() + " bytes");
+            return compressed;
+        }
+        LOG.debug("PDF not compressed, gzip does not make it smaller");
+        if (!compressed.delete()) {
+            LOG.warn("Can not delete " + compressed.getAbsolutePath());
+        }
+        return null;
+    }
+
+    /**
+     * Send the report chunk by chunk, starting after the chunks already stored
+     * by the server
+     * 
+     * @param compressed
+     *            gzipped report to send instead of the report, or null
+     * @param uploadId
+     *            SHA-1 of the sent file
+     * @return true if the report was stored, false if it failed, null if the
+     *         server does not support chunked uploads
+     */
+    private static Boolean uploadChunks(final HttpClient client, final File file, final File compressed,
+            final String url, final String uploadId, final int chunkSize, final ReportMetrics metrics)
+            throws IOException, InterruptedException {
+        NameValuePair name = new NameValuePair("pdfname", file.getName());
+        NameValuePair id = new NameValuePair("upload_id", uploadId);
+        File sent = compressed != null ? compressed : file;
+        long length = sent.length();
+
+        String statusUrl = getActionUrl(url, STATUS_ACTION);
+        Long offset = null;
+        for (int attempt = 1; offset == null; attempt++) {
+            GetMethod get = new GetMethod(statusUrl);
+            get.setQueryString(new NameValuePair[] { name, id });
+            try {
+                Response response = execute(client, get, statusUrl, 0, metrics);
+                if (response.status == HttpStatus.SC_NOT_FOUND) {
+                    return null;
+                }
+                if (response.status == HttpStatus.SC_OK) {
+                    offset = response.getOffset();
+                } else if (response.status < HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+                    LOG.error("Can not get PDF upload status. Status: " + response.status);
+                    return false;
+                }
+            } catch (IOException e) {
+                LOG.warn("Can not get PDF upload status: " + e);
             }
-        } catch (Exception e) {
-            LOG.error("Something went wrong storing the PDF at server side", e);
+            if (offset == null && !retry(statusUrl, attempt, metrics)) {
+                return false;
+            }
+        }
+        if (offset > 0) {
+            LOG.info("Resuming PDF upload at " + offset + " of " + length + " bytes");
+        }
+
+        String chunkUrl = getActionUrl(url, CHUNK_ACTION);
+        try (RandomAccessFile in = new RandomAccessFile(sent, "r")) {
+            int attempt = 1;
+            // attempts start again only when the server stores more than before
+            long confirmed = offset;
+            while (offset < length) {
+                byte[] chunk = new byte[(int) Math.min(chunkSize, length - offset)];
+                in.seek(offset);
+                in.readFully(chunk);
+                PostMethod post = new PostMethod(chunkUrl);
+                post.setQueryString(new NameValuePair[] { name, id, new NameValuePair("offset", offset.toString()),
+                        new NameValuePair("sha1", toHex(newDigest().digest(chunk))) });
+                post.setRequestEntity(new ByteArrayRequestEntity(chunk, "application/octet-stream"));
+                Long stored = null;
+                try {
+                    Response response = execute(client, post, chunkUrl, chunk.length, metrics);
+                    // on conflict, the server gives the offset it expects
+                    if (response.status == HttpStatus.SC_OK || response.status == HttpStatus.SC_CONFLICT) {
+                        stored = response.getOffset();
+                    } else if (response.status < HttpStatus.SC_INTERNAL_SERVER_ERROR
+                            && response.status != HttpStatus.SC_UNPROCESSABLE_ENTITY) {
+                        LOG.error("Something went wrong storing the PDF at server side. Status: " + response.status);
+                        return false;
+                    }
+                } catch (IOException e) {
+                    LOG.warn("Can not store PDF chunk at " + offset + ": " + e);
+                }
+                if (stored != null && stored > confirmed) {
+                    offset = stored;
+                    confirmed = stored;
+                    attempt = 1;
+                    continue;
+                }
+                if (stored != null) {
+                    LOG.warn("PDF upload did not progress, the server expects offset " + stored);
+                    offset = stored;
+                }
+                if (!retry(chunkUrl, attempt++, metrics)) {
+                    return false;
+                }
+            }
+        }
+
+        String completeUrl = getActionUrl(url, COMPLETE_ACTION);
+        for (int attempt = 1;; attempt++) {
+            PostMethod post = new PostMethod(completeUrl);
+            post.setQueryString(new NameValuePair[] { name, id, new NameValuePair("size", String.valueOf(length)),
+                    getEncoding(compressed) });
+            try {
+                Response response = execute(client, post, completeUrl, 0, metrics);
+                if (response.status == HttpStatus.SC_OK) {
+                    return true;
+                }
+                if (response.status == HttpStatus.SC_UNPROCESSABLE_ENTITY) {
+                    LOG.error("PDF stored at server side does not match the report, it will be sent again");
+                    return false;
+                }
+                if (response.status < HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+                    LOG.error("Something went wrong storing the PDF at server side. Status: " + response.status);
+                    return false;
+                }
+            } catch (IOException e) {
+                LOG.warn("Can not complete PDF upload: " + e);
+            }
+            if (!retry(completeUrl, attempt, metrics)) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Wait before a new attempt
+     * 
+     * @return false if there are no attempts left
+     */
+    private static boolean retry(final String url, final int attempt, final ReportMetrics metrics)
+            throws InterruptedException {
+        if (attempt >= MAX_ATTEMPTS) {
+            LOG.error("PDF upload failed after " + attempt + " attempts");
+            return false;
+        }
+        metrics.recordRetry(URI.create(url).getPath());
+        Thread.sleep(RETRY_DELAY_MS * attempt);
+        return true;
+    }
+
+    private static Response execute(final HttpClient client, final HttpMethodBase method, final String url,
+            final long bytes, final ReportMetrics metrics) throws IOException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            int status = client.executeMethod(method);
+            failed = status >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+            return new Response(status, readBody(method));
         } finally {
-            filePost.releaseConnection();
+            method.releaseConnection();
+            metrics.recordRequest(URI.create(url).getPath(), System.nanoTime() - start, bytes, failed);
         }
     }
 
+    /**
+     * Read the response body, without buffering more than
+     * MAX_RESPONSE_BYTES
+     * 
+     * @return body, or null if there is none
+     */
+    private static String readBody(final HttpMethodBase method) throws IOException {
+        InputStream in = method.getResponseBodyAsStream();
+        if (in == null) {
+            return null;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while (body.size() < MAX_RESPONSE_BYTES && (read = in.read(buffer)) != -1) {
+            body.write(buffer, 0, Math.min(read, MAX_RESPONSE_BYTES - body.size()));
+        }
+        return body.toString(method.getResponseCharSet());
+    }
+
+    private static String getActionUrl(final String storeUrl, final String action) {
+        return storeUrl.substring(0, storeUrl.lastIndexOf('/') + 1) + action;
+    }
+
+    private static HttpClient createClient(final String username, final String password) {
+        HttpClient client = new HttpClient(CONNECTIONS);
+        if (username != null && !username.isEmpty() && password != null && !password.isEmpty()) {
+            client.getParams().setAuthenticationPreemptive(true);
+            Credentials credentials = new UsernamePasswordCredentials(username, password);
+            client.getState().setCredentials(new AuthScope(AuthScope.ANY_HOST, AuthScope.ANY_PORT), credentials);
+        }
+        return client;
+    }
+
+    private static MultiThreadedHttpConnectionManager createConnectionManager() {
+        HttpConnectionManagerParams params = new HttpConnectionManagerParams();
+        params.setConnectionTimeout(CONNECTION_TIMEOUT_MS);
+        params.setSoTimeout(SO_TIMEOUT_MS);
+        params.setDefaultMaxConnectionsPerHost(MAX_CONNECTIONS);
+        MultiThreadedHttpConnectionManager connections = new MultiThreadedHttpConnectionManager();
+        connections.setParams(params);
+        return connections;
+    }
+
+    private static String sha1(final File file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Status and body of a response
+     */
+    private static class Response {
+        private final int status;
+        private final String body;
+
+        Response(final int status, final String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        /**
+         * @return offset given by the server, or null if there is none
+         */
+        Long getOffset() {
+            try {
+                return body == null ? null : Long.valueOf(body.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
 }
@@ -0,0 +1,410 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Serializable;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+
+/**
+ * Timers and counters of a report generation: time spent per phase, and
+ * requests, failures, retries, shared and hedged requests, bytes and latency
+ * per web service (base URL of the query), and concurrency limit per server.
+ * Phases may be nested ("fetch/trends" is part of "fetch"). Each report has
+ * its own metrics; the metrics of a batch of reports are the parent of the
+ * metrics of its reports, and receive everything they record. Percentiles are
+ * computed on a bounded random sample of the latencies.
+ */
+public final class ReportMetrics implements Serializable {
+
+    private static final long serialVersionUID = -2310591316433036547L;
+
+    public static final String FETCH = "fetch";
+    public static final String FETCH_MEASURES = "fetch/measures";
+    public static final String FETCH_TRENDS = "fetch/trends";
+    public static final String FETCH_RULES = "fetch/rules";
+    public static final String FETCH_FILES = "fetch/files";
+    public static final String UNMARSHAL = "unmarshal";
+    public static final String RENDER_FRONT_PAGE = "render/front page";
+    public static final String RENDER_BODY = "render/body";
+    public static final String RENDER_MERGE = "render/merge";
+    public static final String UPLOAD = "upload";
+
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    /**
+     * Latencies kept per phase or web service to compute the percentiles
+     */
+    private static final int RESERVOIR_SIZE = 1024;
+
+    private final ReportMetrics parent;
+
+    private final Map<String, Stat> phases = new LinkedHashMap<>();
+
+    private final Map<String, Stat> requests = new LinkedHashMap<>();
+
+    private final Map<String, Limit> limits = new LinkedHashMap<>();
+
+    public ReportMetrics() {
+        this(null);
+    }
+
+    /**
+     * Metrics also recorded in a parent
+     * 
+     * @param parent
+     *            metrics of the batch the report is part of, may be null
+     */
+    public ReportMetrics(final ReportMetrics parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Start timing a phase. The timer must be stopped, usually in a finally
+     * block.
+     * 
+     * @param phase
+     *            phase
+     * @return Timer
+     */
+    public Timer start(final String phase) {
+        return new Timer(phase);
+    }
+
+    /**
+     * Record a web service request
+     * 
+     * @param url
+     *            base URL of the query
+     * @param nanos
+     *            latency
+     * @param bytes
+     *            size of the response, or of the request for uploads
+     * @param failed
+     *            true if no response could be used
+     */
+    public void recordRequest(final String url, final long nanos, final long bytes, final boolean failed) {
+        synchronized (this) {
+            Stat stat = getStat(requests, url);
+            stat.add(nanos);
+            stat.bytes += bytes;
+            if (failed) {
+                stat.failures++;
+            }
+        }
+        if (parent != null) {
+            parent.recordRequest(url, nanos, bytes, failed);
+        }
+    }
+
+    /**
+     * Record a retry of a web service request
+     * 
+     * @param url
+     *            base URL of the query
+     */
+    public void recordRetry(final String url) {
+        synchronized (this) {
+            getStat(requests, url).retries++;
+        }
+        if (parent != null) {
+            parent.recordRetry(url);
+        }
+    }
+
+    /**
+     * Record a web service request not sent because the same request was
+     * being sent by another thread, whose result is shared
+     * 
+     * @param url
+     *            base URL of the query
+     */
+    public void recordShared(final String url) {
+        synchronized (this) {
+            getStat(requests, url).shared++;
+        }
+        if (parent != null) {
+            parent.recordShared(url);
+        }
+    }
+
+    /**
+     * Record the number of queries sent at once to a server
+     * 
+     * @param server
+     *            server
+     * @param limit
+     *            current limit
+     */
+    public void recordConcurrencyLimit(final String server, final int limit) {
+        synchronized (this) {
+            Limit stat = limits.get(server);
+            if (stat == null) {
+                stat = new Limit(limit);
+                limits.put(server, stat);
+            }
+            stat.set(limit);
+        }
+        if (parent != null) {
+            parent.recordConcurrencyLimit(server, limit);
+        }
+    }
+
+    /**
+     * Record a web service request sent to another node of the server too,
+     * because its response was late
+     * 
+     * @param url
+     *            base URL of the query
+     */
+    public void recordHedged(final String url) {
+        synchronized (this) {
+            getStat(requests, url).hedged++;
+        }
+        if (parent != null) {
+            parent.recordHedged(url);
+        }
+    }
+
+    /**
+     * Summary table of phases and web service requests
+     * 
+     * @return String
+     */
+    public synchronized String formatSummary() {
+        StringBuilder sb = new StringBuilder("PDF report metrics\n");
+        sb.append(String.format(Locale.ENGLISH, "%-24s %8s %12s %10s%n", "Phase", "Count", "Total ms", "Avg ms"));
+        for (Entry<String, Stat> entry : phases.entrySet()) {
+            Stat stat = entry.getValue();
+            sb.append(String.format(Locale.ENGLISH, "%-24s %8d %12.1f %10.1f%n", entry.getKey(), stat.count,
+                    toMillis(stat.total), toMillis(stat.total) / stat.count));
+        }
+        sb.append(String.format(Locale.ENGLISH, "%-24s %8s %8s %8s %8s %8s %10s %8s %8s %8s %8s%n", "Web service",
+                "Requests", "Failures", "Retries", "Shared", "Hedged", "KB", "p50 ms", "p95 ms", "p99 ms", "Max ms"));
+        for (Entry<String, Stat> entry : requests.entrySet()) {
+            Stat stat = entry.getValue();
+            sb.append(String.format(Locale.ENGLISH, "%-24s %8d %8d %8d %8d %8d %10d %8.1f %8.1f %8.1f %8.1f%n",
+                    entry.getKey(), stat.count, stat.failures, stat.retries, stat.shared, stat.hedged,
+                    stat.bytes / 1024, toMillis(stat.percentile(50)), toMillis(stat.percentile(95)),
+                    toMillis(stat.percentile(99)), toMillis(stat.percentile(100))));
+        }
+        if (!limits.isEmpty()) {
+            sb.append(String.format(Locale.ENGLISH, "%-24s %8s %8s %8s%n", "Concurrency limit", "Current", "Min",
+                    "Max"));
+            for (Entry<String, Limit> entry : limits.entrySet()) {
+                Limit limit = entry.getValue();
+                sb.append(String.format(Locale.ENGLISH, "%-24s %8d %8d %8d%n", entry.getKey(), limit.current,
+                        limit.min, limit.max));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Metrics as JSON
+     * 
+     * @return String
+     */
+    public synchronized String toJson() {
+        JsonObject phasesJson = new JsonObject();
+        for (Entry<String, Stat> entry : phases.entrySet()) {
+            Stat stat = entry.getValue();
+            JsonObject phase = new JsonObject();
+            phase.addProperty("count", stat.count);
+            phase.addProperty("totalMs", toMillis(stat.total));
+            phasesJson.add(entry.getKey(), phase);
+        }
+        JsonObject requestsJson = new JsonObject();
+        for (Entry<String, Stat> entry : requests.entrySet()) {
+            Stat stat = entry.getValue();
+            JsonObject request = new JsonObject();
+            request.addProperty("count", stat.count);
+            request.addProperty("failures", stat.failures);
+            request.addProperty("retries", stat.retries);
+            request.addProperty("shared", stat.shared);
+            request.addProperty("hedged", stat.hedged);
+            request.addProperty("bytes", stat.bytes);
+            request.addProperty("totalMs", toMillis(stat.total));
+            request.addProperty("p50Ms", toMillis(stat.percentile(50)));
+            request.addProperty("p95Ms", toMillis(stat.percentile(95)));
+            request.addProperty("p99Ms", toMillis(stat.percentile(99)));
+            request.addProperty("maxMs", toMillis(stat.percentile(100)));
+            requestsJson.add(entry.getKey(), request);
+        }
+        JsonObject limitsJson = new JsonObject();
+        for (Entry<String, Limit> entry : limits.entrySet()) {
+            Limit stat = entry.getValue();
+            JsonObject limit = new JsonObject();
+            limit.addProperty("current", stat.current);
+            limit.addProperty("min", stat.min);
+            limit.addProperty("max", stat.max);
+            limitsJson.add(entry.getKey(), limit);
+        }
+        JsonObject json = new JsonObject();
+        json.add("phases", phasesJson);
+        json.add("requests", requestsJson);
+        json.add("concurrencyLimits", limitsJson);
+        return new GsonBuilder().setPrettyPrinting().create().toJson(json);
+    }
+
+    /**
+     * Write metrics as JSON
+     * 
+     * @param file
+     *            target file
+     * @throws IOException
+     *             IOException
+     */
+    public void writeJson(final File file) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(toJson());
+        }
+    }
+
+    private void recordPhase(final String phase, final long nanos) {
+        synchronized (this) {
+            getStat(phases, phase).add(nanos);
+        }
+        if (parent != null) {
+            parent.recordPhase(phase, nanos);
+        }
+    }
+
+    private static Stat getStat(final Map<String, Stat> stats, final String key) {
+        Stat stat = stats.get(key);
+        if (stat == null) {
+            stat = new Stat();
+            stats.put(key, stat);
+        }
+        return stat;
+    }
+
+    private static double toMillis(final long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Running timer of a phase
+     */
+    public final class Timer {
+
+        private final String phase;
+
+        private final long start = System.nanoTime();
+
+        private Timer(final String phase) {
+            this.phase = phase;
+        }
+
+        /**
+         * Stop the timer and record the elapsed time for its phase
+         */
+        public void stop() {
+            recordPhase(phase, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Samples of a phase or a web service. Past {@link #RESERVOIR_SIZE}
+     * samples, each new latency replaces a kept one with a probability
+     * decreasing with the count, so that the kept ones stay a uniform sample.
+     */
+    private static class Stat implements Serializable {
+        private static final long serialVersionUID = 6970232591962457281L;
+        private int count;
+        private int failures;
+        private int retries;
+        private int shared;
+        private int hedged;
+        private long bytes;
+        private long total;
+        private long max;
+        private long[] samples = new long[16];
+
+        void add(final long nanos) {
+            count++;
+            total += nanos;
+            max = Math.max(max, nanos);
+            if (count <= RESERVOIR_SIZE) {
+                if (count > samples.length) {
+                    samples = Arrays.copyOf(samples, Math.min(samples.length * 2, RESERVOIR_SIZE));
+                }
+                samples[count - 1] = nanos;
+            } else {
+                int slot = ThreadLocalRandom.current().nextInt(count);
+                if (slot < RESERVOIR_SIZE) {
+                    samples[slot] = nanos;
+                }
+            }
+        }
+
+        /**
+         * Nearest-rank percentile of the kept samples; the maximum is exact
+         */
+        long percentile(final int percent) {
+            if (count == 0) {
+                return 0;
+            }
+            if (percent >= 100) {
+                return max;
+            }
+            int kept = Math.min(count, RESERVOIR_SIZE);
+            long[] sorted = Arrays.copyOf(samples, kept);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percent / 100d * kept);
+            return sorted[Math.max(rank, 1) - 1];
+        }
+    }
+
+    /**
+     * Current, lowest and highest values of a concurrency limit
+     */
+    private static class Limit implements Serializable {
+        private static final long serialVersionUID = -4467096409929911226L;
+        private int current;
+        private int min;
+        private int max;
+
+        Limit(final int limit) {
+            min = limit;
+            max = limit;
+        }
+
+        void set(final int limit) {
+            current = limit;
+            min = Math.min(min, limit);
+            max = Math.max(max, limit);
+        }
+    }
+
+}
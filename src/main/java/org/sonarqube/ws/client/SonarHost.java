@@ -20,9 +20,13 @@
 package org.sonarqube.ws.client;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
- * Bean defining the Sonar Host
+ * Bean defining the Sonar Host. A server with several application nodes is
+ * defined by its main URL and the URLs of its other nodes.
  *
  */
 public class SonarHost implements Serializable {
@@ -30,9 +34,18 @@ public class SonarHost implements Serializable {
      * 
      */
     private static final long serialVersionUID = 7479172149694486308L;
+
+    /**
+     * Percentile of the latency after which a query is sent to another node
+     * too
+     */
+    public static final int DEFAULT_HEDGE_PERCENTILE = 95;
+
     private String host;
     private String username;
     private String password;
+    private List<String> nodes = new ArrayList<>();
+    private int hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
 
     public SonarHost(String host) {
         this.host = host;
@@ -70,4 +83,56 @@ public class SonarHost implements Serializable {
         this.password = password;
         return this;
     }
+
+    /**
+     * Gets the URLs of all the nodes of the server, the main URL first
+     * 
+     * @return URLs
+     */
+    public List<String> getHosts() {
+        List<String> hosts = new ArrayList<>(nodes.size() + 1);
+        hosts.add(host);
+        hosts.addAll(nodes);
+        return Collections.unmodifiableList(hosts);
+    }
+
+    /**
+     * Sets the URLs of the other nodes of the server
+     * 
+     * @param nodes
+     *            comma separated URLs, or null
+     * @return SonarHost
+     */
+    public SonarHost setNodes(String nodes) {
+        this.nodes = new ArrayList<>();
+        if (nodes != null) {
+            for (String node : nodes.split(",")) {
+                String url = node.trim();
+                while (url.endsWith("/")) {
+                    url = url.substring(0, url.length() - 1);
+                }
+                if (!url.isEmpty() && !url.equals(host) && !this.nodes.contains(url)) {
+                    this.nodes.add(url);
+                }
+            }
+        }
+        return this;
+    }
+
+    public int getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    /**
+     * Sets the percentile of the latency after which a query is sent to
+     * another node too, the first response being used
+     * 
+     * @param hedgePercentile
+     *            percentile, or 0 to never send a query twice
+     * @return SonarHost
+     */
+    public SonarHost setHedgePercentile(int hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+        return this;
+    }
 }
@@ -22,8 +22,12 @@ package org.sonarqube.ws.client;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 
 import org.sonar.report.pdf.entity.exception.ReportException;
+import org.sonar.report.pdf.util.ReportMetrics;
 import org.sonarqube.ws.client.services.Query;
 import org.sonarqube.ws.client.services.WSUtils;
 import org.sonarqube.ws.client.unmarshallers.ListOfJson;
@@ -37,7 +41,10 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
 
 /**
- * Sonar Webservice client
+ * Sonar Webservice client. Identical queries sent at the same time by several
+ * threads are executed and unmarshalled only once, all the threads getting
+ * the same result, so the models returned must not be modified (see
+ * {@link Model}).
  *
  */
 public class WSClient implements Serializable {
@@ -55,8 +62,20 @@ public class WSClient implements Serializable {
 
     private Connector connector;
 
+    private final ReportMetrics metrics;
+
+    /**
+     * Queries being executed, by kind and URL
+     */
+    private transient ConcurrentMap<String, Flight> flights;
+
     public WSClient(Connector connector) {
+        this(connector, new ReportMetrics());
+    }
+
+    public WSClient(Connector connector, ReportMetrics metrics) {
         this.connector = connector;
+        this.metrics = metrics;
     }
 
     public Connector getConnector() {
@@ -64,47 +83,191 @@ public class WSClient implements Serializable {
     }
 
     /**
-     * Find request
+     * @return metrics receiving the requests of the client
+     */
+    public ReportMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get a client sharing the connector and the queries being executed of
+     * this one, but recording its requests in other metrics, so that the
+     * reports sharing a client have their own metrics
+     * 
+     * @param reportMetrics
+     *            metrics of the report
+     * @return WSClient
+     */
+    public WSClient forReport(final ReportMetrics reportMetrics) {
+        WSClient client = new WSClient(connector, reportMetrics);
+        client.flights = getFlights();
+        return client;
+    }
+
+    /**
+     * Find request. The model may be shared with the other threads sending
+     * the same query at the same time, so it must not be modified.
      * 
      * @param query
      *            query
      * @return Model
      */
-    public <M extends Model> M find(Query<M> query) throws ReportException {
-        String json = connector.execute(query);
+    public <M extends Model> M find(final Query<M> query) throws ReportException {
+        return share("find " + query.getUrl(), query, new Call<M>() {
+            @Override
+            public M call() throws ReportException {
+                return unmarshal(query);
+            }
+        });
+    }
+
+    private <M extends Model> M unmarshal(Query<M> query) throws ReportException {
+        String json = execute(query);
         M result = null;
         if (json != null) {
+            ReportMetrics.Timer timer = metrics.start(ReportMetrics.UNMARSHAL);
             try {
                 result = gson.fromJson(json, query.getModelClass());
             } catch (JsonSyntaxException e) {
                 throw new UnmarshalException(query, json, e);
+            } finally {
+                timer.stop();
             }
         }
         return result;
     }
 
     /**
-     * Find all request
+     * Find all request. The list can not be modified, and its models may be
+     * shared with the other threads sending the same query at the same time.
      * 
      * @param query
      *            query
      * @return List of Model
      */
-    public <M extends Model> List<M> findAll(Query<M> query) throws ReportException {
-        String json = connector.execute(query);
+    public <M extends Model> List<M> findAll(final Query<M> query) throws ReportException {
+        return share("findAll " + query.getUrl(), query, new Call<List<M>>() {
+            @Override
+            public List<M> call() throws ReportException {
+                return unmarshalAll(query);
+            }
+        });
+    }
+
+    private <M extends Model> List<M> unmarshalAll(Query<M> query) throws ReportException {
+        String json = execute(query);
         List<M> result;
         if (json == null) {
             result = Collections.emptyList();
         } else {
+            ReportMetrics.Timer timer = metrics.start(ReportMetrics.UNMARSHAL);
             try {
-                result = gson.fromJson(json, new ListOfJson<M>(query.getModelClass()));
+                List<M> models = gson.fromJson(json, new ListOfJson<M>(query.getModelClass()));
+                result = Collections.unmodifiableList(models);
             } catch (Exception e) {
                 throw new UnmarshalException(query, json, e);
+            } finally {
+                timer.stop();
             }
         }
         return result;
     }
 
+    /**
+     * Run a call once for all the threads asking for it at the same time: the
+     * first thread runs it, the others wait for its result or its failure
+     * 
+     * @param key
+     *            kind and URL of the query
+     * @param query
+     *            query
+     * @param call
+     *            call
+     * @return result of the call
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T share(final String key, final Query<?> query, final Call<T> call) throws ReportException {
+        ConcurrentMap<String, Flight> running = getFlights();
+        Flight flight = new Flight();
+        Flight shared = running.putIfAbsent(key, flight);
+        if (shared != null) {
+            metrics.recordShared(query.getBaseUrl());
+            return (T) shared.await(query);
+        }
+        flight.failure = new ReportException("Query failed: " + query.getUrl());
+        try {
+            T result = call.call();
+            flight.result = result;
+            flight.failure = null;
+            return result;
+        } catch (ReportException | RuntimeException e) {
+            flight.failure = e;
+            throw e;
+        } finally {
+            running.remove(key, flight);
+            flight.done.countDown();
+        }
+    }
+
+    private synchronized ConcurrentMap<String, Flight> getFlights() {
+        if (flights == null) {
+            flights = new ConcurrentHashMap<>();
+        }
+        return flights;
+    }
+
+    /**
+     * Execute a query with the connector, recording its latency and size
+     * 
+     * @param query
+     *            query
+     * @return JSON response or null
+     */
+    private String execute(Query<?> query) throws ReportException {
+        long start = System.nanoTime();
+        String json = null;
+        boolean failed = true;
+        try {
+            json = connector.execute(query);
+            failed = false;
+            return json;
+        } finally {
+            metrics.recordRequest(query.getBaseUrl(), System.nanoTime() - start,
+                    json == null ? 0 : json.length(), failed);
+        }
+    }
+
+    /**
+     * Call of the web services
+     */
+    private interface Call<T> {
+        T call() throws ReportException;
+    }
+
+    /**
+     * Query being executed, whose result is shared
+     */
+    private static class Flight {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private Object result;
+        private Exception failure;
+
+        Object await(final Query<?> query) throws ReportException {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ReportException("Interrupted waiting for " + query.getUrl(), e);
+            }
+            if (failure instanceof ReportException) {
+                throw (ReportException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            return result;
+        }
+    }
+
     /**
      * Create a client
      * 
@@ -128,7 +291,31 @@ public class WSClient implements Serializable {
      * @return WSClient
      */
     public static WSClient create(String host, String username, String password) {
-        return new WSClient(ConnectorFactory.create(new SonarHost(host, username, password)));
+        return create(new SonarHost(host, username, password));
+    }
+
+    /**
+     * Create a client
+     * 
+     * @param host
+     *            host, with its nodes
+     * @return WSClient
+     */
+    public static WSClient create(SonarHost host) {
+        return create(host, new ReportMetrics());
+    }
+
+    /**
+     * Create a client
+     * 
+     * @param host
+     *            host, with its nodes
+     * @param metrics
+     *            metrics receiving the requests of the client
+     * @return WSClient
+     */
+    public static WSClient create(SonarHost host, ReportMetrics metrics) {
+        return new WSClient(ConnectorFactory.create(host, metrics), metrics);
     }
 
 }
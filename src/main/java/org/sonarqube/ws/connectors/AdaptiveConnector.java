@@ -0,0 +1,282 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarqube.ws.connectors;
+
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.report.pdf.util.ReportMetrics;
+import org.sonarqube.ws.client.services.Query;
+
+/**
+ * Connector limiting the number of queries sent at once to the server, with a
+ * limit adapted to the server load (additive increase, multiplicative
+ * decrease): the limit is raised while the queries use it and their p95
+ * latency stays flat, lowered when the latency grows, and halved when the
+ * server times out or answers 429 (too many requests) or 503 (unavailable).
+ * The latency of each web service (base URL of the query) is compared to its
+ * own baseline, as a search is much slower than reading a resource.
+ *
+ */
+public class AdaptiveConnector implements Connector {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveConnector.class);
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = -6102794322364021795L;
+
+    /**
+     * Number of queries whose latency is measured before adapting the limit
+     */
+    private static final int WINDOW = 20;
+
+    /**
+     * p95 latency considered flat, relative to the baseline of the web service
+     */
+    private static final double LATENCY_TOLERANCE = 1.5;
+
+    /**
+     * Growth of the p95 latency over the baseline below which the latency is
+     * considered flat whatever the ratio, so that jitter of fast queries does
+     * not lower the limit
+     */
+    private static final long LATENCY_TOLERANCE_NS = 50 * 1000000L;
+
+    /**
+     * Weight of a window in the baseline of a web service
+     */
+    private static final double BASELINE_SMOOTHING = 0.2;
+
+    private static final double LATENCY_DECREASE = 0.9;
+
+    private static final double OVERLOAD_DECREASE = 0.5;
+
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    private static final int SC_SERVICE_UNAVAILABLE = 503;
+
+    private final Connector connector;
+    private final String name;
+    private final int maxLimit;
+    private final ReportMetrics metrics;
+
+    private double limit;
+    private int inFlight;
+    private final Map<String, Window> windows = new HashMap<>();
+    private long lastDecrease;
+
+    /**
+     * Constructor
+     * 
+     * @param connector
+     *            connector sending the queries
+     * @param name
+     *            name of the server, for the logs and the metrics
+     * @param initialLimit
+     *            number of queries sent at once at first
+     * @param maxLimit
+     *            maximum number of queries sent at once
+     * @param metrics
+     *            metrics receiving the limit
+     */
+    public AdaptiveConnector(final Connector connector, final String name, final int initialLimit,
+            final int maxLimit, final ReportMetrics metrics) {
+        this.connector = connector;
+        this.name = name;
+        this.maxLimit = Math.max(1, maxLimit);
+        this.metrics = metrics;
+        this.limit = Math.max(1, Math.min(initialLimit, this.maxLimit));
+        this.lastDecrease = System.nanoTime();
+        metrics.recordConcurrencyLimit(name, getLimit());
+    }
+
+    /**
+     * @see org.sonarqube.ws.connectors.Connector#execute(org.sonarqube.ws.client.services.Query)
+     */
+    @Override
+    public String execute(final Query<?> query) throws ConnectionException {
+        Window window = acquire(query.getBaseUrl());
+        long start = System.nanoTime();
+        Boolean overloaded = null;
+        try {
+            String json = connector.execute(query);
+            overloaded = false;
+            return json;
+        } catch (ConnectionException e) {
+            overloaded = isOverload(e) ? Boolean.TRUE : null;
+            throw e;
+        } finally {
+            release(window, start, System.nanoTime() - start, overloaded);
+        }
+    }
+
+    /**
+     * @return number of queries sent at once
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return true if a new query would wait for another one to complete
+     */
+    public synchronized boolean isSaturated() {
+        return inFlight >= getLimit();
+    }
+
+    private synchronized Window acquire(final String service) throws ConnectionException {
+        while (inFlight >= getLimit()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConnectionException("Interrupted waiting to query " + name, e);
+            }
+        }
+        inFlight++;
+        Window window = windows.get(service);
+        if (window == null) {
+            window = new Window();
+            windows.put(service, window);
+        }
+        if (inFlight >= getLimit()) {
+            window.saturated = true;
+        }
+        return window;
+    }
+
+    /**
+     * Release a query, adapting the limit to its result
+     * 
+     * @param window
+     *            latencies of the web service of the query
+     * @param start
+     *            start of the query
+     * @param latency
+     *            latency of the query
+     * @param overloaded
+     *            true if the server is overloaded, false if the query
+     *            succeeded, null if it failed for another reason
+     */
+    private synchronized void release(final Window window, final long start, final long latency,
+            final Boolean overloaded) {
+        inFlight--;
+        if (Boolean.TRUE.equals(overloaded)) {
+            // only the queries sent after the last decrease lower the limit
+            if (start - lastDecrease > 0 && decrease(OVERLOAD_DECREASE)) {
+                LOG.info("Concurrency limit of " + name + " lowered to " + getLimit() + ": server overloaded");
+            }
+        } else if (Boolean.FALSE.equals(overloaded)) {
+            window.latencies[window.samples++] = latency;
+            if (window.samples == WINDOW) {
+                adapt(window);
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Adapt the limit to the latencies of the last window of a web service
+     */
+    private void adapt(final Window window) {
+        long[] sorted = Arrays.copyOf(window.latencies, window.samples);
+        Arrays.sort(sorted);
+        long p95 = sorted[(int) Math.ceil(0.95 * window.samples) - 1];
+        boolean saturated = window.saturated;
+        window.samples = 0;
+        window.saturated = false;
+        if (window.baseline == 0) {
+            window.baseline = p95;
+        }
+        if (p95 > window.baseline * LATENCY_TOLERANCE && p95 - window.baseline > LATENCY_TOLERANCE_NS) {
+            if (decrease(LATENCY_DECREASE)) {
+                LOG.debug("Concurrency limit of " + name + " lowered to " + getLimit() + ": p95 latency "
+                        + p95 / 1000000 + " ms, baseline " + window.baseline / 1000000 + " ms");
+            }
+            // the server may just be slower now
+            window.baseline += (p95 - window.baseline) / 10;
+        } else {
+            window.baseline += (long) ((p95 - window.baseline) * BASELINE_SMOOTHING);
+            if (saturated && setLimit(limit + 1)) {
+                LOG.debug("Concurrency limit of " + name + " raised to " + getLimit() + ": p95 latency "
+                        + p95 / 1000000 + " ms");
+            }
+        }
+    }
+
+    /**
+     * Lower the limit, the latencies measured with the previous limit being
+     * dropped
+     * 
+     * @return true if the limit changed
+     */
+    private boolean decrease(final double ratio) {
+        lastDecrease = System.nanoTime();
+        for (Window window : windows.values()) {
+            window.samples = 0;
+            window.saturated = false;
+        }
+        return setLimit(limit * ratio);
+    }
+
+    /**
+     * @return true if the limit changed
+     */
+    private boolean setLimit(final double newLimit) {
+        int previous = getLimit();
+        limit = Math.max(1, Math.min(newLimit, maxLimit));
+        int current = getLimit();
+        if (current != previous) {
+            metrics.recordConcurrencyLimit(name, current);
+        }
+        return current != previous;
+    }
+
+    /**
+     * A query fails because of the server load if it times out or if the
+     * server asks to slow down
+     * 
+     * @param e
+     *            failure of the query
+     * @return true if the server is overloaded
+     */
+    private static boolean isOverload(final ConnectionException e) {
+        return e.getStatusCode() == SC_TOO_MANY_REQUESTS || e.getStatusCode() == SC_SERVICE_UNAVAILABLE
+                || e.getCause() instanceof InterruptedIOException;
+    }
+
+    /**
+     * Latencies of the queries of a web service
+     */
+    private static class Window implements Serializable {
+        private static final long serialVersionUID = 4513650391874307221L;
+        private final long[] latencies = new long[WINDOW];
+        private int samples;
+        private boolean saturated;
+        private long baseline;
+    }
+}
@@ -31,15 +31,39 @@ public class ConnectionException extends ReportException {
      */
     private static final long serialVersionUID = 5594732002932050667L;
 
+    private final int statusCode;
+
     public ConnectionException(String s) {
+        this(s, 0);
+    }
+
+    /**
+     * Constructor for an HTTP error
+     * 
+     * @param s
+     *            message
+     * @param statusCode
+     *            HTTP status of the response
+     */
+    public ConnectionException(String s, int statusCode) {
         super(s);
+        this.statusCode = statusCode;
     }
 
     public ConnectionException(String s, Throwable throwable) {
         super(s, throwable);
+        this.statusCode = 0;
     }
 
     public ConnectionException(Throwable throwable) {
         super(throwable);
+        this.statusCode = 0;
+    }
+
+    /**
+     * @return HTTP status of the response, or 0 if no response was received
+     */
+    public int getStatusCode() {
+        return statusCode;
     }
 }
\ No newline at end of file
@@ -19,6 +19,10 @@
  */
 package org.sonarqube.ws.connectors;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sonar.report.pdf.util.ReportMetrics;
 import org.sonarqube.ws.client.SonarHost;
 
 /**
@@ -26,10 +30,60 @@ import org.sonarqube.ws.client.SonarHost;
  *
  */
 public class ConnectorFactory {
+
+    /**
+     * Number of queries sent at once to a server at first
+     */
+    private static final int INITIAL_LIMIT = 4;
+
+    /**
+     * Maximum number of queries sent at once to a server
+     */
+    private static final int MAX_LIMIT = 16;
+
     private ConnectorFactory() {
     }
 
-    public static Connector create(SonarHost server) {
-        return new HttpClient3Connector(server);
+    /**
+     * Create a connector whose number of queries sent at once adapts to the
+     * server load
+     * 
+     * @param server
+     *            server
+     * @param metrics
+     *            metrics receiving the concurrency limits
+     * @return Connector
+     */
+    public static Connector create(SonarHost server, ReportMetrics metrics) {
+        return create(server, MAX_LIMIT, metrics);
+    }
+
+    /**
+     * Create a connector shared by several threads, whose number of queries
+     * sent at once adapts to the server load. The queries are spread over the
+     * nodes of the server if it has several.
+     * 
+     * @param server
+     *            server
+     * @param maxConnections
+     *            maximum number of connections opened at once to each node
+     * @param metrics
+     *            metrics receiving the concurrency limits and the hedged
+     *            queries
+     * @return Connector
+     */
+    public static Connector create(SonarHost server, int maxConnections, ReportMetrics metrics) {
+        List<String> hosts = server.getHosts();
+        if (hosts.size() == 1) {
+            return new AdaptiveConnector(new HttpClient3Connector(server, maxConnections), server.getHost(),
+                    INITIAL_LIMIT, maxConnections, metrics);
+        }
+        List<Connector> connectors = new ArrayList<>(hosts.size());
+        for (String host : hosts) {
+            connectors.add(new HttpClient3Connector(new SonarHost(host, server.getUsername(), server.getPassword()),
+                    maxConnections));
+        }
+        return new MultiNodeConnector(hosts, connectors, INITIAL_LIMIT, maxConnections,
+                server.getHedgePercentile(), metrics);
     }
 }
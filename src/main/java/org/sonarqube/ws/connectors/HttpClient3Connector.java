@@ -24,6 +24,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.httpclient.Credentials;
 import org.apache.commons.httpclient.HttpClient;
@@ -55,10 +57,25 @@ public class HttpClient3Connector implements Connector {
     private static final int MAX_HOST_CONNECTIONS = 4;
 
     private final SonarHost server;
+    private final int maxHostConnections;
     private transient HttpClient httpClient;
+    private final transient ConcurrentMap<Thread, HttpMethodBase> running = new ConcurrentHashMap<>();
 
     public HttpClient3Connector(final SonarHost server) {
+        this(server, MAX_HOST_CONNECTIONS);
+    }
+
+    /**
+     * Constructor for a connector shared by several threads
+     * 
+     * @param server
+     *            server
+     * @param maxHostConnections
+     *            maximum number of connections opened at once to the server
+     */
+    public HttpClient3Connector(final SonarHost server, final int maxHostConnections) {
         this.server = server;
+        this.maxHostConnections = maxHostConnections;
         this.createClient();
     }
 
@@ -66,8 +83,8 @@ public class HttpClient3Connector implements Connector {
         final HttpConnectionManagerParams params = new HttpConnectionManagerParams();
         params.setConnectionTimeout(AbstractQuery.DEFAULT_TIMEOUT_MILLISECONDS);
         params.setSoTimeout(AbstractQuery.DEFAULT_TIMEOUT_MILLISECONDS);
-        params.setDefaultMaxConnectionsPerHost(MAX_HOST_CONNECTIONS);
-        params.setMaxTotalConnections(MAX_TOTAL_CONNECTIONS);
+        params.setDefaultMaxConnectionsPerHost(maxHostConnections);
+        params.setMaxTotalConnections(Math.max(MAX_TOTAL_CONNECTIONS, maxHostConnections));
         final MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
         connectionManager.setParams(params);
         this.httpClient = new HttpClient(connectionManager);
@@ -100,6 +117,7 @@ public class HttpClient3Connector implements Connector {
      */
     private String executeRequest(HttpMethodBase method) throws ConnectionException {
         String json = null;
+        running.put(Thread.currentThread(), method);
         try {
             httpClient.executeMethod(method);
 
@@ -108,13 +126,14 @@ public class HttpClient3Connector implements Connector {
 
             } else if (method.getStatusCode() != HttpStatus.SC_NOT_FOUND) {
                 throw new ConnectionException("HTTP error: " + method.getStatusCode() + ", msg: "
-                        + method.getStatusText() + ", query: " + method);
+                        + method.getStatusText() + ", query: " + method, method.getStatusCode());
             }
 
         } catch (IOException e) {
             throw new ConnectionException("Query: " + method, e);
 
         } finally {
+            running.remove(Thread.currentThread());
             if (method != null) {
                 method.releaseConnection();
             }
@@ -122,6 +141,20 @@ public class HttpClient3Connector implements Connector {
         return json;
     }
 
+    /**
+     * Abort the query a thread is sending, closing its connection. The query
+     * fails with a ConnectionException.
+     * 
+     * @param thread
+     *            thread executing the query
+     */
+    public void abort(final Thread thread) {
+        HttpMethodBase method = running.get(thread);
+        if (method != null) {
+            method.abort();
+        }
+    }
+
     private HttpMethodBase newGetRequest(Query<?> query) {
         HttpMethodBase method = new GetMethod(server.getHost() + query.getUrl());
         initRequest(method, query);
@@ -0,0 +1,337 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarqube.ws.connectors;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.report.pdf.util.ReportMetrics;
+import org.sonarqube.ws.client.services.Query;
+
+/**
+ * Connector for a server with several application nodes, each with its own
+ * adaptive concurrency limit. Each query is sent to the node with the fewest
+ * queries in progress, in turn when several nodes have as many. When no
+ * response is received after a percentile of the latency of the last queries,
+ * the query is sent to another node too, unless that node is at its limit,
+ * and the first response is used: the other attempt is cancelled. A query
+ * failing because of a node is sent to the other nodes.
+ *
+ */
+public class MultiNodeConnector implements Connector {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MultiNodeConnector.class);
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 3829562907156744151L;
+
+    /**
+     * Number of latencies kept to compute the hedge delay
+     */
+    private static final int LATENCIES = 100;
+
+    /**
+     * Number of latencies needed before queries are sent twice
+     */
+    private static final int MIN_LATENCIES = 20;
+
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    private final List<Node> nodes;
+    private final int hedgePercentile;
+    private final ReportMetrics metrics;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final long[] latencies = new long[LATENCIES];
+    private int latencyCount;
+
+    private transient ExecutorService executor;
+
+    /**
+     * Constructor
+     * 
+     * @param hosts
+     *            URLs of the nodes
+     * @param connectors
+     *            connector sending the queries to each node
+     * @param initialLimit
+     *            number of queries sent at once to a node at first
+     * @param maxLimit
+     *            maximum number of queries sent at once to a node
+     * @param hedgePercentile
+     *            percentile of the latency after which a query is sent to
+     *            another node too, 0 to never send a query twice
+     * @param metrics
+     *            metrics receiving the limits and the hedged queries
+     */
+    public MultiNodeConnector(final List<String> hosts, final List<Connector> connectors, final int initialLimit,
+            final int maxLimit, final int hedgePercentile, final ReportMetrics metrics) {
+        this.metrics = metrics;
+        this.nodes = new ArrayList<>(hosts.size());
+        for (int i = 0; i < hosts.size(); i++) {
+            nodes.add(new Node(hosts.get(i), connectors.get(i), initialLimit, maxLimit));
+        }
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    /**
+     * @see org.sonarqube.ws.connectors.Connector#execute(org.sonarqube.ws.client.services.Query)
+     */
+    @Override
+    public String execute(final Query<?> query) throws ConnectionException {
+        CompletionService<String> completion = new ExecutorCompletionService<>(getExecutor());
+        Map<Future<String>, Attempt> attempts = new HashMap<>();
+        List<Node> tried = new ArrayList<>();
+        submit(completion, attempts, query, route(tried), tried);
+        boolean hedged = false;
+        ConnectionException failure = null;
+        try {
+            while (!attempts.isEmpty()) {
+                long delay = hedged || tried.size() == nodes.size() ? -1 : getHedgeDelay();
+                Future<String> done = delay < 0 ? completion.take() : completion.poll(delay, TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    Node node = route(tried);
+                    // another query to a node at its limit would only wait
+                    // behind the others and add to the load
+                    if (!node.limiter.isSaturated()) {
+                        hedged = true;
+                        LOG.debug("No response after " + delay / 1000000 + " ms, sending " + query.getUrl()
+                                + " to another node");
+                        metrics.recordHedged(query.getBaseUrl());
+                        submit(completion, attempts, query, node, tried);
+                    }
+                    continue;
+                }
+                attempts.remove(done);
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    failure = toConnectionException(e.getCause());
+                    if (attempts.isEmpty() && tried.size() < nodes.size() && isNodeFailure(failure)) {
+                        LOG.debug("Sending " + query.getUrl() + " to another node after " + failure.getMessage());
+                        submit(completion, attempts, query, route(tried), tried);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("Interrupted waiting for " + query.getUrl(), e);
+        } finally {
+            for (Entry<Future<String>, Attempt> attempt : attempts.entrySet()) {
+                attempt.getValue().cancel(attempt.getKey());
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * Send a query to a node
+     */
+    private void submit(final CompletionService<String> completion, final Map<Future<String>, Attempt> attempts,
+            final Query<?> query, final Node node, final List<Node> tried) {
+        tried.add(node);
+        node.inFlight.incrementAndGet();
+        Attempt attempt = new Attempt(node, query);
+        attempts.put(completion.submit(attempt), attempt);
+    }
+
+    /**
+     * Choose the node with the fewest queries in progress, the nodes being
+     * taken in turn when several have as many
+     * 
+     * @param excluded
+     *            nodes not to choose
+     * @return Node
+     */
+    private Node route(final List<Node> excluded) {
+        int first = Math.abs(next.getAndIncrement() % nodes.size());
+        Node best = null;
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get((first + i) % nodes.size());
+            if (!excluded.contains(node) && (best == null || node.inFlight.get() < best.inFlight.get())) {
+                best = node;
+            }
+        }
+        return best;
+    }
+
+    private synchronized void recordLatency(final long latency) {
+        latencies[latencyCount % LATENCIES] = latency;
+        latencyCount++;
+    }
+
+    /**
+     * Delay after which a query is sent to another node too
+     * 
+     * @return delay in nanoseconds, or -1 if queries are not sent twice
+     */
+    private synchronized long getHedgeDelay() {
+        if (hedgePercentile <= 0 || latencyCount < MIN_LATENCIES) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latencies, Math.min(latencyCount, LATENCIES));
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(Math.min(hedgePercentile, 100) / 100d * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(runnable, "sonar-node-query-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    private static ConnectionException toConnectionException(final Throwable cause) {
+        if (cause instanceof ConnectionException) {
+            return (ConnectionException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new ConnectionException(cause);
+    }
+
+    /**
+     * A query failing without response, with a server error or because the
+     * node is overloaded may succeed on another node
+     * 
+     * @param e
+     *            failure of the query
+     * @return true if the query is worth sending to another node
+     */
+    private static boolean isNodeFailure(final ConnectionException e) {
+        int status = e.getStatusCode();
+        return status == 0 || status >= 500 || status == SC_TOO_MANY_REQUESTS;
+    }
+
+    /**
+     * Query sent to a node
+     */
+    private static class Attempt implements Callable<String> {
+        private final Node node;
+        private final Query<?> query;
+        private Thread thread;
+        private boolean started;
+        private boolean cancelled;
+
+        Attempt(final Node node, final Query<?> query) {
+            this.node = node;
+            this.query = query;
+        }
+
+        @Override
+        public String call() throws ConnectionException {
+            synchronized (this) {
+                if (cancelled) {
+                    throw new ConnectionException("Cancelled query: " + query.getUrl());
+                }
+                started = true;
+                thread = Thread.currentThread();
+            }
+            try {
+                return node.limiter.execute(query);
+            } finally {
+                // the thread is not aborted once it may run another query
+                synchronized (this) {
+                    thread = null;
+                }
+                node.inFlight.decrementAndGet();
+            }
+        }
+
+        /**
+         * Cancel the attempt: it leaves the queue of its node, or its
+         * connection is closed if the query is sent
+         */
+        synchronized void cancel(final Future<String> future) {
+            cancelled = true;
+            future.cancel(true);
+            if (!started) {
+                node.inFlight.decrementAndGet();
+            } else if (thread != null && node.http instanceof HttpClient3Connector) {
+                ((HttpClient3Connector) node.http).abort(thread);
+            }
+        }
+    }
+
+    /**
+     * Application node
+     */
+    private class Node implements Serializable {
+        private static final long serialVersionUID = -1755393627262418047L;
+        private final String host;
+        private final Connector http;
+        private final AdaptiveConnector limiter;
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        Node(final String host, final Connector http, final int initialLimit, final int maxLimit) {
+            this.host = host;
+            this.http = http;
+            // only the exchange with the node is timed, not the wait for
+            // the limit
+            this.limiter = new AdaptiveConnector(new Connector() {
+                private static final long serialVersionUID = 6104825071939517250L;
+
+                @Override
+                public String execute(final Query<?> query) throws ConnectionException {
+                    long start = System.nanoTime();
+                    String json = Node.this.http.execute(query);
+                    recordLatency(System.nanoTime() - start);
+                    return json;
+                }
+            }, host, initialLimit, maxLimit, metrics);
+        }
+
+        @Override
+        public String toString() {
+            return host;
+        }
+    }
+}
@@ -19,6 +19,9 @@
  */
 package org.sonarqube.ws.model;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Component model
  *
@@ -34,6 +37,7 @@ public class Component implements Model {
     String name;
     String longName;
     String path;
+    List<ComponentMeasure> measures;
 
     public String getKey() {
         return key;
@@ -82,4 +86,30 @@ public class Component implements Model {
     public void setPath(String path) {
         this.path = path;
     }
+
+    /**
+     * Measures of the component, given by the measures web services
+     * 
+     * @return measures
+     */
+    public List<ComponentMeasure> getMeasures() {
+        if (measures == null) {
+            return Collections.emptyList();
+        }
+        return measures;
+    }
+
+    public void setMeasures(List<ComponentMeasure> measures) {
+        this.measures = measures;
+    }
+
+    public ComponentMeasure getMeasure(String metricKey) {
+        for (ComponentMeasure measure : getMeasures()) {
+            if (metricKey.equals(measure.getMetric())) {
+                return measure;
+            }
+        }
+        return null;
+    }
+
 }
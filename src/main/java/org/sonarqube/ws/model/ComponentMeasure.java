@@ -0,0 +1,78 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarqube.ws.model;
+
+/**
+ * Measure of a component, as given by /api/measures/component and
+ * /api/measures/component_tree. The value is a string for all the metric
+ * types.
+ *
+ */
+public class ComponentMeasure implements Model {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 2709462432412436917L;
+    private String metric;
+    private String value;
+
+    public ComponentMeasure() {
+        super();
+    }
+
+    public ComponentMeasure(final String metric, final String value) {
+        this.metric = metric;
+        this.value = value;
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    public void setMetric(String metric) {
+        this.metric = metric;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    /**
+     * Numeric value of the measure
+     * 
+     * @return value, or null if the measure has no numeric value
+     */
+    public Double getNumericValue() {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Double.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+}
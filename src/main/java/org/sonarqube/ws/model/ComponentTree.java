@@ -0,0 +1,72 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarqube.ws.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Page of the measures of the components of a tree, given by
+ * /api/measures/component_tree
+ *
+ */
+public class ComponentTree implements Model {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 8155493447962376470L;
+    private Paging paging;
+    private Component baseComponent;
+    private final List<Component> components = new ArrayList<>();
+
+    public Paging getPaging() {
+        return paging;
+    }
+
+    public void setPaging(Paging paging) {
+        this.paging = paging;
+    }
+
+    public Component getBaseComponent() {
+        return baseComponent;
+    }
+
+    public void setBaseComponent(Component baseComponent) {
+        this.baseComponent = baseComponent;
+    }
+
+    public List<Component> getComponents() {
+        return components;
+    }
+
+    /**
+     * Tell if there is no page after this one
+     * 
+     * @return true if this is the last page, or if the response is not paged
+     */
+    public boolean isLastPage() {
+        if (paging == null || paging.pageIndex() == null || paging.pages() == null) {
+            return true;
+        }
+        return paging.pageIndex() >= paging.pages();
+    }
+
+}
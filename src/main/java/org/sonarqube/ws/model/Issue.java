@@ -148,7 +148,7 @@ public class Issue implements Model {
     }
 
     public Date getCreationDate() {
-        return (Date) creationDate.clone();
+        return creationDate == null ? null : (Date) creationDate.clone();
     }
 
     public void setCreationDate(Date creationDate) {
@@ -158,7 +158,7 @@ public class Issue implements Model {
     }
 
     public Date getUpdateDate() {
-        return (Date) updateDate.clone();
+        return updateDate == null ? null : (Date) updateDate.clone();
     }
 
     public void setUpdateDate(Date updateDate) {
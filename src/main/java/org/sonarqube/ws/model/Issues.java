@@ -40,7 +40,9 @@ public class Issues implements Model {
     private final List<Component> components = new ArrayList<>();
     private final List<Rule> rules = new ArrayList<>();
     private final List<User> users = new ArrayList<>();
+    private final List<Facet> facets = new ArrayList<>();
     private Paging paging;
+    private Integer total;
 
     public Paging getPaging() {
         return paging;
@@ -66,4 +68,29 @@ public class Issues implements Model {
         return users;
     }
 
+    public List<Facet> getFacets() {
+        return facets;
+    }
+
+    public Facet getFacet(String property) {
+        for (Facet facet : facets) {
+            if (property.equals(facet.getProperty())) {
+                return facet;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Number of issues matching the search, on all the pages
+     * 
+     * @return total, or null if it is not given
+     */
+    public Integer getTotal() {
+        if (paging != null && paging.total() != null) {
+            return paging.total();
+        }
+        return total;
+    }
+
 }
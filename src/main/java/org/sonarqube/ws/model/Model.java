@@ -22,7 +22,11 @@ package org.sonarqube.ws.model;
 import java.io.Serializable;
 
 /**
- * Model interface
+ * Model interface. A model returned by the web service client may be shared
+ * by the threads sending the same query at the same time: it is read only,
+ * the builders copying what they need to change (HistoryBuilder sorts a copy
+ * of the cells, ProjectBuilder keeps the top issues of a rule in its own
+ * list).
  *
  */
 public interface Model extends Serializable {
@@ -19,11 +19,6 @@
  */
 package org.sonarqube.ws.model;
 
-import java.io.Serializable;
-import java.util.Map;
-
-import org.sonarqube.ws.client.unmarshallers.JsonUtils;
-
 /**
  * Paging model
  *
@@ -34,29 +29,42 @@ public class Paging implements Model {
      * 
      */
     private static final long serialVersionUID = -2540275275018566305L;
-    private final Map<Serializable, Serializable> json;
+    private Integer pageIndex;
+    private Integer pageSize;
+    private Integer total;
 
-    /**
-     * For internal use
-     */
-    public Paging(Map<Serializable, Serializable> json) {
-        this.json = json;
+    public Paging() {
+        super();
+    }
+
+    public Paging(final Integer pageIndex, final Integer pageSize, final Integer total) {
+        this.pageIndex = pageIndex;
+        this.pageSize = pageSize;
+        this.total = total;
     }
 
     public Integer pageSize() {
-        return JsonUtils.getInteger(json, "ps");
+        return pageSize;
     }
 
     public Integer pageIndex() {
-        return JsonUtils.getInteger(json, "p");
+        return pageIndex;
     }
 
     public Integer total() {
-        return JsonUtils.getInteger(json, "total");
+        return total;
     }
 
+    /**
+     * Number of pages
+     * 
+     * @return number of pages, or null if the paging is incomplete
+     */
     public Integer pages() {
-        return JsonUtils.getInteger(json, "pages");
+        if (pageSize == null || total == null || pageSize <= 0) {
+            return null;
+        }
+        return (total + pageSize - 1) / pageSize;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,76 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarqube.ws.query;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.sonarqube.ws.client.services.Query;
+import org.sonarqube.ws.model.ComponentMeasures;
+
+/**
+ * Query for the measures of a component
+ *
+ */
+public class ComponentQuery extends Query<ComponentMeasures> {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = -3171585476302542398L;
+    private final Map<String, Serializable> params = new HashMap<>();
+    public static final String BASE_URL = "/api/measures/component";
+
+    private ComponentQuery() {
+    }
+
+    @Override
+    public Class<ComponentMeasures> getModelClass() {
+        return ComponentMeasures.class;
+    }
+
+    public static ComponentQuery create(String componentKey) {
+        return new ComponentQuery().componentKey(componentKey);
+    }
+
+    public ComponentQuery componentKey(String componentKey) {
+        return (ComponentQuery) addParam("componentKey", componentKey);
+    }
+
+    public ComponentQuery metricKeys(String... metricKeys) {
+        return (ComponentQuery) addParam("metricKeys", metricKeys);
+    }
+
+    public ComponentQuery additionalFields(String... s) {
+        return (ComponentQuery) addParam("additionalFields", s);
+    }
+
+    @Override
+    public String getBaseUrl() {
+        return BASE_URL;
+    }
+
+    @Override
+    public Map<String, Serializable> getParams() {
+        return params;
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarqube.ws.query;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.sonarqube.ws.client.services.Query;
+import org.sonarqube.ws.model.ComponentTree;
+
+/**
+ * Query for the measures of the components of a tree. Results are paged, and
+ * can be sorted by the server on the value of a metric.
+ *
+ */
+public class ComponentTreeQuery extends Query<ComponentTree> {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 2232380807617728458L;
+    private final Map<String, Serializable> params = new HashMap<>();
+    public static final String BASE_URL = "/api/measures/component_tree";
+
+    /**
+     * All the components of the tree
+     */
+    public static final String STRATEGY_ALL = "all";
+
+    /**
+     * Direct children of the base component
+     */
+    public static final String STRATEGY_CHILDREN = "children";
+
+    /**
+     * Components without children, like files
+     */
+    public static final String STRATEGY_LEAVES = "leaves";
+
+    public static final String SORT_NAME = "name";
+    public static final String SORT_PATH = "path";
+    public static final String SORT_QUALIFIER = "qualifier";
+    public static final String SORT_METRIC = "metric";
+
+    /**
+     * Leave out the components without a measure of the sort metric
+     */
+    public static final String WITH_MEASURES_ONLY = "withMeasuresOnly";
+
+    private ComponentTreeQuery() {
+    }
+
+    @Override
+    public Class<ComponentTree> getModelClass() {
+        return ComponentTree.class;
+    }
+
+    public static ComponentTreeQuery create(String baseComponentKey) {
+        return new ComponentTreeQuery().baseComponentKey(baseComponentKey);
+    }
+
+    /**
+     * Query for the components of a tree having the highest values of a
+     * metric, first page only
+     * 
+     * @param baseComponentKey
+     *            key of the base component
+     * @param metricKey
+     *            metric of the ranking
+     * @param limit
+     *            number of components
+     * @return ComponentTreeQuery
+     */
+    public static ComponentTreeQuery createForTop(String baseComponentKey, String metricKey, int limit) {
+        return create(baseComponentKey).metricKeys(metricKey).sort(SORT_METRIC).metricSort(metricKey)
+                .metricSortFilter(WITH_MEASURES_ONLY).asc(false).pageSize(limit);
+    }
+
+    public ComponentTreeQuery baseComponentKey(String baseComponentKey) {
+        return (ComponentTreeQuery) addParam("baseComponentKey", baseComponentKey);
+    }
+
+    public ComponentTreeQuery metricKeys(String... metricKeys) {
+        return (ComponentTreeQuery) addParam("metricKeys", metricKeys);
+    }
+
+    public ComponentTreeQuery additionalFields(String... s) {
+        return (ComponentTreeQuery) addParam("additionalFields", s);
+    }
+
+    public ComponentTreeQuery strategy(String strategy) {
+        return (ComponentTreeQuery) addParam("strategy", strategy);
+    }
+
+    public ComponentTreeQuery qualifiers(String... qualifiers) {
+        return (ComponentTreeQuery) addParam("qualifiers", qualifiers);
+    }
+
+    public ComponentTreeQuery sort(String... sortFields) {
+        return (ComponentTreeQuery) addParam("s", sortFields);
+    }
+
+    public ComponentTreeQuery metricSort(String metricKey) {
+        return (ComponentTreeQuery) addParam("metricSort", metricKey);
+    }
+
+    public ComponentTreeQuery metricSortFilter(String filter) {
+        return (ComponentTreeQuery) addParam("metricSortFilter", filter);
+    }
+
+    public ComponentTreeQuery asc(boolean asc) {
+        return (ComponentTreeQuery) addParam("asc", asc);
+    }
+
+    public ComponentTreeQuery pageIndex(int pageIndex) {
+        return (ComponentTreeQuery) addParam("p", pageIndex);
+    }
+
+    public ComponentTreeQuery pageSize(int pageSize) {
+        return (ComponentTreeQuery) addParam("ps", pageSize);
+    }
+
+    @Override
+    public String getBaseUrl() {
+        return BASE_URL;
+    }
+
+    @Override
+    public Map<String, Serializable> getParams() {
+        return params;
+    }
+
+}
@@ -1,21 +1,248 @@
 require 'base64'
+require 'digest/sha1'
 require 'fileutils'
+require 'time'
+require 'zlib'
 
 class PdfReportController < ApplicationController
 
+  BUFFER_SIZE = 64 * 1024
+
+  BYTE_RANGE = /\Abytes=(\d*)-(\d*)\z/
+
+  # Part files of chunked uploads not modified for this time are abandoned
+  PART_EXPIRY = 24 * 60 * 60
+
+  # Send the report of a project. The report is streamed from the disk, and
+  # the ETag (its SHA-1) and Last-Modified headers let clients revalidate
+  # their copy or resume a download with a Range request.
   def get
     project = Project.by_key(params[:resource])
-    send_file Rails.root.join('pdf-files', project.key.gsub(':', '-') + '.pdf'), :type => 'application/pdf', :disposition => 'attachment'
+    report = Rails.root.join('pdf-files', project.key.gsub(':', '-') + '.pdf')
+    unless File.file?(report)
+      render :nothing => true, :status => 404
+      return
+    end
+    etag = '"' + stored_sha1(report) + '"'
+    last_modified = File.mtime(report)
+    response.headers['ETag'] = etag
+    response.headers['Last-Modified'] = last_modified.httpdate
+    response.headers['Cache-Control'] = 'private, must-revalidate'
+    response.headers['Accept-Ranges'] = 'bytes'
+    if not_modified?(etag, last_modified)
+      render :nothing => true, :status => 304
+      return
+    end
+
+    size = File.size(report)
+    # a malformed Range, or one for another version of the report, is ignored
+    range = request.headers['Range']
+    range = nil unless range && range.strip =~ BYTE_RANGE && if_range?(etag, last_modified)
+    if range
+      first, last = byte_range(range, size)
+      unless first
+        response.headers['Content-Range'] = "bytes */#{size}"
+        render :nothing => true, :status => 416
+        return
+      end
+      response.headers['Content-Range'] = "bytes #{first}-#{last}/#{size}"
+      response.headers['Content-Length'] = (last - first + 1).to_s
+      response.headers['Content-Type'] = 'application/pdf'
+      response.headers['Content-Disposition'] = "attachment; filename=\"#{File.basename(report)}\""
+      render :status => 206, :text => Proc.new { |resp, output|
+        File.open(report, 'rb') do |file|
+          file.seek(first)
+          remaining = last - first + 1
+          while remaining > 0 && (buffer = file.read([BUFFER_SIZE, remaining].min))
+            output.write(buffer)
+            remaining -= buffer.bytesize
+          end
+        end
+      }
+    else
+      send_file report, :type => 'application/pdf', :disposition => 'attachment', :stream => true, :buffer_size => BUFFER_SIZE
+    end
   end
 
+  # Store a report sent in the "upload" part of a multipart request. The
+  # report is copied by blocks to a temporary file, inflated on the way if
+  # the encoding parameter is gzip, then moved in place.
   def store
     uploaded = params[:upload]
-    filename = params[:pdfname] || uploaded.original_filename
+    filename = File.basename((params[:pdfname] || uploaded.original_filename).to_s)
     # Rails.root is WEB-INF dir
     FileUtils::mkdir_p Rails.root.join('pdf-files') unless File.exists?(Rails.root.join('pdf-files'))
-    File.open(Rails.root.join('pdf-files', filename), 'wb') do |file|
-      file.write(uploaded.read)
+    report = Rails.root.join('pdf-files', filename)
+    write_report(report, params[:encoding] == 'gzip' ? Zlib::GzipReader.new(uploaded) : uploaded)
+    render :nothing => true, :status => 200
+  end
+
+  # Answers 200 if the stored report has the given SHA-1, 404 otherwise,
+  # so that an unchanged report is not uploaded again
+  def check
+    report = Rails.root.join('pdf-files', File.basename(params[:pdfname].to_s))
+    if File.file?(report) && stored_sha1(report) == params[:sha1]
+      render :nothing => true, :status => 200
+    else
+      render :nothing => true, :status => 404
+    end
+  end
+
+  # Chunked upload: the chunks of a report are appended to a part file named
+  # after the upload id (SHA-1 of the sent file) until the upload is complete.
+  # A report gzipped for its upload is inflated once complete.
+
+  # Number of bytes already received for an upload. As an upload starts
+  # here, the part files of abandoned uploads are deleted.
+  def upload_status
+    expire_parts
+    render :text => part_size(part_file).to_s, :status => 200
+  end
+
+  # Append a chunk (raw body) sent at the given offset with its SHA-1.
+  # Answers the new size, or the expected offset with a 409 status.
+  def store_chunk
+    part = part_file
+    size = part_size(part)
+    if params[:offset].to_i != size
+      render :text => size.to_s, :status => 409
+      return
+    end
+    data = request.raw_post
+    if Digest::SHA1.hexdigest(data) != params[:sha1]
+      render :text => size.to_s, :status => 422
+      return
+    end
+    File.open(part, 'ab') do |file|
+      file.write(data)
+    end
+    render :text => (size + data.bytesize).to_s, :status => 200
+  end
+
+  # Check the received file and replace the stored report with it
+  def complete
+    part = part_file
+    unless File.exists?(part) && File.size(part) == params[:size].to_i && Digest::SHA1.file(part).hexdigest == upload_id
+      File.delete(part) if File.exists?(part)
+      render :nothing => true, :status => 422
+      return
+    end
+    report = Rails.root.join('pdf-files', File.basename(params[:pdfname]))
+    if params[:encoding] == 'gzip'
+      begin
+        File.open(part, 'rb') do |file|
+          write_report(report, Zlib::GzipReader.new(file))
+        end
+      rescue Zlib::Error
+        render :nothing => true, :status => 422
+        return
+      ensure
+        File.delete(part) if File.exists?(part)
+      end
+    else
+      File.rename(part, report)
+      store_sha1(report, upload_id)
     end
     render :nothing => true, :status => 200
   end
-end
\ No newline at end of file
+
+  private
+
+  def upload_id
+    params[:upload_id].to_s.gsub(/[^0-9a-f]/, '')
+  end
+
+  def part_file
+    FileUtils::mkdir_p Rails.root.join('pdf-files') unless File.exists?(Rails.root.join('pdf-files'))
+    Rails.root.join('pdf-files', File.basename(params[:pdfname]) + '.' + upload_id + '.part')
+  end
+
+  def part_size(part)
+    File.exists?(part) ? File.size(part) : 0
+  end
+
+  # Write a report read from the input through a temporary file, so that
+  # the stored one is replaced at once, and keep its SHA-1
+  def write_report(report, input)
+    tmp = report.to_s + '.' + Process.pid.to_s + '.' + Thread.current.object_id.to_s + '.tmp'
+    sha1 = Digest::SHA1.new
+    begin
+      File.open(tmp, 'wb') do |file|
+        while (buffer = input.read(BUFFER_SIZE))
+          sha1.update(buffer)
+          file.write(buffer)
+        end
+      end
+      File.rename(tmp, report)
+    ensure
+      File.delete(tmp) if File.exists?(tmp)
+    end
+    store_sha1(report, sha1.hexdigest)
+  end
+
+  def expire_parts
+    Dir.glob(Rails.root.join('pdf-files', '*.part').to_s).each do |part|
+      begin
+        File.delete(part) if Time.now - File.mtime(part) > PART_EXPIRY
+      rescue SystemCallError
+        # deleted by another request
+      end
+    end
+  end
+
+  # The SHA-1 of a report is kept next to it, and computed again when the
+  # report is newer than it
+  def stored_sha1(report)
+    sha1_file = report.to_s + '.sha1'
+    return File.read(sha1_file).strip if File.exists?(sha1_file) && File.mtime(sha1_file) >= File.mtime(report)
+    sha1 = Digest::SHA1.file(report).hexdigest
+    store_sha1(report, sha1)
+    sha1
+  end
+
+  # True if the client copy, identified by If-None-Match or
+  # If-Modified-Since, is the stored report
+  def not_modified?(etag, last_modified)
+    if_none_match = request.headers['If-None-Match']
+    return if_none_match.split(/\s*,\s*/).any? { |tag| tag == etag || tag == '*' } if if_none_match
+    if_modified_since = http_time(request.headers['If-Modified-Since'])
+    !if_modified_since.nil? && last_modified.to_i <= if_modified_since.to_i
+  end
+
+  # True if a Range request can be served: no If-Range, or one matching the
+  # stored report
+  def if_range?(etag, last_modified)
+    if_range = request.headers['If-Range']
+    return true if if_range.nil?
+    return if_range == etag if if_range.start_with?('"')
+    time = http_time(if_range)
+    !time.nil? && last_modified.to_i <= time.to_i
+  end
+
+  # First and last bytes of a single byte range, or nil if it can not be
+  # satisfied
+  def byte_range(range, size)
+    match = BYTE_RANGE.match(range.strip)
+    return nil if (match[1].empty? && match[2].empty?) || size == 0
+    if match[1].empty?
+      first = [size - match[2].to_i, 0].max
+      last = size - 1
+    else
+      first = match[1].to_i
+      last = match[2].empty? ? size - 1 : [match[2].to_i, size - 1].min
+    end
+    first <= last ? [first, last] : nil
+  end
+
+  def http_time(value)
+    value.nil? ? nil : Time.httpdate(value)
+  rescue ArgumentError
+    nil
+  end
+
+  def store_sha1(report, sha1)
+    File.open(report.to_s + '.sha1', 'w') do |file|
+      file.write(sha1)
+    end
+  end
+end
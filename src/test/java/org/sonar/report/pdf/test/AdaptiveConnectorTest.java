@@ -0,0 +1,92 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.test;
+
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.report.pdf.util.ReportMetrics;
+import org.sonarqube.ws.client.SonarHost;
+import org.sonarqube.ws.client.WSClient;
+import org.sonarqube.ws.connectors.AdaptiveConnector;
+import org.sonarqube.ws.connectors.ConnectionException;
+import org.sonarqube.ws.connectors.Connector;
+import org.sonarqube.ws.query.MetricQuery;
+import org.testng.annotations.Test;
+
+/**
+ * Concurrency limit of an {@link AdaptiveConnector} under the load of
+ * {@link MockSonarServer}
+ */
+public class AdaptiveConnectorTest extends MockServerTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveConnectorTest.class);
+
+    @Test(groups = { "mock-server" })
+    public void concurrencyLimitAdaptsToServerLoad() throws IOException, InterruptedException {
+        MockSonarServer server = startServer().setLatency(20);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            ReportMetrics metrics = new ReportMetrics();
+            final AdaptiveConnector connector = (AdaptiveConnector) WSClient
+                    .create(new SonarHost(server.getUrl()), metrics).getConnector();
+            runQueries(executor, connector, 400);
+            int raised = connector.getLimit();
+            assertTrue(raised > 4);
+
+            server.setFailureStatus(503).setFailureRate(MockSonarServer.METRICS_URL, 1);
+            runQueries(executor, connector, 40);
+            assertTrue(connector.getLimit() < raised);
+            assertTrue(metrics.toJson().contains(server.getUrl()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void runQueries(final ExecutorService executor, final Connector connector, final int count)
+            throws InterruptedException {
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            results.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws ConnectionException {
+                    return connector.execute(MetricQuery.all());
+                }
+            }));
+        }
+        for (Future<String> result : results) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                LOG.debug("Query failed", e.getCause());
+            }
+        }
+    }
+}
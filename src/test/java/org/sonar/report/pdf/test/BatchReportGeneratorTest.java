@@ -0,0 +1,76 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.test;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.report.pdf.PDFResources;
+import org.sonar.report.pdf.batch.BatchReportGenerator;
+import org.sonar.report.pdf.entity.exception.ReportException;
+import org.sonar.report.pdf.util.ReportMetrics;
+import org.testng.annotations.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Reports of several projects generated by {@link BatchReportGenerator}
+ */
+public class BatchReportGeneratorTest extends MockServerTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchReportGeneratorTest.class);
+
+    @Test(groups = { "mock-server" })
+    public void batchReportsAreGeneratedConcurrently() throws IOException, ReportException {
+        MockSonarServer server = startServer();
+        File outputDir = new File(fs.workDir(), "batch");
+        BatchReportGenerator generator = new BatchReportGenerator(server.getUrl(), null, null,
+                PDFResources.EXECUTIVE_REPORT_TYPE, outputDir).setThreads(4);
+        List<String> keys = new ArrayList<>(generator.findProjectKeys("mock:*"));
+        assertEquals(Arrays.asList(MockSonarServer.ROOT_KEY), keys);
+        keys.add(MockSonarServer.ROOT_KEY + ":module-0");
+        keys.add("unknown:project");
+
+        List<BatchReportGenerator.Result> results = generator.execute(keys);
+        assertEquals(keys.size(), results.size());
+        for (BatchReportGenerator.Result result : results.subList(0, 2)) {
+            LOG.info(result.toString());
+            assertTrue(result.isSuccess());
+            assertTrue(result.getFile().length() > 0);
+        }
+        assertFalse(results.get(2).isSuccess());
+        assertFalse(results.get(2).getFile().exists());
+        assertEquals(2, outputDir.list().length);
+        // the batch metrics add up the ones of its reports
+        JsonObject phases = new JsonParser().parse(generator.getMetrics().toJson()).getAsJsonObject()
+                .getAsJsonObject("phases");
+        assertEquals(2, phases.getAsJsonObject(ReportMetrics.RENDER_BODY).get("count").getAsInt());
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.test;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.sonar.report.pdf.DistributionChart;
+import org.testng.annotations.Test;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Image;
+import com.lowagie.text.pdf.PRStream;
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfWriter;
+
+/**
+ * Charts drawn by {@link DistributionChart}
+ */
+public class DistributionChartTest {
+
+    @Test(groups = { "rendering" })
+    public void chartIsDrawnAsVectorContent() throws DocumentException, IOException {
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        Document document = new Document();
+        PdfWriter writer = PdfWriter.getInstance(document, pdf);
+        document.open();
+        Image image = new DistributionChart(new String[] { "1", "2", "4", "6", "8", "10", "12" },
+                new double[] { 12, 30, 7.5, 0, 3, 1, 0 }).createImage(writer.getDirectContent());
+        assertNotNull(image);
+        assertEquals(DistributionChart.DEFAULT_WIDTH, image.getWidth(), 0);
+        document.add(image);
+        document.close();
+
+        PdfReader reader = new PdfReader(pdf.toByteArray());
+        assertEquals(1, reader.getNumberOfPages());
+        PdfDictionary xObjects = reader.getPageN(1).getAsDict(PdfName.RESOURCES).getAsDict(PdfName.XOBJECT);
+        // a single form drawn with operators, and no raster image
+        assertEquals(1, xObjects.size());
+        PdfName name = (PdfName) xObjects.getKeys().iterator().next();
+        PRStream chart = (PRStream) PdfReader.getPdfObject(xObjects.get(name));
+        assertEquals(PdfName.FORM, chart.getAsName(PdfName.SUBTYPE));
+        String content = new String(PdfReader.getStreamBytes(chart), "ISO-8859-1");
+        // bars, then values and labels
+        assertTrue(content.contains(" re\n"));
+        assertTrue(content.contains("(7.5)Tj"));
+        assertTrue(content.contains("(12)Tj"));
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.test;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sonar.report.pdf.ExecutivePDFReporter;
+import org.sonar.report.pdf.entity.Project;
+import org.sonar.report.pdf.entity.exception.ReportException;
+import org.testng.annotations.Test;
+
+import com.lowagie.text.Chapter;
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Element;
+import com.lowagie.text.Image;
+import com.lowagie.text.PageSize;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfObject;
+import com.lowagie.text.pdf.PdfPCell;
+import com.lowagie.text.pdf.PdfPTable;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfStream;
+import com.lowagie.text.pdf.PdfWriter;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+
+/**
+ * Chapters of the {@link ExecutivePDFReporter}, written section by section
+ */
+public class ExecutivePDFReporterTest {
+
+    @Test(groups = { "rendering" })
+    public void sectionsAreWrittenAsSoonAsTheyAreComplete() throws IOException, DocumentException, ReportException {
+        Project project = ReportFixtures.createProject("executive", 3, 5, 10);
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        ChapterRecorder document = new ChapterRecorder();
+        PdfWriter writer = PdfWriter.getInstance(document, pdf);
+        document.open();
+        new Executive(project).printBody(document, writer);
+        document.close();
+
+        // root project and its modules
+        assertEquals(4, document.completeChapters);
+        // each chapter is also written before its last section is done
+        assertTrue(document.incompleteWrites >= 2 * 4);
+        // chapter title, overview text and the section under construction
+        assertTrue("Pending elements: " + document.maxPendingElements, document.maxPendingElements <= 2);
+
+        PdfReader reader = new PdfReader(pdf.toByteArray());
+        assertTrue(reader.getNumberOfPages() >= 4);
+        StringBuilder text = new StringBuilder();
+        PdfTextExtractor extractor = new PdfTextExtractor(reader);
+        for (int page = 1; page <= reader.getNumberOfPages(); page++) {
+            text.append('\n').append(extractor.getTextFromPage(page));
+        }
+        for (int chapter = 1; chapter <= 4; chapter++) {
+            for (int section = 1; section <= 2; section++) {
+                assertTrue("Section " + chapter + "." + section + " missing",
+                        text.indexOf("\n" + chapter + "." + section + ". ") >= 0);
+            }
+        }
+    }
+
+    @Test(groups = { "rendering" })
+    public void tendencyIconsAreCopiedAndStoredOnce() throws IOException, DocumentException {
+        Executive reporter = new Executive(ReportFixtures.createProject("executive", 0, 1, 1));
+        Image icon = reporter.getTendencyImage(1);
+        float width = icon.getScaledWidth();
+        icon.scalePercent(10);
+        assertNotSame(icon, reporter.getTendencyImage(1));
+        assertEquals(width, reporter.getTendencyImage(1).getScaledWidth());
+
+        int images = countImages(renderTendencies(reporter, 1));
+        assertTrue(images > 0);
+        assertEquals(images, countImages(renderTendencies(reporter, 40)));
+    }
+
+    /**
+     * Render a table with a tendency icon per cell
+     */
+    private static PdfReader renderTendencies(final Executive reporter, final int cells)
+            throws IOException, DocumentException {
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        Document document = new Document(PageSize.A4);
+        PdfWriter.getInstance(document, pdf);
+        document.open();
+        PdfPTable table = new PdfPTable(4);
+        for (int i = 0; i < cells; i++) {
+            table.addCell(new PdfPCell(reporter.getTendencyImage(1), true));
+        }
+        table.completeRow();
+        document.add(table);
+        document.close();
+        return new PdfReader(pdf.toByteArray());
+    }
+
+    private static int countImages(final PdfReader reader) {
+        int images = 0;
+        for (int i = 1; i < reader.getXrefSize(); i++) {
+            PdfObject object = reader.getPdfObject(i);
+            if (object != null && object.isStream()
+                    && PdfName.IMAGE.equals(((PdfStream) object).get(PdfName.SUBTYPE))) {
+                images++;
+            }
+        }
+        return images;
+    }
+
+    /**
+     * Prints the body of a project built in memory
+     */
+    private static class Executive extends ExecutivePDFReporter {
+
+        private static final long serialVersionUID = 1L;
+
+        Executive(final Project project) throws IOException {
+            super(null, ReportFixtures.getLogo(), project.getKey(), ReportFixtures.getConfig(),
+                    ReportFixtures.getTexts());
+            setProject(project);
+        }
+
+        void printBody(final Document document, final PdfWriter writer) throws ReportException {
+            printPdfBody(document, writer);
+        }
+
+        Image getTendencyImage(final int trend) {
+            return getTendencyImage(trend, true);
+        }
+    }
+
+    /**
+     * Document recording the chapters added to it
+     */
+    private static class ChapterRecorder extends Document {
+
+        private final List<Chapter> chapters = new ArrayList<>();
+        private int completeChapters;
+        private int incompleteWrites;
+        private int maxPendingElements;
+
+        ChapterRecorder() {
+            super(PageSize.A4, 50, 50, 110, 50);
+        }
+
+        @Override
+        public boolean add(final Element element) throws DocumentException {
+            if (element instanceof Chapter) {
+                Chapter chapter = (Chapter) element;
+                if (!chapters.contains(chapter)) {
+                    chapters.add(chapter);
+                }
+                if (chapter.isComplete()) {
+                    completeChapters++;
+                } else {
+                    incompleteWrites++;
+                }
+                maxPendingElements = Math.max(maxPendingElements, chapter.size());
+            }
+            return super.add(element);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.test;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.sonar.report.pdf.util.FileUploader;
+import org.sonar.report.pdf.util.ReportMetrics;
+import org.testng.annotations.Test;
+
+/**
+ * Reports uploaded by {@link FileUploader} to the store actions of the plugin
+ */
+public class FileUploaderTest extends MockServerTest {
+
+    @Test(groups = { "mock-server" })
+    public void uploadIsResumedAfterFailures() throws IOException, NoSuchAlgorithmException {
+        MockSonarServer server = start(new MockSonarServer(1, 1, 1));
+        int chunkSize = 64 * 1024;
+        byte[] content = new byte[5 * chunkSize + 123];
+        new Random(42).nextBytes(content);
+        File file = new File(fs.workDir(), "upload.pdf");
+        Files.write(file.toPath(), content);
+
+        // first chunk sent by a previous, interrupted upload
+        String uploadId = sha1(content);
+        byte[] chunk = Arrays.copyOf(content, chunkSize);
+        HttpURLConnection connection = (HttpURLConnection) new URL(server.getUrl()
+                + MockSonarServer.STORE_CHUNK_URL + "?pdfname=upload.pdf&upload_id=" + uploadId
+                + "&offset=0&sha1=" + sha1(chunk)).openConnection();
+        connection.setDoOutput(true);
+        connection.getOutputStream().write(chunk);
+        assertEquals(200, connection.getResponseCode());
+
+        server.resetCounters();
+        server.setFailureRate(MockSonarServer.STORE_CHUNK_URL, 0.2);
+        ReportMetrics metrics = new ReportMetrics();
+        assertTrue(FileUploader.upload(file, server.getUrl() + MockSonarServer.STORE_URL, null, null, chunkSize,
+                false, metrics));
+        assertTrue(Arrays.equals(content, server.getStoredReport("upload.pdf")));
+        assertEquals(5, server.getRequestCount(MockSonarServer.STORE_CHUNK_URL) - server.getFailureCount());
+        assertTrue(metrics.toJson().contains("\"" + MockSonarServer.STORE_CHUNK_URL + "\""));
+    }
+
+    @Test(groups = { "mock-server" })
+    public void uploadStopsWhenTheServerDoesNotProgress() throws IOException {
+        MockSonarServer server = start(new MockSonarServer(1, 1, 1).setChunksLost(true));
+        int chunkSize = 64 * 1024;
+        byte[] content = new byte[3 * chunkSize];
+        new Random(42).nextBytes(content);
+        File file = new File(fs.workDir(), "lost.pdf");
+        Files.write(file.toPath(), content);
+
+        assertFalse(FileUploader.upload(file, server.getUrl() + MockSonarServer.STORE_URL, null, null, chunkSize,
+                false, new ReportMetrics()));
+        assertEquals(5, server.getRequestCount(MockSonarServer.STORE_CHUNK_URL));
+    }
+
+    @Test(groups = { "mock-server" })
+    public void unchangedReportIsNotUploadedAgain() throws IOException {
+        MockSonarServer server = start(new MockSonarServer(1, 1, 1));
+        File file = new File(fs.workDir(), "unchanged.pdf");
+        byte[] content = new byte[256 * 1024];
+        Arrays.fill(content, (byte) 'a');
+        Files.write(file.toPath(), content);
+        String url = server.getUrl() + MockSonarServer.STORE_URL;
+
+        assertTrue(FileUploader.upload(file, url, null, null, true, new ReportMetrics()));
+        assertTrue(Arrays.equals(content, server.getStoredReport("unchanged.pdf")));
+        assertTrue(server.getReceivedBytes(MockSonarServer.STORE_URL) < content.length / 10);
+
+        assertTrue(FileUploader.upload(file, url, null, null, true, new ReportMetrics()));
+        assertEquals(1, server.getRequestCount(MockSonarServer.STORE_URL));
+        assertEquals(2, server.getRequestCount(MockSonarServer.CHECK_URL));
+    }
+
+    @Test(groups = { "mock-server" })
+    public void gzippedReportIsSentInChunks() throws IOException {
+        MockSonarServer server = start(new MockSonarServer(1, 1, 1));
+        int chunkSize = 64 * 1024;
+        // compressed to about 4 chunks
+        byte[] content = new byte[4 * 1024 * 1024];
+        new Random(42).nextBytes(content);
+        Arrays.fill(content, 4 * chunkSize, content.length, (byte) 'a');
+        File file = new File(fs.workDir(), "gzipped.pdf");
+        Files.write(file.toPath(), content);
+
+        assertTrue(FileUploader.upload(file, server.getUrl() + MockSonarServer.STORE_URL, null, null, chunkSize,
+                true, new ReportMetrics()));
+        assertTrue(Arrays.equals(content, server.getStoredReport("gzipped.pdf")));
+        assertEquals(0, server.getRequestCount(MockSonarServer.STORE_URL));
+        assertEquals(1, server.getRequestCount(MockSonarServer.COMPLETE_URL));
+        assertTrue(server.getRequestCount(MockSonarServer.STORE_CHUNK_URL) > 1);
+        assertTrue(server.getReceivedBytes(MockSonarServer.STORE_CHUNK_URL) < content.length / 10);
+    }
+
+    private static String sha1(final byte[] data) throws NoSuchAlgorithmException {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-1").digest(data)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.test;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.sonar.report.pdf.FontRegistry;
+import org.sonar.report.pdf.Style;
+import org.sonar.report.pdf.entity.exception.ReportException;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.BaseFont;
+import com.lowagie.text.pdf.PRStream;
+import com.lowagie.text.pdf.PdfArray;
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfWriter;
+
+/**
+ * TrueType fonts shared by the {@link FontRegistry}
+ */
+public class FontRegistryTest {
+
+    private static final String[] SYSTEM_FONTS = { "/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf",
+            "/usr/share/fonts/dejavu/DejaVuSans.ttf", "/Library/Fonts/Arial.ttf", "C:/Windows/Fonts/arial.ttf" };
+
+    @Test(groups = { "rendering" })
+    public void fontIsParsedOnceAndEmbeddedAsASubset() throws IOException, DocumentException, ReportException {
+        File font = findFont();
+        String location = font.getAbsolutePath();
+        assertSame(FontRegistry.getBaseFont(location), FontRegistry.getBaseFont(location));
+        assertSame(FontRegistry.getFont(location, Style.CHAPTER_FONT),
+                FontRegistry.getFont(location, Style.CHAPTER_FONT));
+
+        PRStream small = getEmbeddedFont(render(location, "root"));
+        PRStream large = getEmbeddedFont(render(location, "abcdefghijklmnopqrstuvwxyz ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+                + " \u0430\u0431\u0432\u0433\u0434\u0435\u0436\u0437 \u03b1\u03b2\u03b3\u03b4"));
+        // each document only holds the glyphs it uses
+        assertTrue(PdfReader.getStreamBytes(small).length < font.length() / 4);
+        assertTrue(PdfReader.getStreamBytes(small).length < PdfReader.getStreamBytes(large).length);
+    }
+
+    @Test(groups = { "rendering" })
+    public void styleFontIsUsedWhenTheFontCanNotBeRead() {
+        assertSame(Style.NORMAL_FONT, FontRegistry.getFont("missing.ttf", Style.NORMAL_FONT));
+        assertSame(Style.NORMAL_FONT, FontRegistry.getFont("", Style.NORMAL_FONT));
+    }
+
+    private static File findFont() {
+        for (String location : SYSTEM_FONTS) {
+            File font = new File(location);
+            if (font.isFile()) {
+                return font;
+            }
+        }
+        throw new SkipException("No TrueType font found");
+    }
+
+    private static PdfReader render(final String location, final String text) throws DocumentException,
+            IOException {
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        Document document = new Document();
+        PdfWriter.getInstance(document, pdf);
+        document.open();
+        document.add(new Paragraph(text, FontRegistry.getFont(location, Style.CHAPTER_FONT)));
+        document.close();
+        PdfReader reader = new PdfReader(pdf.toByteArray());
+        assertEquals(1, reader.getNumberOfPages());
+        return reader;
+    }
+
+    /**
+     * Font file of the embedded TrueType font of the first page
+     */
+    private static PRStream getEmbeddedFont(final PdfReader reader) {
+        PdfDictionary fonts = reader.getPageN(1).getAsDict(PdfName.RESOURCES).getAsDict(PdfName.FONT);
+        assertEquals(1, fonts.size());
+        PdfDictionary font = (PdfDictionary) PdfReader
+                .getPdfObject(fonts.get((PdfName) fonts.getKeys().iterator().next()));
+        assertEquals(new PdfName(BaseFont.IDENTITY_H), font.getAsName(PdfName.ENCODING));
+        PdfArray descendants = font.getAsArray(PdfName.DESCENDANTFONTS);
+        PdfDictionary descriptor = ((PdfDictionary) PdfReader.getPdfObject(descendants.getPdfObject(0)))
+                .getAsDict(PdfName.FONTDESCRIPTOR);
+        // subset fonts are named with a six letters tag
+        assertTrue(descriptor.getAsName(PdfName.FONTNAME).toString().matches("/[A-Z]{6}\\+.+"));
+        PRStream fontFile = (PRStream) PdfReader.getPdfObject(descriptor.get(PdfName.FONTFILE2));
+        assertNotNull(fontFile);
+        return fontFile;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.resources.Project;
+import org.sonar.report.pdf.PDFResources;
+import org.sonar.report.pdf.batch.PDFGenerator;
+import org.sonar.report.pdf.util.ReportMetrics;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+
+/**
+ * Base of the tests run against {@link MockSonarServer}. The servers started
+ * by a test are stopped after it. The dataset size can be raised with system
+ * properties (mock.modules, mock.files, mock.issues, mock.latency and
+ * mock.reports) to reproduce large projects.
+ */
+public abstract class MockServerTest {
+
+    protected int modules;
+    protected int files;
+    protected int issues;
+    protected long latency;
+    protected int reports;
+
+    protected Project project;
+    protected DefaultFileSystem fs;
+    protected File report;
+
+    private final List<MockSonarServer> servers = new ArrayList<>();
+
+    @BeforeMethod(groups = { "mock-server" })
+    public void before() {
+        modules = Integer.getInteger("mock.modules", 5);
+        files = Integer.getInteger("mock.files", 50);
+        issues = Integer.getInteger("mock.issues", 1000);
+        latency = Long.getLong("mock.latency", 0L);
+        reports = Integer.getInteger("mock.reports", 3);
+
+        project = mock(Project.class);
+        when(project.getEffectiveKey()).thenReturn(MockSonarServer.ROOT_KEY);
+        File workDir = new File(System.getProperty("java.io.tmpdir"), "pdf-mock-server");
+        workDir.mkdirs();
+        fs = new DefaultFileSystem(workDir);
+        fs.setWorkDir(workDir);
+        report = new File(workDir, MockSonarServer.ROOT_KEY.replace(':', '-') + ".pdf");
+        report.delete();
+    }
+
+    @AfterMethod(groups = { "mock-server" }, alwaysRun = true)
+    public void after() {
+        for (MockSonarServer server : servers) {
+            server.stop();
+        }
+        servers.clear();
+    }
+
+    /**
+     * Start a server with the default dataset and latency
+     */
+    protected MockSonarServer startServer() throws IOException {
+        return start(new MockSonarServer(modules, files, issues).setLatency(latency));
+    }
+
+    /**
+     * Start a server, stopped after the test
+     */
+    protected MockSonarServer start(final MockSonarServer server) throws IOException {
+        servers.add(server.start());
+        return server;
+    }
+
+    /**
+     * Generate a report
+     * 
+     * @return metrics of the report
+     */
+    protected ReportMetrics generate(final MockSonarServer server, final String reportType) {
+        PDFGenerator generator = new PDFGenerator(project, fs, server.getUrl(), null, null, reportType);
+        generator.execute();
+        return generator.getMetrics();
+    }
+
+    protected void generate(final MockSonarServer server, final String reportType, final File snapshotDir) {
+        new PDFGenerator(project, fs, server.getUrl(), null, null, reportType)
+                .setConfigProperty(PDFResources.SNAPSHOT_DIR, snapshotDir.getAbsolutePath()).execute();
+    }
+}
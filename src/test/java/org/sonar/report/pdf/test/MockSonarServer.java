@@ -0,0 +1,938 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.sonar.report.pdf.PDFResources;
+import org.sonar.report.pdf.entity.Severity;
+import org.sonar.report.pdf.util.MetricKeys;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the SonarQube web services used by the report. Data is
+ * generated from the dataset size (modules, files and issues per module), so
+ * large projects can be served without storing them. Latency and failures can
+ * be injected per web service.
+ */
+public class MockSonarServer {
+
+    public static final String ROOT_KEY = "mock:root";
+
+    public static final String RESOURCES_URL = "/api/resources";
+    public static final String COMPONENT_URL = "/api/measures/component";
+    public static final String COMPONENT_TREE_URL = "/api/measures/component_tree";
+    public static final String ISSUES_URL = "/api/issues/search";
+    public static final String TIMEMACHINE_URL = "/api/timemachine";
+    public static final String METRICS_URL = "/api/metrics";
+    public static final String RULES_URL = "/api/rules/search";
+
+    public static final String STORE_URL = "/pdf_report/store";
+    public static final String CHECK_URL = "/pdf_report/check";
+    public static final String UPLOAD_STATUS_URL = "/pdf_report/upload_status";
+    public static final String STORE_CHUNK_URL = "/pdf_report/store_chunk";
+    public static final String COMPLETE_URL = "/pdf_report/complete";
+
+    /**
+     * Issues search can not go further than this number of results
+     */
+    public static final int ISSUES_WINDOW = 10000;
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int RULES = 80;
+    private static final int THREADS = 8;
+    private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ssZ";
+    private static final Date ANALYSIS_DATE = new Date(1451606400000L);
+
+    static {
+        // without it, each response waits for the delayed ACK of the client
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final int modules;
+    private final int filesPerModule;
+    private final int issuesPerModule;
+    private final String[] severities = Severity.getSeverityArray();
+
+    private volatile long latency;
+
+    private volatile int failureStatus = 500;
+    private volatile int slowEvery;
+    private volatile long slowLatency;
+    private volatile boolean chunksLost;
+    private final AtomicInteger received = new AtomicInteger();
+    private Date analysisDate = ANALYSIS_DATE;
+    private final Map<String, Double> failureRates = new ConcurrentHashMap<>();
+    private final Random random = new Random(42);
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final Map<String, ByteArrayOutputStream> uploads = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> reports = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> receivedBytes = new ConcurrentHashMap<>();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Default constructor
+     * 
+     * @param modules
+     *            number of modules of the root project
+     * @param filesPerModule
+     *            number of files of each module
+     * @param issuesPerModule
+     *            number of issues of each module
+     */
+    public MockSonarServer(final int modules, final int filesPerModule, final int issuesPerModule) {
+        this.modules = modules;
+        this.filesPerModule = filesPerModule;
+        this.issuesPerModule = issuesPerModule;
+    }
+
+    /**
+     * Delay added to every response
+     * 
+     * @param latency
+     *            latency in milliseconds
+     * @return this
+     */
+    public MockSonarServer setLatency(final long latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Date of the last analysis of the project and its modules
+     * 
+     * @param analysisDate
+     *            analysis date
+     * @return this
+     */
+    public MockSonarServer setAnalysisDate(final Date analysisDate) {
+        this.analysisDate = analysisDate;
+        return this;
+    }
+
+    /**
+     * Rate of requests of a web service answered with an HTTP error, 500
+     * unless another failure status is set
+     * 
+     * @param path
+     *            web service path
+     * @param rate
+     *            rate between 0 (never fails) and 1 (always fails)
+     * @return this
+     */
+    public MockSonarServer setFailureRate(final String path, final double rate) {
+        failureRates.put(path, rate);
+        return this;
+    }
+
+    /**
+     * Answer every n-th request late, as a node with a long tail latency
+     * 
+     * @param every
+     *            n, 0 to answer no request late
+     * @param latency
+     *            latency of the late requests in milliseconds
+     * @return this
+     */
+    public MockSonarServer setSlowRequests(final int every, final long latency) {
+        this.slowEvery = every;
+        this.slowLatency = latency;
+        return this;
+    }
+
+    /**
+     * Lose the received chunks of uploads, as a server answering a conflict
+     * at the same offset however many times a chunk is sent
+     * 
+     * @param lost
+     *            true to lose the chunks
+     * @return this
+     */
+    public MockSonarServer setChunksLost(final boolean lost) {
+        this.chunksLost = lost;
+        return this;
+    }
+
+    /**
+     * HTTP status of the injected failures
+     * 
+     * @param status
+     *            status, such as 429 or 503 for an overloaded server
+     * @return this
+     */
+    public MockSonarServer setFailureStatus(final int status) {
+        this.failureStatus = status;
+        return this;
+    }
+
+    public MockSonarServer start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        executor = Executors.newFixedThreadPool(THREADS);
+        server.setExecutor(executor);
+        HttpHandler handler = new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                MockSonarServer.this.handle(exchange);
+            }
+        };
+        server.createContext("/api/", handler);
+        server.createContext("/pdf_report/", handler);
+        server.start();
+        return this;
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Number of requests received by a web service
+     * 
+     * @param path
+     *            web service path
+     * @return number of requests
+     */
+    public int getRequestCount(final String path) {
+        AtomicInteger count = requests.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    public int getRequestCount() {
+        int count = 0;
+        for (AtomicInteger pathCount : requests.values()) {
+            count += pathCount.get();
+        }
+        return count;
+    }
+
+    public int getFailureCount() {
+        return failures.get();
+    }
+
+    /**
+     * Report stored by the PDF report actions
+     * 
+     * @param name
+     *            file name of the report
+     * @return content, or null if no report was stored with this name
+     */
+    public byte[] getStoredReport(final String name) {
+        return reports.get(name);
+    }
+
+    /**
+     * @return number of request body bytes received on the given path
+     */
+    public int getReceivedBytes(final String path) {
+        AtomicInteger bytes = receivedBytes.get(path);
+        return bytes == null ? 0 : bytes.get();
+    }
+
+    public void resetCounters() {
+        requests.clear();
+        receivedBytes.clear();
+        failures.set(0);
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (path.startsWith(METRICS_URL)) {
+            path = METRICS_URL;
+        }
+        AtomicInteger count = requests.get(path);
+        if (count == null) {
+            requests.putIfAbsent(path, new AtomicInteger());
+            count = requests.get(path);
+        }
+        count.incrementAndGet();
+        try {
+            if (slowEvery > 0 && received.incrementAndGet() % slowEvery == 0) {
+                Thread.sleep(slowLatency);
+            } else if (latency > 0) {
+                Thread.sleep(latency);
+            }
+            if (shouldFail(path)) {
+                failures.incrementAndGet();
+                send(exchange, failureStatus, error("Injected failure"));
+                return;
+            }
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            switch (path) {
+            case RESOURCES_URL:
+                send(exchange, 200, resources(params));
+                break;
+            case COMPONENT_URL:
+                component(exchange, params);
+                break;
+            case COMPONENT_TREE_URL:
+                componentTree(exchange, params);
+                break;
+            case ISSUES_URL:
+                issues(exchange, params);
+                break;
+            case TIMEMACHINE_URL:
+                send(exchange, 200, timeMachine(params));
+                break;
+            case METRICS_URL:
+                send(exchange, 200, metrics());
+                break;
+            case RULES_URL:
+                send(exchange, 200, rules(params));
+                break;
+            case STORE_URL:
+                store(exchange, params);
+                break;
+            case CHECK_URL:
+                byte[] report = reports.get(params.get("pdfname"));
+                send(exchange, report != null && sha1(report).equals(params.get("sha1")) ? 200 : 404, "");
+                break;
+            case UPLOAD_STATUS_URL:
+                send(exchange, 200, String.valueOf(getUpload(params).size()));
+                break;
+            case STORE_CHUNK_URL:
+                storeChunk(exchange, params);
+                break;
+            case COMPLETE_URL:
+                complete(exchange, params);
+                break;
+            default:
+                send(exchange, 404, error("Unknown url : " + path));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(exchange, 503, error("Server stopped"));
+        } catch (RuntimeException e) {
+            send(exchange, 400, error(e.toString()));
+        }
+    }
+
+    /**
+     * Store a report sent in the "upload" part of a multipart request,
+     * gzipped if the encoding parameter says so
+     */
+    private void store(final HttpExchange exchange, final Map<String, String> params) throws IOException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        byte[] boundary = ("\r\n--" + contentType.substring(contentType.indexOf("boundary=") + 9))
+                .getBytes(StandardCharsets.ISO_8859_1);
+        byte[] body = readBody(exchange);
+        String headers = new String(body, 0, indexOf(body, "\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1), 0),
+                StandardCharsets.ISO_8859_1);
+        int start = headers.length() + 4;
+        int filenameStart = headers.indexOf("filename=\"") + 10;
+        String name = params.containsKey("pdfname") ? params.get("pdfname")
+                : headers.substring(filenameStart, headers.indexOf('"', filenameStart));
+        byte[] report = Arrays.copyOfRange(body, start, indexOf(body, boundary, start));
+        if ("gzip".equals(params.get("encoding"))) {
+            report = readAll(new GZIPInputStream(new ByteArrayInputStream(report)));
+        }
+        reports.put(name, report);
+        send(exchange, 200, "");
+    }
+
+    /**
+     * Append a chunk to an upload, as the store_chunk action of the plugin
+     */
+    private void storeChunk(final HttpExchange exchange, final Map<String, String> params) throws IOException {
+        ByteArrayOutputStream upload = getUpload(params);
+        byte[] chunk = readBody(exchange);
+        synchronized (upload) {
+            if (chunksLost) {
+                send(exchange, 409, "0");
+            } else if (Long.parseLong(params.get("offset")) != upload.size()) {
+                send(exchange, 409, String.valueOf(upload.size()));
+            } else if (!sha1(chunk).equals(params.get("sha1"))) {
+                send(exchange, 422, String.valueOf(upload.size()));
+            } else {
+                upload.write(chunk);
+                send(exchange, 200, String.valueOf(upload.size()));
+            }
+        }
+    }
+
+    /**
+     * Check an upload and store its report, inflated if the encoding
+     * parameter says so, as the complete action of the plugin
+     */
+    private void complete(final HttpExchange exchange, final Map<String, String> params) throws IOException {
+        ByteArrayOutputStream upload = uploads.remove(params.get("pdfname") + "." + params.get("upload_id"));
+        byte[] report = upload == null ? new byte[0] : upload.toByteArray();
+        if (report.length != Long.parseLong(params.get("size")) || !sha1(report).equals(params.get("upload_id"))) {
+            send(exchange, 422, "");
+        } else {
+            if ("gzip".equals(params.get("encoding"))) {
+                report = readAll(new GZIPInputStream(new ByteArrayInputStream(report)));
+            }
+            reports.put(params.get("pdfname"), report);
+            send(exchange, 200, "");
+        }
+    }
+
+    private ByteArrayOutputStream getUpload(final Map<String, String> params) {
+        String key = params.get("pdfname") + "." + params.get("upload_id");
+        ByteArrayOutputStream upload = uploads.get(key);
+        if (upload == null) {
+            uploads.putIfAbsent(key, new ByteArrayOutputStream());
+            upload = uploads.get(key);
+        }
+        return upload;
+    }
+
+    private byte[] readBody(final HttpExchange exchange) throws IOException {
+        byte[] body = readAll(exchange.getRequestBody());
+        String path = exchange.getRequestURI().getPath();
+        receivedBytes.putIfAbsent(path, new AtomicInteger());
+        receivedBytes.get(path).addAndGet(body.length);
+        return body;
+    }
+
+    private static byte[] readAll(final InputStream stream) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = stream) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                data.write(buffer, 0, read);
+            }
+        }
+        return data.toByteArray();
+    }
+
+    private static int indexOf(final byte[] data, final byte[] pattern, final int from) {
+        for (int i = from; i <= data.length - pattern.length; i++) {
+            int j = 0;
+            while (j < pattern.length && data[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String sha1(final byte[] data) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-1").digest(data)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private boolean shouldFail(final String path) {
+        Double rate = failureRates.get(path);
+        if (rate == null) {
+            return false;
+        }
+        synchronized (random) {
+            return random.nextDouble() < rate;
+        }
+    }
+
+    private String resources(final Map<String, String> params) {
+        String key = params.get("resource");
+        int depth = params.containsKey("depth") ? Integer.parseInt(params.get("depth")) : 0;
+        String[] metrics = params.containsKey("metrics") ? params.get("metrics").split(",") : new String[0];
+        JsonArray result = new JsonArray();
+        if (key == null && "TRK".equals(params.get("qualifiers"))) {
+            result.add(resource(ROOT_KEY, PDFResources.PROJECT_SCOPE, "TRK", metrics));
+            return result.toString();
+        }
+        if (!isProject(key)) {
+            return result.toString();
+        }
+        if (depth == 1) {
+            if (ROOT_KEY.equals(key)) {
+                for (int i = 0; i < modules; i++) {
+                    result.add(resource(moduleKey(i), PDFResources.PROJECT_SCOPE, "BRC", metrics));
+                }
+            }
+        } else if (depth == -1) {
+            int limit = params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : Integer.MAX_VALUE;
+            List<String> files = files(key);
+            sortByValue(files, metrics[0], false);
+            for (String file : files.subList(0, Math.min(limit, files.size()))) {
+                result.add(resource(file, PDFResources.FILE_SCOPE, "FIL", metrics));
+            }
+        } else {
+            result.add(resource(key, PDFResources.PROJECT_SCOPE, ROOT_KEY.equals(key) ? "TRK" : "BRC", metrics));
+        }
+        return result.toString();
+    }
+
+    private JsonObject resource(final String key, final String scope, final String qualifier,
+            final String[] metrics) {
+        JsonObject resource = new JsonObject();
+        resource.addProperty("id", Math.abs(key.hashCode()));
+        resource.addProperty("key", key);
+        resource.addProperty("name", key.substring(key.lastIndexOf(':') + 1));
+        resource.addProperty("scope", scope);
+        resource.addProperty("qualifier", qualifier);
+        resource.addProperty("date", new SimpleDateFormat(DATE_FORMAT).format(analysisDate));
+        resource.addProperty("version", "1.0");
+        if (metrics.length > 0) {
+            JsonArray msr = new JsonArray();
+            for (String metric : metrics) {
+                msr.add(measure(key, metric));
+            }
+            resource.add("msr", msr);
+        }
+        return resource;
+    }
+
+    private JsonObject measure(final String key, final String metric) {
+        JsonObject measure = new JsonObject();
+        measure.addProperty("key", metric);
+        if (MetricKeys.FILE_COMPLEXITY_DISTRIBUTION.getKey().equals(metric)) {
+            measure.addProperty("data", "0=" + filesPerModule + ";5=" + filesPerModule / 2 + ";10=" + filesPerModule
+                    / 4 + ";20=" + filesPerModule / 8 + ";30=3;60=1;90=0");
+        } else if (MetricKeys.PROFILE.getKey().equals(metric)) {
+            measure.addProperty("data", "[{\"name\":\"Sonar way\",\"language\":\"java\"}]");
+        } else {
+            long value = value(key, metric);
+            measure.addProperty("val", value);
+            measure.addProperty("frmt_val", String.valueOf(value));
+            measure.addProperty("var2", value / 10);
+        }
+        return measure;
+    }
+
+    /**
+     * Measures of a project, as /api/measures/component gives them
+     */
+    private void component(final HttpExchange exchange, final Map<String, String> params) throws IOException {
+        String key = params.get("componentKey");
+        if (!isProject(key)) {
+            send(exchange, 404, error("Component key '" + key + "' not found"));
+            return;
+        }
+        String[] metrics = params.containsKey("metricKeys") ? params.get("metricKeys").split(",") : new String[0];
+        JsonObject result = new JsonObject();
+        result.add("component", component(key, ROOT_KEY.equals(key) ? "TRK" : "BRC", metrics));
+        send(exchange, 200, result.toString());
+    }
+
+    /**
+     * Page of the measures of the modules (children strategy) or of the files
+     * (leaves strategy) of a project, optionally sorted on a metric
+     */
+    private void componentTree(final HttpExchange exchange, final Map<String, String> params) throws IOException {
+        String key = params.get("baseComponentKey");
+        if (!isProject(key)) {
+            send(exchange, 404, error("Component key '" + key + "' not found"));
+            return;
+        }
+        String[] metrics = params.containsKey("metricKeys") ? params.get("metricKeys").split(",") : new String[0];
+        String strategy = params.containsKey("strategy") ? params.get("strategy") : "all";
+        List<String> qualifiers = params.containsKey("qualifiers") ? Arrays.asList(params.get("qualifiers")
+                .split(",")) : Arrays.asList("BRC", "FIL");
+        int page = params.containsKey("p") ? Integer.parseInt(params.get("p")) : 1;
+        int pageSize = params.containsKey("ps") ? Math.min(Integer.parseInt(params.get("ps")), MAX_PAGE_SIZE)
+                : DEFAULT_PAGE_SIZE;
+
+        List<String> keys = new ArrayList<>();
+        if (!"leaves".equals(strategy) && ROOT_KEY.equals(key) && qualifiers.contains("BRC")) {
+            for (int i = 0; i < modules; i++) {
+                keys.add(moduleKey(i));
+            }
+        }
+        if (!"children".equals(strategy) && qualifiers.contains("FIL")) {
+            keys.addAll(files(key));
+        }
+        String metricSort = params.get("metricSort");
+        if (metricSort != null && params.containsKey("s") && params.get("s").contains("metric")) {
+            sortByValue(keys, metricSort, "true".equals(params.get("asc")));
+        }
+
+        JsonArray components = new JsonArray();
+        for (int i = (page - 1) * pageSize; i < Math.min(page * pageSize, keys.size()); i++) {
+            String component = keys.get(i);
+            components.add(component(component, isProject(component) ? "BRC" : "FIL", metrics));
+        }
+        JsonObject paging = new JsonObject();
+        paging.addProperty("pageIndex", page);
+        paging.addProperty("pageSize", pageSize);
+        paging.addProperty("total", keys.size());
+        JsonObject result = new JsonObject();
+        result.add("paging", paging);
+        result.add("baseComponent", component(key, ROOT_KEY.equals(key) ? "TRK" : "BRC", new String[0]));
+        result.add("components", components);
+        send(exchange, 200, result.toString());
+    }
+
+    private JsonObject component(final String key, final String qualifier, final String[] metrics) {
+        JsonObject component = new JsonObject();
+        component.addProperty("id", String.valueOf(Math.abs(key.hashCode())));
+        component.addProperty("key", key);
+        component.addProperty("name", key.substring(key.lastIndexOf(':') + 1));
+        component.addProperty("qualifier", qualifier);
+        JsonArray measures = new JsonArray();
+        for (String metric : metrics) {
+            JsonObject measure = measure(key, metric);
+            JsonObject componentMeasure = new JsonObject();
+            componentMeasure.addProperty("metric", metric);
+            componentMeasure.add("value", measure.has("data") ? measure.get("data") : measure.get("frmt_val"));
+            measures.add(componentMeasure);
+        }
+        component.add("measures", measures);
+        return component;
+    }
+
+    /**
+     * Files of a module, or of all the modules for the root project
+     */
+    private List<String> files(final String key) {
+        List<String> files = new ArrayList<>();
+        for (int m = 0; m < modules; m++) {
+            if (ROOT_KEY.equals(key) || moduleKey(m).equals(key)) {
+                for (int f = 0; f < filesPerModule; f++) {
+                    files.add(fileKey(m, f));
+                }
+            }
+        }
+        return files;
+    }
+
+    private static void sortByValue(final List<String> keys, final String metric, final boolean asc) {
+        Collections.sort(keys, new Comparator<String>() {
+            @Override
+            public int compare(String key1, String key2) {
+                return asc ? Long.compare(value(key1, metric), value(key2, metric))
+                        : Long.compare(value(key2, metric), value(key1, metric));
+            }
+        });
+    }
+
+    private void issues(final HttpExchange exchange, final Map<String, String> params) throws IOException {
+        int page = params.containsKey("p") ? Integer.parseInt(params.get("p")) : 1;
+        int pageSize = params.containsKey("ps") ? Math.min(Integer.parseInt(params.get("ps")), MAX_PAGE_SIZE)
+                : DEFAULT_PAGE_SIZE;
+        if (page * pageSize > ISSUES_WINDOW) {
+            send(exchange, 400, error("Can return only the first " + ISSUES_WINDOW + " results. "
+                    + (page * pageSize) + "th result asked."));
+            return;
+        }
+        String component = params.get("componentKeys");
+        List<String> wanted = params.containsKey("severities") ? Arrays.asList(params.get("severities").split(","))
+                : Arrays.asList(severities);
+        long after;
+        long before;
+        try {
+            after = params.containsKey("createdAfter") ? parseDate(params.get("createdAfter")) : Long.MIN_VALUE;
+            before = params.containsKey("createdBefore") ? parseDate(params.get("createdBefore")) : Long.MAX_VALUE;
+        } catch (ParseException e) {
+            send(exchange, 400, error("Invalid date: " + e.getMessage()));
+            return;
+        }
+        List<String> moduleUuids = params.containsKey("moduleUuids") ? Arrays.asList(params.get("moduleUuids")
+                .split(",")) : null;
+        List<String> directories = params.containsKey("directories") ? Arrays.asList(params.get("directories")
+                .split(",")) : null;
+        // CREATION_DATE ascending gives the oldest issues first, which have the highest indexes
+        boolean byDate = "CREATION_DATE".equals(params.get("s")) && !"false".equals(params.get("asc"));
+        int firstModule = 0;
+        int lastModule = modules;
+        if (!ROOT_KEY.equals(component)) {
+            firstModule = moduleIndex(component);
+            lastModule = firstModule < 0 ? firstModule : firstModule + 1;
+        }
+        int offset = (page - 1) * pageSize;
+        int total = 0;
+        int[] countByModule = new int[modules];
+        Map<String, Integer> countByRule = new HashMap<>();
+        JsonArray issues = new JsonArray();
+        for (int n = 0; n < issuesPerModule; n++) {
+            int i = byDate ? issuesPerModule - 1 - n : n;
+            long date = ANALYSIS_DATE.getTime() - i * 60000L;
+            String severity = severities[i % severities.length];
+            if (!wanted.contains(severity) || date < after || date >= before) {
+                continue;
+            }
+            for (int m = firstModule; m < lastModule; m++) {
+                if ((moduleUuids == null || moduleUuids.contains(moduleUuid(m)))
+                        && (directories == null || directories.contains(directory(m)))) {
+                    if (total >= offset && issues.size() < pageSize) {
+                        issues.add(issue(m, i, severity));
+                    }
+                    total++;
+                    countByModule[m]++;
+                    String rule = rule(m, i);
+                    countByRule.put(rule, countByRule.containsKey(rule) ? countByRule.get(rule) + 1 : 1);
+                }
+            }
+        }
+        JsonObject paging = new JsonObject();
+        paging.addProperty("pageIndex", page);
+        paging.addProperty("pageSize", pageSize);
+        paging.addProperty("total", total);
+        JsonObject result = new JsonObject();
+        result.addProperty("total", total);
+        result.addProperty("p", page);
+        result.addProperty("ps", pageSize);
+        result.add("paging", paging);
+        result.add("issues", issues);
+        if (params.containsKey("facets")) {
+            result.add("facets", facets(params.get("facets").split(","), countByModule, countByRule));
+        }
+        send(exchange, 200, result.toString());
+    }
+
+    /**
+     * Facets of rules, modules and directories, each module having one
+     * directory
+     */
+    private JsonArray facets(final String[] properties, final int[] countByModule,
+            final Map<String, Integer> countByRule) {
+        JsonArray facets = new JsonArray();
+        for (String property : properties) {
+            JsonArray values = new JsonArray();
+            if ("rules".equals(property)) {
+                for (Map.Entry<String, Integer> entry : countByRule.entrySet()) {
+                    JsonObject value = new JsonObject();
+                    value.addProperty("val", entry.getKey());
+                    value.addProperty("count", entry.getValue());
+                    values.add(value);
+                }
+            }
+            for (int m = 0; m < modules; m++) {
+                if (countByModule[m] > 0 && ("moduleUuids".equals(property) || "directories".equals(property))) {
+                    JsonObject value = new JsonObject();
+                    value.addProperty("val", "moduleUuids".equals(property) ? moduleUuid(m) : directory(m));
+                    value.addProperty("count", countByModule[m]);
+                    values.add(value);
+                }
+            }
+            JsonObject facet = new JsonObject();
+            facet.addProperty("property", property);
+            facet.add("values", values);
+            facets.add(facet);
+        }
+        return facets;
+    }
+
+    private static long parseDate(final String date) throws ParseException {
+        return new SimpleDateFormat(DATE_FORMAT).parse(date).getTime();
+    }
+
+    private JsonObject issue(final int module, final int index, final String severity) {
+        JsonObject issue = new JsonObject();
+        issue.addProperty("key", moduleKey(module) + "-issue-" + index);
+        issue.addProperty("component", fileKey(module, index % filesPerModule));
+        issue.addProperty("project", ROOT_KEY);
+        issue.addProperty("rule", rule(module, index));
+        issue.addProperty("status", "OPEN");
+        issue.addProperty("severity", severity);
+        issue.addProperty("message", "Issue " + index + " of module " + module);
+        issue.addProperty("line", 1 + index % 300);
+        String date = new SimpleDateFormat(DATE_FORMAT).format(new Date(ANALYSIS_DATE.getTime() - index * 60000L));
+        issue.addProperty("creationDate", date);
+        issue.addProperty("updateDate", date);
+        return issue;
+    }
+
+    private String timeMachine(final Map<String, String> params) {
+        String key = params.get("resource");
+        String[] metrics = params.get("metrics").split(",");
+        JsonArray cols = new JsonArray();
+        JsonArray values = new JsonArray();
+        for (String metric : metrics) {
+            JsonObject col = new JsonObject();
+            col.addProperty("metric", metric);
+            cols.add(col);
+            values.add(new JsonPrimitive(String.valueOf(value(key + "@old", metric))));
+        }
+        JsonObject cell = new JsonObject();
+        cell.addProperty("d", new SimpleDateFormat(DATE_FORMAT).format(new Date(ANALYSIS_DATE.getTime() - 86400000L)));
+        cell.add("v", values);
+        JsonArray cells = new JsonArray();
+        cells.add(cell);
+        JsonObject timeMachine = new JsonObject();
+        timeMachine.add("cols", cols);
+        timeMachine.add("cells", cells);
+        JsonArray result = new JsonArray();
+        result.add(timeMachine);
+        return result.toString();
+    }
+
+    private String metrics() {
+        JsonArray metrics = new JsonArray();
+        int id = 1;
+        for (MetricKeys key : MetricKeys.values()) {
+            JsonObject metric = new JsonObject();
+            metric.addProperty("id", id++);
+            metric.addProperty("key", key.getKey());
+            metric.addProperty("name", key.name());
+            if (MetricKeys.FILE_COMPLEXITY_DISTRIBUTION == key) {
+                metric.addProperty("type", "DISTRIB");
+            } else if (MetricKeys.PROFILE == key) {
+                metric.addProperty("type", "DATA");
+            } else {
+                metric.addProperty("type", "INT");
+            }
+            metrics.add(metric);
+        }
+        JsonObject result = new JsonObject();
+        result.add("metrics", metrics);
+        result.addProperty("total", metrics.size());
+        return result.toString();
+    }
+
+    private String rules(final Map<String, String> params) {
+        String ruleKey = params.get("rule_key");
+        JsonArray rules = new JsonArray();
+        if (ruleKey != null) {
+            JsonObject rule = new JsonObject();
+            rule.addProperty("key", ruleKey);
+            rule.addProperty("name", "Rule " + ruleKey.substring(ruleKey.indexOf(':') + 1));
+            rule.addProperty("status", "READY");
+            rule.addProperty("lang", "java");
+            rule.addProperty("langName", "Java");
+            rules.add(rule);
+        }
+        JsonObject result = new JsonObject();
+        result.add("rules", rules);
+        result.addProperty("total", rules.size());
+        return result.toString();
+    }
+
+    private boolean isProject(final String key) {
+        return ROOT_KEY.equals(key) || moduleIndex(key) >= 0;
+    }
+
+    private int moduleIndex(final String key) {
+        String prefix = ROOT_KEY + ":module-";
+        if (key != null && key.startsWith(prefix)) {
+            try {
+                int index = Integer.parseInt(key.substring(prefix.length()));
+                return index < modules ? index : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static String rule(final int module, final int index) {
+        return "mock:rule-" + (index * 7 + module) % RULES;
+    }
+
+    private static String moduleUuid(final int module) {
+        return "module-uuid-" + module;
+    }
+
+    private static String directory(final int module) {
+        return moduleKey(module) + ":src/main/java";
+    }
+
+    private static String moduleKey(final int module) {
+        return ROOT_KEY + ":module-" + module;
+    }
+
+    private static String fileKey(final int module, final int file) {
+        return moduleKey(module) + ":src/main/java/File" + file + ".java";
+    }
+
+    /**
+     * Deterministic value of a metric for a resource
+     */
+    private static long value(final String key, final String metric) {
+        return Math.abs((key + metric).hashCode() % 1000);
+    }
+
+    private static String error(final String message) {
+        JsonObject error = new JsonObject();
+        error.addProperty("msg", message);
+        JsonArray errors = new JsonArray();
+        errors.add(error);
+        JsonObject result = new JsonObject();
+        result.add("errors", errors);
+        return result.toString();
+    }
+
+    private static Map<String, String> parseQuery(final String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                int index = param.indexOf('=');
+                if (index > 0) {
+                    params.put(URLDecoder.decode(param.substring(0, index), "UTF-8"),
+                            URLDecoder.decode(param.substring(index + 1), "UTF-8"));
+                }
+            }
+        }
+        return params;
+    }
+
+    private static void send(final HttpExchange exchange, final int status, final String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+}
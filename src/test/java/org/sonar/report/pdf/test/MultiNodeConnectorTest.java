@@ -0,0 +1,61 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.test;
+
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.IOException;
+
+import org.sonarqube.ws.client.SonarHost;
+import org.sonarqube.ws.client.WSClient;
+import org.sonarqube.ws.connectors.ConnectionException;
+import org.sonarqube.ws.connectors.Connector;
+import org.sonarqube.ws.connectors.MultiNodeConnector;
+import org.sonarqube.ws.query.MetricQuery;
+import org.testng.annotations.Test;
+
+/**
+ * Queries spread by a {@link MultiNodeConnector} over two
+ * {@link MockSonarServer} nodes
+ */
+public class MultiNodeConnectorTest extends MockServerTest {
+
+    @Test(groups = { "mock-server" })
+    public void queriesAreHedgedOnAnotherNode() throws IOException, ConnectionException {
+        MockSonarServer slow = start(new MockSonarServer(modules, files, issues).setLatency(5)
+                .setSlowRequests(25, 2000));
+        MockSonarServer fast = start(new MockSonarServer(modules, files, issues).setLatency(5));
+        Connector connector = WSClient.create(new SonarHost(slow.getUrl()).setNodes(fast.getUrl())
+                .setHedgePercentile(90)).getConnector();
+        long slowest = 0;
+        for (int i = 0; i < 100; i++) {
+            long start = System.currentTimeMillis();
+            connector.execute(MetricQuery.all());
+            slowest = Math.max(slowest, System.currentTimeMillis() - start);
+        }
+        assertTrue(slowest < 2000);
+        assertTrue(slow.getRequestCount() > 0 && fast.getRequestCount() > 0);
+        assertTrue(slow.getRequestCount() + fast.getRequestCount() > 100);
+
+        slow.setFailureRate(MockSonarServer.METRICS_URL, 1);
+        assertFalse(connector.execute(MetricQuery.all()).isEmpty());
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.test;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.sonar.report.pdf.OutputProfile;
+import org.testng.annotations.Test;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Image;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.PRStream;
+import com.lowagie.text.pdf.PdfCopy;
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfWriter;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+
+/**
+ * The same documents written and merged with each {@link OutputProfile}
+ */
+public class OutputProfileTest {
+
+    private static final int PAGES = 20;
+
+    @Test(groups = { "rendering" })
+    public void profilesTradeSizeButNotContent() throws DocumentException, IOException {
+        Map<OutputProfile, Integer> sizes = new EnumMap<>(OutputProfile.class);
+        String text = null;
+        for (OutputProfile profile : OutputProfile.values()) {
+            byte[] part = render(profile);
+            byte[] pdf = merge(profile, part, render(profile));
+            sizes.put(profile, pdf.length);
+
+            PdfReader reader = new PdfReader(pdf);
+            assertEquals(profile.getKey(), 2 * PAGES, reader.getNumberOfPages());
+            String page = new PdfTextExtractor(reader).getTextFromPage(PAGES + 1);
+            if (text == null) {
+                text = page;
+            }
+            assertEquals(profile.getKey(), text, page);
+            // iText stores uncompressed content as deflate blocks of level 0
+            PRStream content = (PRStream) PdfReader.getPdfObject(reader.getPageN(1).get(PdfName.CONTENTS));
+            int stored = PdfReader.getStreamBytesRaw(content).length;
+            int decoded = PdfReader.getStreamBytes(content).length;
+            assertEquals(profile.getKey(), profile != OutputProfile.FAST, stored < decoded);
+            // object and cross-reference streams, and identical images of
+            // the merged documents stored once
+            assertEquals(profile.getKey(), profile == OutputProfile.COMPACT, reader.isNewXrefType());
+            int images = countImages(new PdfReader(part));
+            assertEquals(profile.getKey(), profile == OutputProfile.COMPACT ? images : 2 * images,
+                    countImages(reader));
+        }
+        assertTrue(sizes.toString(), sizes.get(OutputProfile.COMPACT) < sizes.get(OutputProfile.DEFAULT));
+        assertTrue(sizes.toString(), sizes.get(OutputProfile.DEFAULT) < sizes.get(OutputProfile.FAST));
+        assertEquals(OutputProfile.DEFAULT, OutputProfile.get("unknown"));
+    }
+
+    /**
+     * A document with the same logo and some text on every page
+     */
+    private static byte[] render(final OutputProfile profile) throws DocumentException, IOException {
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        Document document = new Document();
+        profile.configure(PdfWriter.getInstance(document, pdf));
+        document.open();
+        Image logo = Image.getInstance(ReportFixtures.getLogo());
+        logo.scaleToFit(100, 50);
+        for (int page = 1; page <= PAGES; page++) {
+            document.add(logo);
+            for (int line = 0; line < 15; line++) {
+                document.add(new Paragraph("Page " + page + ", line " + line + ": the same words again"));
+            }
+            document.newPage();
+        }
+        document.close();
+        return pdf.toByteArray();
+    }
+
+    private static byte[] merge(final OutputProfile profile, final byte[]... parts) throws DocumentException,
+            IOException {
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        Document document = new Document();
+        PdfCopy copy = profile.createCopy(document, pdf);
+        document.open();
+        for (byte[] part : parts) {
+            PdfReader reader = new PdfReader(part);
+            for (int page = 1; page <= reader.getNumberOfPages(); page++) {
+                copy.addPage(copy.getImportedPage(reader, page));
+            }
+        }
+        document.close();
+        return pdf.toByteArray();
+    }
+
+    private static int countImages(final PdfReader reader) {
+        Set<Object> images = new HashSet<>();
+        for (int page = 1; page <= reader.getNumberOfPages(); page++) {
+            PdfDictionary xObjects = reader.getPageN(page).getAsDict(PdfName.RESOURCES).getAsDict(PdfName.XOBJECT);
+            for (Object name : xObjects.getKeys()) {
+                images.add(xObjects.get((PdfName) name).toString());
+            }
+        }
+        return images.size();
+    }
+}
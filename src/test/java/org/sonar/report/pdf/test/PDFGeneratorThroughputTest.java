@@ -0,0 +1,141 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.test;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.report.pdf.PDFResources;
+import org.sonar.report.pdf.batch.PDFGenerator;
+import org.sonar.report.pdf.util.ReportMetrics;
+import org.testng.annotations.Test;
+
+import com.lowagie.text.pdf.PdfReader;
+
+/**
+ * End-to-end report generation against {@link MockSonarServer}.
+ */
+public class PDFGeneratorThroughputTest extends MockServerTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PDFGeneratorThroughputTest.class);
+
+    @Test(groups = { "mock-server" })
+    public void executiveReportThroughput() throws IOException {
+        runReports(PDFResources.EXECUTIVE_REPORT_TYPE);
+    }
+
+    @Test(groups = { "mock-server" })
+    public void workbookReportThroughput() throws IOException {
+        runReports(PDFResources.WORKBOOK_REPORT_TYPE);
+    }
+
+    @Test(groups = { "mock-server" })
+    public void noReportWhenRulesAreUnavailable() throws IOException {
+        MockSonarServer server = startServer().setFailureRate(MockSonarServer.RULES_URL, 1);
+        generate(server, PDFResources.WORKBOOK_REPORT_TYPE);
+        assertFalse(report.exists());
+        assertTrue(server.getFailureCount() > 0);
+    }
+
+    @Test(groups = { "mock-server" })
+    public void snapshotIsReusedUntilNextAnalysis() throws IOException {
+        MockSonarServer server = startServer();
+        File snapshotDir = new File(fs.workDir(), "snapshots");
+        new File(snapshotDir, MockSonarServer.ROOT_KEY.replace(':', '-') + ".snapshot").delete();
+        generate(server, PDFResources.WORKBOOK_REPORT_TYPE, snapshotDir);
+        long fullReport = report.length();
+        assertTrue(server.getRequestCount(MockSonarServer.TIMEMACHINE_URL) > 0);
+
+        server.resetCounters();
+        generate(server, PDFResources.WORKBOOK_REPORT_TYPE, snapshotDir);
+        assertEquals(fullReport, report.length());
+        assertEquals(server.getRequestCount(MockSonarServer.RESOURCES_URL), server.getRequestCount());
+        File chapters = new File(snapshotDir, MockSonarServer.ROOT_KEY.replace(':', '-') + ".chapters");
+        String[] fragments = chapters.list();
+        assertEquals(modules + 1, fragments.length);
+
+        server.resetCounters();
+        server.setAnalysisDate(new Date());
+        generate(server, PDFResources.WORKBOOK_REPORT_TYPE, snapshotDir);
+        assertTrue(server.getRequestCount(MockSonarServer.TIMEMACHINE_URL) > 0);
+        // same data, so the same chapter fragments are used
+        assertEquals(new TreeSet<>(Arrays.asList(fragments)), new TreeSet<>(Arrays.asList(chapters.list())));
+    }
+
+    @Test(groups = { "mock-server" })
+    public void onlyTheDataOfTheSectionsIsRetrieved() throws IOException {
+        MockSonarServer server = startServer();
+        new PDFGenerator(project, fs, server.getUrl(), null, null, PDFResources.EXECUTIVE_REPORT_TYPE)
+                .setConfigProperty(PDFResources.REPORT_SECTIONS + "." + PDFResources.EXECUTIVE_REPORT_TYPE,
+                        "dashboard")
+                .execute();
+        assertTrue(report.exists());
+        assertEquals(0, server.getRequestCount(MockSonarServer.ISSUES_URL));
+        int trends = server.getRequestCount(MockSonarServer.TIMEMACHINE_URL);
+
+        server.resetCounters();
+        generate(server, PDFResources.WORKBOOK_REPORT_TYPE);
+        assertTrue(server.getRequestCount(MockSonarServer.ISSUES_URL) > 0);
+        assertEquals(trends, server.getRequestCount(MockSonarServer.TIMEMACHINE_URL));
+    }
+
+    @Test(groups = { "mock-server" })
+    public void chaptersAreRenderedWhileTheProjectIsRetrieved() throws IOException {
+        MockSonarServer server = startServer();
+        new PDFGenerator(project, fs, server.getUrl(), null, null, PDFResources.WORKBOOK_REPORT_TYPE)
+                .setConfigProperty(PDFResources.PIPELINE_CHAPTERS, "0").execute();
+        int pages = new PdfReader(report.getPath()).getNumberOfPages();
+        int requests = server.getRequestCount();
+
+        server.resetCounters();
+        report.delete();
+        new PDFGenerator(project, fs, server.getUrl(), null, null, PDFResources.WORKBOOK_REPORT_TYPE)
+                .setConfigProperty(PDFResources.PIPELINE_CHAPTERS, "1").execute();
+        assertEquals(pages, new PdfReader(report.getPath()).getNumberOfPages());
+        assertEquals(requests, server.getRequestCount());
+    }
+
+    private void runReports(final String reportType) throws IOException {
+        MockSonarServer server = startServer();
+        ReportMetrics metrics = null;
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < reports; i++) {
+            report.delete();
+            metrics = generate(server, reportType);
+            assertTrue(report.length() > 0);
+        }
+        long duration = Math.max(1, System.currentTimeMillis() - start);
+        LOG.info(reportType + " reports for " + modules + " modules and " + modules * issues + " issues: "
+                + reports + " in " + duration + " ms (" + (reports * 60000L / duration) + " per minute, "
+                + server.getRequestCount() / reports + " requests per report, "
+                + server.getRequestCount(MockSonarServer.TIMEMACHINE_URL) / reports + " trend requests)");
+        LOG.info(metrics.formatSummary());
+        assertTrue(metrics.toJson().contains("\"" + MockSonarServer.TIMEMACHINE_URL + "\""));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.test;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.sonar.report.pdf.PDFResources;
+import org.sonar.report.pdf.builder.ProjectBuilder;
+import org.sonar.report.pdf.entity.Rule;
+import org.sonar.report.pdf.entity.exception.ReportException;
+import org.sonarqube.ws.client.WSClient;
+import org.testng.annotations.Test;
+
+/**
+ * Requests sent by {@link ProjectBuilder} to {@link MockSonarServer}
+ */
+public class ProjectBuilderTest extends MockServerTest {
+
+    @Test(groups = { "mock-server" })
+    public void childMeasuresAreRetrievedInBulk() throws IOException {
+        int[] requests = new int[2];
+        for (int i = 0; i < requests.length; i++) {
+            MockSonarServer server = start(new MockSonarServer(2 + 4 * i, files, issues));
+            generate(server, PDFResources.WORKBOOK_REPORT_TYPE);
+            assertTrue(report.exists());
+            requests[i] = server.getRequestCount(MockSonarServer.RESOURCES_URL)
+                    + server.getRequestCount(MockSonarServer.COMPONENT_URL)
+                    + server.getRequestCount(MockSonarServer.COMPONENT_TREE_URL);
+        }
+        // each module adds the list of its children, but no measure request,
+        // and the files of the whole tree are ranked at once
+        assertTrue("Resource requests for 4 more modules: " + (requests[1] - requests[0]),
+                requests[1] - requests[0] <= 4);
+    }
+
+    @Test(groups = { "mock-server" })
+    public void topFilesAreSortedByTheServer() throws IOException {
+        int[] requests = new int[2];
+        for (int i = 0; i < requests.length; i++) {
+            // too many files to read them all: only the top files are sent
+            MockSonarServer server = start(new MockSonarServer(1, 4000 * (1 + 2 * i), issues));
+            generate(server, PDFResources.WORKBOOK_REPORT_TYPE);
+            assertTrue(report.exists());
+            requests[i] = server.getRequestCount(MockSonarServer.COMPONENT_TREE_URL);
+        }
+        assertEquals(requests[0], requests[1]);
+    }
+
+    @Test(groups = { "mock-server" })
+    public void issuesSearchIsLimitedToWindow() throws IOException {
+        MockSonarServer server = start(new MockSonarServer(1, 1, 1));
+        HttpURLConnection connection = (HttpURLConnection) new URL(server.getUrl() + MockSonarServer.ISSUES_URL
+                + "?componentKeys=" + MockSonarServer.ROOT_KEY + "&ps=500&p=21").openConnection();
+        assertEquals(400, connection.getResponseCode());
+    }
+
+    @Test(groups = { "mock-server" })
+    public void mostViolatedRulesCountIssuesBeyondTheSearchWindow() throws IOException, ReportException {
+        // 12000 issues of each severity, over the 10000 results of a search
+        MockSonarServer server = start(new MockSonarServer(1, 10, 60000));
+        org.sonar.report.pdf.entity.Project project = ProjectBuilder.getInstance(
+                WSClient.create(server.getUrl())).initializeProject(MockSonarServer.ROOT_KEY);
+        int violations = 0;
+        for (Rule rule : project.getMostViolatedRules()) {
+            violations += Integer.parseInt(rule.getViolationsNumber());
+        }
+        assertEquals(12000, violations);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.ResourceBundle;
+
+import org.sonar.report.pdf.PDFResources;
+import org.sonar.report.pdf.entity.FileInfo;
+import org.sonar.report.pdf.entity.Measures;
+import org.sonar.report.pdf.entity.Project;
+import org.sonar.report.pdf.entity.Rule;
+import org.sonar.report.pdf.entity.Severity;
+import org.sonar.report.pdf.entity.Violation;
+
+/**
+ * Projects built in memory and reporter settings, to render reports without
+ * any SonarQube server
+ */
+public final class ReportFixtures {
+
+    private static final int TOP_FILES = 5;
+
+    private ReportFixtures() {
+        super();
+    }
+
+    public static URL getLogo() {
+        return ReportFixtures.class.getResource(PDFResources.SONAR_PNG_FILE);
+    }
+
+    public static Properties getConfig() throws IOException {
+        Properties config = new Properties();
+        try (InputStream in = ReportFixtures.class.getResourceAsStream("/" + PDFResources.REPORT_PROPERTIES)) {
+            config.load(in);
+        }
+        return config;
+    }
+
+    public static Properties getTexts() {
+        Properties texts = new Properties();
+        ResourceBundle bundle = ResourceBundle.getBundle(PDFResources.RESOURCE_NAME, Locale.ENGLISH);
+        for (String key : bundle.keySet()) {
+            texts.setProperty(key, bundle.getString(key));
+        }
+        return texts;
+    }
+
+    /**
+     * Create a project. Each rule is violated twice in each file, and each
+     * module has the same rules and files as its parent.
+     * 
+     * @param key
+     *            key and name of the project
+     * @param modules
+     *            number of modules
+     * @param rules
+     *            number of most violated rules
+     * @param files
+     *            number of files violating each rule
+     * @return Project
+     */
+    public static Project createProject(final String key, final int modules, final int rules, final int files) {
+        Project project = new Project(key);
+        project.setName(key);
+        project.setDescription("Project " + key);
+        Measures measures = new Measures();
+        measures.setVersion("1.0");
+        try {
+            measures.setDate(new Date());
+        } catch (ParseException e) {
+            throw new IllegalStateException(e);
+        }
+        project.setMeasures(measures);
+
+        List<Rule> mostViolatedRules = new ArrayList<>();
+        for (int r = 0; r < rules; r++) {
+            Rule rule = new Rule();
+            rule.setKey("squid:rule-" + r);
+            rule.setName("rule-" + r);
+            rule.setSeverity(Severity.MAJOR);
+            rule.setViolationsNumber(String.valueOf(2 * files));
+            List<Violation> violations = new ArrayList<>();
+            for (int f = 0; f < files; f++) {
+                violations.add(new Violation(String.valueOf(r + 1), getFile(f)));
+                violations.add(new Violation(String.valueOf(r + f + 2), getFile(f)));
+            }
+            rule.setTopViolations(violations);
+            mostViolatedRules.add(rule);
+        }
+        project.setMostViolatedRules(mostViolatedRules);
+
+        List<FileInfo> topFiles = new ArrayList<>();
+        for (int f = 0; f < Math.min(files, TOP_FILES); f++) {
+            FileInfo file = new FileInfo();
+            file.setKey(key + ":" + getFile(f));
+            file.setName(getFile(f));
+            file.setViolations(String.valueOf(2 * rules));
+            file.setComplexity(String.valueOf(10 * (f + 1)));
+            file.setDuplicatedLines(String.valueOf(f));
+            topFiles.add(file);
+        }
+        project.setMostViolatedFiles(topFiles);
+        project.setMostComplexFiles(topFiles);
+        project.setMostDuplicatedFiles(topFiles);
+
+        List<Project> subprojects = new ArrayList<>();
+        for (int m = 0; m < modules; m++) {
+            subprojects.add(createProject(key + "-module-" + m, 0, rules, files));
+        }
+        project.setSubprojects(subprojects);
+        return project;
+    }
+
+    private static String getFile(final int index) {
+        return "src/main/java/File" + index + ".java";
+    }
+}
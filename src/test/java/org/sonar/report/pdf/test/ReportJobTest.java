@@ -0,0 +1,194 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.test;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+import org.sonar.report.pdf.PDFResources;
+import org.sonar.report.pdf.batch.PDFPostJob;
+import org.sonar.report.pdf.batch.ReportJob;
+import org.sonar.report.pdf.batch.ReportJobWorker;
+import org.testng.annotations.Test;
+
+/**
+ * Reports generated in the background by a {@link ReportJob}
+ */
+public class ReportJobTest extends MockServerTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReportJobTest.class);
+
+    @Test(groups = { "mock-server" })
+    public void asyncReportIsGeneratedInBackground() throws IOException, InterruptedException {
+        MockSonarServer server = startServer();
+        File jobDir = new File(System.getProperty("java.io.tmpdir"), "pdf-mock-jobs");
+        String name = MockSonarServer.ROOT_KEY.replace(':', '-');
+        File jobFile = new File(jobDir, name + "-pdf-job.properties");
+        File jobReport = new File(jobDir, name + ".pdf");
+        jobReport.delete();
+        Settings settings = new Settings();
+        settings.setProperty(PDFPostJob.SONAR_HOST_URL, server.getUrl());
+        settings.setProperty(PDFPostJob.ASYNC, true);
+        settings.setProperty(PDFPostJob.ASYNC_DIR, jobDir.getAbsolutePath());
+        new PDFPostJob(settings, fs).executeOn(new Project(MockSonarServer.ROOT_KEY), null);
+
+        ReportJob job = ReportJob.waitFor(jobFile, 120000);
+        LOG.info(job.toString());
+        assertEquals(ReportJob.SUCCESS, job.getStatus());
+        assertNotNull(job.getPid());
+        assertEquals(jobReport.getAbsoluteFile(), job.getReport());
+        assertTrue(jobReport.length() > 0);
+    }
+
+    @Test(groups = { "mock-server" })
+    public void workerGetsTheClasspathOfThePlugin()
+            throws IOException, InterruptedException, ReflectiveOperationException {
+        MockSonarServer server = startServer();
+        File jobDir = new File(fs.workDir(), "plugin-jobs");
+        jobDir.mkdirs();
+        File jobFile = new File(jobDir, "plugin-pdf-job.properties");
+        File jobReport = new File(jobDir, "plugin.pdf");
+        jobReport.delete();
+        // the plugin is loaded apart from the classpath of the analysis
+        List<URL> urls = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            urls.add(new File(entry).toURI().toURL());
+        }
+        try (URLClassLoader plugin = new URLClassLoader(urls.toArray(new URL[urls.size()]),
+                ClassLoader.getSystemClassLoader().getParent())) {
+            Class<?> jobClass = plugin.loadClass(ReportJob.class.getName());
+            Object job = jobClass.getMethod("create", File.class, String.class).invoke(null, jobFile,
+                    MockSonarServer.ROOT_KEY);
+            jobClass.getMethod("setReportType", String.class).invoke(job, PDFResources.EXECUTIVE_REPORT_TYPE);
+            jobClass.getMethod("setSonarHostUrl", String.class).invoke(job, server.getUrl());
+            jobClass.getMethod("setReport", File.class).invoke(job, jobReport);
+            jobClass.getMethod("store").invoke(job);
+            Process worker = (Process) plugin.loadClass(ReportJobWorker.class.getName())
+                    .getMethod("start", jobClass, String.class, File.class)
+                    .invoke(null, job, null, new File(jobDir, "plugin-pdf-job.log"));
+            assertEquals(0, worker.waitFor());
+        }
+
+        assertEquals(ReportJob.SUCCESS, ReportJob.load(jobFile).getStatus());
+        assertTrue(jobReport.length() > 0);
+    }
+
+    @Test(groups = { "mock-server" })
+    public void noWorkerIsStartedWhileThePreviousOneRuns() throws IOException {
+        MockSonarServer server = startServer();
+        File jobDir = new File(fs.workDir(), "running-jobs");
+        jobDir.mkdirs();
+        String name = MockSonarServer.ROOT_KEY.replace(':', '-');
+        File jobFile = new File(jobDir, name + "-pdf-job.properties");
+        File jobReport = new File(jobDir, name + ".pdf");
+        jobReport.delete();
+        storeRunningJob(jobFile, System.currentTimeMillis());
+        Settings settings = new Settings();
+        settings.setProperty(PDFPostJob.SONAR_HOST_URL, server.getUrl());
+        settings.setProperty(PDFPostJob.ASYNC, true);
+        settings.setProperty(PDFPostJob.ASYNC_DIR, jobDir.getAbsolutePath());
+        new PDFPostJob(settings, fs).executeOn(new Project(MockSonarServer.ROOT_KEY), null);
+
+        ReportJob job = ReportJob.load(jobFile);
+        assertEquals(ReportJob.RUNNING, job.getStatus());
+        assertEquals("-1", job.getPid());
+        assertFalse(jobReport.exists());
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test(groups = { "mock-server" })
+    public void jobOfADeadWorkerIsFailed() throws IOException, InterruptedException {
+        File jobFile = new File(fs.workDir(), "dead-pdf-job.properties");
+        storeRunningJob(jobFile, System.currentTimeMillis() - ReportJob.STALE_AFTER_MS - 1000);
+
+        ReportJob job = ReportJob.waitFor(jobFile, 120000);
+        LOG.info(job.toString());
+        assertEquals(ReportJob.FAILED, job.getStatus());
+        assertEquals(ReportJob.FAILED, ReportJob.load(jobFile).getStatus());
+    }
+
+    @Test(groups = { "mock-server" })
+    public void jobIsStoredConcurrently() throws IOException, InterruptedException {
+        final File jobDir = new File(fs.workDir(), "concurrent-jobs");
+        jobDir.mkdirs();
+        for (File file : jobDir.listFiles()) {
+            file.delete();
+        }
+        final File jobFile = new File(jobDir, "concurrent-pdf-job.properties");
+        final List<Exception> errors = Collections.synchronizedList(new ArrayList<Exception>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            // each thread stands for a process with its own copy of the job
+            final ReportJob job = ReportJob.create(jobFile, MockSonarServer.ROOT_KEY);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 50; j++) {
+                            job.heartbeat().store();
+                        }
+                    } catch (IOException e) {
+                        errors.add(e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertEquals(MockSonarServer.ROOT_KEY, ReportJob.load(jobFile).getProjectKey());
+        assertEquals(1, jobDir.list().length);
+    }
+
+    /**
+     * Store the state of a job run by a worker whose last heartbeat is given
+     */
+    private static void storeRunningJob(final File jobFile, final long heartbeat) throws IOException {
+        Properties state = new Properties();
+        state.setProperty("projectKey", MockSonarServer.ROOT_KEY);
+        state.setProperty("status", ReportJob.RUNNING);
+        state.setProperty("pid", "-1");
+        state.setProperty("heartbeat", String.valueOf(heartbeat));
+        try (OutputStream out = new FileOutputStream(jobFile)) {
+            state.store(out, null);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.test;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import org.sonar.report.pdf.util.ReportMetrics;
+import org.testng.annotations.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Metrics of the reports, and of the batch they are part of
+ */
+public class ReportMetricsTest {
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    @Test(groups = { "report-metrics" })
+    public void reportsHaveTheirOwnMetrics() {
+        ReportMetrics batch = new ReportMetrics();
+        ReportMetrics first = new ReportMetrics(batch);
+        ReportMetrics second = new ReportMetrics(batch);
+        for (int i = 0; i < 10; i++) {
+            first.recordRequest("/api/first", NANOS_PER_MILLI, 100, false);
+        }
+        second.recordRequest("/api/second", NANOS_PER_MILLI, 100, true);
+
+        assertFalse(first.toJson().contains("/api/second"));
+        assertFalse(second.toJson().contains("/api/first"));
+        assertEquals(10, getRequest(batch, "/api/first").get("count").getAsInt());
+        assertEquals(1, getRequest(batch, "/api/second").get("failures").getAsInt());
+    }
+
+    @Test(groups = { "report-metrics" })
+    public void percentilesAreComputedOnABoundedSample() {
+        ReportMetrics metrics = new ReportMetrics();
+        int count = 100000;
+        for (int i = 1; i <= count; i++) {
+            metrics.recordRequest("/api/resources", i * NANOS_PER_MILLI, 0, false);
+        }
+
+        JsonObject request = getRequest(metrics, "/api/resources");
+        assertEquals(count, request.get("count").getAsInt());
+        assertEquals(count, request.get("maxMs").getAsDouble(), 0);
+        double p50 = request.get("p50Ms").getAsDouble();
+        assertTrue("p50 " + p50, Math.abs(p50 - count / 2) < count / 10);
+        double p95 = request.get("p95Ms").getAsDouble();
+        assertTrue("p95 " + p95, Math.abs(p95 - count * 0.95) < count / 20);
+    }
+
+    private static JsonObject getRequest(final ReportMetrics metrics, final String url) {
+        return new JsonParser().parse(metrics.toJson()).getAsJsonObject().getAsJsonObject("requests")
+                .getAsJsonObject(url);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.issue.ProjectIssues;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.MeasuresFilter;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.report.pdf.builder.SensorContextProjectBuilder;
+import org.sonar.report.pdf.entity.DataPlan;
+import org.sonar.report.pdf.entity.exception.ReportException;
+import org.sonar.report.pdf.util.MetricKeys;
+import org.sonarqube.ws.client.WSClient;
+import org.testng.annotations.Test;
+
+/**
+ * Project read by {@link SensorContextProjectBuilder} in the analysis
+ */
+public class SensorContextProjectBuilderTest extends MockServerTest {
+
+    @Test(groups = { "mock-server" })
+    public void projectIsReadInTheAnalysis() throws IOException, ReportException {
+        MockSonarServer server = start(new MockSonarServer(1, 1, 1));
+        Project root = new Project(MockSonarServer.ROOT_KEY);
+        root.setAnalysisDate(new Date());
+        org.sonar.api.resources.File file1 = createFile("src/A.java");
+        org.sonar.api.resources.File file2 = createFile("src/B.java");
+        SensorContext context = mock(SensorContext.class);
+        when(context.getChildren(root)).thenReturn(Arrays.<Resource> asList(file1, file2));
+        when(context.getMeasures(eq(file1), any(MeasuresFilter.class))).thenReturn(
+                Arrays.asList(new Measure(CoreMetrics.NCLOC, 100.0), new Measure(CoreMetrics.COMPLEXITY, 10.0)));
+        when(context.getMeasures(eq(file2), any(MeasuresFilter.class))).thenReturn(
+                Arrays.asList(new Measure(CoreMetrics.NCLOC, 50.0), new Measure(CoreMetrics.COMPLEXITY, 30.0)));
+        Issue issue = mock(Issue.class);
+        when(issue.componentKey()).thenReturn(file2.getEffectiveKey());
+        when(issue.ruleKey()).thenReturn(RuleKey.of("squid", "S00108"));
+        when(issue.severity()).thenReturn("MAJOR");
+        ProjectIssues projectIssues = mock(ProjectIssues.class);
+        when(projectIssues.issues()).thenReturn(Arrays.asList(issue));
+
+        org.sonar.report.pdf.entity.Project project = new SensorContextProjectBuilder(root, context,
+                projectIssues, null, WSClient.create(server.getUrl(), null, null))
+                        .getProject(MockSonarServer.ROOT_KEY, null, DataPlan.all());
+        assertEquals("150", project.getMeasure(MetricKeys.NCLOC).getFormatValue());
+        assertEquals("1", project.getMeasure(MetricKeys.MAJOR_VIOLATIONS).getFormatValue());
+        assertEquals("squid:S00108", project.getMostViolatedRules().get(0).getKey());
+        assertEquals(file2.getEffectiveKey(), project.getMostComplexFiles().get(0).getKey());
+        // only the trends are asked to the server
+        assertTrue(server.getRequestCount() > 0);
+        assertEquals(server.getRequestCount(MockSonarServer.TIMEMACHINE_URL), server.getRequestCount());
+    }
+
+    private static org.sonar.api.resources.File createFile(final String path) {
+        org.sonar.api.resources.File file = org.sonar.api.resources.File.create(path);
+        file.setEffectiveKey(MockSonarServer.ROOT_KEY + ":" + path);
+        return file;
+    }
+}
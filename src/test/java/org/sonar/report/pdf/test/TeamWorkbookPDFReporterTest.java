@@ -0,0 +1,161 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.test;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.sonar.report.pdf.TeamWorkbookPDFReporter;
+import org.sonar.report.pdf.entity.Project;
+import org.sonar.report.pdf.entity.exception.ReportException;
+import org.testng.annotations.Test;
+
+import com.lowagie.text.Chapter;
+import com.lowagie.text.ChapterAutoNumber;
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Element;
+import com.lowagie.text.ElementListener;
+import com.lowagie.text.PageSize;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.PdfPTable;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfWriter;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+
+/**
+ * Violations details of the {@link TeamWorkbookPDFReporter}, written in
+ * chunks
+ */
+public class TeamWorkbookPDFReporterTest {
+
+    private static final Pattern TABLE_HEADER = Pattern.compile("^Rule (.+)\nFile Line$", Pattern.MULTILINE);
+
+    private static final Pattern VIOLATION_ROW = Pattern.compile("^File\\d+\\.java \\d+", Pattern.MULTILINE);
+
+    @Test(groups = { "rendering" })
+    public void violationsDetailsAreFlushedInChunks() throws IOException, DocumentException, ReportException {
+        // 120 files per rule: each table is flushed twice and spans pages
+        Project project = ReportFixtures.createProject("workbook", 0, 3, 120);
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        Document document = new Document(PageSize.A4, 50, 50, 110, 50);
+        PdfWriter.getInstance(document, pdf);
+        document.open();
+        ChapterRecorder recorder = new ChapterRecorder(document);
+        // printed like the other sections of a chapter
+        Chapter chapter = new ChapterAutoNumber(new Paragraph(project.getName()));
+        chapter.setComplete(false);
+        new Workbook(project).printDetails(project, chapter, recorder);
+        chapter.setComplete(true);
+        recorder.add(chapter);
+        document.close();
+
+        // flushed after 50 and 100 rows, then written when the table is done
+        assertEquals(3 * 3 + 1, recorder.writes);
+        // header rows and at most 50 rows are kept in memory
+        assertEquals(3 + 50, recorder.maxTableRows);
+
+        PdfReader reader = new PdfReader(pdf.toByteArray());
+        assertTrue(reader.getNumberOfPages() > 3);
+        assertHeaderOnEveryPage(reader);
+    }
+
+    /**
+     * Every page holding violation rows starts with the header of their rule,
+     * repeated when the table of the previous page goes on
+     */
+    private static void assertHeaderOnEveryPage(final PdfReader reader) throws IOException {
+        PdfTextExtractor extractor = new PdfTextExtractor(reader);
+        String previousRule = null;
+        int continuedTables = 0;
+        for (int page = 1; page <= reader.getNumberOfPages(); page++) {
+            String text = extractor.getTextFromPage(page);
+            Matcher row = VIOLATION_ROW.matcher(text);
+            if (!row.find()) {
+                continue;
+            }
+            Matcher header = TABLE_HEADER.matcher(text);
+            assertTrue("No table header on page " + page, header.find() && header.start() < row.start());
+            if (header.group(1).equals(previousRule)) {
+                continuedTables++;
+            }
+            previousRule = header.group(1);
+            while (header.find()) {
+                previousRule = header.group(1);
+            }
+        }
+        assertTrue(continuedTables > 0);
+    }
+
+    /**
+     * Gives access to the details section of the workbook
+     */
+    private static class Workbook extends TeamWorkbookPDFReporter {
+
+        private static final long serialVersionUID = 1L;
+
+        Workbook(final Project project) throws IOException {
+            super(null, ReportFixtures.getLogo(), project.getKey(), ReportFixtures.getConfig(),
+                    ReportFixtures.getTexts());
+        }
+
+        void printDetails(final Project project, final Chapter chapter, final ElementListener listener)
+                throws ReportException {
+            printSpecificData(project, chapter, listener);
+        }
+    }
+
+    /**
+     * Writes the chapters to a document, recording the rows of the tables not
+     * written yet
+     */
+    private static class ChapterRecorder implements ElementListener {
+
+        private final Document document;
+        private int writes;
+        private int maxTableRows;
+
+        ChapterRecorder(final Document document) {
+            this.document = document;
+        }
+
+        @Override
+        public boolean add(final Element element) throws DocumentException {
+            writes++;
+            recordTables(element);
+            return document.add(element);
+        }
+
+        private void recordTables(final Object element) {
+            if (element instanceof PdfPTable) {
+                maxTableRows = Math.max(maxTableRows, ((PdfPTable) element).size());
+            } else if (element instanceof Iterable) {
+                for (Object child : (Iterable<?>) element) {
+                    recordTables(child);
+                }
+            }
+        }
+    }
+}
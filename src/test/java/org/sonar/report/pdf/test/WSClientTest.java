@@ -0,0 +1,71 @@
+/*
+ * SonarQube PDF Report
+ * Copyright (C) 2010-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.report.pdf.test;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.sonarqube.ws.client.WSClient;
+import org.sonarqube.ws.model.Metrics;
+import org.sonarqube.ws.query.MetricQuery;
+import org.testng.annotations.Test;
+
+/**
+ * Queries sent by {@link WSClient} to {@link MockSonarServer}
+ */
+public class WSClientTest extends MockServerTest {
+
+    @Test(groups = { "mock-server" })
+    public void identicalQueriesAreSentOnce() throws IOException, InterruptedException, ExecutionException {
+        MockSonarServer server = startServer().setLatency(200);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final WSClient sonar = WSClient.create(server.getUrl());
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<Metrics>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(new Callable<Metrics>() {
+                    @Override
+                    public Metrics call() throws Exception {
+                        start.await();
+                        return sonar.find(MetricQuery.all());
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Metrics> result : results) {
+                assertSame(results.get(0).get(), result.get());
+            }
+            assertEquals(1, server.getRequestCount(MockSonarServer.METRICS_URL));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}